@@ -348,6 +348,28 @@ CREATE TABLE pointValues
 );
 CREATE INDEX pointValuesIdx1 ON pointValues (dataPointId, ts);
 
+CREATE TABLE pointValueAggregates
+(
+    seriesId        INT NOT NULL,
+    ts              BIGINT NOT NULL,
+    startValue      DOUBLE,
+    firstValue      DOUBLE,
+    firstTs         BIGINT,
+    lastValue       DOUBLE,
+    lastTs          BIGINT,
+    minimumValue    DOUBLE,
+    minimumTs       BIGINT,
+    maximumValue    DOUBLE,
+    maximumTs       BIGINT,
+    average         DOUBLE,
+    integral        DOUBLE,
+    sumValue        DOUBLE NOT NULL,
+    countValue      BIGINT NOT NULL,
+    minimumInPeriod DOUBLE,
+    maximumInPeriod DOUBLE,
+    PRIMARY KEY (seriesId, ts)
+);
+
 CREATE TABLE pointValueAnnotations
 (
     pointValueId        BIGINT NOT NULL,
@@ -283,6 +283,27 @@ create table pointValues (
 );
 create index pointValuesIdx1 on pointValues (dataPointId, ts);
 
+create table pointValueAggregates (
+  seriesId int not null,
+  ts bigint not null,
+  startValue float,
+  firstValue float,
+  firstTs bigint,
+  lastValue float,
+  lastTs bigint,
+  minimumValue float,
+  minimumTs bigint,
+  maximumValue float,
+  maximumTs bigint,
+  average float,
+  integral float,
+  sumValue float not null,
+  countValue bigint not null,
+  minimumInPeriod float,
+  maximumInPeriod float,
+  primary key (seriesId, ts)
+);
+
 create table pointValueAnnotations (
   pointValueId bigint not null,
   textPointValueShort nvarchar(128),
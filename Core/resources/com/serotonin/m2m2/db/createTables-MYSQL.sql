@@ -294,6 +294,27 @@ CREATE TABLE pointValues (
 );
 CREATE INDEX pointValuesIdx1 on pointValues (dataPointId, ts);
 
+CREATE TABLE pointValueAggregates (
+    seriesId int NOT NULL,
+    ts bigint NOT NULL,
+    startValue double,
+    firstValue double,
+    firstTs bigint,
+    lastValue double,
+    lastTs bigint,
+    minimumValue double,
+    minimumTs bigint,
+    maximumValue double,
+    maximumTs bigint,
+    average double,
+    integral double,
+    sumValue double NOT NULL,
+    countValue bigint NOT NULL,
+    minimumInPeriod double,
+    maximumInPeriod double,
+    PRIMARY KEY (seriesId, ts)
+);
+
 CREATE TABLE pointValueAnnotations (
     pointValueId bigint NOT NULL,
     textPointValueShort varchar(128),
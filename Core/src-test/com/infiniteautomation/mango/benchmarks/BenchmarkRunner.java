@@ -4,18 +4,45 @@
 
 package com.infiniteautomation.mango.benchmarks;
 
+import java.io.File;
+import java.util.regex.Pattern;
+
 import org.junit.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+/**
+ * Runs the benchmarks in this class using JMH. Results are written in JSON format to the directory set by the
+ * system property {@value #RESULT_DIRECTORY_PROPERTY} (defaults to {@value #DEFAULT_RESULT_DIRECTORY}) so that runs
+ * can be compared, e.g. using a JMH visualizer.
+ */
 public class BenchmarkRunner {
+
+    public static final String RESULT_DIRECTORY_PROPERTY = "benchmark.resultDirectory";
+    public static final String DEFAULT_RESULT_DIRECTORY = "target/benchmarks";
+
     @Test
     public void runBenchmark() throws RunnerException {
-        Options opts = new OptionsBuilder()
-                .include(getClass().getName())
-                .build();
-        new Runner(opts).run();
+        File resultDirectory = new File(System.getProperty(RESULT_DIRECTORY_PROPERTY, DEFAULT_RESULT_DIRECTORY));
+        resultDirectory.mkdirs();
+
+        ChainedOptionsBuilder opts = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultDirectory, getClass().getSimpleName() + ".json").getPath());
+        for (Class<?> benchmark : benchmarks()) {
+            // include takes a regex which is matched against the benchmark method name
+            opts.include("^" + Pattern.quote(benchmark.getName()) + "\\.");
+        }
+        new Runner(opts.build()).run();
+    }
+
+    /**
+     * @return classes containing the benchmarks to run, defaults to this class
+     */
+    protected Class<?>[] benchmarks() {
+        return new Class<?>[] {getClass()};
     }
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.benchmarks;
+
+import com.infiniteautomation.mango.benchmarks.database.PointValueDaoBenchmarks;
+import com.infiniteautomation.mango.benchmarks.quantize.AnalogStatisticsQuantizerBenchmarks;
+import com.infiniteautomation.mango.benchmarks.runtime.DataPointRTBenchmarks;
+import com.infiniteautomation.mango.benchmarks.runtime.EventManagerBenchmarks;
+
+/**
+ * Runs the benchmarks for the point value and event hot paths together, the JSON results file
+ * (MangoBenchmarks.json) can be compared between runs to detect regressions.
+ */
+public class MangoBenchmarks extends BenchmarkRunner {
+
+    @Override
+    protected Class<?>[] benchmarks() {
+        return new Class<?>[] {
+                DataPointRTBenchmarks.class,
+                PointValueDaoBenchmarks.class,
+                AnalogStatisticsQuantizerBenchmarks.class,
+                EventManagerBenchmarks.class
+        };
+    }
+}
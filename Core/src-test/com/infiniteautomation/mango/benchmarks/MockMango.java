@@ -15,6 +15,7 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.openjdk.jmh.annotations.Level;
@@ -31,6 +32,7 @@ import com.serotonin.m2m2.MangoTestBase;
 import com.serotonin.m2m2.MockMangoLifecycle;
 import com.serotonin.m2m2.module.EventDetectorDefinition;
 import com.serotonin.m2m2.module.ModuleRegistry;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
 import com.serotonin.m2m2.vo.DataPointVO;
 import com.serotonin.m2m2.vo.IDataPoint;
 import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
@@ -95,6 +97,18 @@ public class MockMango extends MangoTestBase {
         return points;
     }
 
+    /**
+     * Create an enabled data point on an enabled data source and return its runtime
+     * @param customizer customize the data point before it is inserted
+     */
+    public DataPointRT createRunningDataPoint(Consumer<DataPointVO> customizer) {
+        MockDataSourceVO ds = createMockDataSource(true);
+        DataPointVO point = createMockDataPoint(ds, dp -> {
+            dp.setEnabled(true);
+            customizer.accept(dp);
+        });
+        return Common.runtimeManager.getDataPoint(point.getId());
+    }
 
     @Override
     protected MockMangoLifecycle getLifecycle() {
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.benchmarks.database;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.infiniteautomation.mango.benchmarks.BenchmarkRunner;
+import com.infiniteautomation.mango.benchmarks.MockMango;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.BatchPointValueImpl;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
+import com.serotonin.m2m2.rt.dataImage.IdPointValueTime;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Measures inserting point values and querying the values of multiple points merged into a single time ordered
+ * stream, using the default H2 database.
+ */
+public class PointValueDaoBenchmarks extends BenchmarkRunner {
+
+    @State(Scope.Benchmark)
+    public static class InsertState {
+
+        public PointValueDao dao;
+        public DataPointVO point;
+        public long time;
+        public double value;
+
+        @Setup(Level.Trial)
+        public void setupTrial(MockMango mango) throws ExecutionException, InterruptedException {
+            this.dao = Common.getBean(PointValueDao.class);
+            this.point = mango.createDataPoints(1, Collections.emptyMap()).get(0);
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class QueryState {
+
+        @Param({"1", "10", "100"})
+        public int dataPoints;
+
+        @Param({"1000"})
+        public int valuesPerPoint;
+
+        public final long startTime = 0L;
+        public final long pollPeriod = 5000L;
+
+        public PointValueDao dao;
+        public List<DataPointVO> points;
+
+        @Setup(Level.Trial)
+        public void setupTrial(MockMango mango) throws ExecutionException, InterruptedException {
+            this.dao = Common.getBean(PointValueDao.class);
+            this.points = mango.createDataPoints(dataPoints, Collections.emptyMap());
+            Stream<BatchPointValueImpl<PointValueTime>> values = points.stream()
+                    .flatMap(point -> LongStream.range(0, valuesPerPoint)
+                            .mapToObj(i -> new BatchPointValueImpl<>(point, new PointValueTime((double) i, startTime + i * pollPeriod))));
+            dao.savePointValues(values, 1000);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.Throughput})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void insertSync(InsertState state, Blackhole blackhole) {
+        blackhole.consume(state.dao.savePointValueSync(state.point, new PointValueTime(state.value++, state.time++)));
+    }
+
+    /**
+     * Measures the rate at which values are accepted into the batch write queue, values are written by the
+     * batch writer threads in the background.
+     */
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.Throughput})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void insertAsync(InsertState state) {
+        state.dao.savePointValueAsync(state.point, new PointValueTime(state.value++, state.time++));
+    }
+
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.AverageTime})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamPointValuesCombined(QueryState state, Blackhole blackhole) {
+        try (Stream<IdPointValueTime> stream = state.dao.streamPointValuesCombined(state.points,
+                null, null, null, TimeOrder.ASCENDING)) {
+            stream.forEach(blackhole::consume);
+        }
+    }
+}
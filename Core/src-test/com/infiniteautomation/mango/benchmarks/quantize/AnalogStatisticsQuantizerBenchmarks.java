@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.benchmarks.quantize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.infiniteautomation.mango.benchmarks.BenchmarkRunner;
+import com.infiniteautomation.mango.db.iterators.StatisticsAggregator;
+import com.infiniteautomation.mango.quantize.AnalogStatisticsQuantizer;
+import com.infiniteautomation.mango.quantize.TemporalAmountBucketCalculator;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+
+/**
+ * Measures rolling up one day of raw numeric values into analog statistics
+ */
+public class AnalogStatisticsQuantizerBenchmarks extends BenchmarkRunner {
+
+    @State(Scope.Benchmark)
+    public static class QuantizerState {
+
+        @Param({"1", "5", "60"})
+        public int pollPeriodSeconds;
+
+        @Param({"PT1M", "PT15M", "PT1H"})
+        public String aggregatePeriod;
+
+        public final ZonedDateTime from = ZonedDateTime.of(LocalDateTime.of(2020, 1, 1, 0, 0), ZoneOffset.UTC);
+        public final ZonedDateTime to = from.plusDays(1L);
+        public Duration period;
+        public List<PointValueTime> values;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            this.period = Duration.parse(aggregatePeriod);
+            this.values = new ArrayList<>();
+            Random random = new Random(0);
+            long pollPeriod = TimeUnit.SECONDS.toMillis(pollPeriodSeconds);
+            for (long time = from.toInstant().toEpochMilli(); time < to.toInstant().toEpochMilli(); time += pollPeriod) {
+                values.add(new PointValueTime(random.nextDouble(), time));
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.AverageTime})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void aggregate(QuantizerState state, Blackhole blackhole) {
+        var quantizer = new AnalogStatisticsQuantizer(new TemporalAmountBucketCalculator(state.from, state.to, state.period));
+        StatisticsAggregator.aggregate(state.values.stream(), quantizer).forEach(blackhole::consume);
+    }
+}
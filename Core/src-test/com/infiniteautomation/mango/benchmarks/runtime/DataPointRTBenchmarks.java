@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.benchmarks.runtime;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.infiniteautomation.mango.benchmarks.BenchmarkRunner;
+import com.infiniteautomation.mango.benchmarks.MockMango;
+import com.infiniteautomation.mango.pointvaluecache.PointValueCache;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
+import com.serotonin.m2m2.rt.dataImage.DataPointRTPointValueCache;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Measures the cost of updating a running data point's value, this is the path taken by every value a data source
+ * reads. Values change on every update so the on change logging types log every value.
+ */
+public class DataPointRTBenchmarks extends BenchmarkRunner {
+
+    @State(Scope.Benchmark)
+    public static class PointState {
+
+        @Param({"ON_CHANGE", "ALL", "NONE", "INTERVAL", "ON_TS_CHANGE"})
+        public String loggingType;
+
+        public DataPointRT rt;
+        public long time;
+        public double value;
+
+        @Setup(Level.Trial)
+        public void setupTrial(MockMango mango) {
+            int type = DataPointVO.LOGGING_TYPE_CODES.getId(loggingType);
+            this.rt = mango.createRunningDataPoint(dp -> dp.setLoggingType(type));
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Param({"1", "10", "100"})
+        public int cacheSize;
+
+        @Param({"true", "false"})
+        public boolean logValue;
+
+        public DataPointRTPointValueCache cache;
+        public long time;
+        public double value;
+
+        @Setup(Level.Trial)
+        public void setupTrial(MockMango mango) {
+            DataPointVO vo = mango.createRunningDataPoint(dp -> {}).getVO();
+            this.cache = new DataPointRTPointValueCache(vo, cacheSize, null,
+                    Common.getBean(PointValueDao.class), Common.getBean(PointValueCache.class));
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.Throughput})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void updatePointValue(PointState state) {
+        state.rt.updatePointValue(new PointValueTime(state.value++, state.time++));
+    }
+
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.Throughput})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void savePointValueToCache(CacheState state) {
+        state.cache.savePointValue(new PointValueTime(state.value++, state.time++), null, state.logValue, true);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.benchmarks.runtime;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.infiniteautomation.mango.benchmarks.BenchmarkRunner;
+import com.infiniteautomation.mango.benchmarks.MockMango;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.EventManagerImpl;
+import com.serotonin.m2m2.rt.event.AlarmLevels;
+import com.serotonin.m2m2.rt.event.type.DuplicateHandling;
+import com.serotonin.m2m2.rt.event.type.MockEventType;
+
+/**
+ * Measures raising an event and returning it to normal while a number of other events are active
+ */
+public class EventManagerBenchmarks extends BenchmarkRunner {
+
+    public static class RealEventManagerMockMango extends MockMango {
+        @Override
+        protected void preInitialize() {
+            lifecycle.setEventManager(new EventManagerImpl());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EventState {
+
+        @Param({"0", "100", "10000"})
+        public int activeEvents;
+
+        public MockEventType eventType;
+        public TranslatableMessage message = new TranslatableMessage("common.default", "Benchmark event");
+
+        @Setup(Level.Trial)
+        public void setupTrial(RealEventManagerMockMango mango) {
+            long time = Common.timer.currentTimeMillis();
+            for (int i = 0; i < activeEvents; i++) {
+                Common.eventManager.raiseEvent(new MockEventType(DuplicateHandling.IGNORE, null, i, -1, null),
+                        time, true, AlarmLevels.URGENT, message, Collections.emptyMap());
+            }
+            this.eventType = new MockEventType(DuplicateHandling.IGNORE, null, activeEvents, -1, null);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @Fork(1)
+    @BenchmarkMode({Mode.Throughput})
+    @Measurement(iterations = 5, time = 5)
+    @Warmup(iterations = 2, time = 5)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void raiseAndReturnToNormal(EventState state) {
+        long time = Common.timer.currentTimeMillis();
+        Common.eventManager.raiseEvent(state.eventType, time, true, AlarmLevels.URGENT, state.message, Collections.emptyMap());
+        Common.eventManager.returnToNormal(state.eventType, time);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.db.iterators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
+import com.serotonin.m2m2.rt.dataImage.IdPointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+
+public class TournamentMergingIteratorTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void ascending() {
+        for (int inputs : new int[] {0, 1, 2, 3, 7, 64, 1000}) {
+            assertSameOrder(randomInputs(inputs, TimeOrder.ASCENDING), TimeOrder.ASCENDING);
+        }
+    }
+
+    @Test
+    public void descending() {
+        for (int inputs : new int[] {0, 1, 2, 3, 7, 64, 1000}) {
+            assertSameOrder(randomInputs(inputs, TimeOrder.DESCENDING), TimeOrder.DESCENDING);
+        }
+    }
+
+    @Test
+    public void mergeStreams() {
+        List<List<IdPointValueTime>> inputs = randomInputs(10, TimeOrder.ASCENDING);
+        List<Stream<IdPointValueTime>> streams = inputs.stream().map(List::stream).collect(Collectors.toList());
+        List<IdPointValueTime> expected = merge(inputs, TimeOrder.ASCENDING);
+        try (var stream = TournamentMergingIterator.mergeStreams(streams, TimeOrder.ASCENDING)) {
+            assertEquals(expected, stream.collect(Collectors.toList()));
+        }
+    }
+
+    private void assertSameOrder(List<List<IdPointValueTime>> inputs, TimeOrder sortOrder) {
+        var it = new TournamentMergingIterator<IdPointValueTime>(iterators(inputs), sortOrder);
+        List<IdPointValueTime> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        assertFalse(it.hasNext());
+
+        List<IdPointValueTime> expected = merge(inputs, sortOrder);
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTime(), result.get(i).getTime());
+            assertEquals(expected.get(i).getSeriesId(), result.get(i).getSeriesId());
+        }
+    }
+
+    private List<IdPointValueTime> merge(List<List<IdPointValueTime>> inputs, TimeOrder sortOrder) {
+        Comparator<IdPointValueTime> comparator = sortOrder.getComparator().thenComparingInt(IdPointValueTime::getSeriesId);
+        var it = new MergingIterator<>(iterators(inputs), comparator);
+        List<IdPointValueTime> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    private List<Iterator<IdPointValueTime>> iterators(List<List<IdPointValueTime>> inputs) {
+        return inputs.stream().map(List::iterator).collect(Collectors.toList());
+    }
+
+    /**
+     * Creates inputs with a random number of values (some empty) and duplicate timestamps across series
+     */
+    private List<List<IdPointValueTime>> randomInputs(int count, TimeOrder sortOrder) {
+        List<List<IdPointValueTime>> inputs = new ArrayList<>();
+        for (int seriesId = 0; seriesId < count; seriesId++) {
+            List<IdPointValueTime> values = new ArrayList<>();
+            int size = random.nextInt(50);
+            long time = random.nextInt(100);
+            for (int i = 0; i < size; i++) {
+                values.add(new IdPointValueTime(seriesId, new NumericValue(i), time));
+                time += random.nextInt(10) + 1;
+            }
+            if (sortOrder == TimeOrder.DESCENDING) {
+                Collections.reverse(values);
+            }
+            inputs.add(values);
+        }
+        Collections.shuffle(inputs, random);
+        return inputs;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.emport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.EmportService;
+import com.infiniteautomation.mango.util.ConfigurationExportData;
+import com.serotonin.json.JsonException;
+import com.serotonin.json.type.JsonObject;
+import com.serotonin.json.type.JsonString;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.util.JsonSerializableUtility;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataSource.mock.MockDataSourceVO;
+
+public class BulkImportTaskTest extends MangoTestBase {
+
+    @Test
+    public void insertAndUpdatePoints() throws JsonException {
+        MockDataSourceVO ds = createMockDataSource();
+        List<DataPointVO> points = createMockDataPoints(ds, 5);
+        JsonObject json = exportDataPoints();
+
+        DataPointService service = Common.getBean(DataPointService.class);
+        points.forEach(p -> service.delete(p.getId()));
+
+        ImportTask task = runBulkImport(json);
+        assertTrue(task.getResponse().isValid());
+        for (DataPointVO point : points) {
+            DataPointVO imported = service.get(point.getXid());
+            assertEquals(point.getName(), imported.getName());
+            assertEquals(point.getTags(), imported.getTags());
+        }
+
+        // importing again updates the existing points
+        task = runBulkImport(json);
+        assertTrue(task.getResponse().isValid());
+        assertEquals(5, service.getDataPoints(ds.getId()).size());
+    }
+
+    @Test
+    public void failuresAreReported() throws JsonException {
+        MockDataSourceVO ds = createMockDataSource();
+        List<DataPointVO> points = createMockDataPoints(ds, 5);
+        JsonObject json = exportDataPoints();
+
+        DataPointService service = Common.getBean(DataPointService.class);
+        points.forEach(p -> service.delete(p.getId()));
+
+        json.getJsonArray(ConfigurationExportData.DATA_POINTS).get(0).toJsonObject()
+                .put("dataSourceXid", new JsonString("missing"));
+
+        ImportTask task = runBulkImport(json);
+        assertFalse(task.getResponse().isValid());
+        assertEquals(4, service.getDataPoints(ds.getId()).size());
+    }
+
+    private JsonObject exportDataPoints() throws JsonException {
+        Map<String, Object> data = ConfigurationExportData.createExportDataMap(new String[] {ConfigurationExportData.DATA_POINTS});
+        return JsonSerializableUtility.convertMapToJsonObject(data);
+    }
+
+    private ImportTask runBulkImport(JsonObject json) {
+        ImportTask task = Common.getBean(EmportService.class).getImportTask(json, null, false, Common.getTranslations(), true);
+        task.run(Common.timer.currentTimeMillis());
+        return task;
+    }
+}
@@ -50,7 +50,7 @@ public class JsscSerialPortInputStreamTest extends MangoTestBase {
             is.serialEvent(event);
         }
         
-        while(JsscSerialPortManager.instance.eventQueue.size() > 0) {
+        while(JsscSerialPortManager.instance.getQueuedEventCount() > 0) {
             try {
                 System.out.println("Waiting...");
                 Thread.sleep(100);
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.io.serial.virtual;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.io.serial.SerialPortManager;
+import com.infiniteautomation.mango.io.serial.SerialPortManagerImpl;
+import com.infiniteautomation.mango.io.serial.SerialPortProxyTransport;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.MockMangoLifecycle;
+import com.serotonin.m2m2.module.Module;
+import com.serotonin.messaging.DataConsumer;
+
+public class SerialSocketBridgeTest extends MangoTestBase {
+
+    @Test
+    public void transportReceivesData() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            SerialSocketBridgeConfig config = new SerialSocketBridgeConfig("VSP_TEST", "test", "127.0.0.1", server.getLocalPort(), 5000);
+            SerialSocketBridge bridge = (SerialSocketBridge) config.createProxy(new VirtualSerialPortIdentifier(config));
+            bridge.openImpl();
+
+            try (Socket device = server.accept()) {
+                String message = "hello world";
+                ByteArrayOutputStream received = new ByteArrayOutputStream();
+                CountDownLatch latch = new CountDownLatch(message.length());
+                SerialPortProxyTransport transport = new SerialPortProxyTransport(bridge, 4);
+                transport.setConsumer(new DataConsumer() {
+                    @Override
+                    public void data(byte[] b, int len) {
+                        received.write(b, 0, len);
+                        for (int i = 0; i < len; i++)
+                            latch.countDown();
+                    }
+
+                    @Override
+                    public void handleIOException(IOException e) {
+                    }
+                });
+
+                OutputStream out = device.getOutputStream();
+                out.write(message.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                assertEquals(message, received.toString(StandardCharsets.US_ASCII));
+
+                byte[] request = {1, 3, 0, 0, 0, 1};
+                transport.write(request);
+                byte[] response = new byte[request.length];
+                InputStream in = device.getInputStream();
+                int read = 0;
+                while (read < response.length)
+                    read += in.read(response, read, response.length - read);
+                assertArrayEquals(request, response);
+
+                transport.removeConsumer();
+            } finally {
+                bridge.closeImpl();
+            }
+        }
+    }
+
+    @Test
+    public void readPausedWhileBufferFull() throws Exception {
+        SerialSocketBridgeInputStream stream = new SerialSocketBridgeInputStream(4, 100);
+        stream.buffer(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}));
+        assertEquals(0, stream.free());
+
+        CountDownLatch resumed = new CountDownLatch(1);
+        stream.pause(resumed::countDown);
+        assertEquals(1, resumed.getCount());
+
+        byte[] b = new byte[3];
+        assertEquals(3, stream.read(b));
+        assertArrayEquals(new byte[] {1, 2, 3}, b);
+        assertEquals(0, resumed.getCount());
+
+        // wraps around the end of the buffer
+        stream.buffer(ByteBuffer.wrap(new byte[] {5, 6, 7}));
+        assertEquals(4, stream.available());
+        b = new byte[4];
+        assertEquals(4, stream.read(b));
+        assertArrayEquals(new byte[] {4, 5, 6, 7}, b);
+
+        stream.endOfStream();
+        assertEquals(-1, stream.read());
+    }
+
+    @Override
+    protected MockMangoLifecycle getLifecycle() {
+        return new SerialPortTestLifecycle(modules);
+    }
+
+    class SerialPortTestLifecycle extends MockMangoLifecycle {
+
+        public SerialPortTestLifecycle(List<Module> modules) {
+            super(modules);
+        }
+
+        @Override
+        protected SerialPortManager getSerialPortManager() {
+            return new SerialPortManagerImpl();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.pointvaluecache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.dataImage.AnnotatedPointValueTime;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+public class MappedPointValueCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private PointValueDao pointValueDao;
+    private DataPointVO point;
+
+    @Before
+    public void before() throws IOException {
+        this.file = folder.newFolder().toPath().resolve("cache.dat");
+        this.pointValueDao = mock(PointValueDao.class);
+        this.point = new DataPointVO();
+        point.setSeriesId(1234);
+    }
+
+    @Test
+    public void updateAndLoad() {
+        List<PointValueTime> values = List.of(new PointValueTime(3.0, 3000L), new PointValueTime(2.0, 2000L), new PointValueTime(true, 1000L));
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 5);
+        try {
+            cache.updateCache(point, values);
+            assertEquals(values, cache.loadCache(point, 3));
+            verify(pointValueDao, never()).getLatestPointValues(any(), anyInt());
+
+            cache.removeValueAt(point, 2000L);
+            assertEquals(List.of(values.get(0), values.get(2)), cache.getCache(point).orElseThrow());
+
+            cache.deleteCache(point);
+            assertFalse(cache.getCache(point).isPresent());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void survivesRestart() {
+        List<PointValueTime> values = List.of(new PointValueTime(1, 2000L), new PointValueTime(0, 1000L));
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 5);
+        cache.updateCache(point, values);
+        cache.close();
+
+        cache = new MappedPointValueCache(file, pointValueDao, 5);
+        try {
+            assertEquals(values, cache.getCache(point).orElseThrow());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void resetIfNotClosed() {
+        // not closed, simulates a crash
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 5);
+        cache.updateCache(point, List.of(new PointValueTime(1.0, 1000L)));
+
+        MappedPointValueCache reopened = new MappedPointValueCache(file, pointValueDao, 5);
+        try {
+            assertFalse(reopened.getCache(point).isPresent());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void annotatedValuesNotStored() {
+        List<PointValueTime> values = List.of(new AnnotatedPointValueTime(new NumericValue(1.0), 1000L, new TranslatableMessage("common.default", "test")));
+        when(pointValueDao.getLatestPointValues(point, 1)).thenReturn(values);
+
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 5);
+        try {
+            cache.updateCache(point, values);
+            assertFalse(cache.getCache(point).isPresent());
+            assertEquals(values, cache.loadCache(point, 1));
+            assertEquals(values, cache.loadCache(point, 1));
+            verify(pointValueDao, times(2)).getLatestPointValues(point, 1);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void largerThanCapacity() {
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 1);
+        try {
+            cache.updateCache(point, List.of(new PointValueTime(2.0, 2000L), new PointValueTime(1.0, 1000L)));
+            List<PointValueTime> cached = cache.getCache(point).orElseThrow();
+            assertEquals(1, cached.size());
+            assertEquals(2000L, cached.get(0).getTime());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void completeSlotNotReloaded() {
+        // series only has one value
+        List<PointValueTime> values = List.of(new PointValueTime(1.0, 1000L));
+        when(pointValueDao.getLatestPointValues(point, 3)).thenReturn(values);
+
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 5);
+        try {
+            assertEquals(values, cache.loadCache(point, 3));
+            assertEquals(values, cache.loadCache(point, 3));
+            verify(pointValueDao, times(1)).getLatestPointValues(point, 3);
+
+            // slot is no longer complete once values are removed from the list
+            cache.updateCache(point, List.of());
+            assertEquals(values, cache.loadCache(point, 3));
+            verify(pointValueDao, times(2)).getLatestPointValues(point, 3);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void sizeLargerThanCapacityReadThrough() {
+        List<PointValueTime> values = List.of(new PointValueTime(2.0, 2000L), new PointValueTime(1.0, 1000L));
+        when(pointValueDao.getLatestPointValues(point, 2)).thenReturn(values);
+
+        MappedPointValueCache cache = new MappedPointValueCache(file, pointValueDao, 1);
+        try {
+            cache.updateCache(point, values);
+            assertEquals(values, cache.loadCache(point, 2));
+            assertEquals(values, cache.loadCache(point, 2));
+            verify(pointValueDao, times(2)).getLatestPointValues(point, 2);
+        } finally {
+            cache.close();
+        }
+    }
+}
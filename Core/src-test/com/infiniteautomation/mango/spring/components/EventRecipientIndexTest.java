@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.spring.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.infiniteautomation.mango.spring.service.UsersService;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.event.AlarmLevels;
+import com.serotonin.m2m2.rt.event.EventInstance;
+import com.serotonin.m2m2.rt.event.type.DataSourceEventType;
+import com.serotonin.m2m2.rt.event.type.EventType;
+import com.serotonin.m2m2.rt.event.type.SystemEventType;
+import com.serotonin.m2m2.vo.User;
+import com.serotonin.m2m2.vo.dataSource.mock.MockDataSourceVO;
+import com.serotonin.m2m2.vo.role.Role;
+
+public class EventRecipientIndexTest extends MangoTestBase {
+
+    @Test
+    public void recipientsMatchPermission() {
+        Role roleA = createRole("roleA", "roleA").getRole();
+        Role roleB = createRole("roleB", "roleB").getRole();
+        User userA = createUser("userA", "userA", "password", "userA@yourMangoDomain.com", roleA);
+        User userB = createUser("userB", "userB", "password", "userB@yourMangoDomain.com", roleB);
+        User userAB = createUser("userAB", "userAB", "password", "userAB@yourMangoDomain.com", roleA, roleB);
+
+        MockDataSourceVO ds = createMockDataSource("ds", "ds", false, MangoPermission.requireAllRoles(roleA, roleB), new MangoPermission());
+        EventInstance evt = event(new DataSourceEventType(ds.getId(), 1));
+        evt.setReadPermission(ds.getReadPermission());
+
+        EventRecipientIndex index = Common.getBean(EventRecipientIndex.class);
+        Set<Integer> recipients = recipientIds(index, evt);
+        assertTrue(recipients.contains(userAB.getId()));
+        assertFalse(recipients.contains(userA.getId()));
+        assertFalse(recipients.contains(userB.getId()));
+        assertEquals(scan(evt), recipients);
+
+        // index must be rebuilt when a user is added
+        User newUser = createUser("newUser", "newUser", "password", "newUser@yourMangoDomain.com", roleB, roleA);
+        recipients = recipientIds(index, evt);
+        assertTrue(recipients.contains(newUser.getId()));
+        assertEquals(scan(evt), recipients);
+    }
+
+    @Test
+    public void superadminOnly() {
+        Role role = createRole("role", "role").getRole();
+        User user = createUser("user", "user", "password", "user@yourMangoDomain.com", role);
+
+        EventInstance evt = event(new SystemEventType(SystemEventType.TYPE_SYSTEM_STARTUP));
+        evt.setReadPermission(MangoPermission.superadminOnly());
+
+        Set<Integer> recipients = recipientIds(Common.getBean(EventRecipientIndex.class), evt);
+        assertFalse(recipients.isEmpty());
+        assertFalse(recipients.contains(user.getId()));
+        assertEquals(scan(evt), recipients);
+    }
+
+    @Test
+    public void dataSourcePermissionChecked() {
+        Role role = createRole("role", "role").getRole();
+        User user = createUser("user", "user", "password", "user@yourMangoDomain.com", role);
+        MockDataSourceVO ds = createMockDataSource("ds", "ds", false, MangoPermission.requireAnyRole(role), new MangoPermission());
+
+        // access to data source events is checked against the data source, not the event's read permission
+        EventInstance evt = event(new DataSourceEventType(ds.getId(), 1));
+        evt.setReadPermission(MangoPermission.superadminOnly());
+
+        Set<Integer> recipients = recipientIds(Common.getBean(EventRecipientIndex.class), evt);
+        assertTrue(recipients.contains(user.getId()));
+        assertEquals(scan(evt), recipients);
+    }
+
+    private EventInstance event(EventType type) {
+        return new EventInstance(type, 0L, true, AlarmLevels.URGENT, new TranslatableMessage("common.default", "test"), null);
+    }
+
+    private Set<Integer> recipientIds(EventRecipientIndex index, EventInstance evt) {
+        return index.getRecipients(evt).stream().map(User::getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * Find recipients by checking every enabled user
+     */
+    private Set<Integer> scan(EventInstance evt) {
+        PermissionService permissionService = Common.getBean(PermissionService.class);
+        return Common.getBean(UsersService.class).getEnabledUsers().stream()
+                .filter(u -> !evt.getEventType().excludeUser(u) && evt.getEventType().hasPermission(u, permissionService))
+                .map(User::getId)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.spring.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpClientServiceTest extends MangoTestBase {
+
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void clientIsShared() {
+        HttpClientService service = Common.getBean(HttpClientService.class);
+        assertSame(service.getHttpClient(), Common.getHttpClient());
+        assertSame(service.getHttpClient(1000, 0), Common.getHttpClient(1000, 0));
+    }
+
+    @Test
+    public void connectionsAreReused() throws IOException {
+        HttpClientService service = Common.getBean(HttpClientService.class);
+        for (int i = 0; i < 5; i++) {
+            String body = service.getHttpClient().execute(new HttpGet(uri("/" + i)), r -> EntityUtils.toString(r.getEntity()));
+            assertEquals("/" + i, body);
+        }
+        assertEquals(1, clientPorts.size());
+        assertEquals(0, Common.MONITORED_VALUES.getMonitor(HttpClientService.LEASED_CONNECTIONS_MONITOR_ID).getValue());
+    }
+
+    @Test
+    public void executeAsync() throws Exception {
+        HttpClientService service = Common.getBean(HttpClientService.class);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(service.executeAsync(new HttpGet(uri("/" + i))));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("/" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(0, Common.MONITORED_VALUES.getMonitor(HttpClientService.LEASED_CONNECTIONS_MONITOR_ID).getValue());
+    }
+
+    private String uri(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
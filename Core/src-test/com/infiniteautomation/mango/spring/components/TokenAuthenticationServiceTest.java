@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.spring.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.vo.User;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
+
+public class TokenAuthenticationServiceTest extends MangoTestBase {
+
+    @Test
+    public void signatureVerifiedOnce() {
+        TokenAuthenticationService service = Common.getBean(TokenAuthenticationService.class);
+        User user = createUser("tokenUser", "tokenUser", "password", "tokenUser@example.com");
+        String token = service.generateToken(user);
+
+        Jws<Claims> first = service.parseCached(token);
+        Jws<Claims> second = service.parseCached(token);
+        assertSame(first, second);
+        assertEquals(user.getId(), service.verify(second).getId());
+
+        String other = service.generateToken(user);
+        assertNotSame(first, service.parseCached(other));
+    }
+
+    @Test
+    public void cacheClearedWhenKeysReset() {
+        TokenAuthenticationService service = Common.getBean(TokenAuthenticationService.class);
+        User user = createUser("tokenUser", "tokenUser", "password", "tokenUser@example.com");
+        String token = service.generateToken(user);
+        service.parseCached(token);
+
+        service.resetKeys();
+        try {
+            service.parseCached(token);
+            fail("Token signed with the old key should not verify");
+        } catch (JwtException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.spring.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.CompiledScript;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.spring.components.RunAs;
+import com.infiniteautomation.mango.util.script.CompiledMangoJavaScript;
+import com.infiniteautomation.mango.util.script.MangoJavaScriptResult;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.rt.script.ScriptLog;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+public class MangoJavaScriptServiceTest extends MangoTestBase {
+
+    private static final String COUNTER_SCRIPT = "counter = (typeof counter === 'undefined' ? 0 : counter) + 1; return counter;";
+
+    @Test
+    public void compiledScriptsAreIsolated() throws Exception {
+        MangoJavaScriptService service = Common.getBean(MangoJavaScriptService.class);
+        CompiledScript first = service.compile(COUNTER_SCRIPT, true);
+        CompiledScript second = service.compile(COUNTER_SCRIPT, true);
+        assertNotSame(first.getEngine(), second.getEngine());
+
+        assertEquals(1, ((Number) first.eval()).intValue());
+        assertEquals(2, ((Number) first.eval()).intValue());
+        assertEquals(1, ((Number) second.eval()).intValue());
+    }
+
+    @Test
+    public void concurrentCompilation() throws Exception {
+        MangoJavaScriptService service = Common.getBean(MangoJavaScriptService.class);
+        RunAs runAs = Common.getBean(RunAs.class);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CompiledScript>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                // a few distinct scripts so that threads compile the same script at the same time
+                String script = "return " + (i % 4) + " + 1;";
+                futures.add(executor.submit(() -> runAs.runAsCallable(PermissionHolder.SYSTEM_SUPERADMIN,
+                        () -> service.compile(script, true))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                CompiledScript script = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals(i % 4 + 1, ((Number) script.eval()).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void globalBindings() throws Exception {
+        MangoJavaScriptService service = Common.getBean(MangoJavaScriptService.class);
+        CompiledScript script = service.compile("return HOUR;", true);
+        assertEquals(Common.TimePeriods.HOURS, ((Number) script.eval()).intValue());
+    }
+
+    @Test
+    public void executionStatistics() throws Exception {
+        MangoJavaScriptService service = Common.getBean(MangoJavaScriptService.class);
+        CompiledMangoJavaScript script = new CompiledMangoJavaScript(service.createValidationSetter(new MangoJavaScriptResult()),
+                new ScriptLog("test"), null, null, null, true, service, PermissionHolder.SYSTEM_SUPERADMIN);
+        script.compile("return 1 + 1;", true);
+        script.initialize();
+
+        assertEquals(0, script.getInvocationCount());
+        for (int i = 0; i < 3; i++) {
+            MangoJavaScriptResult result = script.execute(0, 0);
+            assertEquals(2, ((Number) result.getResult()).intValue());
+        }
+        assertEquals(3, script.getInvocationCount());
+        assertTrue(script.getExecutionTime(TimeUnit.NANOSECONDS) > 0);
+    }
+}
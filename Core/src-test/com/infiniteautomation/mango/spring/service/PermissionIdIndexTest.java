@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.spring.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.permission.PermissionIds;
+
+public class PermissionIdIndexTest {
+
+    @Test
+    public void missesNotStored() {
+        AtomicInteger loads = new AtomicInteger();
+        PermissionIdIndex index = new PermissionIdIndex(ids -> {
+            loads.incrementAndGet();
+            return Map.of();
+        });
+
+        assertNull(index.get(1));
+        assertNull(index.get(1));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadRacingWithDelete() {
+        PermissionIds permissionIds = new PermissionIds(1, 2, null);
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<PermissionIdIndex> indexRef = new AtomicReference<>();
+        PermissionIdIndex index = new PermissionIdIndex(ids -> {
+            if (loads.getAndIncrement() == 0) {
+                // VO is deleted after it was read from the database
+                indexRef.get().remove(1);
+                return Map.of(1, permissionIds);
+            }
+            return Map.of();
+        });
+        indexRef.set(index);
+
+        assertSame(permissionIds, index.get(1));
+        // the stale entry was discarded
+        assertNull(index.get(1));
+        assertEquals(2, loads.get());
+    }
+}
@@ -3,9 +3,12 @@
  */
 package com.infiniteautomation.mango.spring.service;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -619,4 +622,39 @@ public class PermissionServiceTest extends MangoTestBase {
                         .build()
         ));
     }
+
+    @Test
+    public void filterReadable() {
+        DataPointVO org1Point = createDataPoint(Collections.singleton(org1), Collections.emptySet());
+        DataPointVO org2Point = createDataPoint(Collections.singleton(org2), Collections.emptySet());
+        DataPointVO commonPoint = createDataPoint(Collections.singleton(common), Collections.emptySet());
+        DataPointVO adminPoint = createDataPoint();
+        int missingId = Integer.MAX_VALUE;
+        int[] ids = new int[] {org1Point.getId(), org2Point.getId(), commonPoint.getId(), adminPoint.getId(), missingId};
+
+        assertArrayEquals(new int[] {org1Point.getId(), commonPoint.getId()}, permissionService.filterReadable(testUserOrg1, ids));
+        assertArrayEquals(new int[] {org2Point.getId(), commonPoint.getId()}, permissionService.filterReadable(testUserOrg2, ids));
+        assertArrayEquals(new int[] {org1Point.getId(), org2Point.getId(), commonPoint.getId(), adminPoint.getId()},
+                permissionService.filterReadable(superadmin, ids));
+        for (int id : ids) {
+            assertEquals(permissionService.hasDataPointReadPermission(testUserOrg1, id),
+                    Arrays.stream(permissionService.filterReadable(testUserOrg1, new int[] {id})).anyMatch(i -> i == id));
+        }
+    }
+
+    @Test
+    public void dataPointReadPermissionUpdated() {
+        DataPointVO point = createDataPoint(Collections.singleton(org1), Collections.emptySet());
+        assertTrue(permissionService.hasDataPointReadPermission(testUserOrg1, point.getId()));
+        assertFalse(permissionService.hasDataPointReadPermission(testUserOrg2, point.getId()));
+
+        point.setReadPermission(MangoPermission.requireAnyRole(org2));
+        dataPointService.update(point.getXid(), point);
+        assertFalse(permissionService.hasDataPointReadPermission(testUserOrg1, point.getId()));
+        assertTrue(permissionService.hasDataPointReadPermission(testUserOrg2, point.getId()));
+
+        dataPointService.delete(point.getXid());
+        assertFalse(permissionService.hasDataPointReadPermission(testUserOrg2, point.getId()));
+        assertTrue(permissionService.hasDataPointReadPermission(superadmin, point.getId()));
+    }
 }
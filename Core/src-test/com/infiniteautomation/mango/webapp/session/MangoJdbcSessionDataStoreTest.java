@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.infiniteautomation.mango.monitor.MonitoredValues;
+import com.infiniteautomation.mango.spring.components.RunAs;
+import com.infiniteautomation.mango.spring.service.UsersService;
+import com.serotonin.m2m2.db.dao.MangoSessionDataDao;
+import com.serotonin.m2m2.vo.MangoSessionDataVO;
+
+public class MangoJdbcSessionDataStoreTest {
+
+    private static final String CONTEXT_PATH = "";
+    private static final String VHOST = "0.0.0.0";
+
+    private MangoSessionDataDao sessionDao;
+    private MangoJdbcSessionDataStore store;
+
+    @Before
+    public void setup() throws Exception {
+        this.sessionDao = mock(MangoSessionDataDao.class);
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("sessionCookie.writeBehind.enabled", "true");
+        this.store = new MangoJdbcSessionDataStore(mock(UsersService.class), sessionDao,
+                mock(ApplicationEventPublisher.class), mock(RunAs.class), env, mock(ScheduledExecutorService.class),
+                new MonitoredValues(null));
+        store.initialize(new SessionContext("node0", null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void savesMerged() throws Exception {
+        store.doStore("a", session("a", 1), 0);
+        store.doStore("a", session("a", 2), 1);
+        store.doStore("b", session("b", 1), 1);
+        store.doStore("b", session("b", 2), 1);
+        store.flush();
+
+        ArgumentCaptor<Collection> inserts = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+        verify(sessionDao).saveBatch(inserts.capture(), updates.capture());
+
+        // a session which has not been inserted is still inserted, with the latest data
+        List<MangoSessionDataVO> inserted = new ArrayList<MangoSessionDataVO>(inserts.getValue());
+        assertEquals(1, inserted.size());
+        assertEquals("a", inserted.get(0).getSessionId());
+        assertEquals(2, inserted.get(0).getAccessTime());
+
+        List<MangoSessionDataVO> updated = new ArrayList<MangoSessionDataVO>(updates.getValue());
+        assertEquals(1, updated.size());
+        assertEquals("b", updated.get(0).getSessionId());
+        assertEquals(2, updated.get(0).getAccessTime());
+    }
+
+    @Test
+    public void flushedOnStop() throws Exception {
+        store.start();
+        store.doStore("a", session("a", 1), 1);
+        store.stop();
+        verify(sessionDao).saveBatch(anyCollectionOf(MangoSessionDataVO.class), anyCollectionOf(MangoSessionDataVO.class));
+    }
+
+    @Test
+    public void deleteDiscardsPendingWrite() throws Exception {
+        store.doStore("a", session("a", 1), 0);
+        assertTrue(store.delete("a"));
+        store.flush();
+
+        verify(sessionDao).delete("a", CONTEXT_PATH, VHOST);
+        verify(sessionDao, never()).saveBatch(anyCollectionOf(MangoSessionDataVO.class), anyCollectionOf(MangoSessionDataVO.class));
+        verify(sessionDao, never()).insert(any(MangoSessionDataVO.class));
+    }
+
+    @Test
+    public void loadFlushesPendingWrite() throws Exception {
+        store.doStore("a", session("a", 1), 1);
+        store.doLoad("a");
+
+        InOrder order = inOrder(sessionDao);
+        order.verify(sessionDao).update(eq("a"), anyString(), anyString(), any(MangoSessionDataVO.class));
+        order.verify(sessionDao).get("a", CONTEXT_PATH, VHOST);
+    }
+
+    @Test
+    public void batchFailureWritesIndividually() throws Exception {
+        doThrow(new RuntimeException("Batch failed")).when(sessionDao)
+                .saveBatch(anyCollectionOf(MangoSessionDataVO.class), anyCollectionOf(MangoSessionDataVO.class));
+        store.doStore("a", session("a", 1), 0);
+        store.doStore("b", session("b", 1), 1);
+        store.flush();
+
+        verify(sessionDao).insert(any(MangoSessionDataVO.class));
+        verify(sessionDao).update(eq("b"), anyString(), anyString(), any(MangoSessionDataVO.class));
+    }
+
+    private SessionData session(String id, long accessed) {
+        return new SessionData(id, CONTEXT_PATH, VHOST, 0, accessed, accessed, 60000);
+    }
+}
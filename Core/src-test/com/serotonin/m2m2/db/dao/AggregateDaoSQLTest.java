@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.infiniteautomation.mango.pointvalue.generator.LinearPointValueGenerator;
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.dao.pointvalue.AggregateValue;
+import com.serotonin.m2m2.db.dao.pointvalue.NumericAggregate;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.view.stats.SeriesValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
+
+public class AggregateDaoSQLTest extends MangoTestBase {
+
+    private final ZonedDateTime from = ZonedDateTime.of(LocalDateTime.of(2020, 1, 1, 0, 0), ZoneOffset.UTC);
+    private final ZonedDateTime to = from.plusDays(2L);
+    private final Duration preAggregationPeriod = Duration.ofMinutes(15L);
+
+    private PointValueDao pointValueDao;
+    private AggregateDaoSQL aggregateDao;
+
+    @Override
+    public void before() {
+        super.before();
+
+        ApplicationContext context = MangoTestBase.lifecycle.getRuntimeContext();
+        this.pointValueDao = context.getBean(PointValueDao.class);
+        Clock clock = Clock.fixed(to.toInstant(), ZoneOffset.UTC);
+        this.aggregateDao = new AggregateDaoSQL(context.getBean(DatabaseProxy.class), pointValueDao,
+                context.getBean(DataPointDao.class), clock, preAggregationPeriod, Duration.ofDays(1L), 1000);
+    }
+
+    @Override
+    public void after() {
+        aggregateDao.deleteAggregates(null, null, null);
+        super.after();
+    }
+
+    private DataPointVO createPointWithValues() {
+        var ds = createMockDataSource();
+        var point = createMockDataPoint(ds, new MockPointLocatorVO(DataType.NUMERIC, false));
+        var generator = new LinearPointValueGenerator(from.toInstant(), to.toInstant(), Duration.ofSeconds(5L), 0.0D, 1.0D);
+        pointValueDao.savePointValues(generator.apply(point));
+        return point;
+    }
+
+    private List<SeriesValueTime<AggregateValue>> query(DataPointVO point, Duration aggregationPeriod, boolean realtime) {
+        var stream = realtime ?
+                aggregateDao.queryRealtime(point, from, to, null, aggregationPeriod) :
+                aggregateDao.query(point, from, to, null, aggregationPeriod);
+        try (stream) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    private void assertAggregatesEqual(List<SeriesValueTime<AggregateValue>> expected, List<SeriesValueTime<AggregateValue>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            NumericAggregate e = (NumericAggregate) expected.get(i).getValue();
+            NumericAggregate a = (NumericAggregate) actual.get(i).getValue();
+            assertEquals(expected.get(i).getTime(), actual.get(i).getTime());
+            assertEquals(e.getCount(), a.getCount());
+            assertEquals(e.getArithmeticMean(), a.getArithmeticMean(), 0.0D);
+            assertEquals(e.getMinimumInPeriod(), a.getMinimumInPeriod(), 0.0D);
+            assertEquals(e.getMaximumInPeriod(), a.getMaximumInPeriod(), 0.0D);
+            assertEquals(e.getFirstValue(), a.getFirstValue());
+            assertEquals(e.getLastValue(), a.getLastValue());
+        }
+    }
+
+    @Test
+    public void updateAndQuery() {
+        var point = createPointWithValues();
+        var expected = query(point, Duration.ofHours(1L), true);
+
+        aggregateDao.updateAggregates();
+        try (var stored = aggregateDao.queryPreAggregated(point, from, from.plusDays(1L))) {
+            assertEquals(Duration.ofDays(1L).dividedBy(preAggregationPeriod), stored.count());
+        }
+
+        // query spans the boundary, first day is read from the stored aggregates
+        assertAggregatesEqual(expected, query(point, Duration.ofHours(1L), false));
+    }
+
+    @Test
+    public void queryBeforeUpdate() {
+        var point = createPointWithValues();
+        var expected = query(point, Duration.ofHours(1L), true);
+
+        // aggregates which have not been stored yet are aggregated on-the-fly
+        assertAggregatesEqual(expected, query(point, Duration.ofHours(1L), false));
+    }
+
+    @Test
+    public void deleteInvalidatesAggregates() {
+        var point = createPointWithValues();
+        aggregateDao.updateAggregates();
+
+        long deleteFrom = from.plusHours(1L).toInstant().toEpochMilli();
+        long deleteTo = from.plusHours(2L).toInstant().toEpochMilli();
+        pointValueDao.deletePointValuesBetween(point, deleteFrom, deleteTo);
+        aggregateDao.invalidateAggregates(point, deleteFrom, deleteTo);
+
+        var expected = query(point, Duration.ofHours(1L), true);
+        var actual = query(point, Duration.ofHours(1L), false);
+        assertAggregatesEqual(expected, actual);
+        assertTrue(actual.stream().anyMatch(v -> v.getValue().getCount() == 0));
+    }
+
+    @Test
+    public void deleteBeforeReaggregatesPartialPeriod() {
+        var point = createPointWithValues();
+        aggregateDao.updateAggregates();
+
+        // delete part of a stored period
+        ZonedDateTime periodStart = from.plusHours(1L);
+        long deleteBefore = periodStart.plusMinutes(7L).toInstant().toEpochMilli();
+        pointValueDao.deletePointValuesBefore(point, deleteBefore);
+        aggregateDao.deleteAggregatesBefore(point.getSeriesId(), deleteBefore);
+
+        try (var stored = aggregateDao.queryPreAggregated(point, from, periodStart)) {
+            assertEquals(0L, stored.count());
+        }
+        ZonedDateTime end = from.plusDays(1L);
+        List<SeriesValueTime<AggregateValue>> expected;
+        try (var realtime = aggregateDao.queryRealtime(point, periodStart, end, null, preAggregationPeriod)) {
+            expected = realtime.collect(Collectors.toList());
+        }
+        try (var stored = aggregateDao.queryPreAggregated(point, periodStart, end)) {
+            assertAggregatesEqual(expected, stored.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void insertInvalidatesAggregates() {
+        var point = createPointWithValues();
+        aggregateDao.updateAggregates();
+
+        // back-fill a value into a stored period
+        long time = from.plusMinutes(30L).plusSeconds(1L).toInstant().toEpochMilli();
+        pointValueDao.savePointValueSync(point, new PointValueTime(1000.0D, time));
+        aggregateDao.valuesInserted(point.getSeriesId(), time);
+
+        var expected = query(point, Duration.ofHours(1L), true);
+        var actual = query(point, Duration.ofHours(1L), false);
+        assertAggregatesEqual(expected, actual);
+        assertTrue(actual.stream().anyMatch(v -> ((NumericAggregate) v.getValue()).getMaximumInPeriod() == 1000.0D));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.permission.MangoPermission;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.event.AlarmLevels;
+import com.serotonin.m2m2.rt.event.EventInstance;
+import com.serotonin.m2m2.rt.event.ReturnCause;
+import com.serotonin.m2m2.rt.event.type.SystemEventType;
+
+public class BatchEventWriterTest extends MangoTestBase {
+
+    private EventInstance newEvent(EventDao dao, long time) {
+        EventInstance evt = new EventInstance(new SystemEventType(SystemEventType.TYPE_SYSTEM_STARTUP), time, true,
+                AlarmLevels.URGENT, new TranslatableMessage("common.default", "test"), null);
+        evt.setReadPermission(MangoPermission.superadminOnly());
+        dao.savePreRelationalData(evt);
+        return evt;
+    }
+
+    @Test
+    public void insertAndReturnToNormal() throws Exception {
+        EventDao dao = Common.getBean(EventDao.class);
+        BatchEventWriter writer = new BatchEventWriter(dao, 1000, 10, 100);
+        try {
+            List<EventInstance> events = new ArrayList<>();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                EventInstance evt = newEvent(dao, i);
+                futures.add(writer.insert(evt));
+                events.add(evt);
+                assertEquals(1000 + i, evt.getId());
+            }
+            futures.add(writer.returnToNormal(List.of(events.get(0).getId(), events.get(1).getId()), 100L, ReturnCause.RETURN_TO_NORMAL));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+            assertEquals(25, dao.getEventCount());
+            EventInstance returned = dao.get(events.get(0).getId());
+            assertNotNull(returned);
+            assertFalse(returned.isActive());
+            assertEquals(100L, (long) returned.getRtnTimestamp());
+            assertTrue(dao.get(events.get(2).getId()).isActive());
+        } finally {
+            writer.terminate();
+        }
+    }
+
+    @Test
+    public void constraintViolationOnlyFailsBadWrite() throws Exception {
+        EventDao dao = Common.getBean(EventDao.class);
+        BatchEventWriter first = new BatchEventWriter(dao, 1000, 10, 100);
+        try {
+            first.insert(newEvent(dao, 0)).get(10, TimeUnit.SECONDS);
+        } finally {
+            first.terminate();
+        }
+
+        // the first insert reuses ID 1000 and violates the primary key, the others must still be written
+        BatchEventWriter writer = new BatchEventWriter(dao, 1000, 10, 100);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                futures.add(writer.insert(newEvent(dao, i)));
+            }
+            writer.sync().get(10, TimeUnit.SECONDS);
+        } finally {
+            writer.terminate();
+        }
+
+        assertTrue(futures.get(0).isCompletedExceptionally());
+        for (int i = 1; i < futures.size(); i++) {
+            assertFalse(futures.get(i).isCompletedExceptionally());
+        }
+        assertEquals(5, dao.getEventCount());
+    }
+
+    @Test
+    public void terminateWritesQueuedEvents() throws Exception {
+        EventDao dao = Common.getBean(EventDao.class);
+        BatchEventWriter writer = new BatchEventWriter(dao, 1000, 10, 100);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(writer.insert(newEvent(dao, i)));
+        }
+        writer.terminate();
+
+        for (CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertEquals(50, dao.getEventCount());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.db.dao.PointValueDaoSQL.BatchWriteEntry;
+import com.serotonin.m2m2.db.dao.PointValueDaoSQL.BatchWriteShard;
+
+public class BatchWriteShardTest {
+
+    private static final int SERIES_ID = 1;
+
+    @Test
+    public void seriesOrderKeptWhenOverflowing() {
+        BatchWriteShard shard = new BatchWriteShard(4);
+        List<BatchWriteEntry> drained = new ArrayList<>();
+        long time = 0;
+
+        // fill the ring and overflow
+        for (int i = 0; i < 6; i++) {
+            shard.offer(new BatchWriteEntry(SERIES_ID, DataType.NUMERIC, i, time++));
+        }
+        // free up space in the ring while values are still in the overflow queue
+        assertEquals(2, shard.drainTo(drained, 2));
+        for (int i = 0; i < 10; i++) {
+            shard.offer(new BatchWriteEntry(SERIES_ID, DataType.NUMERIC, i, time++));
+        }
+        while (shard.drainTo(drained, 3) > 0) {
+            // the ring fills up again between drains
+            shard.offer(new BatchWriteEntry(SERIES_ID, DataType.NUMERIC, 0, time++));
+            if (time > 40) {
+                break;
+            }
+        }
+        shard.drainTo(drained, Integer.MAX_VALUE);
+
+        assertEquals(time, drained.size());
+        for (int i = 0; i < drained.size(); i++) {
+            assertEquals(i, drained.get(i).time);
+        }
+    }
+}
@@ -6,17 +6,33 @@ package com.serotonin.m2m2.db.dao;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jooq.Configuration;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.junit.Test;
 
 import com.infiniteautomation.mango.db.tables.DataPoints;
 import com.infiniteautomation.mango.db.tables.TimeSeries;
+import com.infiniteautomation.mango.permission.MangoPermission;
 import com.infiniteautomation.mango.spring.service.DataSourceService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
 import com.infiniteautomation.mango.util.usage.DataPointUsageStatistics;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.DatabaseProxy;
@@ -28,6 +44,7 @@ import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
 import com.serotonin.m2m2.vo.dataSource.DataSourceVO;
 import com.serotonin.m2m2.vo.dataSource.mock.MockDataSourceDefinition;
 import com.serotonin.m2m2.vo.dataSource.mock.MockDataSourceVO;
+import com.serotonin.m2m2.vo.role.RoleVO;
 
 public class DataPointDaoTest extends AbstractVoDaoTest<DataPointVO, DataPointDao> {
 
@@ -206,6 +223,125 @@ public class DataPointDaoTest extends AbstractVoDaoTest<DataPointVO, DataPointDa
         }
     }
 
+    @Test
+    public void testLoadRelationalDataInBatches() {
+        RoleVO role = createRole("batchRole", "batchRole");
+        MangoPermission read = MangoPermission.requireAnyRole(role.getRole());
+        MockDataSourceVO ds = createMockDataSource();
+
+        List<DataPointVO> points = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String index = Integer.toString(i);
+            points.add(createMockDataPoint(ds, vo -> {
+                vo.setReadPermission(read);
+                vo.setTags(Collections.singletonMap("index", index));
+            }));
+        }
+
+        Common.getBean(PermissionService.class).clearCaches(true);
+
+        Map<Integer, DataPointVO> loaded = new HashMap<>();
+        AtomicInteger queries = new AtomicInteger();
+        Configuration configuration = Common.getBean(DatabaseProxy.class).getContext().configuration();
+        ExecuteListenerProvider[] providers = configuration.executeListenerProviders();
+        ExecuteListenerProvider[] counting = Arrays.copyOf(providers, providers.length + 1);
+        counting[providers.length] = new DefaultExecuteListenerProvider(new DefaultExecuteListener() {
+            @Override
+            public void executeStart(ExecuteContext ctx) {
+                queries.incrementAndGet();
+            }
+        });
+        configuration.set(counting);
+        try {
+            dao.getAll(vo -> loaded.put(vo.getId(), vo));
+            // the points, their tags, and the permission ids and minterms for the batch
+            assertEquals(4, queries.get());
+
+            assertEquals(points.size(), loaded.size());
+            for (DataPointVO expected : points) {
+                DataPointVO actual = loaded.get(expected.getId());
+                assertEquals(expected.getTags(), actual.getTags());
+                assertPermission(expected.getReadPermission(), actual.getReadPermission());
+                assertPermission(expected.getEditPermission(), actual.getEditPermission());
+                assertPermission(expected.getSetPermission(), actual.getSetPermission());
+            }
+            // nothing is loaded lazily
+            assertEquals(4, queries.get());
+        } finally {
+            configuration.set(providers);
+        }
+    }
+
+    @Test
+    public void testGetByIds() {
+        MockDataSourceVO ds = createMockDataSource();
+        List<DataPointVO> points = createMockDataPoints(ds, 3);
+
+        List<Integer> ids = new ArrayList<>();
+        for (DataPointVO point : points) {
+            ids.add(point.getId());
+        }
+        ids.add(Integer.MAX_VALUE);
+
+        Map<Integer, DataPointVO> loaded = dao.getByIds(ids);
+        assertEquals(points.size(), loaded.size());
+        for (DataPointVO expected : points) {
+            assertVoEqual(expected, loaded.get(expected.getId()));
+        }
+    }
+
+    @Test
+    public void testInsertBatch() {
+        RoleVO role = createRole("insertBatchRole", "insertBatchRole");
+        MangoPermission read = MangoPermission.requireAnyRole(role.getRole());
+
+        List<DataPointVO> points = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            DataPointVO point = newVO();
+            point.setReadPermission(read);
+            points.add(point);
+        }
+        dao.insert(points);
+
+        Set<Integer> ids = new HashSet<>();
+        Set<Integer> seriesIds = new HashSet<>();
+        for (DataPointVO point : points) {
+            ids.add(point.getId());
+            seriesIds.add(point.getSeriesId());
+            assertEquals(points.get(0).getReadPermission().getId(), point.getReadPermission().getId());
+            assertVoEqual(point, dao.get(point.getId()));
+        }
+        assertEquals(points.size(), ids.size());
+        assertEquals(points.size(), seriesIds.size());
+    }
+
+    @Test
+    public void testInsertBatchRollback() {
+        RoleVO role = createRole("rollbackRole", "rollbackRole");
+        MangoPermission read = MangoPermission.requireAnyRole(role.getRole());
+
+        DataPointVO existing = newVO();
+        dao.insert(existing);
+
+        DataPointVO point = newVO();
+        point.setReadPermission(read);
+        DataPointVO duplicate = newVO();
+        duplicate.setXid(existing.getXid());
+
+        try {
+            dao.insert(List.of(point, duplicate));
+            fail("Inserting a duplicate XID should fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertEquals(Common.NEW_ID, point.getId());
+        assertNull(point.getReadPermission().getId());
+
+        // the permission created by the rolled back transaction must not be found in the cache
+        dao.insert(point);
+        assertPermission(read, dao.get(point.getId()).getReadPermission());
+    }
+
     @Override
     void assertVoEqual(DataPointVO expected, DataPointVO actual) {
         assertEquals(expected.getId(), actual.getId());
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.db.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.Test;
+
+import com.serotonin.db.spring.ExtendedJdbcTemplate;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.db.DatabaseProxy;
+
+/**
+ * Partitions a real pointValues table, only runs when the tests are configured to use PostgreSQL.
+ */
+public class PointValuePartitioningPostgresTest extends MangoTestBase {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+
+    public PointValuePartitioningPostgresTest() {
+        String currentDb = properties.getProperty("db.type");
+        assumeTrue(currentDb.equals("postgres"));
+    }
+
+    @Test
+    public void defaultPartition() {
+        DatabaseProxy databaseProxy = Common.getBean(DatabaseProxy.class);
+        ExtendedJdbcTemplate ejt = databaseProxy.getJdbcTemplate();
+
+        insert(ejt, millis(2024, 1, 15));
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, clock(2024, 3, 15), ChronoUnit.MONTHS, 2);
+        partitioning.initialize();
+        assertEquals(millis(2024, 6, 1), lastBound(partitioning));
+
+        // beyond the created partitions
+        insert(ejt, millis(2024, 8, 15));
+        assertEquals(1, count(ejt, PointValuePartitioning.DEFAULT_PARTITION));
+
+        // values in the default partition are moved into the new partitions
+        PointValuePartitioning later = new PointValuePartitioning(databaseProxy, clock(2024, 7, 15), ChronoUnit.MONTHS, 2);
+        later.createPartitions();
+        assertEquals(millis(2024, 10, 1), lastBound(later));
+        assertEquals(0, count(ejt, PointValuePartitioning.DEFAULT_PARTITION));
+        assertEquals(1, count(ejt, "pointValues_p20240801"));
+        assertEquals(2, count(ejt, PointValuePartitioning.TABLE));
+
+        assertTrue(later.dropPartitionsBefore(millis(2024, 4, 1)).isPresent());
+        assertEquals(1, count(ejt, PointValuePartitioning.TABLE));
+
+        // the legacy partition no longer exists, old values are placed in the default partition
+        insert(ejt, millis(2024, 1, 20));
+        assertEquals(1, count(ejt, PointValuePartitioning.DEFAULT_PARTITION));
+        later.dropPartitionsBefore(millis(2024, 4, 1));
+        assertEquals(0, count(ejt, PointValuePartitioning.DEFAULT_PARTITION));
+        assertTrue(later.getPartitions().stream().anyMatch(PointValuePartitioning.Partition::isDefault));
+    }
+
+    private void insert(ExtendedJdbcTemplate ejt, long ts) {
+        ejt.update("INSERT INTO " + PointValuePartitioning.TABLE + " (dataPointId, dataType, pointValue, ts) VALUES (1, 3, 1.0, ?)", ts);
+    }
+
+    private int count(ExtendedJdbcTemplate ejt, String table) {
+        Integer count = ejt.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    private long lastBound(PointValuePartitioning partitioning) {
+        return partitioning.getPartitions().stream()
+                .mapToLong(PointValuePartitioning.Partition::getUpperBound)
+                .filter(bound -> bound != Long.MAX_VALUE)
+                .max()
+                .orElseThrow();
+    }
+
+    private static Clock clock(int year, int month, int day) {
+        return Clock.fixed(ZonedDateTime.of(year, month, day, 12, 0, 0, 0, ZONE).toInstant(), ZONE);
+    }
+
+    private static long millis(int year, int month, int day) {
+        return ZonedDateTime.of(year, month, day, 0, 0, 0, 0, ZONE).toInstant().toEpochMilli();
+    }
+}
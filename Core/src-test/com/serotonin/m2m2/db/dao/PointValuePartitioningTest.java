@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.db.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.serotonin.db.spring.ExtendedJdbcTemplate;
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.DatabaseType;
+import com.serotonin.m2m2.db.dao.PointValuePartitioning.Partition;
+
+public class PointValuePartitioningTest {
+
+    private static final ZoneId ZONE = ZoneId.of("America/Denver");
+    private static final Clock CLOCK = Clock.fixed(ZonedDateTime.of(2024, 3, 15, 12, 0, 0, 0, ZONE).toInstant(), ZONE);
+
+    private DatabaseProxy databaseProxy;
+    private ExtendedJdbcTemplate ejt;
+    private List<Partition> partitions;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.databaseProxy = mock(DatabaseProxy.class);
+        this.ejt = mock(ExtendedJdbcTemplate.class);
+        this.partitions = new ArrayList<>();
+        when(databaseProxy.getType()).thenReturn(DatabaseType.MYSQL);
+        when(databaseProxy.getJdbcTemplate()).thenReturn(ejt);
+        when(databaseProxy.getTransactionManager()).thenReturn(mock(PlatformTransactionManager.class));
+        when(ejt.query(anyString(), any(RowMapper.class), eq(PointValuePartitioning.TABLE)))
+                .thenAnswer(invocation -> new ArrayList<>(partitions));
+    }
+
+    @Test
+    public void monthlyBoundaries() {
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 2);
+        ZonedDateTime start = partitioning.currentPeriodStart();
+        assertEquals(ZonedDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZONE), start);
+        assertEquals(ZonedDateTime.of(2024, 4, 1, 0, 0, 0, 0, ZONE), partitioning.nextPeriodStart(start));
+        assertEquals("pointValues_p20240301", PointValuePartitioning.partitionName(start));
+
+        long startMillis = start.toInstant().toEpochMilli();
+        assertEquals(start, partitioning.periodStart(startMillis));
+        assertEquals(ZonedDateTime.of(2024, 2, 1, 0, 0, 0, 0, ZONE), partitioning.periodStart(startMillis - 1));
+    }
+
+    @Test
+    public void weeklyBoundaries() {
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.WEEKS, 2);
+        // crosses the start of daylight saving time on 2024-03-10
+        ZonedDateTime start = partitioning.periodStart(ZonedDateTime.of(2024, 3, 10, 12, 0, 0, 0, ZONE).toInstant().toEpochMilli());
+        assertEquals(ZonedDateTime.of(2024, 3, 4, 0, 0, 0, 0, ZONE), start);
+        assertEquals(ZonedDateTime.of(2024, 3, 11, 0, 0, 0, 0, ZONE), partitioning.nextPeriodStart(start));
+    }
+
+    @Test
+    public void legacyUpperBound() {
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 2);
+        long current = partitioning.currentPeriodStart().toInstant().toEpochMilli();
+        assertEquals(current, partitioning.legacyUpperBound(current, null));
+        assertEquals(current, partitioning.legacyUpperBound(current, current - 1));
+
+        // values in the future, the legacy partition must contain them
+        long future = ZonedDateTime.of(2024, 6, 10, 0, 0, 0, 0, ZONE).toInstant().toEpochMilli();
+        assertEquals(ZonedDateTime.of(2024, 7, 1, 0, 0, 0, 0, ZONE).toInstant().toEpochMilli(),
+                partitioning.legacyUpperBound(current, future));
+    }
+
+    @Test
+    public void postgresUpperBound() {
+        assertEquals(1706745600000L, PointValuePartitioning.postgresUpperBound("FOR VALUES FROM ('1704067200000') TO ('1706745600000')"));
+        assertEquals(1706745600000L, PointValuePartitioning.postgresUpperBound("FOR VALUES FROM (MINVALUE) TO ('1706745600000')"));
+        assertEquals(Long.MAX_VALUE, PointValuePartitioning.postgresUpperBound("DEFAULT"));
+    }
+
+    @Test
+    public void createPartitionsAhead() {
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 2);
+        partitions.add(new Partition(PointValuePartitioning.LEGACY_PARTITION, millis(2024, 3, 1)));
+        partitions.add(new Partition(PointValuePartitioning.MAX_PARTITION, Long.MAX_VALUE));
+
+        partitioning.createPartitions();
+        verify(ejt).execute("ALTER TABLE pointValues REORGANIZE PARTITION pointValues_pmax INTO (" +
+                "PARTITION pointValues_p20240301 VALUES LESS THAN (" + millis(2024, 4, 1) + "), " +
+                "PARTITION pointValues_p20240401 VALUES LESS THAN (" + millis(2024, 5, 1) + "), " +
+                "PARTITION pointValues_p20240501 VALUES LESS THAN (" + millis(2024, 6, 1) + "), " +
+                "PARTITION pointValues_pmax VALUES LESS THAN MAXVALUE)");
+    }
+
+    @Test
+    public void partitionsAlreadyCreated() {
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 2);
+        partitions.add(new Partition("pointValues_p20240501", millis(2024, 6, 1)));
+        partitions.add(new Partition(PointValuePartitioning.MAX_PARTITION, Long.MAX_VALUE));
+
+        partitioning.createPartitions();
+        verify(ejt, never()).execute(anyString());
+    }
+
+    @Test
+    public void postgresMovesDefaultPartitionValues() {
+        when(databaseProxy.getType()).thenReturn(DatabaseType.POSTGRES);
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 1);
+        // relation names are returned in lower case by PostgreSQL
+        partitions.add(new Partition(PointValuePartitioning.LEGACY_PARTITION.toLowerCase(), millis(2024, 3, 1)));
+        partitions.add(new Partition(PointValuePartitioning.DEFAULT_PARTITION.toLowerCase(), Long.MAX_VALUE));
+
+        partitioning.createPartitions();
+        InOrder order = inOrder(ejt);
+        order.verify(ejt).execute("ALTER TABLE pointValues DETACH PARTITION pointValues_pdefault");
+        order.verify(ejt).execute("CREATE TABLE pointValues_p20240301 PARTITION OF pointValues FOR VALUES FROM (" +
+                millis(2024, 3, 1) + ") TO (" + millis(2024, 4, 1) + ")");
+        order.verify(ejt).execute("CREATE TABLE pointValues_p20240401 PARTITION OF pointValues FOR VALUES FROM (" +
+                millis(2024, 4, 1) + ") TO (" + millis(2024, 5, 1) + ")");
+        order.verify(ejt).update("WITH moved AS (DELETE FROM pointValues_pdefault WHERE ts >= ? AND ts < ? RETURNING *) " +
+                "INSERT INTO pointValues SELECT * FROM moved", millis(2024, 3, 1), millis(2024, 5, 1));
+        order.verify(ejt).execute("ALTER TABLE pointValues ATTACH PARTITION pointValues_pdefault DEFAULT");
+    }
+
+    @Test
+    public void postgresNeverDropsDefaultPartition() {
+        when(databaseProxy.getType()).thenReturn(DatabaseType.POSTGRES);
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 1);
+        partitions.add(new Partition(PointValuePartitioning.LEGACY_PARTITION.toLowerCase(), millis(2024, 1, 1)));
+        partitions.add(new Partition(PointValuePartitioning.DEFAULT_PARTITION.toLowerCase(), Long.MAX_VALUE));
+
+        OptionalLong dropped = partitioning.dropPartitionsBefore(millis(2024, 2, 1));
+        assertEquals(millis(2024, 1, 1), dropped.getAsLong());
+        verify(ejt).update("DELETE FROM pointValues_pdefault WHERE ts < ?", millis(2024, 2, 1));
+        verify(ejt).execute("DROP TABLE pointvalues_legacy");
+        verify(ejt, never()).execute("DROP TABLE pointvalues_pdefault");
+    }
+
+    @Test
+    public void dropOnlyFullPartitions() {
+        PointValuePartitioning partitioning = new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 2);
+        partitions.add(new Partition(PointValuePartitioning.MAX_PARTITION, Long.MAX_VALUE));
+        partitions.add(new Partition("pointValues_p20240201", millis(2024, 3, 1)));
+        partitions.add(new Partition(PointValuePartitioning.LEGACY_PARTITION, millis(2024, 1, 1)));
+        partitions.add(new Partition("pointValues_p20240101", millis(2024, 2, 1)));
+
+        OptionalLong dropped = partitioning.dropPartitionsBefore(millis(2024, 2, 20));
+        assertTrue(dropped.isPresent());
+        assertEquals(millis(2024, 2, 1), dropped.getAsLong());
+        verify(ejt).execute("ALTER TABLE pointValues DROP PARTITION pointValues_legacy, pointValues_p20240101");
+
+        assertFalse(partitioning.dropPartitionsBefore(millis(2023, 12, 31)).isPresent());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedDatabase() {
+        when(databaseProxy.getType()).thenReturn(DatabaseType.H2);
+        new PointValuePartitioning(databaseProxy, CLOCK, ChronoUnit.MONTHS, 2);
+    }
+
+    private static long millis(int year, int month, int day) {
+        return ZonedDateTime.of(year, month, day, 0, 0, 0, 0, ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.db.dao.PointValueDaoSQL.BatchWriteEntry;
+
+public class PointValueSpoolTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<BatchWriteEntry> entries(int start, int count) {
+        return IntStream.range(start, start + count)
+                .mapToObj(i -> new BatchWriteEntry(i % 7, DataType.NUMERIC, i * 1.5, 1000L + i))
+                .collect(Collectors.toList());
+    }
+
+    private void assertEntries(List<BatchWriteEntry> expected, List<BatchWriteEntry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).seriesId, actual.get(i).seriesId);
+            assertEquals(expected.get(i).dataType, actual.get(i).dataType);
+            assertEquals(expected.get(i).dvalue, actual.get(i).dvalue, 0);
+            assertEquals(expected.get(i).time, actual.get(i).time);
+        }
+    }
+
+    private long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void replayInOrderAcrossSegments() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PointValueSpool spool = new PointValueSpool(directory, SEGMENT_SIZE, 1024 * 1024);
+
+        List<BatchWriteEntry> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            List<BatchWriteEntry> batch = entries(i * 100, 100);
+            assertTrue(spool.append(batch));
+            expected.addAll(batch);
+        }
+        assertEquals(1000, spool.pendingEntries());
+        assertTrue(segmentCount(directory) > 1);
+
+        List<BatchWriteEntry> replayed = new ArrayList<>();
+        assertEquals(1000, spool.replay(replayed::addAll));
+        assertEntries(expected, replayed);
+        assertEquals(0, spool.pendingEntries());
+        assertEquals(0, segmentCount(directory));
+    }
+
+    @Test
+    public void survivesReopen() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PointValueSpool spool = new PointValueSpool(directory, SEGMENT_SIZE, 1024 * 1024);
+        List<BatchWriteEntry> first = entries(0, 50);
+        List<BatchWriteEntry> second = entries(50, 50);
+        assertTrue(spool.append(first));
+        assertTrue(spool.append(second));
+
+        // replay the first batch, then fail
+        List<BatchWriteEntry> replayed = new ArrayList<>();
+        spool.replay(batch -> {
+            if (replayed.isEmpty()) {
+                replayed.addAll(batch);
+                return true;
+            }
+            return false;
+        });
+        assertEntries(first, replayed);
+        spool.close();
+
+        PointValueSpool reopened = new PointValueSpool(directory, SEGMENT_SIZE, 1024 * 1024);
+        assertEquals(50, reopened.pendingEntries());
+        replayed.clear();
+        reopened.replay(replayed::addAll);
+        assertEntries(second, replayed);
+    }
+
+    @Test
+    public void boundedSize() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PointValueSpool spool = new PointValueSpool(directory, SEGMENT_SIZE, SEGMENT_SIZE * 2);
+        int perSegment = (SEGMENT_SIZE - PointValueSpool.HEADER_SIZE - PointValueSpool.RECORD_HEADER_SIZE) / PointValueSpool.ENTRY_SIZE;
+
+        assertTrue(spool.append(entries(0, perSegment)));
+        assertTrue(spool.append(entries(0, perSegment)));
+        assertFalse(spool.append(entries(0, 1)));
+        assertEquals(perSegment * 2L, spool.pendingEntries());
+    }
+
+    @Test
+    public void rejectsAppendAfterClose() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PointValueSpool spool = new PointValueSpool(directory, SEGMENT_SIZE, 1024 * 1024);
+        assertTrue(spool.append(entries(0, 10)));
+        spool.close();
+
+        assertEquals(0, spool.pendingEntries());
+        assertFalse(spool.append(entries(10, 10)));
+        assertEquals(0, spool.replay(batch -> true));
+
+        PointValueSpool reopened = new PointValueSpool(directory, SEGMENT_SIZE, 1024 * 1024);
+        assertEquals(10, reopened.pendingEntries());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao.pointvalue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.infiniteautomation.mango.db.query.QueryCancelledException;
+import com.infiniteautomation.mango.pointvalue.generator.LinearPointValueGenerator;
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.view.stats.SeriesValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
+
+public class ParallelAggregatorTest extends MangoTestBase {
+
+    private final ZonedDateTime from = ZonedDateTime.of(LocalDateTime.of(2020, 1, 1, 0, 0), ZoneOffset.UTC);
+    private final ZonedDateTime to = from.plusHours(6L);
+    private final Duration aggregationPeriod = Duration.ofMinutes(15L);
+
+    private PointValueDao pointValueDao;
+    private ForkJoinPool pool;
+
+    @Override
+    public void before() {
+        super.before();
+
+        ApplicationContext context = MangoTestBase.lifecycle.getRuntimeContext();
+        this.pointValueDao = context.getBean(PointValueDao.class);
+        this.pool = new ForkJoinPool(4);
+    }
+
+    @Override
+    public void after() {
+        pool.shutdownNow();
+        super.after();
+    }
+
+    private List<DataPointVO> createPointsWithValues(int count) {
+        var ds = createMockDataSource();
+        List<DataPointVO> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            var point = createMockDataPoint(ds, new MockPointLocatorVO(DataType.NUMERIC, false));
+            var generator = new LinearPointValueGenerator(from.toInstant(), to.toInstant(), Duration.ofSeconds(10L), i, 1.0D);
+            pointValueDao.savePointValues(generator.apply(point));
+            points.add(point);
+        }
+        return points;
+    }
+
+    @Test
+    public void matchesSequentialQuery() {
+        var points = createPointsWithValues(10);
+        AggregateDao aggregateDao = pointValueDao.getAggregateDao();
+
+        List<SeriesValueTime<AggregateValue>> expected = new ArrayList<>();
+        for (DataPointVO point : points) {
+            try (var stream = aggregateDao.query(point, from, to, null, aggregationPeriod)) {
+                stream.forEach(expected::add);
+            }
+        }
+        expected.sort(Comparator.<SeriesValueTime<AggregateValue>>comparingLong(SeriesValueTime::getTime)
+                .thenComparingInt(SeriesValueTime::getSeriesId));
+
+        // small buffer so that the time range is split into several windows
+        try (var stream = ParallelAggregator.aggregate(aggregateDao, points, from, to, aggregationPeriod, pool, 25)) {
+            var actual = stream.collect(Collectors.toList());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                NumericAggregate e = (NumericAggregate) expected.get(i).getValue();
+                NumericAggregate a = (NumericAggregate) actual.get(i).getValue();
+                assertEquals(expected.get(i).getSeriesId(), actual.get(i).getSeriesId());
+                assertEquals(expected.get(i).getTime(), actual.get(i).getTime());
+                assertEquals(e.getCount(), a.getCount());
+                assertEquals(e.getArithmeticMean(), a.getArithmeticMean(), 0.0D);
+                assertEquals(e.getStartValue(), a.getStartValue());
+                assertEquals(e.getLastValue(), a.getLastValue());
+            }
+        }
+
+        try (var stream = aggregateDao.query(points, from, to, 5, aggregationPeriod, pool)) {
+            assertEquals(5, stream.count());
+        }
+    }
+
+    @Test
+    public void closeCancelsQuery() {
+        var points = createPointsWithValues(4);
+        AtomicInteger queries = new AtomicInteger();
+        AggregateDao aggregateDao = new DefaultAggregateDao(pointValueDao) {
+            @Override
+            public Stream<SeriesValueTime<AggregateValue>> query(DataPointVO point, ZonedDateTime from, ZonedDateTime to, Integer limit, TemporalAmount aggregationPeriod) {
+                queries.incrementAndGet();
+                return super.query(point, from, to, limit, aggregationPeriod);
+            }
+
+            @Override
+            public Stream<SeriesValueTime<AggregateValue>> query(DataPointVO point, ZonedDateTime from, ZonedDateTime to, Integer limit,
+                                                                 TemporalAmount aggregationPeriod, PointValueTime previousValue) {
+                queries.incrementAndGet();
+                return super.query(point, from, to, limit, aggregationPeriod, previousValue);
+            }
+        };
+
+        // one aggregation period per window
+        try (var stream = ParallelAggregator.aggregate(aggregateDao, points, from, to, aggregationPeriod, pool, 1)) {
+            assertTrue(stream.findFirst().isPresent());
+        }
+        pool.awaitQuiescence(10, TimeUnit.SECONDS);
+
+        // at most the first window and the prefetched window were queried
+        assertTrue(queries.get() <= points.size() * 2);
+    }
+
+    @Test
+    public void previousValueQueriedOnce() {
+        var points = createPointsWithValues(4);
+        AtomicInteger lookups = new AtomicInteger();
+        AggregateDao aggregateDao = new DefaultAggregateDao(pointValueDao) {
+            @Override
+            public Stream<SeriesValueTime<AggregateValue>> queryRealtime(DataPointVO point, ZonedDateTime from, ZonedDateTime to, Integer limit, TemporalAmount aggregationPeriod) {
+                lookups.incrementAndGet();
+                return super.queryRealtime(point, from, to, limit, aggregationPeriod);
+            }
+        };
+
+        // one aggregation period per window
+        try (var stream = ParallelAggregator.aggregate(aggregateDao, points, from, to, aggregationPeriod, pool, 1)) {
+            assertEquals(points.size() * Duration.between(from, to).dividedBy(aggregationPeriod), stream.count());
+        }
+        assertEquals(points.size(), lookups.get());
+    }
+
+    @Test(expected = QueryCancelledException.class)
+    public void interruptThrowsCancelled() {
+        var points = createPointsWithValues(2);
+        Thread.currentThread().interrupt();
+        try (var stream = ParallelAggregator.aggregate(pointValueDao.getAggregateDao(), points, from, to, aggregationPeriod, pool, 100)) {
+            stream.count();
+        } finally {
+            // clear the interrupted flag
+            Thread.interrupted();
+        }
+    }
+}
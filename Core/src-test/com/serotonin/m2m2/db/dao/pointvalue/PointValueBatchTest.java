@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao.pointvalue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.dao.BasicSQLPointValueDao;
+import com.serotonin.m2m2.db.dao.BatchPointValue;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.BinaryValue;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
+
+public class PointValueBatchTest extends MangoTestBase {
+
+    private PointValueDao pointValueDao;
+
+    @Override
+    public void before() {
+        super.before();
+
+        ApplicationContext context = MangoTestBase.lifecycle.getRuntimeContext();
+        this.pointValueDao = context.getBean(PointValueDao.class);
+    }
+
+    @Test
+    public void addUntilFull() {
+        PointValueBatch batch = new PointValueBatch(2);
+        assertTrue(batch.add(1, DataType.NUMERIC, 1.5, 1000L));
+        assertTrue(batch.add(2, DataType.BINARY, 1, 2000L));
+        assertTrue(batch.isFull());
+        assertFalse(batch.add(3, DataType.NUMERIC, 2.5, 3000L));
+
+        assertEquals(2, batch.getSeriesId(1));
+        assertEquals(DataType.BINARY, batch.getDataType(1));
+        assertEquals(new BinaryValue(true), batch.toPointValueTime(1).getValue());
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void alphanumericNotSupported() {
+        new PointValueBatch(1).add(1, DataType.ALPHANUMERIC, 0, 0);
+    }
+
+    @Test
+    public void defaultSaveResolvesPoints() {
+        var ds = createMockDataSource();
+        DataPointVO numeric = createMockDataPoint(ds, new MockPointLocatorVO(DataType.NUMERIC, false));
+        DataPointVO binary = createMockDataPoint(ds, new MockPointLocatorVO(DataType.BINARY, false));
+
+        List<BatchPointValue<? extends PointValueTime>> saved = new ArrayList<>();
+        PointValueDao dao = new BasicSQLPointValueDao(MangoTestBase.lifecycle.getRuntimeContext().getBean(DatabaseProxy.class)) {
+            @Override
+            public void savePointValues(Stream<? extends BatchPointValue<? extends PointValueTime>> pointValues, int chunkSize) {
+                saved.addAll(pointValues.collect(Collectors.toList()));
+            }
+        };
+
+        PointValueBatch batch = new PointValueBatch(3);
+        batch.add(numeric.getSeriesId(), DataType.NUMERIC, 1.5, 1000L);
+        batch.add(binary.getSeriesId(), DataType.BINARY, 1, 2000L);
+        batch.add(numeric.getSeriesId(), DataType.NUMERIC, 2.5, 3000L);
+        dao.savePointValues(batch);
+
+        assertEquals(3, saved.size());
+        assertEquals(numeric.getXid(), saved.get(0).getPoint().getXid());
+        assertEquals(DataType.BINARY, saved.get(1).getPoint().getPointLocator().getDataType());
+        // the point is only loaded once per series
+        assertSame(saved.get(0).getPoint(), saved.get(2).getPoint());
+        assertEquals(3000L, saved.get(2).getValue().getTime());
+    }
+
+    @Test
+    public void saveAndStream() {
+        var ds = createMockDataSource();
+        DataPointVO numeric = createMockDataPoint(ds, new MockPointLocatorVO(DataType.NUMERIC, false));
+        DataPointVO multistate = createMockDataPoint(ds, new MockPointLocatorVO(DataType.MULTISTATE, false));
+
+        int count = 1000;
+        PointValueBatch batch = new PointValueBatch(count * 2);
+        for (int i = 0; i < count; i++) {
+            batch.add(numeric.getSeriesId(), DataType.NUMERIC, i * 0.5, i * 1000L);
+            batch.add(multistate.getSeriesId(), DataType.MULTISTATE, i % 3, i * 1000L + 1);
+        }
+        pointValueDao.savePointValues(batch);
+
+        List<PointValueBatch> batches = new ArrayList<>();
+        pointValueDao.streamPointValueBatches(List.of(numeric, multistate), null, null, TimeOrder.ASCENDING, 300,
+                b -> batches.add(b.copy()));
+
+        assertEquals(7, batches.size());
+        int index = 0;
+        for (PointValueBatch b : batches) {
+            for (int i = 0; i < b.size(); i++, index++) {
+                int sample = index / 2;
+                if (index % 2 == 0) {
+                    assertEquals(numeric.getSeriesId(), b.getSeriesId(i));
+                    assertEquals(sample * 0.5, b.getValue(i), 0);
+                    assertEquals(sample * 1000L, b.getTime(i));
+                } else {
+                    assertEquals(multistate.getSeriesId(), b.getSeriesId(i));
+                    assertEquals(DataType.MULTISTATE, b.getDataType(i));
+                    assertEquals(sample % 3, b.getValue(i), 0);
+                    assertEquals(sample * 1000L + 1, b.getTime(i));
+                }
+            }
+        }
+        assertEquals(count * 2, index);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.rt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.rt.dataImage.DataPointEventMulticaster;
+import com.serotonin.m2m2.rt.dataImage.DataPointListener;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+public class DataPointNotificationQueueTest extends MangoTestBase {
+
+    private static final int COUNT = 10000;
+
+    @Test
+    public void deliversInOrder() throws InterruptedException {
+        RecordingListener all = new RecordingListener("all", false, COUNT);
+        RecordingListener latest = new RecordingListener("latest", true, 1);
+        DataPointListener chain = DataPointEventMulticaster.add(all, latest);
+
+        DataPointNotificationQueue queue = new DataPointNotificationQueue("DP_TEST");
+        PointValueTime oldValue = null;
+        for (int i = 0; i < COUNT; i++) {
+            PointValueTime newValue = new PointValueTime(i, i);
+            queue.add(new DataPointEventNotifyWorkItem("DP_TEST", chain, oldValue, newValue, null, false,
+                    false, false, true, false));
+            oldValue = newValue;
+        }
+
+        assertTrue(all.done.await(10, TimeUnit.SECONDS));
+        assertTrue(latest.done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(COUNT, all.updated.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, all.updated.get(i).getIntegerValue());
+        }
+
+        // the latest value is always delivered to a latest value only listener
+        assertEquals(COUNT - 1, latest.updated.get(latest.updated.size() - 1).getIntegerValue());
+        for (int i = 1; i < latest.updated.size(); i++) {
+            assertTrue(latest.updated.get(i).getTime() > latest.updated.get(i - 1).getTime());
+        }
+    }
+
+    @Test
+    public void coalescesQueuedUpdates() throws InterruptedException {
+        int count = 100;
+        BlockingListener listener = new BlockingListener(count);
+        DataPointNotificationQueue queue = new DataPointNotificationQueue("DP_TEST");
+
+        queue.add(update(listener, null, 0));
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+
+        // queued while the listener is blocked delivering the first update
+        for (int i = 1; i <= count; i++) {
+            queue.add(update(listener, new PointValueTime(i - 1, i - 1), i));
+        }
+        listener.release.countDown();
+
+        assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+        // give any further (incorrect) deliveries a chance to arrive
+        Thread.sleep(100);
+        assertEquals(2, listener.updated.size());
+        assertEquals(0, listener.updated.get(0).getIntegerValue());
+        assertEquals(count, listener.updated.get(1).getIntegerValue());
+    }
+
+    @Test
+    public void singleListenerUpdateDoesNotSupersede() throws InterruptedException {
+        int count = 10;
+        BlockingListener listener = new BlockingListener(count);
+        RecordingListener detector = new RecordingListener("detector", false, 1);
+        DataPointNotificationQueue queue = new DataPointNotificationQueue("DP_TEST");
+
+        queue.add(update(listener, null, 0));
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+
+        // an update for a single listener which is not latest value only, queued after the latest value update
+        queue.add(update(listener, new PointValueTime(0, 0), count));
+        queue.add(update(detector, null, count));
+        listener.release.countDown();
+
+        assertTrue(detector.done.await(10, TimeUnit.SECONDS));
+        assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+        assertEquals(count, listener.updated.get(listener.updated.size() - 1).getIntegerValue());
+    }
+
+    @Test
+    public void listenerExceptionIsolated() throws InterruptedException {
+        RecordingListener failing = new RecordingListener("failing", true, 1) {
+            @Override
+            public void pointUpdated(PointValueTime newValue) {
+                throw new IllegalStateException("Listener failure");
+            }
+        };
+        RecordingListener latest = new RecordingListener("latest", true, 1);
+        DataPointListener chain = DataPointEventMulticaster.add(failing, latest);
+
+        DataPointNotificationQueue queue = new DataPointNotificationQueue("DP_TEST");
+        queue.add(update(chain, null, COUNT - 1));
+
+        assertTrue(latest.done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, latest.updated.size());
+    }
+
+    private DataPointEventNotifyWorkItem update(DataPointListener listener, PointValueTime oldValue, int value) {
+        return new DataPointEventNotifyWorkItem("DP_TEST", listener, oldValue, new PointValueTime(value, value), null,
+                false, false, false, true, false);
+    }
+
+    /**
+     * Latest value only listener which blocks on the first update until released
+     */
+    private static class BlockingListener extends RecordingListener {
+        private final int last;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private BlockingListener(int last) {
+            super("blocking", true, 2);
+            this.last = last;
+        }
+
+        @Override
+        public void pointUpdated(PointValueTime newValue) {
+            if (entered.getCount() > 0) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.updated.add(newValue);
+            if (newValue.getIntegerValue() == last) {
+                super.done.countDown();
+            }
+        }
+    }
+
+    private static class RecordingListener implements DataPointListener {
+        private final String name;
+        private final boolean latestValueOnly;
+        private final int expected;
+        private final List<PointValueTime> updated = new CopyOnWriteArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private RecordingListener(String name, boolean latestValueOnly, int expected) {
+            this.name = name;
+            this.latestValueOnly = latestValueOnly;
+            this.expected = expected;
+        }
+
+        @Override
+        public String getListenerName() {
+            return name;
+        }
+
+        @Override
+        public void pointInitialized() {
+        }
+
+        @Override
+        public void pointUpdated(PointValueTime newValue) {
+            updated.add(newValue);
+            if (latestValueOnly ? newValue.getIntegerValue() == COUNT - 1 : updated.size() == expected) {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void pointChanged(PointValueTime oldValue, PointValueTime newValue) {
+        }
+
+        @Override
+        public void pointSet(PointValueTime oldValue, PointValueTime newValue) {
+        }
+
+        @Override
+        public void pointBackdated(PointValueTime value) {
+        }
+
+        @Override
+        public void pointTerminated(DataPointVO vo) {
+        }
+
+        @Override
+        public void pointLogged(PointValueTime value) {
+        }
+
+        @Override
+        public boolean isLatestValueOnly() {
+            return latestValueOnly;
+        }
+    }
+}
@@ -143,6 +143,68 @@ public class DataPointRTPointValueCacheTest extends MangoTestBase {
 
     }
 
+    /**
+     * Test saving backdated values into cache
+     */
+    @Test
+    public void test5() {
+        DataPointVO vo = new DataPointVO();
+        vo.setId(1);
+        PointValueDao dao = Common.getBean(PointValueDao.class);
+        PointValueCache pointValueCache = Common.getBean(PointValueCache.class);
+        List<PointValueTime> initialCache = createCache(vo, 5);
+        DataPointRTPointValueCache cache = new DataPointRTPointValueCache(vo, 5, initialCache, dao, pointValueCache);
+
+        // between the latest and second latest values
+        PointValueTime backdate = new PointValueTime(100.0, initialCache.get(0).getTime() - 1);
+        cache.savePointValue(backdate, null, false, true);
+        List<PointValueTime> contents = cache.getCacheContents();
+        Assert.assertEquals(5, contents.size());
+        Assert.assertEquals(initialCache.get(0), contents.get(0));
+        Assert.assertEquals(backdate, contents.get(1));
+        Assert.assertEquals(initialCache.get(1), contents.get(2));
+        Assert.assertEquals(initialCache.get(3), contents.get(4));
+
+        // older than all values in a full cache, should be discarded
+        PointValueTime old = new PointValueTime(200.0, initialCache.get(4).getTime() - 10);
+        cache.savePointValue(old, null, false, true);
+        Assert.assertEquals(5, cache.getCacheContents().size());
+        Assert.assertFalse(cache.getCacheContents().contains(old));
+    }
+
+    /**
+     * Test saving into a cache that has not been loaded, the persisted values must be retained
+     */
+    @Test
+    public void test6() {
+        DataPointVO vo = new DataPointVO();
+        vo.setId(1);
+        PointValueDao dao = Common.getBean(PointValueDao.class);
+        PointValueCache pointValueCache = Common.getBean(PointValueCache.class);
+        List<PointValueTime> initialCache = createCache(vo, 5);
+        pointValueCache.updateCache(vo, initialCache);
+        DataPointRTPointValueCache cache = new DataPointRTPointValueCache(vo, 5, null, dao, pointValueCache);
+
+        PointValueTime latest = new PointValueTime(100.0, Common.timer.currentTimeMillis());
+        cache.savePointValue(latest, null, false, true);
+
+        List<PointValueTime> contents = cache.getCacheContents();
+        Assert.assertEquals(5, contents.size());
+        Assert.assertEquals(latest, contents.get(0));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(initialCache.get(i), contents.get(i + 1));
+        }
+
+        // after invalidating, a value that was already saved to the database must not be inserted twice
+        cache.invalidate(false);
+        PointValueTime saved = new PointValueTime(101.0, Common.timer.currentTimeMillis() + 1);
+        cache.savePointValue(saved, null, true, false);
+        contents = cache.getCacheContents();
+        Assert.assertEquals(5, contents.size());
+        Assert.assertEquals(saved, contents.get(0));
+        Assert.assertEquals(1, contents.stream().filter(saved::equals).count());
+    }
+
     //TEST RESET
     //Test cache size expansion in multiple threads?
 
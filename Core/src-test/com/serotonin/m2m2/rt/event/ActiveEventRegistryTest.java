@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.rt.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.event.type.DataPointEventType;
+import com.serotonin.m2m2.rt.event.type.DataSourceEventType;
+import com.serotonin.m2m2.rt.event.type.DuplicateHandling;
+import com.serotonin.m2m2.rt.event.type.EventType;
+
+public class ActiveEventRegistryTest {
+
+    private int nextId = 1;
+
+    private EventInstance event(EventType type, AlarmLevels alarmLevel) {
+        EventInstance evt = new EventInstance(type, 0L, true, alarmLevel, new TranslatableMessage("common.default", "test"), null);
+        evt.setId(nextId++);
+        return evt;
+    }
+
+    @Test
+    public void getAndRemoveByType() {
+        ActiveEventRegistry registry = new ActiveEventRegistry();
+        EventType type = new DataPointEventType(1, 10, 100, DuplicateHandling.ALLOW);
+        EventInstance first = event(type, AlarmLevels.URGENT);
+        EventInstance second = event(new DataPointEventType(1, 10, 100, DuplicateHandling.ALLOW), AlarmLevels.CRITICAL);
+        registry.add(first);
+        registry.add(second);
+        registry.add(event(new DataPointEventType(1, 10, 101, DuplicateHandling.ALLOW), AlarmLevels.INFORMATION));
+
+        assertSame(first, registry.get(type));
+        assertEquals(2, registry.getAll(type).size());
+        assertSame(second, registry.getById(second.getId()));
+        assertEquals(AlarmLevels.CRITICAL.value().intValue(), registry.getHighestAlarmLevel());
+
+        assertSame(first, registry.remove(type));
+        assertSame(second, registry.remove(type));
+        assertNull(registry.remove(type));
+        assertNull(registry.getById(second.getId()));
+        assertEquals(AlarmLevels.INFORMATION.value().intValue(), registry.getHighestAlarmLevel());
+        assertEquals(1, registry.getAll().size());
+    }
+
+    @Test
+    public void removeForDataPointAndDataSource() {
+        ActiveEventRegistry registry = new ActiveEventRegistry();
+        EventInstance point1 = event(new DataPointEventType(1, 10, 100, DuplicateHandling.ALLOW), AlarmLevels.URGENT);
+        EventInstance point2 = event(new DataPointEventType(1, 20, 200, DuplicateHandling.ALLOW), AlarmLevels.URGENT);
+        EventInstance dataSource = event(new DataSourceEventType(1, 5), AlarmLevels.WARNING);
+        registry.add(point1);
+        registry.add(point2);
+        registry.add(dataSource);
+
+        assertEquals(List.of(point1), registry.removeForDataPoint(10));
+        assertTrue(registry.removeForDataPoint(10).isEmpty());
+        assertEquals(2, registry.getCount(AlarmLevels.URGENT) + registry.getCount(AlarmLevels.WARNING));
+
+        List<EventInstance> removed = registry.removeForDataSource(1);
+        assertEquals(2, removed.size());
+        assertTrue(removed.contains(point2));
+        assertTrue(removed.contains(dataSource));
+        assertTrue(registry.getAll().isEmpty());
+        assertEquals(AlarmLevels.NONE.value().intValue(), registry.getHighestAlarmLevel());
+    }
+
+    @Test
+    public void removeIf() {
+        ActiveEventRegistry registry = new ActiveEventRegistry();
+        registry.add(event(new DataPointEventType(1, 10, 100, DuplicateHandling.ALLOW), AlarmLevels.URGENT));
+        EventInstance remaining = event(new DataPointEventType(1, 20, 200, DuplicateHandling.ALLOW), AlarmLevels.WARNING);
+        registry.add(remaining);
+
+        assertEquals(1, registry.removeIf(e -> e.getAlarmLevel() == AlarmLevels.URGENT).size());
+        assertEquals(List.of(remaining), registry.getAll());
+        assertTrue(registry.removeForDataPoint(10).isEmpty());
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.rt.publish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.rt.publish.mock.MockPublisherRT;
+import com.serotonin.m2m2.vo.publish.mock.MockPublishedPointVO;
+import com.serotonin.m2m2.vo.publish.mock.MockPublisherVO;
+
+public class PublishQueueTest extends MangoTestBase {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<Integer, MockPublishedPointVO> points = new HashMap<>();
+
+    @Test
+    public void discardOldestWhenFull() {
+        PublishQueue<MockPublisherVO, MockPublishedPointVO, Integer> queue = createQueue(10, null);
+        MockPublishedPointVO point = point(1);
+        for (int i = 0; i < 25; i++) {
+            queue.add(point, i);
+        }
+        assertEquals(10, queue.getSize());
+        assertValues(drain(queue), 15, 25);
+        assertEquals(0, queue.getSize());
+        assertNull(queue.get(10));
+    }
+
+    @Test
+    public void getAndRemove() {
+        PublishQueue<MockPublisherVO, MockPublishedPointVO, Integer> queue = createQueue(100, null);
+        MockPublishedPointVO point = point(1);
+        for (int i = 0; i < 10; i++) {
+            queue.add(point, i);
+        }
+
+        List<PublishQueueEntry<MockPublishedPointVO, Integer>> batch = queue.get(4);
+        assertValues(batch, 0, 4);
+        assertEquals(10, queue.getSize());
+        queue.removeAll(batch);
+        assertEquals(6, queue.getSize());
+        assertEquals(4, (int) queue.next().getValue());
+
+        // remove entries which are not at the head of the queue
+        batch = queue.get(6);
+        queue.removeAll(List.of(batch.get(1), batch.get(3)));
+        List<PublishQueueEntry<MockPublishedPointVO, Integer>> remaining = drain(queue);
+        assertEquals(List.of(4, 6, 8, 9), values(remaining));
+    }
+
+    @Test
+    public void overflow() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PublishQueueOverflow<PublishQueueEntry<MockPublishedPointVO, Integer>> overflow =
+                new PublishQueueOverflow<>(directory, SEGMENT_SIZE, SEGMENT_SIZE * 4, new TestCodec());
+        PublishQueue<MockPublisherVO, MockPublishedPointVO, Integer> queue = createQueue(10, overflow);
+        MockPublishedPointVO point = point(1);
+
+        // each record is 16 bytes, 16 records fit in a segment
+        for (int i = 0; i < 50; i++) {
+            queue.add(point, i);
+        }
+        assertEquals(50, queue.getSize());
+        assertEquals(40, overflow.size());
+        assertEquals(3, segmentCount(directory));
+
+        // entries added while there are entries in the overflow must go to the overflow
+        assertValues(queue.get(100), 0, 10);
+        queue.removeFirst(5);
+        queue.add(point, 50);
+        assertEquals(46, queue.getSize());
+
+        List<PublishQueueEntry<MockPublishedPointVO, Integer>> drained = new ArrayList<>();
+        assertEquals(46, queue.drainTo(drained, 100));
+        assertValues(drained, 5, 51);
+        assertEquals(0, queue.getSize());
+        assertEquals(1, segmentCount(directory));
+    }
+
+    @Test
+    public void overflowFull() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PublishQueueOverflow<PublishQueueEntry<MockPublishedPointVO, Integer>> overflow =
+                new PublishQueueOverflow<>(directory, SEGMENT_SIZE, SEGMENT_SIZE, new TestCodec());
+        PublishQueue<MockPublisherVO, MockPublishedPointVO, Integer> queue = createQueue(10, overflow);
+        MockPublishedPointVO point = point(1);
+        for (int i = 0; i < 50; i++) {
+            queue.add(point, i);
+        }
+        // the oldest entries are discarded until the overflow's segment has been read
+        assertEquals(18, queue.getSize());
+        assertEquals(8, overflow.size());
+        assertValues(drain(queue), 32, 50);
+        assertEquals(1, segmentCount(directory));
+
+        queue.terminate();
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void overflowSkipsRemovedPoints() throws IOException {
+        PublishQueueOverflow<PublishQueueEntry<MockPublishedPointVO, Integer>> overflow =
+                new PublishQueueOverflow<>(folder.newFolder().toPath(), SEGMENT_SIZE, SEGMENT_SIZE * 4, new TestCodec());
+        MockPublishedPointVO removed = point(1);
+        MockPublishedPointVO retained = point(2);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(overflow.offer(new PublishQueueEntry<>(i % 2 == 0 ? removed : retained, i)));
+        }
+        points.remove(removed.getId());
+
+        List<Integer> values = new ArrayList<>();
+        PublishQueueEntry<MockPublishedPointVO, Integer> entry;
+        while ((entry = overflow.poll()) != null) {
+            assertEquals(retained, entry.getVo());
+            values.add(entry.getValue());
+        }
+        assertEquals(List.of(1, 3, 5, 7, 9), values);
+        assertEquals(0, overflow.size());
+    }
+
+    private PublishQueue<MockPublisherVO, MockPublishedPointVO, Integer> createQueue(int discardSize,
+            PublishQueueOverflow<PublishQueueEntry<MockPublishedPointVO, Integer>> overflow) {
+        MockPublisherVO vo = createMockPublisher(false);
+        MockPublisherRT publisher = new MockPublisherRT(vo);
+        // the publisher creates its own queue, remove its monitor so the queue under test can register one
+        Common.MONITORED_VALUES.remove(PublishQueue.QUEUE_SIZE_MONITOR_ID + vo.getXid());
+        return new PublishQueue<>(publisher, discardSize, discardSize, overflow);
+    }
+
+    private MockPublishedPointVO point(int id) {
+        MockPublishedPointVO point = new MockPublishedPointVO();
+        point.setId(id);
+        points.put(id, point);
+        return point;
+    }
+
+    private List<PublishQueueEntry<MockPublishedPointVO, Integer>> drain(PublishQueue<MockPublisherVO, MockPublishedPointVO, Integer> queue) {
+        List<PublishQueueEntry<MockPublishedPointVO, Integer>> result = new ArrayList<>();
+        queue.drainTo(result, Integer.MAX_VALUE);
+        return result;
+    }
+
+    private List<Integer> values(List<PublishQueueEntry<MockPublishedPointVO, Integer>> entries) {
+        List<Integer> values = new ArrayList<>();
+        for (PublishQueueEntry<MockPublishedPointVO, Integer> entry : entries) {
+            values.add(entry.getValue());
+        }
+        return values;
+    }
+
+    private void assertValues(List<PublishQueueEntry<MockPublishedPointVO, Integer>> entries, int from, int to) {
+        assertEquals(to - from, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(from + i, (int) entries.get(i).getValue());
+        }
+    }
+
+    private long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private class TestCodec implements PublishQueueOverflow.Codec<PublishQueueEntry<MockPublishedPointVO, Integer>> {
+        @Override
+        public void encode(PublishQueueEntry<MockPublishedPointVO, Integer> entry, DataOutput out) throws IOException {
+            out.writeInt(entry.getVo().getId());
+            out.writeLong(entry.getValue());
+        }
+
+        @Override
+        public PublishQueueEntry<MockPublishedPointVO, Integer> decode(DataInput in) throws IOException {
+            MockPublishedPointVO point = points.get(in.readInt());
+            int value = (int) in.readLong();
+            return point == null ? null : new PublishQueueEntry<>(point, value);
+        }
+    }
+}
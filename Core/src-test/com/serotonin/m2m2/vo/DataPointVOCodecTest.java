@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.vo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.measure.unit.SI;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.db.tables.DataPoints;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.MangoTestBase;
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.dao.DataPointDao;
+import com.serotonin.m2m2.view.text.AnalogRenderer;
+import com.serotonin.m2m2.view.text.MultistateRenderer;
+import com.serotonin.m2m2.view.text.RangeRenderer;
+import com.serotonin.m2m2.view.text.TextRenderer;
+import com.serotonin.m2m2.vo.DataPointVO.PlotTypes;
+import com.serotonin.m2m2.vo.DataPointVO.SimplifyTypes;
+import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
+import com.serotonin.m2m2.vo.dataSource.mock.MockDataSourceVO;
+import com.serotonin.util.SerializationHelper;
+
+public class DataPointVOCodecTest extends MangoTestBase {
+
+    @Test
+    public void roundTrip() {
+        MockDataSourceVO ds = createMockDataSource();
+        DataPointVO vo = createMockDataPoint(ds, this::customize);
+
+        byte[] data = DataPointVOCodec.encode(vo);
+        assertFalse(DataPointVOCodec.isJavaSerialized(data));
+        // the mock data source definition writes its locators without Java serialization
+        assertFalse(new String(data, StandardCharsets.ISO_8859_1).contains(MockPointLocatorVO.class.getName()));
+        assertCustomized(DataPointVOCodec.decode(data));
+
+        assertCustomized(DataPointDao.getInstance().get(vo.getId()));
+    }
+
+    @Test
+    public void textRenderersWithoutJavaSerialization() {
+        AnalogRenderer analog = new AnalogRenderer("0.0", " m", true);
+        AnalogRenderer analogRead = (AnalogRenderer) roundTripRenderer(analog);
+        assertEquals("0.0", analogRead.getFormat());
+        assertEquals(" m", analogRead.getSuffix());
+        assertTrue(analogRead.isUseUnitAsSuffix());
+        // units are not written, they are set from the point
+        assertEquals(SI.METRE, analogRead.getUnit());
+
+        RangeRenderer range = new RangeRenderer("0");
+        range.addRangeValues(10, 20, "high", "#ff0000");
+        range.addRangeValues(0, 10, "low", "#00ff00");
+        RangeRenderer rangeRead = (RangeRenderer) roundTripRenderer(range);
+        assertEquals("0", rangeRead.getFormat());
+        assertEquals(2, rangeRead.getRangeValues().size());
+        assertEquals("low", rangeRead.getRangeValues().get(0).getText());
+        assertEquals(20, rangeRead.getRangeValues().get(1).getTo(), 0);
+
+        MultistateRenderer multistate = new MultistateRenderer();
+        multistate.addMultistateValue(1, "one", "#0000ff");
+        multistate.addMultistateValue(2, "two", null);
+        MultistateRenderer multistateRead = (MultistateRenderer) roundTripRenderer(multistate);
+        assertEquals(2, multistateRead.getMultistateValues().size());
+        assertEquals("one", multistateRead.getMultistateValues().get(0).getText());
+        assertNull(multistateRead.getMultistateValues().get(1).getColour());
+
+        assertNull(roundTripRenderer(null));
+    }
+
+    private TextRenderer roundTripRenderer(TextRenderer renderer) {
+        DataPointVO vo = new DataPointVO();
+        vo.setPointLocator(new MockPointLocatorVO(DataType.NUMERIC, true));
+        customize(vo);
+        vo.setTextRenderer(renderer);
+        byte[] data = DataPointVOCodec.encode(vo);
+        // no class descriptors are written for the core renderers
+        assertFalse(new String(data, StandardCharsets.ISO_8859_1).contains("com.serotonin.m2m2.view.text"));
+        return DataPointVOCodec.decode(data).getTextRenderer();
+    }
+
+    @Test
+    public void javaSerializedIsRead() {
+        MockDataSourceVO ds = createMockDataSource();
+        DataPointVO vo = createMockDataPoint(ds, this::customize);
+
+        byte[] data = SerializationHelper.writeObjectToArray(vo);
+        assertTrue(DataPointVOCodec.isJavaSerialized(data));
+        assertCustomized(DataPointVOCodec.decode(data));
+
+        DataPoints table = DataPoints.DATA_POINTS;
+        Common.getBean(DatabaseProxy.class).getContext().update(table)
+                .set(table.data, data)
+                .where(table.id.eq(vo.getId()))
+                .execute();
+        assertCustomized(DataPointDao.getInstance().get(vo.getId()));
+    }
+
+    private void customize(DataPointVO vo) {
+        vo.setChartColour("#ff0000");
+        vo.setPlotType(PlotTypes.SPLINE);
+        vo.setUnit(SI.METRE);
+        vo.setSimplifyType(SimplifyTypes.TARGET);
+        vo.setSimplifyTarget(100);
+        vo.setDiscardLowLimit(-5);
+        vo.setDiscardHighLimit(5);
+        vo.setIntervalLoggingSampleWindowSize(20);
+    }
+
+    private void assertCustomized(DataPointVO vo) {
+        assertEquals("#ff0000", vo.getChartColour());
+        assertEquals(PlotTypes.SPLINE, vo.getPlotType());
+        assertEquals(SI.METRE, vo.getUnit());
+        assertEquals(SimplifyTypes.TARGET, vo.getSimplifyType());
+        assertEquals(100, vo.getSimplifyTarget());
+        assertEquals(-5, vo.getDiscardLowLimit(), 0);
+        assertEquals(5, vo.getDiscardHighLimit(), 0);
+        assertEquals(20, vo.getIntervalLoggingSampleWindowSize());
+        assertTrue(vo.getPointLocator() instanceof MockPointLocatorVO);
+        assertEquals(DataType.NUMERIC, vo.getPointLocator().getDataType());
+        assertTrue(vo.getPointLocator().isSettable());
+    }
+}
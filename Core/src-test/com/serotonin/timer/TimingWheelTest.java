@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.serotonin.m2m2.MockMangoProperties;
+import com.serotonin.provider.Providers;
+import com.serotonin.util.properties.MangoProperties;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    /**
+     * Triggers require a timer to calculate their next execution time
+     */
+    private final RealTimeTimer unusedTimer = new RealTimeTimer();
+
+    @BeforeClass
+    public static void staticSetup() {
+        //Setup Mango properties Provider as we indirectly access Common
+        Providers.add(MangoProperties.class, new MockMangoProperties());
+    }
+
+    @Test
+    public void firesInOrderAndNeverEarly() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        TimingWheel wheel = new TimingWheel(TICK, clock::get);
+        Random random = new Random(0);
+
+        // spans several levels of the wheel
+        int count = 10000;
+        long maxDelay = TICK * TimingWheel.WHEEL_SIZE * TimingWheel.WHEEL_SIZE * 4;
+        for (int i = 0; i < count; i++) {
+            wheel.add(task(clock.get() + (long) (random.nextDouble() * maxDelay)));
+        }
+        assertEquals(count, wheel.size());
+
+        Set<TimerTask> fired = new HashSet<>();
+        List<TaskWrapper> batch = new ArrayList<>();
+        long previousPoll = clock.get() - 1;
+        long lastExecutionTick = Long.MIN_VALUE;
+        while (!wheel.isEmpty()) {
+            clock.addAndGet(1 + random.nextInt((int) TICK * 100));
+            long now = clock.get();
+            wheel.poll(now, batch);
+            for (TaskWrapper wrapper : batch) {
+                TimerTask task = (TimerTask) wrapper.getTask();
+                long executionTime = task.getNextExecutionTime();
+                long executionTick = -Math.floorDiv(-executionTime, TICK);
+                assertTrue("Fired early", executionTime <= now);
+                assertTrue("Fired late", executionTick * TICK > previousPoll);
+                assertTrue("Fired out of order", executionTick >= lastExecutionTick);
+                assertEquals(executionTime, wrapper.getExecutionTime());
+                assertEquals(TimerTask.EXECUTED, task.state);
+                assertTrue(fired.add(task));
+                lastExecutionTick = executionTick;
+            }
+            batch.clear();
+            previousPoll = now;
+        }
+        assertEquals(count, fired.size());
+    }
+
+    @Test
+    public void removeCancelledTasks() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        TimingWheel wheel = new TimingWheel(TICK, clock::get);
+
+        List<TimerTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            TimerTask task = task(clock.get() + i * TICK * 100);
+            tasks.add(task);
+            wheel.add(task);
+        }
+
+        for (int i = 0; i < tasks.size(); i += 2) {
+            tasks.get(i).cancel();
+            wheel.remove(tasks.get(i));
+        }
+        assertEquals(500, wheel.size());
+        assertEquals(500, wheel.getTasks().size());
+
+        List<TaskWrapper> fired = new ArrayList<>();
+        wheel.poll(clock.get() + 1000 * TICK * 100, fired);
+        assertEquals(500, fired.size());
+        for (TaskWrapper wrapper : fired) {
+            assertFalse(wrapper.getTask().isCancelled());
+        }
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void clockMovesBackwards() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        TimingWheel wheel = new TimingWheel(TICK, clock::get);
+        wheel.add(task(clock.get() + TICK * 1000));
+        wheel.poll(clock.get(), new ArrayList<>());
+
+        clock.addAndGet(-TICK * 100_000);
+        wheel.add(task(clock.get() + TICK));
+
+        List<TaskWrapper> fired = new ArrayList<>();
+        wheel.poll(clock.get() + TICK, fired);
+        assertEquals(1, fired.size());
+        assertEquals(1, wheel.size());
+    }
+
+    @Test(timeout = 30000)
+    public void realTimeTimer() throws InterruptedException {
+        RealTimeTimer timer = new RealTimeTimer(ZoneId.systemDefault(), 1);
+        timer.init();
+        try {
+            int count = 100;
+            CountDownLatch latch = new CountDownLatch(count);
+            List<TimerTask> cancelled = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                timer.schedule(new TestTask(new OneTimeTrigger(i * 5L), latch));
+                cancelled.add(timer.schedule(new TestTask(new OneTimeTrigger(60000), latch)));
+            }
+            for (TimerTask task : cancelled) {
+                assertTrue(task.cancel());
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(0, timer.size());
+        } finally {
+            timer.cancel();
+        }
+    }
+
+    private TimerTask task(long executionTime) {
+        TimerTask task = new TestTask(new OneTimeTrigger(new Date(executionTime)), null);
+        task.setTimer(unusedTimer);
+        task.trigger.nextExecutionTime = executionTime;
+        task.state = TimerTask.SCHEDULED;
+        return task;
+    }
+
+    private static class TestTask extends TimerTask {
+        private final CountDownLatch latch;
+
+        TestTask(TimerTrigger trigger, CountDownLatch latch) {
+            super(trigger, "Timing wheel test task");
+            this.latch = latch;
+        }
+
+        @Override
+        public void run(long runtime) {
+            latch.countDown();
+        }
+
+        @Override
+        public void rejected(RejectedTaskReason reason) {
+        }
+    }
+}
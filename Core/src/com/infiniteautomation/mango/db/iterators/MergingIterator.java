@@ -92,7 +92,13 @@ public class MergingIterator<T> implements Iterator<T> {
 
     public static <S> Stream<S> mergeStreams(Collection<? extends Stream<? extends S>> streams, Comparator<? super S> comparator) {
         var iterators = streams.stream().map(BaseStream::iterator).collect(Collectors.toList());
-        MergingIterator<S> it = new MergingIterator<>(iterators, comparator);
+        return toStream(new MergingIterator<>(iterators, comparator), streams);
+    }
+
+    /**
+     * Creates a sorted stream from a merging iterator, closing the stream closes all the merged streams
+     */
+    static <S> Stream<S> toStream(Iterator<S> it, Collection<? extends Stream<?>> streams) {
         Spliterator<S> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SORTED);
         return StreamSupport.stream(spliterator, false).onClose(() -> {
             RuntimeException firstException = null;
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.db.iterators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
+import com.serotonin.m2m2.rt.dataImage.SeriesIdTime;
+
+/**
+ * Merges a collection of time ordered iterators into a single iterator ordered by time, then by series ID. Produces
+ * the same order as {@link MergingIterator} using the comparator
+ * {@code sortOrder.getComparator().thenComparingInt(IdPointValueTime::getSeriesId)}.
+ *
+ * <p>Uses a loser tree, each value requires a single pass from a leaf to the root of the tree i.e. log2(k) comparisons
+ * for k inputs. The time and series ID of each input's head are cached in primitive arrays so comparisons do not
+ * call back into the values.</p>
+ *
+ * @param <T> value type
+ */
+public class TournamentMergingIterator<T extends SeriesIdTime> implements Iterator<T> {
+
+    private final Collection<? extends Iterator<? extends T>> inputs;
+    private final boolean descending;
+
+    private boolean initialized = false;
+    private int size;
+    private Iterator<? extends T>[] iterators;
+    private T[] heads;
+    private long[] times;
+    private int[] seriesIds;
+    private boolean[] exhausted;
+    /**
+     * Index 0 holds the overall winner, indexes 1 to size-1 hold the loser of the match played at that node.
+     * Leaves are not stored, the leaf for input i is node size+i.
+     */
+    private int[] tree;
+
+    /**
+     * @param inputs iterators to be merged, each must be ordered by time in the specified order
+     * @param sortOrder time order of the inputs and the merged output
+     */
+    public TournamentMergingIterator(Collection<? extends Iterator<? extends T>> inputs, TimeOrder sortOrder) {
+        this.inputs = inputs;
+        this.descending = sortOrder == TimeOrder.DESCENDING;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!initialized) {
+            initialize();
+        }
+        return size > 0 && !exhausted[tree[0]];
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int winner = tree[0];
+        T result = heads[winner];
+        advance(winner);
+        replay(winner);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void initialize() {
+        // only add iterators with data
+        List<Iterator<? extends T>> nonEmpty = new ArrayList<>(inputs.size());
+        for (var it : inputs) {
+            if (it.hasNext()) {
+                nonEmpty.add(it);
+            }
+        }
+
+        this.size = nonEmpty.size();
+        this.iterators = nonEmpty.toArray(new Iterator[0]);
+        this.heads = (T[]) new SeriesIdTime[size];
+        this.times = new long[size];
+        this.seriesIds = new int[size];
+        this.exhausted = new boolean[size];
+        this.tree = new int[Math.max(size, 1)];
+        for (int i = 0; i < size; i++) {
+            advance(i);
+        }
+        if (size > 0) {
+            tree[0] = build(1);
+        }
+        this.initialized = true;
+    }
+
+    /**
+     * Plays the matches of the subtree rooted at node, storing the losers
+     * @return winner of the subtree
+     */
+    private int build(int node) {
+        if (node >= size) {
+            return node - size;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (beats(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    /**
+     * Replays the matches on the path from a leaf to the root after the leaf's head has changed
+     */
+    private void replay(int leaf) {
+        int winner = leaf;
+        for (int node = (leaf + size) >>> 1; node > 0; node >>>= 1) {
+            int loser = tree[node];
+            if (beats(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    private void advance(int i) {
+        Iterator<? extends T> it = iterators[i];
+        if (it.hasNext()) {
+            T value = it.next();
+            heads[i] = value;
+            times[i] = value.getTime();
+            seriesIds[i] = value.getSeriesId();
+        } else {
+            heads[i] = null;
+            exhausted[i] = true;
+        }
+    }
+
+    /**
+     * @return true if the head of input a is ordered before the head of input b, exhausted inputs are ordered last
+     */
+    private boolean beats(int a, int b) {
+        if (exhausted[a]) return false;
+        if (exhausted[b]) return true;
+        long timeA = times[a];
+        long timeB = times[b];
+        if (timeA != timeB) {
+            return descending ? timeA > timeB : timeA < timeB;
+        }
+        int seriesA = seriesIds[a];
+        int seriesB = seriesIds[b];
+        if (seriesA != seriesB) {
+            return seriesA < seriesB;
+        }
+        return a < b;
+    }
+
+    public static <S extends SeriesIdTime> Stream<S> mergeStreams(Collection<? extends Stream<? extends S>> streams, TimeOrder sortOrder) {
+        var iterators = streams.stream().map(BaseStream::iterator).collect(Collectors.toList());
+        return MergingIterator.toStream(new TournamentMergingIterator<>(iterators, sortOrder), streams);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.emport;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.infiniteautomation.mango.spring.components.RunAs;
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.serotonin.ShouldNeverHappenException;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataPoint.DataPointWithEventDetectors;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.util.ILifecycleState;
+
+/**
+ * Imports a batch of data points. The points are read and validated in parallel, new points are then inserted in a
+ * single transaction without being started. The ids of their data sources are added to the deferred set so that
+ * {@link ImportTask} can restart each data source once, after the import. Existing points are updated one at a time
+ * as they would be by {@link DataPointImporter}.
+ *
+ * <p>Points which fail remain in the batch and are retried, along with the other importers, until no more progress
+ * is made.</p>
+ */
+public class BulkDataPointImporter extends Importer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkDataPointImporter.class);
+
+    private final List<DataPointImporter> points;
+    private final DataPointService dataPointService;
+    private final ExecutorService executor;
+    private final RunAs runAs;
+    private final Set<Integer> deferredDataSourceIds;
+    private final Set<Integer> deferredDataPointIds;
+    private boolean partialSuccess;
+    private boolean xidsGenerated;
+
+    public BulkDataPointImporter(List<DataPointImporter> points,
+            DataPointService dataPointService,
+            ExecutorService executor,
+            RunAs runAs,
+            Set<Integer> deferredDataSourceIds,
+            Set<Integer> deferredDataPointIds) {
+        super(null);
+        this.points = new ArrayList<>(points);
+        this.dataPointService = dataPointService;
+        this.executor = executor;
+        this.runAs = runAs;
+        this.deferredDataSourceIds = deferredDataSourceIds;
+        this.deferredDataPointIds = deferredDataPointIds;
+    }
+
+    @Override
+    public void setImportContext(ImportContext ctx) {
+        super.setImportContext(ctx);
+        for (DataPointImporter point : points) {
+            point.setImportContext(ctx);
+        }
+    }
+
+    @Override
+    protected void importImpl() {
+        int size = points.size();
+        readInParallel();
+
+        List<DataPointImporter> inserts = new ArrayList<>();
+        for (DataPointImporter point : points) {
+            DataPointWithEventDetectors dp = point.getPrepared();
+            if (dp == null) {
+                continue;
+            }
+            if (dp.getDataPoint().isNew()) {
+                inserts.add(point);
+            } else {
+                point.save(dp);
+            }
+        }
+        insert(inserts);
+
+        points.removeIf(Importer::success);
+        this.partialSuccess = points.size() < size;
+    }
+
+    /**
+     * Split the points into one slice per processor and read them concurrently, as the user running the import
+     */
+    private void readInParallel() {
+        // generating XIDs concurrently could hand the same XID to two points, assign them before the parallel phase.
+        // Points which are retried keep the XID assigned on the first pass.
+        if (!xidsGenerated) {
+            Set<String> generated = new HashSet<>();
+            for (DataPointImporter point : points) {
+                if (point.isXidBlank()) {
+                    String xid;
+                    do {
+                        xid = dataPointService.generateUniqueXid();
+                    } while (!generated.add(xid));
+                    point.setGeneratedXid(xid);
+                }
+            }
+            xidsGenerated = true;
+        }
+
+        PermissionHolder user = Common.getUser();
+        int slices = Math.max(1, Math.min(points.size(), Runtime.getRuntime().availableProcessors()));
+        int sliceSize = (points.size() + slices - 1) / slices;
+
+        List<Future<?>> futures = new ArrayList<>(slices);
+        for (int start = 0; start < points.size(); start += sliceSize) {
+            List<DataPointImporter> slice = points.subList(start, Math.min(points.size(), start + sliceSize));
+            futures.add(executor.submit(() -> runAs.runAs(user, () -> {
+                for (DataPointImporter point : slice) {
+                    try {
+                        point.doImport();
+                    } catch (Exception e) {
+                        LOG.error("Failed to read data point {}", point.getXid(), e);
+                        point.addFailureMessage("emport.dataPoint.prefix", point.getXid(), String.valueOf(e.getMessage()));
+                    }
+                }
+            })));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ShouldNeverHappenException(e);
+            } catch (ExecutionException e) {
+                throw new ShouldNeverHappenException(e.getCause());
+            }
+        }
+    }
+
+    private void insert(List<DataPointImporter> inserts) {
+        if (inserts.isEmpty()) {
+            return;
+        }
+        if (Common.runtimeManager.getLifecycleState() != ILifecycleState.RUNNING) {
+            // adds the failure messages
+            inserts.forEach(point -> point.save(point.getPrepared()));
+            return;
+        }
+
+        List<DataPointVO> vos = inserts.stream()
+                .map(point -> point.getPrepared().getDataPoint())
+                .collect(Collectors.toList());
+        try {
+            dataPointService.insert(vos, false);
+        } catch (Exception e) {
+            // insert one at a time so that the failure is reported against the point which caused it
+            LOG.warn("Failed to insert {} data points in a batch, inserting individually", vos.size(), e);
+            inserts.forEach(point -> point.save(point.getPrepared()));
+            return;
+        }
+
+        for (DataPointImporter point : inserts) {
+            DataPointVO vo = point.getPrepared().getDataPoint();
+            if (vo.isEnabled()) {
+                deferredDataSourceIds.add(vo.getDataSourceId());
+                deferredDataPointIds.add(vo.getId());
+            }
+            point.saved(point.getPrepared(), true);
+        }
+    }
+
+    @Override
+    public boolean success() {
+        return points.isEmpty();
+    }
+
+    @Override
+    public boolean partialSuccess() {
+        return partialSuccess;
+    }
+
+    @Override
+    public void copyMessages() {
+        for (DataPointImporter point : points) {
+            point.copyMessages();
+        }
+    }
+}
@@ -40,25 +40,67 @@ public class DataPointImporter extends Importer {
     private Map<String, DataPointWithEventDetectors> dataPointMap;
     private final DataPointService dataPointService;
     private final DataSourceService dataSourceService;
+    private final boolean bulk;
+    private String xid;
+    private String generatedXid;
+    private DataPointWithEventDetectors prepared;
 
     public DataPointImporter(JsonObject json,
             Map<String, DataPointWithEventDetectors> dataPointMap,
             DataPointService dataPointService,
             DataSourceService dataSourceService) {
+        this(json, dataPointMap, dataPointService, dataSourceService, false);
+    }
+
+    /**
+     * @param bulk only read and validate the point, it is saved by the {@link BulkDataPointImporter}
+     */
+    DataPointImporter(JsonObject json,
+            Map<String, DataPointWithEventDetectors> dataPointMap,
+            DataPointService dataPointService,
+            DataSourceService dataSourceService,
+            boolean bulk) {
         super(json);
         this.dataPointMap = dataPointMap;
         this.dataPointService = dataPointService;
         this.dataSourceService = dataSourceService;
+        this.bulk = bulk;
     }
 
     @Override
     protected void importImpl() {
-        String xid = json.getString("xid");
+        this.prepared = null;
+        DataPointWithEventDetectors dp = read();
+        if (dp == null) {
+            return;
+        }
+
+        if (bulk) {
+            if (dp.getDataPoint().isNew()) {
+                try {
+                    dataPointService.prepareInsert(dp.getDataPoint());
+                } catch (ValidationException e) {
+                    validationFailed(e, dp);
+                    return;
+                }
+            }
+            this.prepared = dp;
+        } else {
+            save(dp);
+        }
+    }
+
+    /**
+     * Read the point and its event detectors from the JSON, into the existing point if there is one.
+     * @return null if the point could not be read, the failure messages have been added
+     */
+    private DataPointWithEventDetectors read() {
+        xid = json.getString("xid");
         DataSourceVO dsvo = null;
         DataPointWithEventDetectors dp = null;
 
         if (StringUtils.isBlank(xid)) {
-            xid = dataPointService.generateUniqueXid();
+            xid = generatedXid != null ? generatedXid : dataPointService.generateUniqueXid();
         }else {
             try {
                 dp = dataPointService.getWithEventDetectors(xid);
@@ -73,7 +115,7 @@ public class DataPointImporter extends Importer {
                 dsvo = dataSourceService.get(dsxid);
             }catch(NotFoundException e) {
                 addFailureMessage("emport.dataPoint.badReference", xid);
-                return;
+                return null;
             }
             DataPointVO vo = new DataPointVO();
             vo.setXid(xid);
@@ -168,38 +210,7 @@ public class DataPointImporter extends Importer {
                         ctx.getReader().readInto(ped, pedObject);
                     }
                 }
-
-
-                boolean isNew = dp.getDataPoint().isNew();
-                try {
-                    if(Common.runtimeManager.getLifecycleState() == ILifecycleState.RUNNING) {
-                        if(isNew) {
-                            dataPointService.insert(dp.getDataPoint());
-                            //Update all our event detector source Ids
-                            for(AbstractPointEventDetectorVO ed : dp.getEventDetectors()) {
-                                ed.setSourceId(dp.getDataPoint().getId());
-                            }
-                        }else {
-                            dataPointService.update(dp.getDataPoint().getId(), dp.getDataPoint());
-                            //Update all our event detector source Ids
-                            for(AbstractPointEventDetectorVO ed : dp.getEventDetectors()) {
-                                ed.setSourceId(dp.getDataPoint().getId());
-                            }
-                        }
-
-                        dataPointMap.put(xid, dp);
-
-                        addSuccessMessage(isNew, "emport.dataPoint.prefix", xid);
-                    }else{
-                        addFailureMessage("emport.dataPoint.runtimeManagerNotRunning", xid);
-                    }
-                }catch(LicenseViolatedException e) {
-                    addFailureMessage("emport.DataPoint.notImported", e.getErrorMessage(), xid);
-                    addDetectorsFailureMessage(dp,xid);
-                }
-            }catch(ValidationException e) {
-                setValidationMessages(e.getValidationResult(), "emport.dataPoint.prefix", xid);
-                addDetectorsFailureMessage(dp,xid);
+                return dp;
             }catch (TranslatableJsonException e) {
                 addFailureMessage("emport.dataPoint.prefix", xid, e.getMsg());
                 addDetectorsFailureMessage(dp,xid);
@@ -208,6 +219,75 @@ public class DataPointImporter extends Importer {
                 addDetectorsFailureMessage(dp,xid);
             }
         }
+        return null;
+    }
+
+    /**
+     * Insert or update a point returned by {@link #read()}
+     */
+    void save(DataPointWithEventDetectors dp) {
+        boolean isNew = dp.getDataPoint().isNew();
+        try {
+            if(Common.runtimeManager.getLifecycleState() == ILifecycleState.RUNNING) {
+                if(isNew) {
+                    dataPointService.insert(dp.getDataPoint());
+                }else {
+                    dataPointService.update(dp.getDataPoint().getId(), dp.getDataPoint());
+                }
+                saved(dp, isNew);
+            }else{
+                addFailureMessage("emport.dataPoint.runtimeManagerNotRunning", xid);
+            }
+        }catch(LicenseViolatedException e) {
+            addFailureMessage("emport.DataPoint.notImported", e.getErrorMessage(), xid);
+            addDetectorsFailureMessage(dp,xid);
+        }catch(ValidationException e) {
+            validationFailed(e, dp);
+        }
+    }
+
+    /**
+     * Called once the point has been saved
+     */
+    void saved(DataPointWithEventDetectors dp, boolean isNew) {
+        //Update all our event detector source Ids
+        for(AbstractPointEventDetectorVO ed : dp.getEventDetectors()) {
+            ed.setSourceId(dp.getDataPoint().getId());
+        }
+
+        dataPointMap.put(xid, dp);
+
+        addSuccessMessage(isNew, "emport.dataPoint.prefix", xid);
+    }
+
+    /**
+     * @return the point which was read and validated during a bulk import, null if it failed
+     */
+    DataPointWithEventDetectors getPrepared() {
+        return prepared;
+    }
+
+    String getXid() {
+        return xid;
+    }
+
+    /**
+     * @return true if the JSON does not specify an XID, one is generated when the point is read
+     */
+    boolean isXidBlank() {
+        return StringUtils.isBlank(json.getString("xid"));
+    }
+
+    /**
+     * Set the XID to use when the JSON does not specify one, instead of generating it when the point is read
+     */
+    void setGeneratedXid(String generatedXid) {
+        this.generatedXid = generatedXid;
+    }
+
+    private void validationFailed(ValidationException e, DataPointWithEventDetectors dp) {
+        setValidationMessages(e.getValidationResult(), "emport.dataPoint.prefix", xid);
+        addDetectorsFailureMessage(dp,xid);
     }
 
     private void addDetectorsFailureMessage(DataPointWithEventDetectors dp, String xid){
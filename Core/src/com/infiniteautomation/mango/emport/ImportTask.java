@@ -5,15 +5,21 @@ package com.infiniteautomation.mango.emport;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.infiniteautomation.mango.spring.components.RunAs;
 import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.DataSourceService;
 import com.infiniteautomation.mango.spring.service.EventDetectorsService;
 import com.infiniteautomation.mango.util.ConfigurationExportData;
 import com.infiniteautomation.mango.util.exception.ValidationException;
@@ -28,6 +34,7 @@ import com.serotonin.m2m2.module.EmportDefinition;
 import com.serotonin.m2m2.module.ModuleRegistry;
 import com.serotonin.m2m2.util.timeout.ProgressiveTask;
 import com.serotonin.m2m2.vo.dataPoint.DataPointWithEventDetectors;
+import com.serotonin.m2m2.vo.dataSource.DataSourceVO;
 import com.serotonin.m2m2.vo.event.detector.AbstractPointEventDetectorVO;
 import com.serotonin.m2m2.vo.permission.PermissionHolder;
 import com.serotonin.util.ProgressiveTaskListener;
@@ -39,6 +46,11 @@ public class ImportTask extends ProgressiveTask {
 
     private static Logger LOG = LoggerFactory.getLogger(ImportTask.class);
 
+    /**
+     * Number of data points read and inserted together by a {@link BulkDataPointImporter}
+     */
+    protected static final int BULK_BATCH_SIZE = 1000;
+
     protected final ImportContext importContext;
     protected float progress = 0f;
     protected float progressChunk;
@@ -46,8 +58,14 @@ public class ImportTask extends ProgressiveTask {
     protected final List<Importer> importers = new ArrayList<Importer>();
     protected final List<ImportItem> importItems = new ArrayList<ImportItem>();
     protected final Map<String, DataPointWithEventDetectors> eventDetectorPoints = new HashMap<>();
+    /**
+     * Data sources of enabled points which were inserted by a bulk import but not started
+     */
+    protected final Set<Integer> deferredDataSourceIds = new HashSet<>();
+    protected final Set<Integer> deferredDataPointIds = new HashSet<>();
 
     protected final DataPointService dataPointService;
+    protected final DataSourceService dataSourceService;
     protected final EventDetectorsService eventDetectorService;
 
     /**
@@ -62,11 +80,24 @@ public class ImportTask extends ProgressiveTask {
     public ImportTask(JsonObject root,
             ImportTaskDependencies dependencies,
             ProgressiveTaskListener listener, boolean schedule) {
+        this(root, dependencies, listener, schedule, false);
+    }
+
+    /**
+     * Create an Import task with a listener to be scheduled now
+     *
+     * @param bulk read and validate data points in parallel and insert them in batches, the data sources of the new
+     *             points are restarted once the import is complete instead of starting each point
+     */
+    public ImportTask(JsonObject root,
+            ImportTaskDependencies dependencies,
+            ProgressiveTaskListener listener, boolean schedule, boolean bulk) {
         super("JSON import task", "JsonImport", 10, listener);
 
         //Get the current user to use during imports
         this.user = Common.getUser();
         this.dataPointService = dependencies.getDataPointService();
+        this.dataSourceService = dependencies.getDataSourceService();
         this.eventDetectorService = dependencies.getEventDetectorService();
         JsonReader reader = new JsonReader(Common.JSON_CONTEXT, root);
         this.importContext = new ImportContext(reader, new ProcessResult(), dependencies.getTranslations());
@@ -83,8 +114,12 @@ public class ImportTask extends ProgressiveTask {
         for (JsonValue jv : nonNullList(root, ConfigurationExportData.DATA_SOURCES))
             addImporter(new DataSourceImporter(jv.toJsonObject(), dependencies.getDataSourceService()));
 
-        for (JsonValue jv : nonNullList(root, ConfigurationExportData.DATA_POINTS))
-            addImporter(new DataPointImporter(jv.toJsonObject(), eventDetectorPoints, dataPointService, dependencies.getDataSourceService()));
+        if (bulk) {
+            addBulkDataPointImporters(nonNullList(root, ConfigurationExportData.DATA_POINTS));
+        } else {
+            for (JsonValue jv : nonNullList(root, ConfigurationExportData.DATA_POINTS))
+                addImporter(new DataPointImporter(jv.toJsonObject(), eventDetectorPoints, dataPointService, dependencies.getDataSourceService()));
+        }
 
         for (JsonValue jv : nonNullList(root, ConfigurationExportData.MAILING_LISTS))
             addImporter(new MailingListImporter(jv.toJsonObject(), dependencies.getMailingListService()));
@@ -157,6 +192,42 @@ public class ImportTask extends ProgressiveTask {
         return arr;
     }
 
+    /**
+     * Group the data points into batches. Points whose XID appears more than once are imported one at a time
+     * so that the later entries update the point inserted by the first.
+     */
+    private void addBulkDataPointImporters(List<JsonValue> dataPoints) {
+        Map<String, Integer> xidCounts = new HashMap<>();
+        for (JsonValue jv : dataPoints) {
+            String xid = jv.toJsonObject().getString("xid");
+            if (!StringUtils.isBlank(xid))
+                xidCounts.merge(xid, 1, Integer::sum);
+        }
+
+        ExecutorService executor = Common.getBean(ExecutorService.class);
+        RunAs runAs = Common.getBean(RunAs.class);
+        List<DataPointImporter> batch = new ArrayList<>();
+        List<DataPointImporter> duplicates = new ArrayList<>();
+        for (JsonValue jv : dataPoints) {
+            JsonObject json = jv.toJsonObject();
+            String xid = json.getString("xid");
+            if (xid != null && xidCounts.getOrDefault(xid, 0) > 1) {
+                duplicates.add(new DataPointImporter(json, eventDetectorPoints, dataPointService, dataSourceService));
+                continue;
+            }
+
+            batch.add(new DataPointImporter(json, eventDetectorPoints, dataPointService, dataSourceService, true));
+            if (batch.size() == BULK_BATCH_SIZE) {
+                addImporter(new BulkDataPointImporter(batch, dataPointService, executor, runAs, deferredDataSourceIds, deferredDataPointIds));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            addImporter(new BulkDataPointImporter(batch, dataPointService, executor, runAs, deferredDataSourceIds, deferredDataPointIds));
+        for (DataPointImporter importer : duplicates)
+            addImporter(importer);
+    }
+
     private void addImporter(Importer importer) {
         importer.setImportContext(importContext);
         importer.setImporters(importers);
@@ -208,6 +279,7 @@ public class ImportTask extends ProgressiveTask {
                         for (Importer importer : importers)
                             importer.copyMessages();
                         importers.clear();
+                        restartDeferredDataSources();
                         completed = true;
                         return;
                     }
@@ -225,6 +297,8 @@ public class ImportTask extends ProgressiveTask {
                     else{
                         // The import failed. Leave it in the list since the run of another importer
                         // may resolved the problem.
+                        if (importer.partialSuccess())
+                            importerSuccess = true;
                         importerIndex++;
                     }
                     //Import new detectors in case an event handler needs them
@@ -254,6 +328,7 @@ public class ImportTask extends ProgressiveTask {
 
                 //Ensure all detectors that can be, are imported
                 processUpdatedDetectors(eventDetectorPoints);
+                restartDeferredDataSources();
                 completed = true;
             }
             catch (Exception e) {
@@ -300,8 +375,9 @@ public class ImportTask extends ProgressiveTask {
                         importContext.addSuccessMessage(false, "emport.eventDetector.prefix", ed.getXid());
                     }
 
-                    //Reload into the RT
-                    dataPointService.reloadDataPoint(dp.getDataPoint().getXid());
+                    //Reload into the RT, points inserted by a bulk import are started with their data source
+                    if (!deferredDataPointIds.contains(dp.getDataPoint().getId()))
+                        dataPointService.reloadDataPoint(dp.getDataPoint().getXid());
                 }catch(ValidationException e) {
                     importContext.copyValidationMessages(e.getValidationResult(), "emport.eventDetector.prefix", ed.getXid());
                 }catch(Exception e) {
@@ -320,6 +396,36 @@ public class ImportTask extends ProgressiveTask {
 
     }
 
+    /**
+     * Points inserted by a bulk import are only started by restarting their data source, ensure this also happens when
+     * the import is cancelled or fails.
+     */
+    @Override
+    protected void finished() {
+        restartDeferredDataSources();
+    }
+
+    /**
+     * Restart each running data source which had enabled points inserted by a {@link BulkDataPointImporter},
+     * this starts the new points along with their event detectors.
+     */
+    private void restartDeferredDataSources() {
+        for (Integer id : deferredDataSourceIds) {
+            try {
+                if (Common.runtimeManager.isDataSourceRunning(id)) {
+                    DataSourceVO vo = dataSourceService.get(id);
+                    Common.runtimeManager.stopDataSource(id);
+                    Common.runtimeManager.startDataSource(vo);
+                }
+            } catch (Exception e) {
+                LOG.error("Failed to restart data source with id {}", id, e);
+                addException(e);
+            }
+        }
+        deferredDataSourceIds.clear();
+        deferredDataPointIds.clear();
+    }
+
     private void addException(Exception e) {
         String msg = e.getMessage();
         Throwable t = e;
@@ -71,6 +71,14 @@ abstract public class Importer {
         return success;
     }
 
+    /**
+     * @return true if some of the items were imported even though the import was not successful,
+     * the importer will be run again
+     */
+    public boolean partialSuccess() {
+        return false;
+    }
+
     public void copyMessages() {
         for (ProcessMessage m : failureMessages)
             ctx.getResult().addMessage(m);
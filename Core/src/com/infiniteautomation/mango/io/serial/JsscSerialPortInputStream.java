@@ -91,6 +91,30 @@ public class JsscSerialPortInputStream extends SerialPortInputStream implements
         }
     }
 
+    /**
+     * Read up to len of the bytes currently available in a single native call, returns -1 if no bytes are available
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            int count = Math.min(len, this.port.getInputBufferBytesCount());
+            if (count <= 0) {
+                return -1;
+            }
+            byte[] bytes = this.port.readBytes(count);
+            if (bytes == null || bytes.length == 0) {
+                return -1;
+            }
+            System.arraycopy(bytes, 0, b, off, bytes.length);
+            return bytes.length;
+        } catch (SerialPortException e) {
+            throw new IOException(e);
+        }
+    }
+
     @Override
     public int available() throws IOException {
         try {
@@ -3,11 +3,17 @@
  */
 package com.infiniteautomation.mango.io.serial;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,26 +23,33 @@ import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.rt.maint.MangoThreadFactory;
 
 /**
- * 
- * Container to manage the ThreadPoolExecutor that reads from serial ports and the event processor that executes the read events.
- * 
+ *
+ * Container to manage the ThreadPoolExecutor that reads from serial ports and the event processors that execute the read events.
+ *
+ * Events are executed by a small shared pool of threads (serial.port.eventThreads), events for the same listener are
+ * always executed one at a time and in the order they were added.
+ *
  * @author Terry Packer
  *
  */
 public class JsscSerialPortManager {
-    
+
     public static final JsscSerialPortManager instance = new JsscSerialPortManager();
-    
+
     private final Logger LOG = LoggerFactory.getLogger(JsscSerialPortManager.class);
     private final ScheduledThreadPoolExecutor readExecutor;
-    final BlockingQueue<SerialPortProxyEventTask> eventQueue;
-    private Thread eventProcessor;
-    private volatile boolean running = true;
+    private final int eventQueueSize;
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+    /**
+     * Pending tasks for each listener, a listener is only present while it has a task queued or running
+     */
+    private final ConcurrentMap<SerialPortProxyEventListener, Queue<SerialPortProxyEventTask>> listenerTasks = new ConcurrentHashMap<>();
+    private volatile ThreadPoolExecutor eventExecutor;
     private boolean initialized = false;
-    
+
     private JsscSerialPortManager() {
         this.readExecutor = new ScheduledThreadPoolExecutor(1, new MangoThreadFactory("Mango Serial Port Reader", Thread.MAX_PRIORITY, Common.getModuleClassLoader()));
-        this.eventQueue = new ArrayBlockingQueue<SerialPortProxyEventTask>(Common.envProps.getInt("serial.port.eventQueueSize", 10000));
+        this.eventQueueSize = Common.envProps.getInt("serial.port.eventQueueSize", 10000);
     }
 
 
@@ -49,47 +62,100 @@ public class JsscSerialPortManager {
 
     /**
      * Add a task to be processed
+     * @return false if the queue is full or the manager is not running
      */
     public boolean addEvent(SerialPortProxyEventTask task) {
-        return this.eventQueue.offer(task);
+        ThreadPoolExecutor executor = this.eventExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return false;
+        }
+        if (queuedEvents.incrementAndGet() > eventQueueSize) {
+            queuedEvents.decrementAndGet();
+            return false;
+        }
+
+        SerialPortProxyEventListener listener = task.getListener();
+        boolean[] idle = new boolean[1];
+        listenerTasks.compute(listener, (l, tasks) -> {
+            if (tasks == null) {
+                tasks = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            tasks.add(task);
+            return tasks;
+        });
+
+        if (idle[0]) {
+            try {
+                executor.execute(() -> runTasks(listener));
+            } catch (RejectedExecutionException e) {
+                // terminated, drop the tasks
+                Queue<SerialPortProxyEventTask> dropped = listenerTasks.remove(listener);
+                if (dropped != null) {
+                    queuedEvents.addAndGet(-dropped.size());
+                }
+                return false;
+            }
+        }
+        return true;
     }
-    
+
+    /**
+     * Run the tasks for a listener until there are none left, only one thread runs the tasks of a listener at a time
+     */
+    private void runTasks(SerialPortProxyEventListener listener) {
+        SerialPortProxyEventTask[] next = new SerialPortProxyEventTask[1];
+        while (true) {
+            // the queue is only removed once it is empty and its last task has completed
+            listenerTasks.computeIfPresent(listener, (l, tasks) -> {
+                next[0] = tasks.poll();
+                return next[0] == null ? null : tasks;
+            });
+            SerialPortProxyEventTask task = next[0];
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOG.error("Serial Port Event Task Failed", e);
+            } finally {
+                queuedEvents.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of events which are queued or running
+     */
+    int getQueuedEventCount() {
+        return queuedEvents.get();
+    }
+
     public void initialize() {
         if(initialized) {
             throw new ShouldNeverHappenException("Already initialized");
         }
-        this.eventProcessor = new Thread("Mango Serial Port Event Processor") { 
-            public void run() {
-                while(running) {
-                    try {
-                        //Block until I have work to do
-                        SerialPortProxyEventTask t = eventQueue.take();
-                        t.run();
-                    } catch (InterruptedException e) {
-                        //Don't care, this will very likely happen on terminate
-                    }catch(Exception e) {
-                        LOG.error("Serial Port Event Task Failed", e);
-                    }
-                }
-                LOG.info("Mango Serial Port Event Processor Terminated");
-            }
-        };
-        this.eventProcessor.setPriority(Thread.MAX_PRIORITY);
-        this.eventProcessor.start();
+        int threads = Math.max(1, Common.envProps.getInt("serial.port.eventThreads", 2));
+        this.eventExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new MangoThreadFactory("Mango Serial Port Event Processor", Thread.MAX_PRIORITY, Common.getModuleClassLoader()));
         this.initialized = true;
     }
 
     public void terminate() {
         this.readExecutor.shutdown();
-        if(this.eventProcessor != null) {
-            this.running = false;
-            this.eventProcessor.interrupt();
+        if(this.eventExecutor != null) {
+            this.eventExecutor.shutdownNow();
+            this.listenerTasks.clear();
+            this.queuedEvents.set(0);
         }
     }
 
     public void joinTermination() {
         try {
             this.readExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            if(this.eventExecutor != null && this.eventExecutor.awaitTermination(5, TimeUnit.SECONDS))
+                LOG.info("Mango Serial Port Event Processor Terminated");
             this.initialized = false;
         } catch (InterruptedException e) {
             //No-op
@@ -15,6 +15,7 @@ import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.infiniteautomation.mango.io.serial.virtual.SerialSocketBridgeSelector;
 import com.infiniteautomation.mango.io.serial.virtual.VirtualSerialPortConfig;
 import com.infiniteautomation.mango.io.serial.virtual.VirtualSerialPortConfig.SerialPortTypes;
 import com.infiniteautomation.mango.io.serial.virtual.VirtualSerialPortConfigDao;
@@ -364,6 +365,7 @@ public class SerialPortManagerImpl implements SerialPortManager {
 
             //Shutdown JSSC Manager
             JsscSerialPortManager.instance.terminate();
+            SerialSocketBridgeSelector.instance.terminate();
             initialized = false;
         } catch (Exception e) {
             throw e;
@@ -3,8 +3,8 @@
  */
 package com.infiniteautomation.mango.io.serial;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author Terry Packer
@@ -14,7 +14,7 @@ public abstract class SerialPortProxy {
 
     protected SerialPortIdentifier commPortId;
     
-    //Listeners for events (Currently only rx events)
+    //Listeners for events (Currently only rx events), notified from the reader threads
     protected List<SerialPortProxyEventListener> listeners;
 
     private final Object closeLock = new Object();
@@ -22,7 +22,7 @@ public abstract class SerialPortProxy {
 
     public SerialPortProxy(SerialPortIdentifier commPortId) {
         this.commPortId = commPortId;
-        this.listeners = new ArrayList<SerialPortProxyEventListener>();
+        this.listeners = new CopyOnWriteArrayList<SerialPortProxyEventListener>();
     }
 
     /**
@@ -48,4 +48,11 @@ public class SerialPortProxyEventTask {
 		return this.creationTime;
 	}
 
+	/**
+	 * Get the listener to notify
+	 */
+	public SerialPortProxyEventListener getListener(){
+		return this.listener;
+	}
+
 }
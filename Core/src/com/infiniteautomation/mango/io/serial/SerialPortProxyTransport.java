@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.io.serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.serotonin.messaging.DataConsumer;
+import com.serotonin.messaging.StreamTransport;
+import com.serotonin.messaging.Transport;
+
+/**
+ * Transport for a serial port which reads from the port when it is notified that data has been received, instead of
+ * polling the port's input stream from a dedicated thread like {@link StreamTransport}. The consumer is called from the
+ * shared serial port event threads (see {@link JsscSerialPortManager}), one event at a time.
+ *
+ * <p>No thread needs to be started, the transport listens to the port from when the consumer is set until it is
+ * removed.</p>
+ */
+public class SerialPortProxyTransport implements Transport, SerialPortProxyEventListener {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final SerialPortProxy port;
+    private final byte[] buffer;
+    private volatile DataConsumer consumer;
+
+    public SerialPortProxyTransport(SerialPortProxy port) {
+        this(port, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize maximum number of bytes passed to the consumer at once
+     */
+    public SerialPortProxyTransport(SerialPortProxy port, int bufferSize) {
+        this.port = port;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void setConsumer(DataConsumer consumer) throws IOException {
+        if (port.getInputStream() == null)
+            throw new IOException("Serial port " + port.getCommPortId() + " is not open");
+        this.consumer = consumer;
+        port.addEventListener(this);
+        // data may have been received before the listener was added
+        readAvailable();
+    }
+
+    @Override
+    public void removeConsumer() {
+        port.removeEventListener(this);
+        this.consumer = null;
+    }
+
+    @Override
+    public void serialEvent(SerialPortProxyEvent upstreamEvent) {
+        readAvailable();
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        write(data, data.length);
+    }
+
+    @Override
+    public void write(byte[] data, int len) throws IOException {
+        OutputStream out = port.getOutputStream();
+        out.write(data, 0, len);
+        out.flush();
+    }
+
+    /**
+     * Pass all bytes which are currently available to the consumer
+     */
+    private synchronized void readAvailable() {
+        DataConsumer consumer = this.consumer;
+        if (consumer == null)
+            return;
+
+        InputStream in = port.getInputStream();
+        try {
+            int available;
+            while ((available = in.available()) > 0) {
+                int read = in.read(buffer, 0, Math.min(available, buffer.length));
+                if (read <= 0)
+                    break;
+                consumer.data(buffer, read);
+            }
+        } catch (IOException e) {
+            consumer.handleIOException(e);
+        }
+    }
+}
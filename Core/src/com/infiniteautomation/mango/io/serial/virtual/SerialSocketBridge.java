@@ -6,35 +6,44 @@ package com.infiniteautomation.mango.io.serial.virtual;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.infiniteautomation.mango.io.serial.JsscSerialPortManager;
 import com.infiniteautomation.mango.io.serial.SerialPortException;
 import com.infiniteautomation.mango.io.serial.SerialPortIdentifier;
-import com.infiniteautomation.mango.io.serial.SerialPortInputStream;
-import com.infiniteautomation.mango.io.serial.SerialPortOutputStream;
 import com.infiniteautomation.mango.io.serial.SerialPortProxy;
+import com.infiniteautomation.mango.io.serial.SerialPortProxyEvent;
+import com.infiniteautomation.mango.io.serial.SerialPortProxyEventListener;
+import com.infiniteautomation.mango.io.serial.SerialPortProxyEventTask;
+import com.serotonin.m2m2.Common;
 
 /**
  * Class to connect a serial port to a Client Socket/Inet Address
- * 
+ *
+ * The socket is read by the shared {@link SerialSocketBridgeSelector}, listeners are notified when data is received.
+ *
  * @author tpacker
  *
  */
 public class SerialSocketBridge extends SerialPortProxy{
 
 	private final static Logger LOG = LoggerFactory.getLogger(SerialSocketBridge.class);
-	 
+
 	private String address;
 	private int port;
 	private int timeout = 1000; //in milliseconds
-	
-	private Socket socket;
-	
+	private final int bufferSize;
+
+	private SocketChannel channel;
+	private SerialSocketBridgeInputStream is;
+	private SerialSocketBridgeOutputStream os;
+
 	/**
-	 * 
+	 *
 	 * @param timeout (in ms)
 	 */
 	SerialSocketBridge(SerialPortIdentifier id, String address, int port, int timeout) {
@@ -42,13 +51,14 @@ public class SerialSocketBridge extends SerialPortProxy{
 		this.address = address;
 		this.port = port;
 		this.timeout = timeout;
+		this.bufferSize = Common.envProps.getInt("serial.socketBridge.bufferSize", 65536);
 	}
 
 	@Override
 	public byte[] readBytes(int i) throws SerialPortException {
 		byte[] read = new byte[i];
 		try {
-			this.socket.getInputStream().read(read);
+			this.is.read(read);
 		} catch (IOException e) {
 			throw new SerialPortException(e.getMessage());
 		}
@@ -57,64 +67,83 @@ public class SerialSocketBridge extends SerialPortProxy{
 
 	@Override
 	public void writeInt(int arg0) throws SerialPortException {
-		
+
 		try {
-			this.socket.getOutputStream().write(arg0);
+			this.os.write(arg0);
 		} catch (IOException e) {
 			throw new SerialPortException(e.getMessage());
 		}
-		
+
 	}
 
 	@Override
 	public void closeImpl() throws SerialPortException {
 		try {
-			this.socket.close();
+			this.is.close();
+			this.channel.close();
 		} catch (IOException e) {
 			LOG.error(e.getMessage(), e);
 			throw new SerialPortException(e.getMessage());
 		}
-		
+
 	}
 
 	@Override
 	public void openImpl() throws SerialPortException {
 		try {
-			this.socket = new Socket(this.address, this.port);
-			this.socket.setSoTimeout(timeout);
+			this.channel = SocketChannel.open();
+			this.channel.socket().connect(new InetSocketAddress(this.address, this.port), timeout);
+			this.channel.configureBlocking(false);
+			this.is = new SerialSocketBridgeInputStream(bufferSize, timeout);
+			this.os = new SerialSocketBridgeOutputStream(this.channel, timeout);
+			SerialSocketBridgeSelector.instance.register(this);
 		} catch (Exception e) {
 			LOG.error(e.getMessage(), e);
+			if (this.channel != null) {
+				try {
+					this.channel.close();
+				} catch (IOException e1) {
+					LOG.debug(e1.getMessage(), e1);
+				}
+			}
 			throw new SerialPortException(e);
 		}
 
-		
+
 	}
 
 	@Override
-	public SerialPortInputStream getInputStream() {
-		try{
-			return new SerialSocketBridgeInputStream(this.socket.getInputStream());
-		}catch(IOException e){
-			LOG.error(e.getMessage(), e);
-			return null;
-		}
+	public SerialSocketBridgeInputStream getInputStream() {
+		return this.is;
 	}
 
 	@Override
-	public SerialPortOutputStream getOutputStream() {
-		try{
-			return new SerialSocketBridgeOutputStream(this.socket.getOutputStream());
-		}catch(IOException e){
-			LOG.error(e.getMessage(), e);
-			return null;
-		}
+	public SerialSocketBridgeOutputStream getOutputStream() {
+		return this.os;
 	}
 
 	public InputStream getSocketInputStream() throws IOException{
-		return this.socket.getInputStream();
+		return this.is;
 	}
-	
+
 	public OutputStream getSocketOutputStream() throws IOException{
-		return this.socket.getOutputStream();
+		return this.os;
+	}
+
+	SocketChannel getChannel() {
+		return this.channel;
+	}
+
+	/**
+	 * Notify the listeners that data was received, called from the selector thread
+	 */
+	void fireReceived(int bytesRead) {
+		if (listeners.isEmpty())
+			return;
+		SerialPortProxyEvent event = new SerialPortProxyEvent(Common.timer.currentTimeMillis(), bytesRead);
+		for (SerialPortProxyEventListener listener : listeners) {
+			if (!JsscSerialPortManager.instance.addEvent(new SerialPortProxyEventTask(listener, event)))
+				LOG.error("Serial Port Problem, Listener task queue full, listener will not be notified of received data!  Increase serial.port.eventQueueSize to avoid this.");
+		}
 	}
 }
@@ -4,36 +4,142 @@
 package com.infiniteautomation.mango.io.serial.virtual;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 
 import com.infiniteautomation.mango.io.serial.SerialPortInputStream;
 
 /**
- * Class for the input stream of a serial port to a Client Socket/Inet Address
- * 
+ * Class for the input stream of a serial port to a Client Socket/Inet Address. Data is read from the socket by the
+ * {@link SerialSocketBridgeSelector} into a fixed size buffer, reads block until data is available or the timeout
+ * elapses.
+ *
  * @author Terry Packer
  *
  */
 public class SerialSocketBridgeInputStream extends SerialPortInputStream {
 
-	private InputStream stream;
-	
-	public SerialSocketBridgeInputStream(InputStream is) {
-		this.stream = is;
-	}
-	
-	@Override
-	public int read() throws IOException {
-		return this.stream.read();
-	}
-
-	@Override
-	public int available() throws IOException {
-		return this.stream.available();
-	}
-
-	@Override
-	public void closeImpl() throws IOException {
-		this.stream.close();
-	}
+    private final byte[] buffer;
+    private final int timeout;
+    private int head;
+    private int count;
+    private boolean endOfStream;
+    private Runnable resume;
+
+    /**
+     * @param bufferSize size of the receive buffer
+     * @param timeout time to block waiting for data (ms), 0 for no timeout
+     */
+    public SerialSocketBridgeInputStream(int bufferSize, int timeout) {
+        this.buffer = new byte[bufferSize];
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : 0xFF & b[0];
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        Runnable resume;
+        int read;
+        synchronized (this) {
+            awaitData();
+            if (count == 0) {
+                return -1;
+            }
+            read = Math.min(len, count);
+            int first = Math.min(read, buffer.length - head);
+            System.arraycopy(buffer, head, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, read - first);
+            head = (head + read) % buffer.length;
+            count -= read;
+            resume = this.resume;
+            this.resume = null;
+        }
+        if (resume != null) {
+            resume.run();
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return count;
+    }
+
+    @Override
+    public void closeImpl() throws IOException {
+        endOfStream();
+    }
+
+    /**
+     * Must hold the lock
+     */
+    private void awaitData() throws IOException {
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        while (count == 0 && !endOfStream) {
+            try {
+                if (timeout <= 0) {
+                    wait();
+                } else {
+                    long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading", e);
+            }
+        }
+    }
+
+    /**
+     * @return space left in the buffer
+     */
+    synchronized int free() {
+        return buffer.length - count;
+    }
+
+    /**
+     * Add received data to the buffer, the data must fit in the buffer
+     */
+    synchronized void buffer(ByteBuffer data) {
+        int tail = (head + count) % buffer.length;
+        int len = data.remaining();
+        int first = Math.min(len, buffer.length - tail);
+        data.get(buffer, tail, first);
+        data.get(buffer, 0, len - first);
+        count += len;
+        notifyAll();
+    }
+
+    /**
+     * Set a callback to run once data has been read from a full buffer, runs it now if the buffer is not full
+     */
+    void pause(Runnable resume) {
+        synchronized (this) {
+            if (count == buffer.length) {
+                this.resume = resume;
+                return;
+            }
+        }
+        resume.run();
+    }
+
+    /**
+     * The socket was closed, reads return -1 once the buffered data has been read
+     */
+    synchronized void endOfStream() {
+        endOfStream = true;
+        notifyAll();
+    }
 }
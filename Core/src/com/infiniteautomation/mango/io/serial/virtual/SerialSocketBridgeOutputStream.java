@@ -4,41 +4,58 @@
 package com.infiniteautomation.mango.io.serial.virtual;
 
 import java.io.IOException;
-import java.io.OutputStream;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import com.infiniteautomation.mango.io.serial.SerialPortOutputStream;
 
 /**
- * Class for the output stream of a the connection for a serial port to a Client Socket/Inet Address
- * 
+ * Class for the output stream of a the connection for a serial port to a Client Socket/Inet Address. The channel is
+ * non-blocking as it is read by the {@link SerialSocketBridgeSelector}, writes wait for space in the socket's send
+ * buffer up to the timeout.
+ *
  * @author Terry Packer
  *
  */
 public class SerialSocketBridgeOutputStream extends SerialPortOutputStream {
 
-	private final static Logger LOG = LoggerFactory.getLogger(SerialSocketBridgeOutputStream.class);
-	
-	private OutputStream stream;
-	
-	public SerialSocketBridgeOutputStream(OutputStream os){
-		this.stream = os;
+	private static final long WRITE_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final SocketChannel channel;
+	private final int timeout;
+
+	/**
+	 * @param timeout time to wait for the data to be written (ms), 0 for no timeout
+	 */
+	public SerialSocketBridgeOutputStream(SocketChannel channel, int timeout){
+		this.channel = channel;
+		this.timeout = timeout;
 	}
-	
+
 	@Override
 	public void write(int arg0) throws IOException {
-		this.stream.write(arg0);
+		write(new byte[] {(byte) arg0}, 0, 1);
 	}
 
 	@Override
-	public void flush() {
-		try {
-			this.stream.flush();
-		} catch (IOException e) {
-			LOG.error(e.getMessage(), e);
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(b, off, len);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		while (data.hasRemaining()) {
+			if (channel.write(data) == 0) {
+				if (timeout > 0 && System.nanoTime() - deadline > 0)
+					throw new SocketTimeoutException("Write timed out");
+				LockSupport.parkNanos(WRITE_RETRY_NANOS);
+			}
 		}
 	}
 
+	@Override
+	public void flush() {
+		// writes are not buffered
+	}
+
 }
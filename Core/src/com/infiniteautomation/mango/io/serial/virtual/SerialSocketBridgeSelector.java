@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.io.serial.virtual;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads from the socket channels of all {@link SerialSocketBridge}s in a single thread. Received data is buffered in
+ * the bridge's input stream and the bridge's listeners are notified, there is no need for a thread per socket or to
+ * poll the sockets for data.
+ *
+ * <p>Reading from a channel is paused while the bridge's input stream is full and resumed once it has been read.</p>
+ */
+public class SerialSocketBridgeSelector implements Runnable {
+
+    public static final SerialSocketBridgeSelector instance = new SerialSocketBridgeSelector();
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerialSocketBridgeSelector.class);
+
+    private final Queue<SerialSocketBridge> pending = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+    private Selector selector;
+
+    private SerialSocketBridgeSelector() {
+    }
+
+    /**
+     * Start reading from the bridge's channel, the selector thread is started if it is not running
+     */
+    synchronized void register(SerialSocketBridge bridge) throws IOException {
+        if (selector == null || !selector.isOpen()) {
+            selector = Selector.open();
+            Thread thread = new Thread(this, "Mango Serial Socket Bridge Selector");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+        pending.add(bridge);
+        selector.wakeup();
+    }
+
+    /**
+     * Resume reading from a channel once there is space in the bridge's input stream
+     */
+    void resume(SelectionKey key) {
+        try {
+            key.interestOps(SelectionKey.OP_READ);
+            key.selector().wakeup();
+        } catch (CancelledKeyException e) {
+            // bridge was closed
+        }
+    }
+
+    /**
+     * Stop the selector thread, the channels are closed by their bridges
+     */
+    public synchronized void terminate() {
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close serial socket bridge selector", e);
+            }
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void run() {
+        Selector selector;
+        synchronized (this) {
+            selector = this.selector;
+        }
+
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+
+                SerialSocketBridge bridge;
+                while ((bridge = pending.poll()) != null) {
+                    try {
+                        bridge.getChannel().register(selector, SelectionKey.OP_READ, bridge);
+                    } catch (ClosedChannelException e) {
+                        // closed before it was registered
+                    }
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    } catch (CancelledKeyException e) {
+                        // bridge was closed
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (selector.isOpen()) {
+                LOG.error("Serial socket bridge selector failed", e);
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void read(SelectionKey key) {
+        SerialSocketBridge bridge = (SerialSocketBridge) key.attachment();
+        SerialSocketBridgeInputStream stream = bridge.getInputStream();
+        SocketChannel channel = (SocketChannel) key.channel();
+
+        int total = 0;
+        int read = 0;
+        try {
+            int free;
+            while ((free = stream.free()) > 0) {
+                readBuffer.clear();
+                readBuffer.limit(Math.min(free, readBuffer.capacity()));
+                read = channel.read(readBuffer);
+                if (read <= 0) {
+                    break;
+                }
+                readBuffer.flip();
+                stream.buffer(readBuffer);
+                total += read;
+            }
+            if (read >= 0 && stream.free() == 0) {
+                // stop reading until the stream has been read
+                key.interestOps(0);
+                stream.pause(() -> resume(key));
+            }
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Exception reading from " + bridge.getCommPortId(), e);
+            read = -1;
+        }
+
+        if (total > 0) {
+            bridge.fireReceived(total);
+        }
+        if (read < 0) {
+            key.cancel();
+            stream.endOfStream();
+        }
+    }
+}
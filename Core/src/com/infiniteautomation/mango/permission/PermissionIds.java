@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.permission;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * IDs of the permissions assigned to a VO, used for in memory permission checks without loading the VO.
+ */
+public final class PermissionIds {
+
+    private final Integer readPermissionId;
+    private final Integer editPermissionId;
+    private final @Nullable Integer setPermissionId;
+
+    public PermissionIds(Integer readPermissionId, Integer editPermissionId, @Nullable Integer setPermissionId) {
+        this.readPermissionId = readPermissionId;
+        this.editPermissionId = editPermissionId;
+        this.setPermissionId = setPermissionId;
+    }
+
+    public Integer getReadPermissionId() {
+        return readPermissionId;
+    }
+
+    public Integer getEditPermissionId() {
+        return editPermissionId;
+    }
+
+    /**
+     * @return set permission ID, null if the VO does not have a set permission
+     */
+    public @Nullable Integer getSetPermissionId() {
+        return setPermissionId;
+    }
+}
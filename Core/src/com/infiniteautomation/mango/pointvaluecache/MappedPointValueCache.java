@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.pointvaluecache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
+import com.serotonin.m2m2.rt.dataImage.IAnnotated;
+import com.serotonin.m2m2.rt.dataImage.IdPointValueTime;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.BinaryValue;
+import com.serotonin.m2m2.rt.dataImage.types.DataValue;
+import com.serotonin.m2m2.rt.dataImage.types.MultistateValue;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Implementation of a {@link PointValueCache} which stores the latest values for each series in a memory-mapped file,
+ * keeping the values off the Java heap and allowing the caches to survive a restart.
+ *
+ * <p>The file contains a header followed by fixed size slots indexed by series ID. Each slot is of the form
+ * {@code [int seriesId][int count][int crc32][int complete][capacity * (byte dataType, double value, long time)]}, a
+ * series ID of 0 marks an empty slot. A slot is complete if it holds all the values of the series (i.e. the series had
+ * fewer values than the slot capacity when it was loaded), requests for more values than the slot holds are only read
+ * through to the {@link PointValueDao} if the slot is incomplete. The file is mapped in chunks as series IDs grow.</p>
+ *
+ * <p>Only values with a double representation and no annotation can be stored, the caches for points with other values
+ * are not stored and are read through to the {@link PointValueDao}. If Mango was not shut down cleanly the cached
+ * values may not match the database, the file is reset in this case.</p>
+ */
+public class MappedPointValueCache implements PointValueCache, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedPointValueCache.class);
+
+    static final int MAGIC = 0x4D505643;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 4096;
+    static final int SLOT_HEADER_SIZE = Integer.BYTES * 4;
+    static final int ENTRY_SIZE = Byte.BYTES + Double.BYTES + Long.BYTES;
+    static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int LOCK_STRIPES = 256;
+
+    private final Path file;
+    private final PointValueDao pointValueDao;
+    private final int slotCapacity;
+    private final int slotSize;
+    private final int slotsPerChunk;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    /**
+     * @param file file to store the caches in, existing caches are loaded if the file was closed cleanly
+     * @param pointValueDao used to load values which are not cached
+     * @param slotCapacity maximum number of values to store per series
+     */
+    public MappedPointValueCache(Path file, PointValueDao pointValueDao, int slotCapacity) {
+        if (slotCapacity <= 0) {
+            throw new IllegalArgumentException("Slot capacity must be greater than zero");
+        }
+        this.file = file;
+        this.pointValueDao = pointValueDao;
+        this.slotCapacity = slotCapacity;
+        this.slotSize = SLOT_HEADER_SIZE + slotCapacity * ENTRY_SIZE;
+        this.slotsPerChunk = Math.max(1, MAX_CHUNK_SIZE / slotSize);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean valid = channel.size() >= HEADER_SIZE;
+            MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (!valid || header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != slotCapacity) {
+                reset(header);
+            } else if (header.getInt(12) != 1) {
+                log.warn("Point value cache {} was not closed cleanly, cached values will be reloaded from the database", file);
+                reset(header);
+            }
+            // mark as in use, cleared on close
+            header.putInt(12, 0);
+            header.force();
+            this.header = header;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open point value cache " + file, e);
+        }
+    }
+
+    private void reset(MappedByteBuffer header) throws IOException {
+        channel.truncate(HEADER_SIZE);
+        for (int i = 0; i < HEADER_SIZE; i += Long.BYTES) {
+            header.putLong(i, 0L);
+        }
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, slotCapacity);
+    }
+
+    @Override
+    public List<PointValueTime> loadCache(DataPointVO vo, int size) {
+        Slot slot = read(vo.getSeriesId(), size);
+        if (slot != null) {
+            return slot.values;
+        }
+        List<PointValueTime> values = pointValueDao.getLatestPointValues(vo, size);
+        write(vo.getSeriesId(), values, values.size() < size);
+        return values;
+    }
+
+    /**
+     * The slot remains complete if it was complete and no values were removed from the list.
+     */
+    @Override
+    public void updateCache(DataPointVO vo, List<PointValueTime> values) {
+        int seriesId = vo.getSeriesId();
+        synchronized (lock(seriesId)) {
+            int previousCount = completeCount(seriesId);
+            boolean complete = previousCount >= 0 && values.size() >= previousCount;
+            write(seriesId, values, complete);
+        }
+    }
+
+    @Override
+    public void removeAllValues(DataPointVO vo) {
+        write(vo.getSeriesId(), Collections.emptyList(), true);
+    }
+
+    @Override
+    public Map<Integer, List<PointValueTime>> loadCaches(List<DataPointVO> vos, int size) {
+        Map<Integer, List<PointValueTime>> result = new HashMap<>(vos.size());
+        List<DataPointVO> missingPoints = new ArrayList<>();
+
+        for (DataPointVO vo : vos) {
+            Slot slot = read(vo.getSeriesId(), size);
+            if (slot == null) {
+                // find which points are missing from the cache, or don't have enough values cached
+                missingPoints.add(vo);
+                result.put(vo.getSeriesId(), Collections.emptyList());
+            } else {
+                result.put(vo.getSeriesId(), slot.values);
+            }
+        }
+
+        // need to load point values from time series database and store in cache
+        if (!missingPoints.isEmpty()) {
+            Map<Integer, List<PointValueTime>> loaded = new HashMap<>(missingPoints.size());
+            pointValueDao.getPointValuesPerPoint(missingPoints, null, null, size, TimeOrder.DESCENDING,
+                    (Consumer<? super IdPointValueTime>) (pvt) -> loaded.computeIfAbsent(pvt.getSeriesId(), (k) -> new ArrayList<>(size)).add(pvt));
+            for (DataPointVO vo : missingPoints) {
+                // store points without values too, so they are not queried again on the next restart
+                List<PointValueTime> values = loaded.getOrDefault(vo.getSeriesId(), Collections.emptyList());
+                write(vo.getSeriesId(), values, values.size() < size);
+            }
+            result.putAll(loaded);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Optional<List<PointValueTime>> getCache(DataPointVO vo) {
+        Slot slot = readSlot(vo.getSeriesId());
+        return slot == null ? Optional.empty() : Optional.of(slot.values);
+    }
+
+    @Override
+    public void deleteCache(DataPointVO vo) {
+        int seriesId = vo.getSeriesId();
+        synchronized (lock(seriesId)) {
+            MappedByteBuffer chunk = chunk(seriesId, false);
+            if (chunk != null) {
+                chunk.putInt(slotOffset(seriesId), 0);
+            }
+        }
+    }
+
+    @Override
+    public void removeValueAt(DataPointVO vo, long timestamp) {
+        removeValues(vo, value -> value.getTime() == timestamp);
+    }
+
+    @Override
+    public void removeValuesBefore(DataPointVO vo, long before) {
+        removeValues(vo, value -> value.getTime() < before);
+    }
+
+    @Override
+    public void removeValuesBetween(DataPointVO vo, long startTime, long endTime) {
+        removeValues(vo, value -> value.getTime() >= startTime && value.getTime() < endTime);
+    }
+
+    private void removeValues(DataPointVO vo, Predicate<PointValueTime> predicate) {
+        int seriesId = vo.getSeriesId();
+        synchronized (lock(seriesId)) {
+            Slot slot = readSlot(seriesId);
+            if (slot != null && !slot.values.isEmpty()) {
+                List<PointValueTime> newList = new ArrayList<>(slot.values);
+                if (newList.removeIf(predicate)) {
+                    // older values may exist which were not cached
+                    write(seriesId, newList, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the series' slot if it can satisfy a request for the given number of values, otherwise null
+     */
+    private @Nullable Slot read(int seriesId, int size) {
+        if (size > slotCapacity) {
+            return null;
+        }
+        Slot slot = readSlot(seriesId);
+        return slot != null && (slot.complete || slot.values.size() >= size) ? slot : null;
+    }
+
+    /**
+     * @return the series' slot, or null if the slot is empty or invalid
+     */
+    private @Nullable Slot readSlot(int seriesId) {
+        synchronized (lock(seriesId)) {
+            MappedByteBuffer chunk = chunk(seriesId, false);
+            if (chunk == null) {
+                return null;
+            }
+
+            int offset = slotOffset(seriesId);
+            int count = chunk.getInt(offset + Integer.BYTES);
+            if (chunk.getInt(offset) != seriesId || count < 0 || count > slotCapacity) {
+                return null;
+            }
+
+            int start = offset + SLOT_HEADER_SIZE;
+            if (chunk.getInt(offset + Integer.BYTES * 2) != checksum(chunk, start, start + count * ENTRY_SIZE)) {
+                log.warn("Corrupt point value cache slot for series {}, values will be reloaded from the database", seriesId);
+                chunk.putInt(offset, 0);
+                return null;
+            }
+
+            PointValueTime[] values = new PointValueTime[count];
+            for (int i = 0, position = start; i < count; i++, position += ENTRY_SIZE) {
+                DataType dataType = DataType.fromId(chunk.get(position));
+                double value = chunk.getDouble(position + Byte.BYTES);
+                long time = chunk.getLong(position + Byte.BYTES + Double.BYTES);
+                values[i] = new PointValueTime(toDataValue(dataType, value), time);
+            }
+            boolean complete = chunk.getInt(offset + Integer.BYTES * 3) == 1;
+            return new Slot(Collections.unmodifiableList(Arrays.asList(values)), complete);
+        }
+    }
+
+    /**
+     * Reads only the slot header, the values are not read or verified.
+     *
+     * @return number of values in the series' slot if it is complete, otherwise -1
+     */
+    private int completeCount(int seriesId) {
+        synchronized (lock(seriesId)) {
+            MappedByteBuffer chunk = chunk(seriesId, false);
+            if (chunk == null) {
+                return -1;
+            }
+
+            int offset = slotOffset(seriesId);
+            int count = chunk.getInt(offset + Integer.BYTES);
+            boolean complete = chunk.getInt(offset + Integer.BYTES * 3) == 1;
+            if (chunk.getInt(offset) != seriesId || count < 0 || count > slotCapacity || !complete) {
+                return -1;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Store up to the slot capacity values in the series' slot. If any of the values can't be stored the slot is
+     * emptied instead.
+     *
+     * @param complete true if the list contains all values of the series
+     */
+    private void write(int seriesId, List<PointValueTime> values, boolean complete) {
+        int count = Math.min(values.size(), slotCapacity);
+        boolean storable = true;
+        for (int i = 0; i < count; i++) {
+            PointValueTime pvt = values.get(i);
+            if (pvt instanceof IAnnotated || !pvt.getValue().hasDoubleRepresentation()) {
+                storable = false;
+                break;
+            }
+        }
+
+        synchronized (lock(seriesId)) {
+            MappedByteBuffer chunk = chunk(seriesId, storable);
+            if (chunk == null) {
+                return;
+            }
+
+            int offset = slotOffset(seriesId);
+            // mark the slot as empty while writing
+            chunk.putInt(offset, 0);
+            if (!storable) {
+                return;
+            }
+
+            int start = offset + SLOT_HEADER_SIZE;
+            for (int i = 0, position = start; i < count; i++, position += ENTRY_SIZE) {
+                PointValueTime pvt = values.get(i);
+                DataValue value = pvt.getValue();
+                chunk.put(position, (byte) value.getDataType().getId());
+                chunk.putDouble(position + Byte.BYTES, value.getDoubleValue());
+                chunk.putLong(position + Byte.BYTES + Double.BYTES, pvt.getTime());
+            }
+            chunk.putInt(offset + Integer.BYTES, count);
+            chunk.putInt(offset + Integer.BYTES * 2, checksum(chunk, start, start + count * ENTRY_SIZE));
+            chunk.putInt(offset + Integer.BYTES * 3, complete ? 1 : 0);
+            chunk.putInt(offset, seriesId);
+        }
+    }
+
+    private static DataValue toDataValue(DataType dataType, double value) {
+        switch (dataType) {
+            case BINARY:
+                return new BinaryValue(value == 1);
+            case MULTISTATE:
+                return new MultistateValue((int) Math.round(value));
+            case NUMERIC:
+                return new NumericValue(value);
+            default:
+                throw new IllegalStateException("Unsupported data type: " + dataType);
+        }
+    }
+
+    private Object lock(int seriesId) {
+        return locks[seriesId & (LOCK_STRIPES - 1)];
+    }
+
+    private int slotOffset(int seriesId) {
+        return (seriesId % slotsPerChunk) * slotSize;
+    }
+
+    /**
+     * @param create map the chunk if it is not already mapped
+     * @return the chunk containing the series' slot, or null if it is not mapped and create is false
+     */
+    private @Nullable MappedByteBuffer chunk(int seriesId, boolean create) {
+        int index = seriesId / slotsPerChunk;
+        MappedByteBuffer[] chunks = this.chunks;
+        if (index < chunks.length && chunks[index] != null) {
+            return chunks[index];
+        }
+
+        synchronized (this) {
+            chunks = this.chunks;
+            if (index < chunks.length && chunks[index] != null) {
+                return chunks[index];
+            }
+            long chunkSize = (long) slotsPerChunk * slotSize;
+            long position = HEADER_SIZE + index * chunkSize;
+            try {
+                // map existing chunks without creating new ones so that reads don't grow the file
+                if (!create && channel.size() < position + chunkSize) {
+                    return null;
+                }
+                MappedByteBuffer chunk = channel.map(MapMode.READ_WRITE, position, chunkSize);
+                MappedByteBuffer[] newChunks = Arrays.copyOf(chunks, Math.max(chunks.length, index + 1));
+                newChunks[index] = chunk;
+                this.chunks = newChunks;
+                return chunk;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to map point value cache " + file, e);
+            }
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(end));
+        return (int) crc.getValue();
+    }
+
+    private static class Slot {
+        private final List<PointValueTime> values;
+        private final boolean complete;
+
+        private Slot(List<PointValueTime> values, boolean complete) {
+            this.values = values;
+            this.complete = complete;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            for (MappedByteBuffer chunk : chunks) {
+                if (chunk != null) {
+                    chunk.force();
+                }
+            }
+            // mark as cleanly closed
+            header.putInt(12, 1);
+            header.force();
+            channel.close();
+        } catch (IOException e) {
+            log.error("Unable to close point value cache {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.pointvaluecache;
+
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.module.ConditionalDefinition;
+
+/**
+ * Stores point value caches in a memory-mapped file, see {@link MappedPointValueCache}.
+ */
+@ConditionalDefinition("cache.pointValues.mapped.enabled")
+public class MappedPointValueCacheDefinition extends PointValueCacheDefinition {
+
+    @Autowired
+    private PointValueDao pointValueDao;
+    @Autowired
+    private Environment env;
+    private MappedPointValueCache pointValueCache;
+
+    @Override
+    public void initialize() {
+        Path file = Common.MA_DATA_PATH.resolve(env.getProperty("cache.pointValues.mapped.location", "databases/pointValueCache.dat")).normalize();
+        int slotCapacity = env.getProperty("cache.pointValues.mapped.slotCapacity", int.class, 10);
+        this.pointValueCache = new MappedPointValueCache(file, pointValueDao, slotCapacity);
+    }
+
+    @Override
+    public void shutdown() {
+        if (pointValueCache != null) {
+            pointValueCache.close();
+        }
+    }
+
+    @Override
+    public PointValueCache getPointValueCache() {
+        return pointValueCache;
+    }
+
+    @Override
+    public int getOrder() {
+        return env.getProperty("cache.pointValues.mapped.order", int.class, 0);
+    }
+}
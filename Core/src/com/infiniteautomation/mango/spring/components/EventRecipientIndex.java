@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.spring.components;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.service.CachingService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.infiniteautomation.mango.spring.service.UsersService;
+import com.infiniteautomation.mango.util.exception.NotFoundException;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.module.definitions.permissions.EventsSuperadminViewPermissionDefinition;
+import com.serotonin.m2m2.rt.event.EventInstance;
+import com.serotonin.m2m2.rt.event.type.AuditEventType;
+import com.serotonin.m2m2.rt.event.type.DataPointEventType;
+import com.serotonin.m2m2.rt.event.type.EventType;
+import com.serotonin.m2m2.rt.event.type.MissingEventType;
+import com.serotonin.m2m2.rt.event.type.PublisherEventType;
+import com.serotonin.m2m2.rt.event.type.SystemEventType;
+import com.serotonin.m2m2.vo.User;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.m2m2.vo.role.Role;
+import com.serotonin.m2m2.vo.role.RoleVO;
+
+/**
+ * Index of enabled users by the roles they hold (including inherited roles), used to find the users that should be
+ * notified of an event without checking every enabled user. The users that satisfy a permission are found by
+ * intersecting the users holding each role of a minterm, the result is cached per permission.
+ *
+ * <p>The index is only used for the core event types whose {@link EventType#hasPermission(PermissionHolder,
+ * PermissionService)} is satisfied only by the event's read permission or the events superadmin view permission. For
+ * other event types (e.g. data source events, which check the current data source permission, and module event types)
+ * every enabled user is checked.</p>
+ *
+ * <p>The index is rebuilt lazily after any user or role is modified.</p>
+ */
+@Component
+public class EventRecipientIndex implements CachingService {
+
+    private static final int RESOLVED_PERMISSIONS_CACHE_SIZE = 1000;
+    private static final Set<Class<? extends EventType>> INDEXED_TYPES = Set.of(DataPointEventType.class,
+            SystemEventType.class, PublisherEventType.class, AuditEventType.class, MissingEventType.class);
+
+    private final UsersService usersService;
+    private final PermissionService permissionService;
+    private final EventsSuperadminViewPermissionDefinition eventsSuperadminViewPermission;
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public EventRecipientIndex(UsersService usersService,
+                               PermissionService permissionService,
+                               @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection") EventsSuperadminViewPermissionDefinition eventsSuperadminViewPermission) {
+        this.usersService = usersService;
+        this.permissionService = permissionService;
+        this.eventsSuperadminViewPermission = eventsSuperadminViewPermission;
+    }
+
+    @EventListener
+    protected void userChanged(DaoEvent<? extends User> event) {
+        invalidate();
+    }
+
+    @EventListener
+    protected void roleChanged(DaoEvent<? extends RoleVO> event) {
+        invalidate();
+    }
+
+    @Override
+    public void clearCaches(boolean force) {
+        permissionService.ensureAdminRole(Common.getUser());
+        invalidate();
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * Find the enabled users that should be notified of an event, i.e. those that have permission to view the event
+     * and are not excluded by its event type. Users are found via the event's read permission and the events superadmin
+     * view permission, and are then checked using {@link EventType#hasPermission(PermissionHolder, PermissionService)}.
+     * If the event type's permission is not derived from the read permission all enabled users are checked.
+     *
+     * @param evt the event
+     * @return users to notify
+     */
+    public List<User> getRecipients(EventInstance evt) {
+        Snapshot snapshot = getSnapshot();
+        EventType type = evt.getEventType();
+        BitSet candidates;
+        if (INDEXED_TYPES.contains(type.getClass())) {
+            candidates = (BitSet) snapshot.resolve(eventsSuperadminViewPermission.getPermission()).clone();
+            candidates.or(snapshot.resolve(eventPermission(evt)));
+        } else {
+            candidates = new BitSet();
+            candidates.set(0, snapshot.users.size());
+        }
+
+        List<User> recipients = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            User user = snapshot.users.get(i);
+            if (!type.excludeUser(user) && type.hasPermission(user, permissionService)) {
+                recipients.add(user);
+            }
+        }
+        return recipients;
+    }
+
+    private MangoPermission eventPermission(EventInstance evt) {
+        MangoPermission permission = evt.getReadPermission();
+        if (permission == null) {
+            return MangoPermission.superadminOnly();
+        }
+        // events loaded from the database only have the permission ID populated
+        if (permission.getId() != null && permission.getRoles().isEmpty()) {
+            try {
+                return permissionService.get(permission.getId());
+            } catch (NotFoundException e) {
+                return permission;
+            }
+        }
+        return permission;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = this.snapshot;
+        int currentVersion = version.get();
+        if (current != null && current.version == currentVersion) {
+            return current;
+        }
+
+        Snapshot rebuilt = new Snapshot(currentVersion, usersService.getEnabledUsers());
+        // don't publish the snapshot if a user or role was modified while building it
+        if (version.get() == currentVersion) {
+            this.snapshot = rebuilt;
+        }
+        return rebuilt;
+    }
+
+    private final class Snapshot {
+        private final int version;
+        private final List<User> users;
+        private final BitSet superadmins = new BitSet();
+        private final Map<Role, BitSet> usersByRole = new HashMap<>();
+        private final Cache<MangoPermission, BitSet> resolved = Caffeine.newBuilder()
+                .maximumSize(RESOLVED_PERMISSIONS_CACHE_SIZE)
+                .build();
+
+        private Snapshot(int version, List<User> users) {
+            this.version = version;
+            this.users = users;
+            for (int i = 0; i < users.size(); i++) {
+                Set<Role> roles = permissionService.getAllInheritedRoles(users.get(i));
+                if (roles.contains(PermissionHolder.SUPERADMIN_ROLE)) {
+                    superadmins.set(i);
+                }
+                for (Role role : roles) {
+                    usersByRole.computeIfAbsent(role, r -> new BitSet()).set(i);
+                }
+            }
+        }
+
+        /**
+         * @return the users which have the permission, must not be modified
+         */
+        private BitSet resolve(MangoPermission permission) {
+            return resolved.get(permission, this::compute);
+        }
+
+        private BitSet compute(MangoPermission permission) {
+            BitSet result = (BitSet) superadmins.clone();
+            for (Set<Role> minterm : permission.getRoles()) {
+                BitSet holders = null;
+                for (Role role : minterm) {
+                    BitSet roleHolders = usersByRole.get(role);
+                    if (roleHolders == null) {
+                        holders = new BitSet();
+                        break;
+                    }
+                    if (holders == null) {
+                        holders = (BitSet) roleHolders.clone();
+                    } else {
+                        holders.and(roleHolders);
+                    }
+                }
+                if (holders == null) {
+                    // empty minterm is satisfied by every user
+                    result.set(0, users.size());
+                } else {
+                    result.or(holders);
+                }
+            }
+            return result;
+        }
+    }
+}
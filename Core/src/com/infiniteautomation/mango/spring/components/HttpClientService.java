@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.spring.components;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.infiniteautomation.mango.monitor.MonitoredValues;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.SystemSettingsDao;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.vo.systemSettings.SystemSettingsListener;
+
+/**
+ * Shared HTTP client for outgoing requests. All clients share a single pool of connections so that connections (and
+ * their TLS sessions) to the same host are re-used between requests. Clients are cached per timeout and retry count
+ * and are rebuilt when the proxy system settings change.
+ *
+ * <p>Clients returned by this service must not be closed, the response entity must be consumed or the response
+ * closed in order to return the connection to the pool.</p>
+ */
+@Service
+public class HttpClientService implements SystemSettingsListener {
+
+    public static final String LEASED_CONNECTIONS_MONITOR_ID = "internal.monitor.HTTP_CLIENT_LEASED_CONNECTIONS";
+    public static final String AVAILABLE_CONNECTIONS_MONITOR_ID = "internal.monitor.HTTP_CLIENT_AVAILABLE_CONNECTIONS";
+    public static final String PENDING_CONNECTIONS_MONITOR_ID = "internal.monitor.HTTP_CLIENT_PENDING_CONNECTIONS";
+    public static final String MAX_CONNECTIONS_MONITOR_ID = "internal.monitor.HTTP_CLIENT_MAX_CONNECTIONS";
+
+    public static final int DEFAULT_TIMEOUT = 30000;
+    /**
+     * Same as {@link DefaultHttpRequestRetryHandler#INSTANCE}
+     */
+    public static final int DEFAULT_RETRIES = 3;
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientService.class);
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduledExecutor;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ConcurrentMap<List<Integer>, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+    private final long keepAlive;
+    private final long idleTimeout;
+    private volatile ScheduledFuture<?> evictionTask;
+
+    /**
+     * @param maxTotal maximum number of connections
+     * @param maxPerRoute maximum number of connections to a single host
+     * @param keepAlive maximum time (ms) to keep a connection alive, used when the server does not specify a keep-alive
+     * @param idleTimeout time (ms) after which idle connections are closed
+     */
+    @Autowired
+    public HttpClientService(ExecutorService executor,
+                             ScheduledExecutorService scheduledExecutor,
+                             MonitoredValues monitoredValues,
+                             @Value("${http.client.pool.maxTotal:200}") int maxTotal,
+                             @Value("${http.client.pool.maxPerRoute:20}") int maxPerRoute,
+                             @Value("${http.client.pool.keepAlive:60000}") long keepAlive,
+                             @Value("${http.client.pool.idleTimeout:30000}") long idleTimeout) {
+        this.executor = executor;
+        this.scheduledExecutor = scheduledExecutor;
+        this.keepAlive = keepAlive;
+        this.idleTimeout = idleTimeout;
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        monitoredValues.<Integer>create(LEASED_CONNECTIONS_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.HTTP_CLIENT_LEASED_CONNECTIONS"))
+                .supplier(() -> connectionManager.getTotalStats().getLeased())
+                .buildReadThrough();
+        monitoredValues.<Integer>create(AVAILABLE_CONNECTIONS_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.HTTP_CLIENT_AVAILABLE_CONNECTIONS"))
+                .supplier(() -> connectionManager.getTotalStats().getAvailable())
+                .buildReadThrough();
+        monitoredValues.<Integer>create(PENDING_CONNECTIONS_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.HTTP_CLIENT_PENDING_CONNECTIONS"))
+                .supplier(() -> connectionManager.getTotalStats().getPending())
+                .buildReadThrough();
+        monitoredValues.<Integer>create(MAX_CONNECTIONS_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.HTTP_CLIENT_MAX_CONNECTIONS"))
+                .supplier(() -> connectionManager.getTotalStats().getMax())
+                .buildReadThrough();
+    }
+
+    @PostConstruct
+    private void postConstruct() {
+        if (idleTimeout > 0) {
+            long period = Math.max(1000, idleTimeout / 2);
+            this.evictionTask = scheduledExecutor.scheduleWithFixedDelay(this::evictConnections, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        ScheduledFuture<?> evictionTask = this.evictionTask;
+        if (evictionTask != null) {
+            evictionTask.cancel(false);
+        }
+        clients.clear();
+        connectionManager.shutdown();
+    }
+
+    /**
+     * @return shared client with the default timeout and retries
+     */
+    public CloseableHttpClient getHttpClient() {
+        return getHttpClient(DEFAULT_TIMEOUT, DEFAULT_RETRIES);
+    }
+
+    /**
+     * @param timeout connect and socket timeout (ms)
+     * @param retries number of times to retry a request which failed with an I/O error
+     * @return shared client, must not be closed
+     */
+    public CloseableHttpClient getHttpClient(int timeout, int retries) {
+        return clients.computeIfAbsent(Arrays.asList(timeout, retries), k -> createHttpClient(timeout, retries));
+    }
+
+    /**
+     * Execute a request without blocking the calling thread. The response is handled by the handler on a background
+     * thread, after which the connection is returned to the pool. Cancelling the returned future aborts the request.
+     *
+     * @return future which is completed with the result of the handler
+     */
+    public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> handler) {
+        return executeAsync(request, handler, DEFAULT_TIMEOUT, DEFAULT_RETRIES);
+    }
+
+    /**
+     * @see #executeAsync(HttpUriRequest, ResponseHandler)
+     */
+    public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> handler,
+                                                 int timeout, int retries) {
+        CloseableHttpClient client = getHttpClient(timeout, retries);
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.execute(request, handler);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                request.abort();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Execute a request asynchronously and read the response body as a string, the status code is not checked.
+     */
+    public CompletableFuture<String> executeAsync(HttpUriRequest request) {
+        return executeAsync(request, response -> response.getEntity() == null ? null : EntityUtils.toString(response.getEntity()));
+    }
+
+    @Override
+    public void systemSettingsSaved(String key, String oldValue, String newValue) {
+        // clients are rebuilt using the new proxy settings, connections to the old proxy will be evicted once idle
+        clients.clear();
+    }
+
+    @Override
+    public List<String> getKeys() {
+        return Arrays.asList(SystemSettingsDao.HTTP_CLIENT_USE_PROXY,
+                SystemSettingsDao.HTTP_CLIENT_PROXY_SERVER,
+                SystemSettingsDao.HTTP_CLIENT_PROXY_PORT,
+                SystemSettingsDao.HTTP_CLIENT_PROXY_USERNAME,
+                SystemSettingsDao.HTTP_CLIENT_PROXY_PASSWORD);
+    }
+
+    private CloseableHttpClient createHttpClient(int timeout, int retries) {
+        HttpClientBuilder builder = Common.getDefaultHttpClientBuilder()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration < 0 ? keepAlive : Math.min(duration, keepAlive);
+                })
+                .setRetryHandler(new DefaultHttpRequestRetryHandler(retries, false))
+                .setDefaultRequestConfig(Common.getDefaultRequestConfig()
+                        .setSocketTimeout(timeout)
+                        .setConnectTimeout(timeout)
+                        .setConnectionRequestTimeout(timeout)
+                        .build());
+        return builder.build();
+    }
+
+    private void evictConnections() {
+        try {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            LOG.warn("Failed to evict idle HTTP client connections", e);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import com.serotonin.m2m2.ServerStatus;
 import com.serotonin.m2m2.db.DatabaseProxy;
 import com.serotonin.m2m2.db.dao.PointValueDao;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.DataPointNotificationQueue;
 import com.serotonin.m2m2.web.mvc.spring.security.MangoSessionRegistry;
 
 /**
@@ -113,6 +114,20 @@ public class ServerMonitoringService extends PollingService {
      */
     public static final String BATCH_WRITE_SPEED_MONITOR_ID = "com.serotonin.m2m2.db.dao.PointValueDao$BatchWriteBehind.BATCH_WRITE_SPEED_MONITOR";
 
+    /**
+     * Mean time (ms) data point listener notifications wait in {@link DataPointNotificationQueue}
+     */
+    public static final String POINT_NOTIFICATION_QUEUE_TIME_MONITOR_ID = "com.serotonin.m2m2.rt.DataPointNotificationQueue.QUEUE_TIME";
+
+    /**
+     * How late (ms) the real time timer was when it most recently fired a task
+     */
+    public static final String TIMER_LAG_MONITOR_ID = "com.serotonin.timer.RealTimeTimer.LAG";
+    /**
+     * Number of tasks scheduled on the real time timer
+     */
+    public static final String TIMER_PENDING_TASKS_MONITOR_ID = "com.serotonin.timer.RealTimeTimer.PENDING_TASKS";
+
     private final ValueMonitor<Integer> threads;
     private final ValueMonitor<Integer> idleThreads;
     private final ValueMonitor<Integer> queueSize;
@@ -251,6 +266,18 @@ public class ServerMonitoringService extends PollingService {
                 .name(new TranslatableMessage("internal.monitor.BATCH_WRITE_SPEED_MONITOR"))
                 .supplier(pointValueDao::writeSpeed)
                 .buildReadThrough();
+        mv.<Double>create(POINT_NOTIFICATION_QUEUE_TIME_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.POINT_NOTIFICATION_QUEUE_TIME"))
+                .supplier(DataPointNotificationQueue::meanTimeInQueue)
+                .buildReadThrough();
+        mv.<Long>create(TIMER_LAG_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.TIMER_LAG"))
+                .supplier(() -> Common.timer.getLag())
+                .buildReadThrough();
+        mv.<Integer>create(TIMER_PENDING_TASKS_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.TIMER_PENDING_TASKS"))
+                .supplier(() -> Common.timer.size())
+                .buildReadThrough();
     }
 
     @PostConstruct
@@ -3,18 +3,33 @@
  */
 package com.infiniteautomation.mango.spring.components;
 
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.infiniteautomation.mango.jwt.JwtSignerVerifier;
+import com.infiniteautomation.mango.monitor.MonitoredValues;
 import com.infiniteautomation.mango.spring.events.AuthTokensRevokedEvent;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.events.DaoEventType;
 import com.infiniteautomation.mango.spring.service.PermissionService;
 import com.infiniteautomation.mango.spring.service.UsersService;
 import com.infiniteautomation.mango.util.exception.NotFoundException;
+import com.serotonin.ShouldNeverHappenException;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.dao.SystemSettingsDao;
 import com.serotonin.m2m2.db.dao.UserDao;
@@ -39,6 +54,9 @@ public final class TokenAuthenticationService extends JwtSignerVerifier<User> {
     public static final String USER_ID_CLAIM = "id";
     public static final String USER_TOKEN_VERSION_CLAIM = "v";
 
+    public static final String CACHE_HIT_RATE_MONITOR_ID = "internal.monitor.AUTH_TOKEN_CACHE_HIT_RATE";
+    public static final String VERIFICATION_TIME_MONITOR_ID = "internal.monitor.AUTH_TOKEN_VERIFICATION_TIME";
+
     private static final int DEFAULT_EXPIRY = 5 * 60 * 1000; // 5 minutes
 
     private final PermissionService permissionService;
@@ -47,16 +65,38 @@ public final class TokenAuthenticationService extends JwtSignerVerifier<User> {
     private final RunAs runAs;
     private final UserDao userDao;
 
+    //Cache of token hash to parsed token, so the signature is only verified once per token
+    private final Cache<String, Jws<Claims>> verifiedTokens;
+    private final LongAdder verificationCount = new LongAdder();
+    private final LongAdder verificationNanos = new LongAdder();
+
     @Autowired
     public TokenAuthenticationService(
             PermissionService permissionService,
             UsersService usersService,
-            ApplicationContext context, RunAs runAs, UserDao userDao) {
+            ApplicationContext context, RunAs runAs, UserDao userDao,
+            MonitoredValues monitoredValues,
+            @Value("${cache.authTokens.size:10000}") long cacheSize) {
         this.permissionService = permissionService;
         this.usersService = usersService;
         this.context = context;
         this.runAs = runAs;
         this.userDao = userDao;
+
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+
+        monitoredValues.<Double>create(CACHE_HIT_RATE_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.AUTH_TOKEN_CACHE_HIT_RATE"))
+                .supplier(() -> verifiedTokens.stats().hitRate() * 100)
+                .buildReadThrough();
+        monitoredValues.<Double>create(VERIFICATION_TIME_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.AUTH_TOKEN_VERIFICATION_TIME"))
+                .supplier(this::averageVerificationMillis)
+                .buildReadThrough();
     }
 
     @Override
@@ -81,12 +121,59 @@ public final class TokenAuthenticationService extends JwtSignerVerifier<User> {
         return null;
     }
 
+    /**
+     * Parses the token and verifies its signature and expiration. Verified tokens are cached until they expire,
+     * keys are reset or the user's tokens are revoked. Does NOT verify any other claims!
+     */
+    public Jws<Claims> parseCached(String token) {
+        return verifiedTokens.get(hash(token), k -> {
+            long start = System.nanoTime();
+            try {
+                return parse(token);
+            } finally {
+                verificationNanos.add(System.nanoTime() - start);
+                verificationCount.increment();
+            }
+        });
+    }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new ShouldNeverHappenException(e);
+        }
+    }
+
+    private double averageVerificationMillis() {
+        long count = verificationCount.sum();
+        return count == 0 ? 0 : verificationNanos.sum() / (double) count / 1_000_000;
+    }
+
+    @EventListener
+    protected void authTokensRevoked(AuthTokensRevokedEvent event) {
+        verifiedTokens.invalidateAll();
+    }
+
+    @EventListener
+    protected void userUpdated(DaoEvent<? extends User> event) {
+        User original = event.getType() == DaoEventType.UPDATE ? event.getOriginalVo() : event.getVo();
+        if (event.getType() == DaoEventType.DELETE ||
+                event.getType() == DaoEventType.UPDATE && (original.getTokenVersion() != event.getVo().getTokenVersion() ||
+                        !original.getUsername().equals(event.getVo().getUsername()))) {
+            String username = original.getUsername();
+            verifiedTokens.asMap().values().removeIf(jws -> username.equals(jws.getBody().getSubject()));
+        }
+    }
+
     public void resetKeys() {
         PermissionHolder user = Common.getUser();
         if (!permissionService.hasAdminRole(user)) {
             throw new PermissionException(new TranslatableMessage("permission.exception.mustBeAdmin"), user);
         }
         this.generateNewKeyPair();
+        this.verifiedTokens.invalidateAll();
         this.context.publishEvent(new AuthTokensRevokedEvent(this));
     }
 
@@ -131,4 +218,29 @@ public final class TokenAuthenticationService extends JwtSignerVerifier<User> {
         this.verifyClaim(token, USER_TOKEN_VERSION_CLAIM, tokenVersion);
         return user;
     }
+
+    /**
+     * Expire cached tokens at their expiration time
+     */
+    private static class TokenExpiry implements Expiry<String, Jws<Claims>> {
+        @Override
+        public long expireAfterCreate(String key, Jws<Claims> value, long currentTime) {
+            Date expiration = value.getBody().getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long remaining = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jws<Claims> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jws<Claims> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
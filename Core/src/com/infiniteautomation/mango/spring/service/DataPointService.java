@@ -118,6 +118,16 @@ public class DataPointService extends AbstractVOService<DataPointVO, DataPointDa
         return Common.eventManager;
     }
 
+    /**
+     * The dao loads the relational data of the points in batches, loading it again here would replace the batch loaded
+     * data with a query per point.
+     */
+    @Override
+    public void customizedQuery(ConditionSortLimit conditions, Consumer<DataPointVO> callback) {
+        PermissionHolder user = Common.getUser();
+        dao.customizedQuery(conditions, user, callback);
+    }
+
     @Override
     public boolean hasCreatePermission(PermissionHolder user, DataPointVO vo) {
         DataSourceVO ds = dataSourceDao.get(vo.getDataSourceId());
@@ -166,6 +176,50 @@ public class DataPointService extends AbstractVOService<DataPointVO, DataPointDa
     @Override
     public DataPointVO insert(DataPointVO vo)
             throws PermissionException, ValidationException {
+        prepareInsert(vo);
+        dao.insert(vo);
+        List<AbstractPointEventDetectorVO> detectors = postInsert(vo);
+
+        if (vo.isEnabled()) {
+            // the data point cannot have detectors if it was just inserted, don't query for detectors
+            getRuntimeManager().startDataPoint(new DataPointWithEventDetectors(vo, detectors), Collections.emptyList());
+        } else {
+            this.pointValueCache.updateCache(vo, Collections.emptyList());
+        }
+        return vo;
+    }
+
+    /**
+     * Insert a number of new data points in a single transaction, each point must first be checked using
+     * {@link #prepareInsert(DataPointVO)}.
+     *
+     * @param start start the enabled points, if false they will be started when their data source is next started
+     */
+    public List<DataPointVO> insert(List<DataPointVO> vos, boolean start) throws PermissionException {
+        PermissionHolder user = Common.getUser();
+        for (DataPointVO vo : vos) {
+            ensureCreatePermission(user, vo);
+        }
+
+        dao.insert(vos);
+
+        for (DataPointVO vo : vos) {
+            List<AbstractPointEventDetectorVO> detectors = postInsert(vo);
+            if (vo.isEnabled()) {
+                if (start) {
+                    getRuntimeManager().startDataPoint(new DataPointWithEventDetectors(vo, detectors), Collections.emptyList());
+                }
+            } else {
+                this.pointValueCache.updateCache(vo, Collections.emptyList());
+            }
+        }
+        return vos;
+    }
+
+    /**
+     * Check permissions, run the pre-insert hooks and validate a new data point, without saving it.
+     */
+    public void prepareInsert(DataPointVO vo) throws PermissionException, ValidationException {
         PermissionHolder user = Common.getUser();
 
         //Ensure they can create
@@ -187,8 +241,9 @@ public class DataPointService extends AbstractVOService<DataPointVO, DataPointDa
         }
 
         ensureValid(vo);
-        dao.insert(vo);
+    }
 
+    private List<AbstractPointEventDetectorVO> postInsert(DataPointVO vo) {
         List<AbstractPointEventDetectorVO> detectors = new ArrayList<>();
         for (DataPointChangeDefinition def : changeDefinitions) {
             for (var detector : def.postInsert(vo)) {
@@ -201,14 +256,7 @@ public class DataPointService extends AbstractVOService<DataPointVO, DataPointDa
                 }
             }
         }
-
-        if (vo.isEnabled()) {
-            // the data point cannot have detectors if it was just inserted, don't query for detectors
-            getRuntimeManager().startDataPoint(new DataPointWithEventDetectors(vo, detectors), Collections.emptyList());
-        } else {
-            this.pointValueCache.updateCache(vo, Collections.emptyList());
-        }
-        return vo;
+        return detectors;
     }
 
     @Override
@@ -9,6 +9,7 @@ import java.io.Writer;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.infiniteautomation.mango.emport.ImportTask;
@@ -49,6 +50,7 @@ public class EmportService {
     private final SystemPermissionService systemPermissionService;
     private final ImportPermissionDefinition importPermissionDefinition;
     private final ExportPermissionDefinition exportPermissionDefinition;
+    private final boolean bulkImport;
 
     @Autowired
     public EmportService(RoleService roleService,
@@ -64,7 +66,8 @@ public class EmportService {
                          EventDetectorsService eventDetectorService,
                          SystemPermissionService systemPermissionService,
                          ImportPermissionDefinition importPermissionDefinition,
-                         ExportPermissionDefinition exportPermissionDefinition) {
+                         ExportPermissionDefinition exportPermissionDefinition,
+                         @Value("${emport.bulkImport.enabled:false}") boolean bulkImport) {
         this.roleService = roleService;
         this.usersService = usersService;
         this.mailingListService = mailingListService;
@@ -79,12 +82,21 @@ public class EmportService {
         this.systemPermissionService = systemPermissionService;
         this.importPermissionDefinition = importPermissionDefinition;
         this.exportPermissionDefinition = exportPermissionDefinition;
+        this.bulkImport = bulkImport;
     }
 
     /**
      * Create an import task to import the root JSON object
      */
     public ImportTask getImportTask(JsonObject root, ProgressiveTaskListener listener, boolean schedule, Translations translations) {
+        return getImportTask(root, listener, schedule, translations, bulkImport);
+    }
+
+    /**
+     * Create an import task to import the root JSON object
+     * @param bulk import data points in parallel batches, see {@link ImportTask}
+     */
+    public ImportTask getImportTask(JsonObject root, ProgressiveTaskListener listener, boolean schedule, Translations translations, boolean bulk) {
         permissionService.ensurePermission(Common.getUser(), importPermissionDefinition.getPermission());
         return new ImportTask(root,
                 new ImportTaskDependencies(translations,
@@ -99,7 +111,7 @@ public class EmportService {
                 jsonDataService,
                 eventDetectorService,
                 systemPermissionService),
-                listener, schedule);
+                listener, schedule, bulk);
     }
 
     /**
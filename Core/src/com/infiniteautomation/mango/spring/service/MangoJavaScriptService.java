@@ -10,6 +10,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,6 +18,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 import javax.script.Bindings;
@@ -29,10 +32,14 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.infiniteautomation.mango.pointvaluecache.PointValueCache;
 import com.infiniteautomation.mango.spring.components.RunAs;
 import com.infiniteautomation.mango.spring.script.engines.NashornScriptEngineDefinition;
@@ -42,6 +49,7 @@ import com.infiniteautomation.mango.util.script.MangoJavaScript;
 import com.infiniteautomation.mango.util.script.MangoJavaScriptAction;
 import com.infiniteautomation.mango.util.script.MangoJavaScriptError;
 import com.infiniteautomation.mango.util.script.MangoJavaScriptResult;
+import com.infiniteautomation.mango.util.script.PooledScriptEngine;
 import com.infiniteautomation.mango.util.script.ScriptUtility;
 import com.serotonin.ShouldNeverHappenException;
 import com.serotonin.db.pair.IntStringPair;
@@ -96,7 +104,7 @@ import com.serotonin.m2m2.vo.permission.PermissionHolder;
  *
  */
 @Service
-public class MangoJavaScriptService {
+public class MangoJavaScriptService implements CachingService {
 
     public static final String SCRIPT_PREFIX = "function __scriptExecutor__() {";
     public static final String SCRIPT_SUFFIX = "\n} __scriptExecutor__();";
@@ -124,6 +132,11 @@ public class MangoJavaScriptService {
     private final PointValueDao pointValueDao;
     private final PointValueCache pointValueCache;
 
+    //Shared engines keyed by whether the engine has access to Java classes
+    private final Map<Boolean, SharedEngine> sharedEngines = new ConcurrentHashMap<>();
+    private final long compiledScriptCacheSize;
+    private final Map<String, Object> globalBindings;
+
     @Autowired
     public MangoJavaScriptService(PermissionService permissionService,
                                   @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection") DataSourcePermissionDefinition dataSourcePermissionDefinition,
@@ -131,7 +144,8 @@ public class MangoJavaScriptService {
                                   ScriptEngineManager manager,
                                   List<ScriptEngineDefinition> engineDefinitions,
                                   PointValueDao pointValueDao,
-                                  PointValueCache pointValueCache) {
+                                  PointValueCache pointValueCache,
+                                  Environment env) {
         this.dataPointService = dataPointService;
         this.permissionService = permissionService;
         this.dataSourcePermissionDefinition = dataSourcePermissionDefinition;
@@ -150,6 +164,8 @@ public class MangoJavaScriptService {
                 .orElse(null);
         this.pointValueDao = pointValueDao;
         this.pointValueCache = pointValueCache;
+        this.compiledScriptCacheSize = env.getProperty("cache.compiledScripts.size", Long.class, 1000L);
+        this.globalBindings = createGlobalBindings();
     }
 
     /**
@@ -333,36 +349,16 @@ public class MangoJavaScriptService {
     }
 
     /**
-     * Compile a script to be run and add global bindings
+     * Compile a script to be run and add global bindings.
+     *
+     * <p>Scripts are compiled by an engine which is shared by all scripts with the same permissions, the compiled
+     * script is cached using a hash of its content. Each returned script has its own engine scope.</p>
      *
      */
     public CompiledScript compile(String script, boolean wrapInFunction) throws ScriptError {
         try {
-            final ScriptEngine engine = newEngine();
-
-            // Add constants to the context
-            Bindings globalBindings = new SimpleBindings();
-
-            //left here for legacy compatibility
-            globalBindings.put("SECOND", Common.TimePeriods.SECONDS);
-            globalBindings.put("MINUTE", Common.TimePeriods.MINUTES);
-            globalBindings.put("HOUR", Common.TimePeriods.HOURS);
-            globalBindings.put("DAY", Common.TimePeriods.DAYS);
-            globalBindings.put("WEEK", Common.TimePeriods.WEEKS);
-            globalBindings.put("MONTH", Common.TimePeriods.MONTHS);
-            globalBindings.put("YEAR", Common.TimePeriods.YEARS);
-
-            for(IntStringPair isp : Common.TIME_PERIOD_CODES.getIdKeys())
-                globalBindings.put(Common.TIME_PERIOD_CODES.getCode(isp.getKey()), isp.getKey());
-
-            for(IntStringPair isp : Common.ROLLUP_CODES.getIdKeys(Common.Rollups.NONE))
-                globalBindings.put(Common.ROLLUP_CODES.getCode(isp.getKey()), isp.getKey());
-
-            //Add in Additional Utilities with Global Scope
-            globalBindings.put(DateTimeUtility.CONTEXT_KEY, new DateTimeUtility());
-            globalBindings.put(UnitUtility.CONTEXT_KEY, new UnitUtility());
-
-            engine.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+            SharedEngine shared = getSharedEngine();
+            PooledScriptEngine engine = new PooledScriptEngine(shared.engine, new SimpleBindings(new HashMap<>(globalBindings)));
 
             String toCompile;
             if(wrapInFunction) {
@@ -371,12 +367,39 @@ public class MangoJavaScriptService {
                 toCompile = script;
             }
 
-            return ((Compilable)engine).compile(toCompile);
+            return engine.bind(shared.compile(toCompile));
         }catch(ScriptException e) {
             throw ScriptError.create(e, wrapInFunction);
         }
     }
 
+    /**
+     * Constants and utilities added to the global scope of every script
+     */
+    private Map<String, Object> createGlobalBindings() {
+        Map<String, Object> bindings = new HashMap<>();
+
+        //left here for legacy compatibility
+        bindings.put("SECOND", Common.TimePeriods.SECONDS);
+        bindings.put("MINUTE", Common.TimePeriods.MINUTES);
+        bindings.put("HOUR", Common.TimePeriods.HOURS);
+        bindings.put("DAY", Common.TimePeriods.DAYS);
+        bindings.put("WEEK", Common.TimePeriods.WEEKS);
+        bindings.put("MONTH", Common.TimePeriods.MONTHS);
+        bindings.put("YEAR", Common.TimePeriods.YEARS);
+
+        for(IntStringPair isp : Common.TIME_PERIOD_CODES.getIdKeys())
+            bindings.put(Common.TIME_PERIOD_CODES.getCode(isp.getKey()), isp.getKey());
+
+        for(IntStringPair isp : Common.ROLLUP_CODES.getIdKeys(Common.Rollups.NONE))
+            bindings.put(Common.ROLLUP_CODES.getCode(isp.getKey()), isp.getKey());
+
+        //Add in Additional Utilities with Global Scope, these are stateless
+        bindings.put(DateTimeUtility.CONTEXT_KEY, new DateTimeUtility());
+        bindings.put(UnitUtility.CONTEXT_KEY, new UnitUtility());
+        return Collections.unmodifiableMap(bindings);
+    }
+
     /**
      * Reset the engine scope of a script and initialize for running
      * @param context - if provided points will be wrapped with script's setter (alternatively use script.addToContext()
@@ -480,7 +503,13 @@ public class MangoJavaScriptService {
                 for(ScriptUtility util : script.getAdditionalUtilities())
                     util.setResult(script.getResult());
 
-                Object resultObject = script.getCompiledScript().eval();
+                long start = System.nanoTime();
+                Object resultObject;
+                try {
+                    resultObject = script.getCompiledScript().eval();
+                } finally {
+                    script.recordExecution(System.nanoTime() - start);
+                }
                 script.getResult().setResult(resultObject);
 
                 return null;
@@ -582,13 +611,35 @@ public class MangoJavaScriptService {
      * Create a new script engine
      */
     public ScriptEngine newEngine() {
+        return nashornEngineDefinition.createScriptEngine(nashornFactory, ensureEngineAccess() ? null : c -> false);
+    }
+
+    /**
+     * Get the shared engine for the current user's permissions, shared engines are created on first use
+     */
+    private SharedEngine getSharedEngine() {
+        return sharedEngines.computeIfAbsent(ensureEngineAccess(), admin -> new SharedEngine(
+                nashornEngineDefinition.createScriptEngine(nashornFactory, admin ? null : c -> false), compiledScriptCacheSize));
+    }
+
+    /**
+     * Ensure the current user may create a script engine
+     * @return true if the engine should have access to Java classes
+     */
+    private boolean ensureEngineAccess() {
         if (nashornFactory == null || nashornEngineDefinition == null) {
             throw new UnsupportedOperationException("Nashorn engine is not available");
         }
 
         PermissionHolder user = Common.getUser();
         permissionService.ensurePermission(user, nashornEngineDefinition.requiredPermission());
-        return nashornEngineDefinition.createScriptEngine(nashornFactory, permissionService.hasAdminRole(user) ? null : c -> false);
+        return permissionService.hasAdminRole(user);
+    }
+
+    @Override
+    public void clearCaches(boolean force) {
+        permissionService.ensureAdminRole(Common.getUser());
+        sharedEngines.clear();
     }
 
     /**
@@ -770,6 +821,44 @@ public class MangoJavaScriptService {
         return this.permissionService;
     }
 
+    /**
+     * Engine shared by scripts with the same permissions and the scripts it has compiled
+     */
+    private static class SharedEngine {
+        private final ScriptEngine engine;
+        private final Cache<String, CompiledScript> compiledScripts;
+
+        private SharedEngine(ScriptEngine engine, long cacheSize) {
+            this.engine = engine;
+            this.compiledScripts = Caffeine.newBuilder()
+                    .maximumSize(cacheSize)
+                    .build();
+        }
+
+        /**
+         * Get the compiled script from the cache, compiling it if not present. The Nashorn engine only supports
+         * single threaded access so compilation is serialized for each shared engine.
+         */
+        private CompiledScript compile(String script) throws ScriptException {
+            try {
+                return compiledScripts.get(DigestUtils.sha256Hex(script), hash -> {
+                    synchronized (this) {
+                        try {
+                            return ((Compilable) engine).compile(script);
+                        } catch (ScriptException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                });
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof ScriptException) {
+                    throw (ScriptException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
     private static class ScriptLogExtender extends ScriptLog {
 
         private final ScriptLog logger;
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.spring.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.infiniteautomation.mango.permission.PermissionIds;
+
+/**
+ * In memory index of VO ID to the IDs of its permissions. Entries are loaded from the database on demand and are kept
+ * up to date by DAO events.
+ *
+ * <p>Only VOs which exist are stored, so the index is bounded by the number of VOs. Entries loaded from the database
+ * never replace an entry supplied by a DAO event, and are discarded if the index was modified while they were being
+ * loaded, so a load which races with an insert/update/delete can't leave a stale entry in the index.</p>
+ */
+class PermissionIdIndex {
+
+    private final Map<Integer, PermissionIds> index = new ConcurrentHashMap<>();
+    /**
+     * Incremented before every modification of the index
+     */
+    private final AtomicLong version = new AtomicLong();
+    private final Function<Collection<Integer>, Map<Integer, PermissionIds>> loader;
+
+    /**
+     * @param loader loads the permission IDs for a collection of VO IDs, VOs which do not exist are omitted from the result
+     */
+    PermissionIdIndex(Function<Collection<Integer>, Map<Integer, PermissionIds>> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @return permission IDs, or null if the VO does not exist
+     */
+    @Nullable PermissionIds get(int id) {
+        PermissionIds result = index.get(id);
+        if (result == null) {
+            result = load(List.of(id))[0];
+        }
+        return result;
+    }
+
+    /**
+     * Get the permission IDs for many VOs, all VOs which are not in the index are loaded using a single call to the loader.
+     *
+     * @return array of permission IDs in the same order as the VO IDs, entries are null if the VO does not exist
+     */
+    PermissionIds[] getAll(int[] ids) {
+        PermissionIds[] result = new PermissionIds[ids.length];
+        List<Integer> missing = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            PermissionIds entry = index.get(ids[i]);
+            if (entry == null) {
+                missing.add(ids[i]);
+                missingIndexes.add(i);
+            } else {
+                result[i] = entry;
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            PermissionIds[] loaded = load(missing);
+            for (int i = 0; i < loaded.length; i++) {
+                result[missingIndexes.get(i)] = loaded[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return array of permission IDs in the same order as the VO IDs, entries are null if the VO does not exist
+     */
+    private PermissionIds[] load(List<Integer> ids) {
+        long startVersion = version.get();
+        Map<Integer, PermissionIds> loaded = loader.apply(ids);
+        PermissionIds[] result = new PermissionIds[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            PermissionIds entry = loaded.get(id);
+            if (entry == null) {
+                // misses are not stored
+                continue;
+            }
+            PermissionIds existing = index.putIfAbsent(id, entry);
+            if (existing != null) {
+                result[i] = existing;
+            } else {
+                result[i] = entry;
+                if (version.get() != startVersion) {
+                    // index was modified during the load, the entry may be stale
+                    index.remove(id, entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    void put(int id, PermissionIds permissionIds) {
+        version.incrementAndGet();
+        index.put(id, permissionIds);
+    }
+
+    /**
+     * Remove the entry for a deleted VO
+     */
+    void remove(int id) {
+        version.incrementAndGet();
+        index.remove(id);
+    }
+
+    /**
+     * Remove an entry, it will be loaded from the database on next access
+     */
+    void invalidate(int id) {
+        version.incrementAndGet();
+        index.remove(id);
+    }
+
+    void clear() {
+        version.incrementAndGet();
+        index.clear();
+    }
+}
@@ -4,11 +4,15 @@
 package com.infiniteautomation.mango.spring.service;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -18,12 +22,15 @@ import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.Sets;
 import com.infiniteautomation.mango.cache.BidirectionalCache;
 import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.permission.PermissionIds;
 import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.events.DaoEventType;
 import com.infiniteautomation.mango.util.Functions;
 import com.infiniteautomation.mango.util.exception.NotFoundException;
 import com.serotonin.m2m2.Common;
@@ -37,6 +44,8 @@ import com.serotonin.m2m2.module.ModuleRegistry;
 import com.serotonin.m2m2.module.PermissionDefinition;
 import com.serotonin.m2m2.module.definitions.permissions.EventsSuperadminViewPermissionDefinition;
 import com.serotonin.m2m2.vo.AbstractVO;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataSource.DataSourceVO;
 import com.serotonin.m2m2.vo.permission.OwnedResource;
 import com.serotonin.m2m2.vo.permission.PermissionException;
 import com.serotonin.m2m2.vo.permission.PermissionHolder;
@@ -62,6 +71,12 @@ public class PermissionService implements CachingService {
 
     private final BidirectionalCache<Integer, MangoPermission> permissionCache;
     private final BidirectionalCache<MangoPermission, Integer> permissionCacheInverse;
+    //Cache of inherited roles to permissionId to granted
+    private final Cache<Set<Role>, Map<Integer, Boolean>> permissionGrantCache;
+
+    //Index of VO id to its permission ids, for in memory checks
+    private final PermissionIdIndex dataPointPermissionIds;
+    private final PermissionIdIndex dataSourcePermissionIds;
 
     @Autowired
     public PermissionService(RoleDao roleDao,
@@ -76,6 +91,12 @@ public class PermissionService implements CachingService {
                 .build(this::loadRoleInheritance);
         this.permissionCache = new BidirectionalCache<>(env.getProperty("cache.permission.size", Integer.class, 1000));
         this.permissionCacheInverse = this.permissionCache.inverse();
+        this.permissionGrantCache = Caffeine.newBuilder()
+                .maximumSize(env.getProperty("cache.permissionGrants.size", Long.class, 1000L))
+                .build();
+        //TODO Mango 4.0 after removing the getInstance() method we can use @Lazy to inject these daos
+        this.dataPointPermissionIds = new PermissionIdIndex(ids -> DataPointDao.getInstance().getPermissionIds(ids));
+        this.dataSourcePermissionIds = new PermissionIdIndex(ids -> DataSourceDao.getInstance().getPermissionIds(ids));
     }
 
     /**
@@ -226,16 +247,56 @@ public class PermissionService implements CachingService {
     public boolean hasDataPointReadPermission(PermissionHolder user, int dataPointId) {
         if (!isValidPermissionHolder(user)) return false;
 
-        //TODO Mango 4.0 after removing the getInstance() method we can use @Lazy to inject this dao
-        Integer permissionId = DataPointDao.getInstance().getReadPermissionId(dataPointId);
-        if(permissionId == null) {
+        PermissionIds permissionIds = dataPointPermissionIds.get(dataPointId);
+        if(permissionIds == null) {
             return hasAdminRole(user);
         }else {
-            MangoPermission permission = permissionCache.computeIfAbsent(permissionId, this::loadPermission);
-            return hasPermission(user, permission);
+            return isGranted(getAllInheritedRoles(user), permissionIds.getReadPermissionId());
         }
     }
 
+    /**
+     * Filter data point IDs to those which the PermissionHolder has read permission for. The permission IDs of the
+     * points are found using an in memory index and each distinct permission is only evaluated once. IDs of points
+     * which do not exist are removed for every PermissionHolder, including superadmins.
+     *
+     * @param user
+     * @param dataPointIds
+     * @return IDs of the readable data points, in the same order as they were supplied
+     */
+    public int[] filterReadable(PermissionHolder user, int[] dataPointIds) {
+        if (!isValidPermissionHolder(user)) return new int[0];
+
+        Set<Role> inherited = getAllInheritedRoles(user);
+        PermissionIds[] permissionIds = dataPointPermissionIds.getAll(dataPointIds);
+        int[] readable = new int[dataPointIds.length];
+        int count = 0;
+        for (int i = 0; i < dataPointIds.length; i++) {
+            if (permissionIds[i] != null && isGranted(inherited, permissionIds[i].getReadPermissionId())) {
+                readable[count++] = dataPointIds[i];
+            }
+        }
+        return Arrays.copyOf(readable, count);
+    }
+
+    /**
+     * Evaluate a permission for a set of inherited roles, the result is cached.
+     */
+    private boolean isGranted(Set<Role> inherited, @Nullable Integer permissionId) {
+        if (inherited.contains(PermissionHolder.SUPERADMIN_ROLE)) {
+            return true;
+        }
+        if (permissionId == null) {
+            return false;
+        }
+
+        Map<Integer, Boolean> grants = permissionGrantCache.get(inherited, k -> new ConcurrentHashMap<>());
+        return grants.computeIfAbsent(permissionId, id -> {
+            MangoPermission permission = permissionCache.computeIfAbsent(id, this::loadPermission);
+            return permission != null && permission.getRoles().stream().anyMatch(inherited::containsAll);
+        });
+    }
+
     /**
      * Does this PermissionHolder have read permission for this source
      * @param user
@@ -245,13 +306,11 @@ public class PermissionService implements CachingService {
     public boolean hasDataSourceReadPermission(PermissionHolder user, int dataSourceId) {
         if (!isValidPermissionHolder(user)) return false;
 
-        //TODO Mango 4.0 after removing the getInstance() method we can use @Lazy to inject this dao
-        Integer permissionId = DataSourceDao.getInstance().getReadPermissionId(dataSourceId);
-        if(permissionId == null) {
+        PermissionIds permissionIds = dataSourcePermissionIds.get(dataSourceId);
+        if(permissionIds == null) {
             return hasAdminRole(user);
         }else {
-            MangoPermission permission = permissionCache.computeIfAbsent(permissionId, this::loadPermission);
-            return hasPermission(user, permission);
+            return isGranted(getAllInheritedRoles(user), permissionIds.getReadPermissionId());
         }
     }
 
@@ -400,6 +459,34 @@ public class PermissionService implements CachingService {
         }
     }
 
+    /**
+     * Get a batch of permissions from the cache, permissions which are not cached are loaded from the db together
+     * @return map of id to permission, ids which are not found are omitted
+     */
+    public Map<Integer, MangoPermission> get(Collection<Integer> ids) {
+        Map<Integer, MangoPermission> result = new HashMap<>();
+        Set<Integer> missing = new HashSet<>();
+        for (Integer id : ids) {
+            MangoPermission permission = permissionCache.get(id);
+            if (permission != null) {
+                result.put(id, permission.withId(id));
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Integer, MangoPermission> loaded = permissionDao.get(missing);
+            for (Integer id : missing) {
+                MangoPermission permission = permissionCache.computeIfAbsent(id, loaded::get);
+                if (permission != null) {
+                    result.put(id, permission.withId(id));
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Finds or creates a saved permission with minterms that match the desired permission.
      * If the permission already has a non-null id it is assumed to have been saved already and is returned directly.
@@ -414,6 +501,16 @@ public class PermissionService implements CachingService {
         return permission;
     }
 
+    /**
+     * Remove permissions from the cache. Use this when the transaction in which they were found or created is rolled
+     * back, as a created permission no longer exists.
+     */
+    public void invalidatePermissions(Collection<Integer> permissionIds) {
+        for (Integer id : permissionIds) {
+            permissionCache.remove(id);
+        }
+    }
+
     /**
      * Attempt to delete permissions, if other VOs reference the permission it will not be deleted
      *
@@ -718,17 +815,50 @@ public class PermissionService implements CachingService {
                 roleHierarchyCache.invalidateAll();
                 //TODO Mango 4.0 find and invalidate permissions that have this role
                 permissionCache.clear();
+                permissionGrantCache.invalidateAll();
                 break;
             default:
                 break;
         }
     }
 
+    @EventListener
+    protected void handleDataPointEvent(DaoEvent<? extends DataPointVO> event) {
+        DataPointVO vo = event.getVo();
+        if (event.getType() == DaoEventType.DELETE) {
+            dataPointPermissionIds.remove(vo.getId());
+        } else {
+            updateIndex(dataPointPermissionIds, vo.getId(), vo.getReadPermission(), vo.getEditPermission(), vo.getSetPermission());
+        }
+    }
+
+    @EventListener
+    protected void handleDataSourceEvent(DaoEvent<? extends DataSourceVO> event) {
+        DataSourceVO vo = event.getVo();
+        if (event.getType() == DaoEventType.DELETE) {
+            dataSourcePermissionIds.remove(vo.getId());
+        } else {
+            updateIndex(dataSourcePermissionIds, vo.getId(), vo.getReadPermission(), vo.getEditPermission(), null);
+        }
+    }
+
+    private void updateIndex(PermissionIdIndex index, int id, MangoPermission read, MangoPermission edit, @Nullable MangoPermission set) {
+        if (read.getId() == null || edit.getId() == null || (set != null && set.getId() == null)) {
+            // permissions have not been saved, load from the database when required
+            index.invalidate(id);
+        } else {
+            index.put(id, new PermissionIds(read.getId(), edit.getId(), set == null ? null : set.getId()));
+        }
+    }
+
     @Override
     public void clearCaches(boolean force) {
         ensureAdminRole(Common.getUser());
         this.roleHierarchyCache.invalidateAll();
         this.permissionCache.clear();
+        this.permissionGrantCache.invalidateAll();
+        this.dataPointPermissionIds.clear();
+        this.dataSourcePermissionIds.clear();
     }
 
     /**
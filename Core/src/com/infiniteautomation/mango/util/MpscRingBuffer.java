@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.infiniteautomation.mango.util;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer ring buffer.
+ *
+ * <p>Producers claim a slot by advancing the producer index with a CAS and then publish the element into the slot.
+ * The consumer only ever advances past slots that have been published, so a slow producer can delay (but never
+ * corrupt) the consumer. Only one thread may call {@link #drain(Consumer, int)} at a time, callers are responsible
+ * for enforcing that.</p>
+ *
+ * @param <E> element type
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * @param capacity requested capacity, rounded up to the next power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        int actual = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        if (actual <= 0) {
+            throw new IllegalArgumentException("Capacity too large: " + capacity);
+        }
+        this.capacity = actual;
+        this.mask = actual - 1;
+        this.buffer = new AtomicReferenceArray<>(actual);
+    }
+
+    /**
+     * Add an element to the buffer, safe to call from any thread.
+     *
+     * @param e element to add
+     * @return false if the buffer is full
+     */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex.get() >= capacity) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        buffer.lazySet((int) index & mask, e);
+        return true;
+    }
+
+    /**
+     * Remove up to limit elements from the buffer, must only be called by a single consumer at a time.
+     *
+     * @param consumer receives the removed elements in insertion order
+     * @param limit maximum number of elements to remove
+     * @return number of elements removed
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        long index = consumerIndex.get();
+        int count = 0;
+        while (count < limit) {
+            int offset = (int) index & mask;
+            E e = buffer.get(offset);
+            if (e == null) {
+                // empty, or the producer has claimed the slot but not yet published it
+                break;
+            }
+            buffer.lazySet(offset, null);
+            consumerIndex.lazySet(++index);
+            consumer.accept(e);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return approximate number of elements in the buffer, includes claimed slots which are not yet published
+     */
+    public int size() {
+        long consumer = consumerIndex.get();
+        long producer = producerIndex.get();
+        return (int) Math.max(0, Math.min(capacity, producer - consumer));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
@@ -75,6 +77,10 @@ public class CompiledMangoJavaScript {
     private boolean initialized;
     private boolean wrapInFunction;
 
+    //Execution statistics
+    private final LongAdder invocationCount = new LongAdder();
+    private final LongAdder executionTimeNanos = new LongAdder();
+
     /**
      * Create a compiled script container to run live
      *
@@ -286,4 +292,27 @@ public class CompiledMangoJavaScript {
     public boolean isWrapInFunction() {
         return wrapInFunction;
     }
+
+    /**
+     * Record an execution of the compiled script
+     * @param nanos - time taken to evaluate the script in nanoseconds
+     */
+    public void recordExecution(long nanos) {
+        invocationCount.increment();
+        executionTimeNanos.add(nanos);
+    }
+
+    /**
+     * @return number of times the script has been executed
+     */
+    public long getInvocationCount() {
+        return invocationCount.sum();
+    }
+
+    /**
+     * @return total time spent executing the script
+     */
+    public long getExecutionTime(TimeUnit unit) {
+        return unit.convert(executionTimeNanos.sum(), TimeUnit.NANOSECONDS);
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.util.script;
+
+import java.io.Reader;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+
+/**
+ * Script engine which evaluates scripts using an engine that is shared between many scripts. Each instance has its own
+ * script context and its engine scope is a new global object created by the shared engine, so the state of one
+ * script is not visible to another script.
+ *
+ * <p>Nashorn compiled scripts are not tied to a global object, so a script compiled once by the shared engine can be
+ * evaluated by any number of pooled engines. Bootstrapping an engine is much more expensive than creating a new global.</p>
+ *
+ * @see #bind(CompiledScript)
+ */
+public class PooledScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+
+    private final ScriptEngine engine;
+
+    /**
+     * @param engine shared engine, must implement {@link Compilable} and {@link Invocable}
+     * @param globalBindings bindings for the global scope
+     */
+    public PooledScriptEngine(ScriptEngine engine, Bindings globalBindings) {
+        this.engine = engine;
+        setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+        setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return engine.eval(script, context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return engine.eval(reader, context);
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return engine.createBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return engine.getFactory();
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return bind(((Compilable) engine).compile(script));
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return bind(((Compilable) engine).compile(script));
+    }
+
+    /**
+     * Bind a script compiled by the shared engine to this engine, the returned script is evaluated using the
+     * context of this engine.
+     */
+    public CompiledScript bind(CompiledScript compiled) {
+        return new CompiledScript() {
+            @Override
+            public Object eval(ScriptContext context) throws ScriptException {
+                return compiled.eval(context);
+            }
+
+            @Override
+            public ScriptEngine getEngine() {
+                return PooledScriptEngine.this;
+            }
+        };
+    }
+
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args) throws ScriptException, NoSuchMethodException {
+        return ((Invocable) engine).invokeMethod(thiz, name, args);
+    }
+
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        // the engine scope is the global object of this engine
+        return invokeMethod(getBindings(ScriptContext.ENGINE_SCOPE), name, args);
+    }
+
+    @Override
+    public <T> T getInterface(Class<T> clasz) {
+        return getInterface(getBindings(ScriptContext.ENGINE_SCOPE), clasz);
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> clasz) {
+        return ((Invocable) engine).getInterface(thiz, clasz);
+    }
+}
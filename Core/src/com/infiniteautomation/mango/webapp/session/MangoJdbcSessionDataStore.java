@@ -4,12 +4,22 @@
 
 package com.infiniteautomation.mango.webapp.session;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.server.session.AbstractSessionDataStore;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -22,17 +32,22 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.stereotype.Component;
 
+import com.infiniteautomation.mango.monitor.MonitoredValues;
 import com.infiniteautomation.mango.spring.components.RunAs;
 import com.infiniteautomation.mango.spring.events.SessionLoadedEvent;
 import com.infiniteautomation.mango.spring.service.UsersService;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.dao.MangoSessionDataDao;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
 import com.serotonin.m2m2.vo.MangoSessionDataVO;
 import com.serotonin.m2m2.vo.User;
 import com.serotonin.m2m2.web.mvc.spring.security.authentication.MangoPasswordAuthenticationProvider;
 import com.serotonin.util.properties.MangoConfigurationWatcher.MangoConfigurationReloadedEvent;
 
 /**
+ * Persists sessions to the database. Unless disabled via {@code sessionCookie.writeBehind.enabled}, saved sessions are
+ * buffered and written in batches every {@code sessionCookie.writeBehind.flushPeriodMs}, repeated saves of the same
+ * session between flushes result in a single write. Reads of a session which has a pending write flush it first.
  *
  * @author Terry Packer
  */
@@ -45,19 +60,65 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
     private final ApplicationEventPublisher eventPublisher;
     private final RunAs runAs;
     private final Environment env;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final MonitoredValues monitoredValues;
+
+    public static final String PENDING_WRITES_MONITOR_ID = "internal.monitor.SESSION_WRITES_PENDING";
+
+    private final Logger log = LoggerFactory.getLogger(MangoJdbcSessionDataStore.class);
+    private final boolean writeBehind;
+    private final long flushPeriodMs;
+    /**
+     * Sessions which have been saved but not yet written to the database, keyed by session id
+     */
+    private final ConcurrentMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    /**
+     * Held while writing pending sessions so that deletes and loads can't overtake a write in progress
+     */
+    private final Object flushLock = new Object();
+    private ScheduledFuture<?> flushTask;
 
     @Autowired
     public MangoJdbcSessionDataStore(UsersService userService, MangoSessionDataDao sessionDao,
-                                     ApplicationEventPublisher publisher, RunAs runAs, Environment env) {
+                                     ApplicationEventPublisher publisher, RunAs runAs, Environment env,
+                                     ScheduledExecutorService scheduledExecutorService, MonitoredValues monitoredValues) {
         this.userService = userService;
         this.sessionDao = sessionDao;
         this.eventPublisher = publisher;
         this.runAs = runAs;
         this.env = env;
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.monitoredValues = monitoredValues;
+        this.writeBehind = env.getProperty("sessionCookie.writeBehind.enabled", Boolean.class, true);
+        this.flushPeriodMs = env.getProperty("sessionCookie.writeBehind.flushPeriodMs", Long.class, 1000L);
 
         updatePersistPeriod();
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        monitoredValues.<Integer>create(PENDING_WRITES_MONITOR_ID)
+                .name(new TranslatableMessage(PENDING_WRITES_MONITOR_ID))
+                .supplier(pendingWrites::size)
+                .buildReadThrough();
+        if (writeBehind) {
+            this.flushTask = scheduledExecutorService.scheduleWithFixedDelay(this::scheduledFlush,
+                    flushPeriodMs, flushPeriodMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            this.flushTask = null;
+        }
+        flush();
+        monitoredValues.remove(PENDING_WRITES_MONITOR_ID);
+        super.doStop();
+    }
+
     @Override
     public boolean isPassivating() {
         return true;
@@ -65,12 +126,20 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
 
     @Override
     public boolean exists(String id) throws Exception {
+        PendingWrite pending = pendingWrites.get(id);
+        if (pending != null) {
+            return true;
+        }
         return sessionDao.sessionExists(id, _context.getCanonicalContextPath(),  _context.getVhost());
     }
 
     @Override
     public boolean delete(String id) throws Exception {
-        return sessionDao.delete(id, _context.getCanonicalContextPath(),  _context.getVhost());
+        synchronized (flushLock) {
+            PendingWrite pending = pendingWrites.remove(id);
+            boolean deleted = sessionDao.delete(id, _context.getCanonicalContextPath(),  _context.getVhost());
+            return deleted || pending != null;
+        }
     }
 
     @Override
@@ -79,19 +148,90 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
             return;
         }
 
-        if (lastSaveTime <= 0) {
-            MangoSessionDataVO vo = new MangoSessionDataVO(data);
-            vo.setSessionId(id);
-            maybeSetUserId(vo, data);
+        MangoSessionDataVO vo = new MangoSessionDataVO(data);
+        vo.setSessionId(id);
+        maybeSetUserId(vo, data);
+        boolean insert = lastSaveTime <= 0;
+
+        if (writeBehind) {
+            // a session which has not been inserted yet must still be inserted, with the latest data
+            pendingWrites.merge(id, new PendingWrite(vo, insert),
+                    (existing, latest) -> existing.insert ? new PendingWrite(latest.vo, true) : latest);
+        } else if (insert) {
             sessionDao.insert(vo);
-        }else{
-            MangoSessionDataVO vo = new MangoSessionDataVO(data);
-            vo.setSessionId(id);
-            maybeSetUserId(vo, data);
+        } else {
             sessionDao.update(id, _context.getCanonicalContextPath(), _context.getVhost(), vo);
         }
     }
 
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // don't let the exception cancel the scheduled task
+            log.error("Failed to persist sessions", e);
+        }
+    }
+
+    /**
+     * Write all pending sessions to the database
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+
+            List<MangoSessionDataVO> inserts = new ArrayList<>();
+            List<MangoSessionDataVO> updates = new ArrayList<>();
+            for (Map.Entry<String, PendingWrite> entry : pendingWrites.entrySet()) {
+                PendingWrite pending = entry.getValue();
+                // if the session was saved again in the meantime it is left for the next flush
+                if (pendingWrites.remove(entry.getKey(), pending)) {
+                    if (pending.insert) {
+                        inserts.add(pending.vo);
+                    } else {
+                        updates.add(pending.vo);
+                    }
+                }
+            }
+
+            try {
+                sessionDao.saveBatch(inserts, updates);
+            } catch (Exception e) {
+                log.warn("Failed to persist {} sessions in a batch, persisting individually", inserts.size() + updates.size(), e);
+                inserts.forEach(vo -> write(vo, true));
+                updates.forEach(vo -> write(vo, false));
+            }
+        }
+    }
+
+    /**
+     * Write a single session's pending data to the database
+     */
+    private void flush(String id) {
+        // always take the lock, a flush in progress may have removed the session from the pending writes but not
+        // yet written it
+        synchronized (flushLock) {
+            PendingWrite pending = pendingWrites.remove(id);
+            if (pending != null) {
+                write(pending.vo, pending.insert);
+            }
+        }
+    }
+
+    private void write(MangoSessionDataVO vo, boolean insert) {
+        try {
+            if (insert) {
+                sessionDao.insert(vo);
+            } else {
+                sessionDao.update(vo.getSessionId(), vo.getContextPath(), vo.getVirtualHost(), vo);
+            }
+        } catch (Exception e) {
+            log.error("Failed to persist session {}", vo.getSessionId(), e);
+        }
+    }
+
     /**
      */
     private void maybeSetUserId(MangoSessionDataVO vo, SessionData data) {
@@ -113,6 +253,7 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
 
     @Override
     public SessionData doLoad(String id) throws Exception {
+        flush(id);
         MangoSessionDataVO vo = sessionDao.get(id, _context.getCanonicalContextPath(), _context.getVhost());
         if(vo == null) {
             return null;
@@ -144,6 +285,7 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
 
     @Override
     public Set<String> doGetExpired(Set<String> candidates) {
+        flush();
         long now = Common.timer.currentTimeMillis();
         Set<String> expiredSessionKeys = new HashSet<>();
 
@@ -196,23 +338,30 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
 
     @Override
     public boolean deleteSessionsForUser(int id) {
+        flush();
         return sessionDao.deleteSessionsForUser(id);
     }
 
     @Override
     public MangoSessionDataVO get(String sessionId, String contextPath, String virtualHost) {
+        flush(sessionId);
         return sessionDao.get(sessionId, contextPath, virtualHost);
     }
 
     @Override
     public void update(String sessionId, String contextPath, String virtualHost,
             MangoSessionDataVO vo) {
+        flush(sessionId);
         sessionDao.update(sessionId, contextPath, virtualHost, vo);
     }
 
     @Override
     public boolean delete(String sessionId, String contextPath, String virtualHost) {
-        return sessionDao.delete(sessionId, contextPath, virtualHost);
+        synchronized (flushLock) {
+            PendingWrite pending = pendingWrites.remove(sessionId);
+            boolean deleted = sessionDao.delete(sessionId, contextPath, virtualHost);
+            return deleted || pending != null;
+        }
     }
 
     @Override
@@ -229,4 +378,14 @@ public class MangoJdbcSessionDataStore extends AbstractSessionDataStore implemen
         this.setSavePeriodSec(env.getProperty("sessionCookie.persistPeriodSeconds", Integer.class, 30));
     }
 
+    private static class PendingWrite {
+        private final MangoSessionDataVO vo;
+        private final boolean insert;
+
+        private PendingWrite(MangoSessionDataVO vo, boolean insert) {
+            this.vo = vo;
+            this.insert = insert;
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ import java.text.MessageFormat;
 import java.text.ParseException;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAmount;
 import java.util.ArrayList;
@@ -78,6 +79,7 @@ import com.infiniteautomation.mango.io.messaging.MessageManager;
 import com.infiniteautomation.mango.io.serial.SerialPortManager;
 import com.infiniteautomation.mango.monitor.MonitoredValues;
 import com.infiniteautomation.mango.spring.MangoRuntimeContextConfiguration;
+import com.infiniteautomation.mango.spring.components.HttpClientService;
 import com.infiniteautomation.mango.util.LazyInitSupplier;
 import com.serotonin.ShouldNeverHappenException;
 import com.serotonin.db.pair.StringStringPair;
@@ -161,7 +163,9 @@ public class Common {
     private static volatile Locale LOCALE = Locale.getDefault();
     private static final Object TRANSLATIONS_LOCK = new Object();
 
-    public static AbstractTimer timer = new OrderedRealTimeTimer();
+    public static AbstractTimer timer = new OrderedRealTimeTimer(ZoneId.systemDefault(),
+            envProps.getBoolean("runtime.realTimeTimer.timingWheel", false) ?
+                    envProps.getLong("runtime.realTimeTimer.timingWheel.tickDuration", 10) : 0);
     public static final MonitoredValues MONITORED_VALUES = new MonitoredValues();
     public static final JsonContext JSON_CONTEXT = new JsonContext();
 
@@ -237,7 +241,7 @@ public class Common {
      *
      */
     public static int getDatabaseSchemaVersion() {
-        return 47;
+        return 49;
     }
 
     public static File getLogsDir() {
@@ -603,17 +607,24 @@ public class Common {
     // HttpClient
 
     /**
-     * Get default HTTP Client with 30s timeout
+     * Get default HTTP Client with 30s timeout. The client is shared and pooled, see {@link HttpClientService}, it must
+     * not be closed.
      */
     public static HttpClient getHttpClient() {
-        return getHttpClient(30000); // 30 seconds.
+        return getHttpClient(HttpClientService.DEFAULT_TIMEOUT);
     }
 
     /**
-     * Get HTPT Client with default settings and assigned timeout and retries
+     * Get HTTP Client with default settings and assigned timeout and retries. The client is shared and pooled, see
+     * {@link HttpClientService}, it must not be closed.
      */
     public static HttpClient getHttpClient(int timeout, int retries) {
-        // Create global request configuration
+        ApplicationContext context = getRuntimeContext();
+        if (context != null) {
+            return context.getBean(HttpClientService.class).getHttpClient(timeout, retries);
+        }
+
+        // Runtime context is not yet available, create an unpooled client
         Builder defaultRequestConfigBuilder = getDefaultRequestConfig();
         defaultRequestConfigBuilder.setSocketTimeout(timeout)
         .setConnectTimeout(timeout);
@@ -625,16 +636,11 @@ public class Common {
     }
 
     /**
-     * Get an HTTP Client with default settings and assigned timeout
+     * Get an HTTP Client with default settings and assigned timeout. The client is shared and pooled, see
+     * {@link HttpClientService}, it must not be closed.
      */
     public static HttpClient getHttpClient(int timeout) {
-        // Create global request configuration
-        Builder defaultRequestConfigBuilder = getDefaultRequestConfig();
-        defaultRequestConfigBuilder.setSocketTimeout(timeout).setConnectTimeout(timeout).build();
-
-        HttpClientBuilder builder = getDefaultHttpClientBuilder();
-        builder.setDefaultRequestConfig(defaultRequestConfigBuilder.build());
-        return builder.build();
+        return getHttpClient(timeout, HttpClientService.DEFAULT_RETRIES);
     }
 
     /**
@@ -14,13 +14,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -503,10 +507,54 @@ public abstract class AbstractBasicDao<T extends AbstractBasicVO, R extends Reco
 
     public Stream<T> streamQuery(SelectJoinStep<Record> select, @Nullable Condition condition, List<SortField<?>> sort, @Nullable Integer limit, @Nullable Integer offset) {
         var afterWhere = condition == null ? select : select.where(condition);
-        return applySortLimitOffset(afterWhere, sort, limit, offset)
-                .stream()
-                .map(this::mapRecordLoadRelationalData)
-                .filter(Objects::nonNull);
+        return mapRecordsLoadRelationalData(applySortLimitOffset(afterWhere, sort, limit, offset).stream());
+    }
+
+    /**
+     * Number of records to map before loading their relational data via {@link #loadRelationalData(List)}.
+     * Override to load relational data in batches, the default of 1 loads it for each record as it is mapped.
+     */
+    protected int relationalDataBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Maps the records (safely, dropping those which fail to map) and loads their relational data, in batches
+     * of {@link #relationalDataBatchSize()}. The returned stream closes the record stream.
+     */
+    protected Stream<T> mapRecordsLoadRelationalData(Stream<Record> records) {
+        int batchSize = relationalDataBatchSize();
+        if (batchSize <= 1) {
+            return records.map(this::mapRecordLoadRelationalData)
+                    .filter(Objects::nonNull);
+        }
+
+        Iterator<Record> iterator = records.iterator();
+        Spliterator<T> batches = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final List<T> batch = new ArrayList<>(batchSize);
+            private int next;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (next == batch.size()) {
+                    batch.clear();
+                    next = 0;
+                    while (batch.size() < batchSize && iterator.hasNext()) {
+                        T vo = mapRecordSafe(iterator.next());
+                        if (vo != null) {
+                            batch.add(vo);
+                        }
+                    }
+                    if (batch.isEmpty()) {
+                        return false;
+                    }
+                    loadRelationalData(batch);
+                }
+                action.accept(batch.get(next++));
+                return true;
+            }
+        };
+        return StreamSupport.stream(batches, false).onClose(records::close);
     }
 
     public <X extends Record> @NonNull Select<X> applySortLimitOffset(
@@ -538,10 +586,8 @@ public abstract class AbstractBasicDao<T extends AbstractBasicVO, R extends Reco
         if (useMetrics) {
             stopWatch = new LogStopWatch(LOG);
         }
-        try (Stream<Record> stream = select.stream()) {
-            stream.map(this::mapRecordLoadRelationalData)
-                    .filter(Objects::nonNull)
-                    .forEach(callback);
+        try (Stream<T> stream = mapRecordsLoadRelationalData(select.stream())) {
+            stream.forEach(callback);
         }finally {
             if (stopWatch != null) {
                 stopWatch.stop(() -> "customizedQuery(): " + create.renderInlined(select), metricsThreshold);
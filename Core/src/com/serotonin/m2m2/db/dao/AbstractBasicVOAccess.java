@@ -91,6 +91,16 @@ public interface AbstractBasicVOAccess<T extends AbstractBasicVO> extends Transa
      */
     void loadRelationalData(T vo);
 
+    /**
+     * Load relational data for a batch of VOs, implementations may override this to load the data for the whole
+     * batch using fewer queries
+     */
+    default void loadRelationalData(List<T> vos) {
+        for (T vo : vos) {
+            loadRelationalData(vo);
+        }
+    }
+
     /**
      * Delete a VO based on its id this will always get the FKs to ensure they will be deleted if
      * there is no ON CASCADE for the FK
@@ -0,0 +1,577 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAmount;
+import java.time.temporal.TemporalUnit;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jooq.Condition;
+import org.jooq.InsertValuesStepN;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.infiniteautomation.mango.db.iterators.ChunkingSpliterator;
+import com.infiniteautomation.mango.db.tables.DataPoints;
+import com.infiniteautomation.mango.db.tables.PointValueAggregates;
+import com.infiniteautomation.mango.db.tables.records.PointValueAggregatesRecord;
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.dao.pointvalue.AggregateValue;
+import com.serotonin.m2m2.db.dao.pointvalue.BoundaryAggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.NumericAggregate;
+import com.serotonin.m2m2.rt.dataImage.types.DataValue;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+import com.serotonin.m2m2.view.stats.DefaultSeriesValueTime;
+import com.serotonin.m2m2.view.stats.IValueTime;
+import com.serotonin.m2m2.view.stats.SeriesValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Stores pre-aggregated numeric point values in the SQL database. Raw values older than the boundary are folded into
+ * the pointValueAggregates table incrementally by {@link #updateAggregates()}, queries which span the boundary are
+ * stitched together from the stored aggregates and on-the-fly aggregation of the raw values.
+ *
+ * <p>Only {@link DataType#NUMERIC NUMERIC} points are pre-aggregated, all other points are aggregated on-the-fly.</p>
+ */
+public class AggregateDaoSQL extends BaseDao implements BoundaryAggregateDao {
+
+    private final Logger log = LoggerFactory.getLogger(AggregateDaoSQL.class);
+
+    private final PointValueAggregates pva = PointValueAggregates.POINT_VALUE_AGGREGATES;
+    private final DataPoints dp = DataPoints.DATA_POINTS;
+
+    private final PointValueDao pointValueDao;
+    private final DataPointDao dataPointDao;
+    private final Clock clock;
+    private final TemporalAmount preAggregationPeriod;
+    private final TemporalAmount boundary;
+    private final int chunkSize;
+    private final AtomicBoolean updating = new AtomicBoolean();
+    /**
+     * Striped by series ID, held while folding values into the stored aggregates of a series and while invalidating
+     * them so that an aggregate computed before values were inserted is not saved after the invalidation
+     */
+    private final Object[] seriesLocks = new Object[64];
+    private volatile boolean enabled = true;
+
+    /**
+     * @param clock clock used to calculate the boundary, its zone is used to align the aggregation periods
+     * @param preAggregationPeriod period of the stored aggregates
+     * @param boundary values older than this are pre-aggregated, newer values are aggregated on-the-fly
+     * @param chunkSize number of aggregates to insert per batch
+     */
+    public AggregateDaoSQL(DatabaseProxy databaseProxy, PointValueDao pointValueDao, DataPointDao dataPointDao,
+                           Clock clock, TemporalAmount preAggregationPeriod, TemporalAmount boundary, int chunkSize) {
+        super(databaseProxy);
+        this.pointValueDao = pointValueDao;
+        this.dataPointDao = dataPointDao;
+        this.clock = clock;
+        this.preAggregationPeriod = preAggregationPeriod;
+        this.boundary = boundary;
+        this.chunkSize = chunkSize;
+        for (int i = 0; i < seriesLocks.length; i++) {
+            seriesLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public PointValueDao getPointValueDao() {
+        return pointValueDao;
+    }
+
+    @Override
+    public ZonedDateTime boundary() {
+        return ZonedDateTime.now(clock).minus(boundary);
+    }
+
+    @Override
+    public long fromBoundary(TemporalUnit unit) {
+        var now = ZonedDateTime.now(clock);
+        return unit.between(now.minus(boundary), now);
+    }
+
+    @Override
+    public TemporalAmount preAggregationPeriod() {
+        return preAggregationPeriod;
+    }
+
+    @Override
+    public boolean preAggregationSupported(DataPointVO point) {
+        return enabled && point.getPointLocator().getDataType() == DataType.NUMERIC;
+    }
+
+    /**
+     * Periods after the last stored aggregate (i.e. which have not been folded in by {@link #updateAggregates()} yet)
+     * are aggregated on-the-fly from the raw values.
+     */
+    @Override
+    public Stream<SeriesValueTime<AggregateValue>> queryPreAggregated(DataPointVO point, ZonedDateTime from, ZonedDateTime to) {
+        if (!from.isBefore(to)) {
+            return Stream.empty();
+        }
+
+        ZonedDateTime storedUntil = storedUntil(point.getSeriesId(), from.getZone());
+        ZonedDateTime split = storedUntil == null ? from : min(max(from, storedUntil), to);
+
+        Stream<SeriesValueTime<AggregateValue>> stored = split.isAfter(from) ?
+                queryStored(point, from, split) :
+                Stream.empty();
+        Stream<SeriesValueTime<AggregateValue>> remaining = split.isBefore(to) ?
+                queryRealtime(point, split, to, null, preAggregationPeriod) :
+                Stream.empty();
+        return Stream.concat(stored, remaining);
+    }
+
+    private Stream<SeriesValueTime<AggregateValue>> queryStored(DataPointVO point, ZonedDateTime from, ZonedDateTime to) {
+        ZoneId zone = from.getZone();
+        return create.selectFrom(pva)
+                .where(pva.seriesId.eq(point.getSeriesId()))
+                .and(pva.ts.greaterOrEqual(from.toInstant().toEpochMilli()))
+                .and(pva.ts.lessThan(to.toInstant().toEpochMilli()))
+                .orderBy(pva.ts.asc())
+                .fetchSize(chunkSize)
+                .stream()
+                .map(record -> {
+                    NumericAggregate value = mapRecord(record, zone);
+                    return new DefaultSeriesValueTime<>(point.getSeriesId(), value.getPeriodStartTime(), value);
+                });
+    }
+
+    /**
+     * @return end of the last stored aggregate period, or null if there are no stored aggregates for the series
+     */
+    private @Nullable ZonedDateTime storedUntil(int seriesId, ZoneId zone) {
+        Long last = create.select(DSL.max(pva.ts))
+                .from(pva)
+                .where(pva.seriesId.eq(seriesId))
+                .fetchSingle()
+                .value1();
+        return last == null ? null : Instant.ofEpochMilli(last).atZone(zone).plus(preAggregationPeriod);
+    }
+
+    /**
+     * Stored aggregates replace any existing aggregates for the same period.
+     */
+    @Override
+    public void save(DataPointVO point, Stream<? extends IValueTime<? extends AggregateValue>> aggregates, int chunkSize) {
+        ChunkingSpliterator.chunkStream(aggregates, chunkSize).forEach(chunk -> saveChunk(point.getSeriesId(), chunk));
+    }
+
+    private void saveChunk(int seriesId, List<? extends IValueTime<? extends AggregateValue>> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        InsertValuesStepN<PointValueAggregatesRecord> insert = create.insertInto(pva)
+                .columns(List.of(pva.seriesId, pva.ts,
+                        pva.startValue, pva.firstValue, pva.firstTs, pva.lastValue, pva.lastTs,
+                        pva.minimumValue, pva.minimumTs, pva.maximumValue, pva.maximumTs,
+                        pva.average, pva.integral, pva.sumValue, pva.countValue, pva.minimumInPeriod, pva.maximumInPeriod));
+
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (IValueTime<? extends AggregateValue> valueTime : chunk) {
+            if (!(valueTime.getValue() instanceof NumericAggregate)) {
+                throw new IllegalArgumentException("Only numeric aggregates can be stored");
+            }
+            NumericAggregate value = (NumericAggregate) valueTime.getValue();
+            from = Math.min(from, value.getPeriodStartTime());
+            to = Math.max(to, value.getPeriodStartTime());
+            insert = insert.values(seriesId, value.getPeriodStartTime(),
+                    doubleValue(value.getStartValue()), doubleValue(value.getFirstValue()), value.getFirstTime(),
+                    doubleValue(value.getLastValue()), value.getLastTime(),
+                    nanToNull(value.getMinimumValue()), value.getMinimumTime(),
+                    nanToNull(value.getMaximumValue()), value.getMaximumTime(),
+                    nanToNull(value.getAverage()), nanToNull(value.getIntegral()),
+                    value.getSum(), value.getCount(),
+                    nanToNull(value.getMinimumInPeriod()), nanToNull(value.getMaximumInPeriod()));
+        }
+
+        long deleteFrom = from;
+        long deleteTo = to;
+        var finalInsert = insert;
+        doInTransaction(txStatus -> {
+            create.deleteFrom(pva)
+                    .where(pva.seriesId.eq(seriesId))
+                    .and(pva.ts.between(deleteFrom, deleteTo))
+                    .execute();
+            finalInsert.execute();
+        });
+    }
+
+    /**
+     * Delete stored aggregates for a series, aggregates for periods which overlap the time range are deleted.
+     *
+     * @param seriesId series to delete aggregates for, null for all series
+     * @param from from time (inclusive), null for no lower bound
+     * @param to to time (exclusive), null for no upper bound
+     */
+    public void deleteAggregates(@Nullable Integer seriesId, @Nullable Long from, @Nullable Long to) {
+        Condition condition = DSL.noCondition();
+        if (seriesId != null) {
+            condition = condition.and(pva.seriesId.eq(seriesId));
+        }
+        if (from != null) {
+            ZonedDateTime start = truncateToPeriod(Instant.ofEpochMilli(from).atZone(clock.getZone()), preAggregationPeriod);
+            condition = condition.and(pva.ts.greaterOrEqual(start.toInstant().toEpochMilli()));
+        }
+        if (to != null) {
+            condition = condition.and(pva.ts.lessThan(to));
+        }
+        create.deleteFrom(pva).where(condition).execute();
+    }
+
+    /**
+     * Delete stored aggregates before a time, used when raw values before the time are deleted. Periods which end at
+     * or before the time are deleted, the period which contains the time is re-aggregated from the remaining raw values.
+     *
+     * @param seriesId series to delete aggregates for, null for all series
+     * @param endTime end time (exclusive)
+     */
+    public void deleteAggregatesBefore(@Nullable Integer seriesId, long endTime) {
+        ZonedDateTime periodStart = truncateToPeriod(Instant.ofEpochMilli(endTime).atZone(clock.getZone()), preAggregationPeriod);
+        long periodStartTime = periodStart.toInstant().toEpochMilli();
+        Condition series = seriesId == null ? DSL.noCondition() : pva.seriesId.eq(seriesId);
+        create.deleteFrom(pva)
+                .where(series)
+                .and(pva.ts.lessThan(periodStartTime))
+                .execute();
+
+        if (periodStartTime < endTime) {
+            List<Integer> seriesIds = create.select(pva.seriesId)
+                    .from(pva)
+                    .where(series)
+                    .and(pva.ts.eq(periodStartTime))
+                    .fetch(pva.seriesId);
+            ZonedDateTime periodEnd = periodStart.plus(preAggregationPeriod);
+            for (Integer id : seriesIds) {
+                DataPointVO point = dataPointDao.getBySeriesId(id);
+                if (point != null && preAggregationSupported(point)) {
+                    try (var aggregates = queryRealtime(point, periodStart, periodEnd, null, preAggregationPeriod)) {
+                        save(point, aggregates, chunkSize);
+                    }
+                } else {
+                    deleteAggregates(id, periodStartTime, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete stored aggregates which overlap inserted raw values, i.e. values which were back-filled, imported or
+     * replayed after the period was aggregated. Aggregates for the period containing the time and all later periods
+     * are deleted, these periods are aggregated on-the-fly until they are folded in again by the next
+     * {@link #updateAggregates()}.
+     *
+     * @param seriesId series the values were inserted for
+     * @param time earliest inserted time
+     */
+    public void valuesInserted(int seriesId, long time) {
+        if (time < aggregatedUntil()) {
+            synchronized (seriesLock(seriesId)) {
+                deleteAggregates(seriesId, time, null);
+            }
+        }
+    }
+
+    /**
+     * @return time before which values may have been folded into stored aggregates, values inserted at or after this
+     * time do not overlap a stored aggregate
+     */
+    public long aggregatedUntil() {
+        return truncateToPeriod(boundary(), preAggregationPeriod).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Re-aggregate the stored aggregates which overlap a time range from the raw values, used when raw values are
+     * deleted. Only periods which were previously folded in are re-aggregated.
+     *
+     * @param from from time (inclusive)
+     * @param to to time (exclusive)
+     */
+    public void invalidateAggregates(DataPointVO point, long from, long to) {
+        synchronized (seriesLock(point.getSeriesId())) {
+            invalidateAggregatesImpl(point, from, to);
+        }
+    }
+
+    private void invalidateAggregatesImpl(DataPointVO point, long from, long to) {
+        ZoneId zone = clock.getZone();
+        ZonedDateTime storedUntil = storedUntil(point.getSeriesId(), zone);
+        if (storedUntil == null) {
+            return;
+        }
+
+        ZonedDateTime start = truncateToPeriod(Instant.ofEpochMilli(from).atZone(zone), preAggregationPeriod);
+        ZonedDateTime end = truncateToPeriod(Instant.ofEpochMilli(to).atZone(zone), preAggregationPeriod);
+        if (end.toInstant().toEpochMilli() < to) {
+            end = end.plus(preAggregationPeriod);
+        }
+        end = min(end, storedUntil);
+
+        deleteAggregates(point.getSeriesId(), from, to);
+        if (start.isBefore(end) && preAggregationSupported(point)) {
+            try (var aggregates = queryRealtime(point, start, end, null, preAggregationPeriod)) {
+                save(point, aggregates, chunkSize);
+            }
+        }
+    }
+
+    /**
+     * Delete stored aggregates for series which no longer exist.
+     */
+    public void deleteOrphanedAggregates() {
+        create.deleteFrom(pva)
+                .where(pva.seriesId.notIn(create.select(dp.seriesId).from(dp)))
+                .execute();
+    }
+
+    @Override
+    public boolean supportsPreAggregation() {
+        return true;
+    }
+
+    @Override
+    public void setPreAggregationEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isPreAggregationEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Folds raw values older than the boundary into the stored aggregates. Each series is aggregated from the end of
+     * its last stored aggregate (or from its first raw value) up to the boundary, truncated to the aggregation period.
+     * Only one update runs at a time, if an update is already running this method returns immediately.
+     */
+    @Override
+    public void updateAggregates() {
+        if (!enabled || !updating.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            ZonedDateTime end = truncateToPeriod(boundary(), preAggregationPeriod);
+            // single query without the relational data (tags etc.), the point locator is stored in the data column
+            List<DataPointVO> points = dataPointDao.getJoinedSelectQuery()
+                    .where(dp.dataTypeId.eq(DataType.NUMERIC.getId()))
+                    .fetch(dataPointDao::mapRecord);
+
+            for (DataPointVO point : points) {
+                if (!enabled) {
+                    break;
+                }
+                try {
+                    synchronized (seriesLock(point.getSeriesId())) {
+                        updateAggregates(point, end);
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to update aggregates for point {}", point.getXid(), e);
+                }
+            }
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    private void updateAggregates(DataPointVO point, ZonedDateTime end) {
+        ZonedDateTime from = storedUntil(point.getSeriesId(), end.getZone());
+        if (from == null) {
+            var inception = pointValueDao.getInceptionDate(point);
+            if (inception.isEmpty()) {
+                return;
+            }
+            from = truncateToPeriod(Instant.ofEpochMilli(inception.get()).atZone(end.getZone()), preAggregationPeriod);
+        }
+
+        if (from.isBefore(end)) {
+            try (var aggregates = queryRealtime(point, from, end, null, preAggregationPeriod)) {
+                save(point, aggregates, chunkSize);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Updated aggregates for point {} from {} to {}", point.getXid(), from, end);
+            }
+        }
+    }
+
+    private Object seriesLock(int seriesId) {
+        return seriesLocks[Math.floorMod(seriesId, seriesLocks.length)];
+    }
+
+    private NumericAggregate mapRecord(PointValueAggregatesRecord record, ZoneId zone) {
+        long periodStart = record.get(pva.ts);
+        long periodEnd = Instant.ofEpochMilli(periodStart).atZone(zone).plus(preAggregationPeriod).toInstant().toEpochMilli();
+        return new StoredNumericAggregate(periodStart, periodEnd, record);
+    }
+
+    private static @Nullable Double doubleValue(@Nullable DataValue value) {
+        return value == null ? null : value.getDoubleValue();
+    }
+
+    private static @Nullable Double nanToNull(@Nullable Double value) {
+        return value == null || Double.isNaN(value) ? null : value;
+    }
+
+    private static Double nullToNan(@Nullable Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static @Nullable DataValue numericValue(@Nullable Double value) {
+        return value == null ? null : new NumericValue(value);
+    }
+
+    /**
+     * Aggregate read back from the pointValueAggregates table
+     */
+    private static class StoredNumericAggregate implements NumericAggregate {
+
+        private final long periodStartTime;
+        private final long periodEndTime;
+        private final DataValue startValue;
+        private final DataValue firstValue;
+        private final Long firstTime;
+        private final DataValue lastValue;
+        private final Long lastTime;
+        private final Double minimumValue;
+        private final Long minimumTime;
+        private final Double maximumValue;
+        private final Long maximumTime;
+        private final Double average;
+        private final Double integral;
+        private final DoubleSummaryStatistics statistics;
+
+        private StoredNumericAggregate(long periodStartTime, long periodEndTime, Record record) {
+            PointValueAggregates pva = PointValueAggregates.POINT_VALUE_AGGREGATES;
+            this.periodStartTime = periodStartTime;
+            this.periodEndTime = periodEndTime;
+            this.startValue = numericValue(record.get(pva.startValue));
+            this.firstValue = numericValue(record.get(pva.firstValue));
+            this.firstTime = record.get(pva.firstTs);
+            this.lastValue = numericValue(record.get(pva.lastValue));
+            this.lastTime = record.get(pva.lastTs);
+            this.minimumValue = nullToNan(record.get(pva.minimumValue));
+            this.minimumTime = record.get(pva.minimumTs);
+            this.maximumValue = nullToNan(record.get(pva.maximumValue));
+            this.maximumTime = record.get(pva.maximumTs);
+            this.average = nullToNan(record.get(pva.average));
+            this.integral = nullToNan(record.get(pva.integral));
+
+            long count = record.get(pva.countValue);
+            this.statistics = count == 0 ? new DoubleSummaryStatistics() : new DoubleSummaryStatistics(count,
+                    record.get(pva.minimumInPeriod), record.get(pva.maximumInPeriod), record.get(pva.sumValue));
+        }
+
+        @Override
+        public long getPeriodStartTime() {
+            return periodStartTime;
+        }
+
+        @Override
+        public long getPeriodEndTime() {
+            return periodEndTime;
+        }
+
+        @Override
+        public DataValue getStartValue() {
+            return startValue;
+        }
+
+        @Override
+        public DataValue getFirstValue() {
+            return firstValue;
+        }
+
+        @Override
+        public Long getFirstTime() {
+            return firstTime;
+        }
+
+        @Override
+        public DataValue getLastValue() {
+            return lastValue;
+        }
+
+        @Override
+        public Long getLastTime() {
+            return lastTime;
+        }
+
+        @Override
+        public long getCount() {
+            return statistics.getCount();
+        }
+
+        @Override
+        public Double getMinimumValue() {
+            return minimumValue;
+        }
+
+        @Override
+        public Long getMinimumTime() {
+            return minimumTime;
+        }
+
+        @Override
+        public Double getMaximumValue() {
+            return maximumValue;
+        }
+
+        @Override
+        public Long getMaximumTime() {
+            return maximumTime;
+        }
+
+        @Override
+        public Double getAverage() {
+            return average;
+        }
+
+        @Override
+        public Double getIntegral() {
+            return integral;
+        }
+
+        @Override
+        public double getSum() {
+            return statistics.getSum();
+        }
+
+        @Override
+        public double getMinimumInPeriod() {
+            return statistics.getCount() > 0L ? statistics.getMin() : Double.NaN;
+        }
+
+        @Override
+        public double getMaximumInPeriod() {
+            return statistics.getCount() > 0L ? statistics.getMax() : Double.NaN;
+        }
+
+        @Override
+        public DoubleSummaryStatistics getStatistics() {
+            return statistics;
+        }
+
+        @Override
+        public String toString() {
+            return "StoredNumericAggregate{" +
+                    "periodStartTime=" + Instant.ofEpochMilli(periodStartTime) +
+                    ", periodEndTime=" + Instant.ofEpochMilli(periodEndTime) +
+                    '}';
+        }
+    }
+}
@@ -3,14 +3,18 @@
  */
 package com.serotonin.m2m2.db.dao;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,6 +30,7 @@ import org.jooq.ResultQuery;
 import org.jooq.Select;
 import org.jooq.SelectOnConditionStep;
 import org.jooq.SelectUnionStep;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +45,7 @@ import com.serotonin.m2m2.DataType;
 import com.serotonin.m2m2.db.DatabaseProxy;
 import com.serotonin.m2m2.db.dao.pointvalue.AggregateDao;
 import com.serotonin.m2m2.db.dao.pointvalue.DefaultAggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.PointValueBatch;
 import com.serotonin.m2m2.db.dao.pointvalue.StartAndEndTime;
 import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
@@ -64,11 +70,29 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
     protected final PointValueAnnotations pva = PointValueAnnotations.POINT_VALUE_ANNOTATIONS;
     protected final PointValues pv = PointValues.POINT_VALUES;
     protected final DataPoints dp = DataPoints.DATA_POINTS;
-    protected final DefaultAggregateDao aggregateDao;
+    protected final AggregateDao aggregateDao;
+    protected final @Nullable PointValuePartitioning partitioning;
 
     public BasicSQLPointValueDao(DatabaseProxy databaseProxy) {
+        this(databaseProxy, DefaultAggregateDao::new);
+    }
+
+    /**
+     * @param aggregateDaoFactory creates the {@link AggregateDao} for this point value DAO
+     */
+    protected BasicSQLPointValueDao(DatabaseProxy databaseProxy, Function<? super PointValueDao, ? extends AggregateDao> aggregateDaoFactory) {
+        this(databaseProxy, aggregateDaoFactory, null);
+    }
+
+    /**
+     * @param aggregateDaoFactory creates the {@link AggregateDao} for this point value DAO
+     * @param partitioning partitioning of the point values table, null if the table is not partitioned
+     */
+    protected BasicSQLPointValueDao(DatabaseProxy databaseProxy, Function<? super PointValueDao, ? extends AggregateDao> aggregateDaoFactory,
+                                    @Nullable PointValuePartitioning partitioning) {
         super(databaseProxy);
-        this.aggregateDao = new DefaultAggregateDao(this);
+        this.aggregateDao = aggregateDaoFactory.apply(this);
+        this.partitioning = partitioning;
     }
 
     @Override
@@ -312,6 +336,50 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
         return query.stream().map(this::mapRecord);
     }
 
+    @Override
+    public void streamPointValueBatches(Collection<? extends DataPointVO> vos, @Nullable Long from, @Nullable Long to,
+                                        TimeOrder sortOrder, int chunkSize, Consumer<? super PointValueBatch> callback) {
+        PointValueDao.validateBatchable(vos);
+        PointValueDao.validateTimePeriod(from, to);
+        PointValueDao.validateNotNull(sortOrder);
+        PointValueDao.validateChunkSize(chunkSize);
+        PointValueDao.validateNotNull(callback);
+        if (vos.isEmpty()) return;
+
+        var query = create.select(pv.dataPointId, pv.dataType, pv.pointValue, pv.ts)
+                .from(pv)
+                .where(seriesIdCondition(vos));
+        if (from != null) {
+            query = query.and(pv.ts.greaterOrEqual(from));
+        }
+        if (to != null) {
+            query = query.and(pv.ts.lessThan(to));
+        }
+        var select = query.orderBy(sortOrder == TimeOrder.ASCENDING ? pv.ts.asc() : pv.ts.desc());
+
+        // read the primitives directly from the result set, avoids creating a record and point value per row
+        PointValueBatch batch = new PointValueBatch(chunkSize);
+        try (ResultSet resultSet = select.fetchResultSet()) {
+            while (resultSet.next()) {
+                DataType dataType = DataType.fromId(resultSet.getInt(2));
+                if (dataType == null || dataType == DataType.ALPHANUMERIC) {
+                    // point's data type was changed, skip values which can't be represented
+                    continue;
+                }
+                batch.add(resultSet.getInt(1), dataType, resultSet.getDouble(3), resultSet.getLong(4));
+                if (batch.isFull()) {
+                    callback.accept(batch);
+                    batch.clear();
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error reading point values from result set", e);
+        }
+        if (!batch.isEmpty()) {
+            callback.accept(batch);
+        }
+    }
+
     @Override
     public Map<Integer, IdPointValueTime> initialValues(Collection<? extends DataPointVO> vos, long time) {
         PointValueDao.validateNotNull(vos);
@@ -398,11 +466,25 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
         }
     }
 
+    /**
+     * If the table is partitioned only entire partitions are dropped, values are retained until all values in their
+     * partition are older than the end time. The number of deleted values is not returned in this case.
+     */
     @Override
     public Optional<Long> deletePointValuesBefore(long endTime) {
+        if (partitioning != null) {
+            OptionalLong dropped = partitioning.dropPartitionsBefore(endTime);
+            if (dropped.isPresent()) {
+                deleteOrphanedPointValueAnnotations();
+                deleteAggregatesBefore(null, dropped.getAsLong());
+            }
+            return Optional.empty();
+        }
         DeleteConditionStep<PointValuesRecord> delete = baseDelete()
                 .where(pv.ts.lessThan(endTime));
-        return Optional.of(deletePointValues(delete));
+        Optional<Long> result = Optional.of(deletePointValues(delete));
+        deleteAggregatesBefore(null, endTime);
+        return result;
     }
 
     public DataValue createDataValue(PointValuesRecord pvRecord, PointValueAnnotationsRecord pvaRecord) {
@@ -454,7 +536,9 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
         DeleteConditionStep<PointValuesRecord> delete = baseDelete()
                 .where(pv.dataPointId.eq(vo.getSeriesId()))
                 .and(pv.ts.eq(ts));
-        return Optional.of(deletePointValues(delete));
+        Optional<Long> result = Optional.of(deletePointValues(delete));
+        invalidateAggregates(vo, ts, ts + 1);
+        return result;
     }
 
     @Override
@@ -463,7 +547,9 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
         DeleteConditionStep<PointValuesRecord> delete = baseDelete()
                 .where(pv.dataPointId.eq(vo.getSeriesId()))
                 .and(pv.ts.lessThan(endTime));
-        return Optional.of(deletePointValues(delete));
+        Optional<Long> result = Optional.of(deletePointValues(delete));
+        deleteAggregatesBefore(vo.getSeriesId(), endTime);
+        return result;
     }
 
     @Override
@@ -478,7 +564,15 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
         if (endTime != null) {
             delete = delete.and(pv.ts.lessThan(endTime));
         }
-        return Optional.of(deletePointValues(delete));
+        Optional<Long> result = Optional.of(deletePointValues(delete));
+        if (startTime != null && endTime != null) {
+            invalidateAggregates(vo, startTime, endTime);
+        } else if (endTime != null) {
+            deleteAggregatesBefore(vo.getSeriesId(), endTime);
+        } else {
+            deleteAggregates(vo.getSeriesId(), startTime, endTime);
+        }
+        return result;
     }
 
     @Override
@@ -486,12 +580,16 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
         PointValueDao.validateNotNull(vo);
         DeleteConditionStep<PointValuesRecord> delete = baseDelete()
                 .where(pv.dataPointId.eq(vo.getSeriesId()));
-        return Optional.of(deletePointValues(delete));
+        Optional<Long> result = Optional.of(deletePointValues(delete));
+        deleteAggregates(vo.getSeriesId(), null, null);
+        return result;
     }
 
     @Override
     public Optional<Long> deleteAllPointData() {
-        return Optional.of(deletePointValues(baseDelete()));
+        Optional<Long> result = Optional.of(deletePointValues(baseDelete()));
+        deleteAggregates(null, null, null);
+        return result;
     }
 
     @Override
@@ -502,9 +600,40 @@ public class BasicSQLPointValueDao extends BaseDao implements PointValueDao {
                 ));
         Optional<Long> result = Optional.of(deletePointValues(delete, 5000L, 100000L));
         deleteOrphanedPointValueAnnotations();
+        if (aggregateDao instanceof AggregateDaoSQL) {
+            ((AggregateDaoSQL) aggregateDao).deleteOrphanedAggregates();
+        }
         return result;
     }
 
+    /**
+     * Deletes stored aggregates which overlap deleted point values, if pre-aggregation is in use.
+     */
+    private void deleteAggregates(@Nullable Integer seriesId, @Nullable Long from, @Nullable Long to) {
+        if (aggregateDao instanceof AggregateDaoSQL) {
+            ((AggregateDaoSQL) aggregateDao).deleteAggregates(seriesId, from, to);
+        }
+    }
+
+    /**
+     * Deletes stored aggregates before the end time and re-aggregates the period containing it, if pre-aggregation is
+     * in use.
+     */
+    private void deleteAggregatesBefore(@Nullable Integer seriesId, long endTime) {
+        if (aggregateDao instanceof AggregateDaoSQL) {
+            ((AggregateDaoSQL) aggregateDao).deleteAggregatesBefore(seriesId, endTime);
+        }
+    }
+
+    /**
+     * Re-aggregates stored aggregates which overlap deleted point values, if pre-aggregation is in use.
+     */
+    private void invalidateAggregates(DataPointVO vo, long from, long to) {
+        if (aggregateDao instanceof AggregateDaoSQL) {
+            ((AggregateDaoSQL) aggregateDao).invalidateAggregates(vo, from, to);
+        }
+    }
+
     private void deleteOrphanedPointValueAnnotations() {
         int limit = databaseProxy.batchDeleteSize();
         while (true) {
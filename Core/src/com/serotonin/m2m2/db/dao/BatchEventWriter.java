@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.m2m2.rt.event.EventInstance;
+import com.serotonin.m2m2.rt.event.ReturnCause;
+
+/**
+ * Group commit writer for events. Event IDs are allocated up front so that the caller does not have to wait for the
+ * insert, writes are queued and a single thread executes everything that queued up while the previous batch was being
+ * written. Inserts are written using multi-row statements and return to normal updates are grouped by timestamp and
+ * cause, all writes in a batch are committed in a single transaction.
+ *
+ * <p>Writes to the same event are executed in the order they were queued.</p>
+ */
+class BatchEventWriter implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchEventWriter.class);
+    private static final String SQL_STATE_DATA_EXCEPTION = "22";
+    private static final String SQL_STATE_INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final EventDao dao;
+    private final int batchSize;
+    private final BlockingQueue<PendingWrite> queue;
+    private final AtomicInteger nextId;
+    private final Thread thread;
+    private final PendingWrite stop = new PendingWrite(null, null, 0, null);
+    private volatile boolean running = true;
+
+    BatchEventWriter(EventDao dao, int firstId, int batchSize, int queueSize) {
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.nextId = new AtomicInteger(firstId);
+        this.thread = new Thread(this, "Event writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Assigns an ID to the event and queues it for insertion.
+     */
+    CompletableFuture<Void> insert(EventInstance event) {
+        event.setId(nextId.getAndIncrement());
+        return enqueue(new PendingWrite(event, null, 0, null));
+    }
+
+    CompletableFuture<Void> returnToNormal(List<Integer> eventIds, long timestamp, ReturnCause cause) {
+        return enqueue(new PendingWrite(null, eventIds, timestamp, cause));
+    }
+
+    /**
+     * @return future which completes when all writes queued before this call have been committed
+     */
+    CompletableFuture<Void> sync() {
+        return enqueue(new PendingWrite(null, null, 0, null));
+    }
+
+    private CompletableFuture<Void> enqueue(PendingWrite write) {
+        if (!running) {
+            throw new IllegalStateException("Event writer is terminated");
+        }
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.future.completeExceptionally(e);
+        }
+        return write.future;
+    }
+
+    /**
+     * Stop accepting writes, write everything that is queued and wait for the writer thread to exit.
+     */
+    void terminate() throws InterruptedException {
+        running = false;
+        if (thread.isAlive()) {
+            queue.put(stop);
+        }
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        boolean stopped = false;
+        boolean interrupted = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                LOG.warn("Event writer interrupted, writing queued events and exiting");
+                running = false;
+                interrupted = true;
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            stopped = batch.remove(stop);
+            flush(batch);
+            batch.clear();
+        }
+
+        // writes which were queued concurrently with terminate
+        queue.drainTo(batch);
+        batch.remove(stop);
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        try {
+            writeInTransaction(batch);
+            for (PendingWrite write : batch) {
+                write.future.complete(null);
+            }
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                LOG.error("Failed to write event", e);
+                batch.get(0).future.completeExceptionally(e);
+            } else {
+                retryIndividually(batch, e);
+            }
+        }
+    }
+
+    /**
+     * Write each write in its own transaction so that a single bad write doesn't fail the whole batch. If a write
+     * fails with the same kind of SQL error as the batch (e.g. the database is unavailable) the remaining writes are
+     * failed without being tried. Integrity constraint violations and data exceptions are specific to a write and
+     * never fail the remaining writes. The failures are logged once for the batch.
+     */
+    private void retryIndividually(List<PendingWrite> batch, Exception batchFailure) {
+        SQLException batchCause = sqlCause(batchFailure);
+        int failed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            try {
+                writeInTransaction(List.of(write));
+                write.future.complete(null);
+            } catch (Exception e) {
+                failed++;
+                write.future.completeExceptionally(e);
+                if (sameFailure(batchCause, sqlCause(e))) {
+                    for (int j = i + 1; j < batch.size(); j++) {
+                        batch.get(j).future.completeExceptionally(e);
+                        failed++;
+                    }
+                    break;
+                }
+            }
+        }
+        LOG.error("Failed to write batch of {} events, {} failed when retried individually", batch.size(), failed, batchFailure);
+    }
+
+    private void writeInTransaction(List<PendingWrite> batch) {
+        dao.doInTransaction(txStatus -> {
+            write(batch);
+        });
+    }
+
+    private static SQLException sqlCause(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                return (SQLException) t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if both are the same exception class with the same SQLSTATE class, and the SQLSTATE class does not
+     * indicate a failure specific to the data written
+     */
+    private static boolean sameFailure(SQLException batchCause, SQLException cause) {
+        if (batchCause == null || cause == null || batchCause.getClass() != cause.getClass()) {
+            return false;
+        }
+        String stateClass = sqlStateClass(cause);
+        return Objects.equals(sqlStateClass(batchCause), stateClass) &&
+                !SQL_STATE_DATA_EXCEPTION.equals(stateClass) &&
+                !SQL_STATE_INTEGRITY_CONSTRAINT_VIOLATION.equals(stateClass);
+    }
+
+    private static String sqlStateClass(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.length() >= 2 ? state.substring(0, 2) : null;
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<EventInstance> inserts = new ArrayList<>();
+        Map<ReturnToNormalKey, List<Integer>> returnToNormal = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            if (write.insert != null) {
+                inserts.add(write.insert);
+            } else if (write.eventIds != null) {
+                returnToNormal.computeIfAbsent(new ReturnToNormalKey(write.timestamp, write.cause), k -> new ArrayList<>())
+                        .addAll(write.eventIds);
+            }
+        }
+
+        // inserts are written first, updates are always queued after the insert of the event they refer to
+        if (!inserts.isEmpty()) {
+            dao.insertEvents(inserts);
+        }
+        returnToNormal.forEach((key, ids) -> dao.updateReturnToNormal(ids, key.timestamp, key.cause));
+    }
+
+    private static final class PendingWrite {
+        private final EventInstance insert;
+        private final List<Integer> eventIds;
+        private final long timestamp;
+        private final ReturnCause cause;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingWrite(EventInstance insert, List<Integer> eventIds, long timestamp, ReturnCause cause) {
+            this.insert = insert;
+            this.eventIds = eventIds;
+            this.timestamp = timestamp;
+            this.cause = cause;
+        }
+    }
+
+    private static final class ReturnToNormalKey {
+        private final long timestamp;
+        private final ReturnCause cause;
+
+        private ReturnToNormalKey(long timestamp, ReturnCause cause) {
+            this.timestamp = timestamp;
+            this.cause = cause;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ReturnToNormalKey that = (ReturnToNormalKey) o;
+            return timestamp == that.timestamp && cause == that.cause;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(timestamp, cause);
+        }
+    }
+}
@@ -5,6 +5,7 @@ package com.serotonin.m2m2.db.dao;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,6 +14,7 @@ import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -21,6 +23,7 @@ import org.jooq.Cursor;
 import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Record1;
+import org.jooq.Record2;
 import org.jooq.Select;
 import org.jooq.SelectJoinStep;
 import org.jooq.SortField;
@@ -46,6 +49,7 @@ import com.infiniteautomation.mango.db.tables.TimeSeries;
 import com.infiniteautomation.mango.db.tables.UserComments;
 import com.infiniteautomation.mango.db.tables.records.DataPointsRecord;
 import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.permission.PermissionIds;
 import com.infiniteautomation.mango.spring.DaoDependencies;
 import com.infiniteautomation.mango.spring.events.DaoEvent;
 import com.infiniteautomation.mango.spring.events.DaoEventType;
@@ -60,6 +64,7 @@ import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.DataType;
 import com.serotonin.m2m2.IMangoLifecycle;
 import com.serotonin.m2m2.LicenseViolatedException;
+import com.serotonin.m2m2.db.DatabaseType;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
 import com.serotonin.m2m2.module.DataSourceDefinition;
 import com.serotonin.m2m2.module.ModuleRegistry;
@@ -69,13 +74,13 @@ import com.serotonin.m2m2.rt.event.type.AuditEventType;
 import com.serotonin.m2m2.rt.event.type.EventType.EventTypeNames;
 import com.serotonin.m2m2.vo.DataPointSummary;
 import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.DataPointVOCodec;
 import com.serotonin.m2m2.vo.dataPoint.DataPointWithEventDetectors;
 import com.serotonin.m2m2.vo.dataSource.DataSourceVO;
 import com.serotonin.m2m2.vo.event.detector.AbstractPointEventDetectorVO;
 import com.serotonin.m2m2.vo.permission.PermissionHolder;
 import com.serotonin.provider.Providers;
 import com.serotonin.util.ILifecycleState;
-import com.serotonin.util.SerializationHelper;
 
 /**
  *
@@ -86,6 +91,12 @@ import com.serotonin.util.SerializationHelper;
 public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, DataPoints> {
     static final Logger LOG = LoggerFactory.getLogger(DataPointDao.class);
 
+    /**
+     * Maximum number of rows in a single multi-row insert, keeps the number of bind parameters well below the limits
+     * of the JDBC drivers.
+     */
+    private static final int MULTI_ROW_INSERT_SIZE = 500;
+
     private final DataPointTagsDao dataPointTagsDao;
     private final EventDetectorDao eventDetectorDao;
     private final List<DataPointChangeDefinition> changeDefinitions;
@@ -100,6 +111,7 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
     private final EventHandlersMapping eventHandlersMapping;
     private final PointValues pointValues;
     private final DataPointPermissionDefinition dataPointPermissionDefinition;
+    private final int relationalDataBatchSize;
 
     @Autowired
     private DataPointDao(DaoDependencies dependencies,
@@ -120,6 +132,7 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
         this.dataSources = DataSources.DATA_SOURCES;
         this.eventHandlersMapping = EventHandlersMapping.EVENT_HANDLERS_MAPPING;
         this.pointValues = PointValues.POINT_VALUES;
+        this.relationalDataBatchSize = Common.envProps.getInt("db.dataPoints.relationalDataBatchSize", 500);
     }
 
     /**
@@ -137,9 +150,9 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
      * Get data points for a data source, no permissions checks are done by this method.
      */
     public List<DataPointVO> getDataPoints(int dataSourceId) {
-        return getJoinedSelectQuery()
-                .where(table.dataSourceId.eq(dataSourceId))
-                .fetch(this::mapRecordLoadRelationalData);
+        List<DataPointVO> points = new ArrayList<>();
+        customizedQuery(getJoinedSelectQuery().where(table.dataSourceId.eq(dataSourceId)), points::add);
+        return points;
     }
 
     public Set<Integer> getSeriesIds() {
@@ -175,7 +188,6 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
 
                 DataPointWithEventDetectors dp = result.computeIfAbsent(id, (i) -> {
                     DataPointVO dpvo = this.mapRecord(record);
-                    loadRelationalData(dpvo);
                     return new DataPointWithEventDetectors(dpvo, new ArrayList<>());
                 });
 
@@ -186,6 +198,12 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
             }
         }
 
+        List<DataPointVO> points = new ArrayList<>(result.size());
+        for (DataPointWithEventDetectors dp : result.values()) {
+            points.add(dp.getDataPoint());
+        }
+        loadRelationalData(points);
+
         return new ArrayList<>(result.values());
     }
 
@@ -193,9 +211,16 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
      * Check licensing before adding a point
      */
     private void checkAddPoint() {
+        checkAddPoints(1);
+    }
+
+    /**
+     * Check licensing before adding a number of points
+     */
+    private void checkAddPoints(int count) {
         IMangoLifecycle lifecycle = Providers.get(IMangoLifecycle.class);
         Integer limit = lifecycle.dataPointLimit();
-        if(limit != null && this.countMonitor.getValue() >= limit) {
+        if(limit != null && this.countMonitor.getValue() + count > limit) {
             String licenseType;
             if(Common.license() != null)
                 licenseType = Common.license().getLicenseType();
@@ -216,6 +241,80 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
         super.insert(vo);
     }
 
+    /**
+     * Insert a number of new data points in a single transaction. Each distinct permission is found or created once,
+     * the time series and data point rows are inserted using multi-row inserts where the database supports them and
+     * the data points' tags are inserted using a single batch. If the insert fails none of the points are inserted and their ids, series ids and permissions are reset.
+     */
+    public void insert(List<DataPointVO> vos) {
+        checkAddPoints(vos.size());
+
+        int[] seriesIds = new int[vos.size()];
+        MangoPermission[][] permissions = new MangoPermission[vos.size()][];
+        for (int i = 0; i < vos.size(); i++) {
+            DataPointVO vo = vos.get(i);
+            if (vo.getTextRenderer() == null)
+                vo.defaultTextRenderer();
+            seriesIds[i] = vo.getSeriesId();
+            permissions[i] = new MangoPermission[] {vo.getReadPermission(), vo.getEditPermission(), vo.getSetPermission()};
+        }
+
+        try {
+            doInTransaction(status -> {
+                List<DataPointVO> needSeries = new ArrayList<>();
+                Map<MangoPermission, MangoPermission> resolved = new HashMap<>();
+                for (DataPointVO vo : vos) {
+                    if (vo.getSeriesId() <= 0) {
+                        needSeries.add(vo);
+                    }
+                    vo.setReadPermission(resolved.computeIfAbsent(vo.getReadPermission(), permissionService::findOrCreate));
+                    vo.setEditPermission(resolved.computeIfAbsent(vo.getEditPermission(), permissionService::findOrCreate));
+                    vo.setSetPermission(resolved.computeIfAbsent(vo.getSetPermission(), permissionService::findOrCreate));
+                }
+
+                int[] newSeriesIds = insertNewTimeSeries(needSeries.size());
+                for (int i = 0; i < newSeriesIds.length; i++) {
+                    needSeries.get(i).setSeriesId(newSeriesIds[i]);
+                }
+
+                insertRecords(vos);
+
+                dataPointTagsDao.insertTagsForDataPoints(vos);
+
+                for (DataPointVO vo : vos) {
+                    DataSourceDefinition<? extends DataSourceVO> def = ModuleRegistry.getDataSourceDefinition(vo.getPointLocator().getDataSourceType());
+                    if (def != null) {
+                        def.saveRelationalData(null, vo);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // permissions created in the transaction no longer exist, they must not be found in the cache
+            Set<Integer> created = new HashSet<>();
+            for (int i = 0; i < vos.size(); i++) {
+                DataPointVO vo = vos.get(i);
+                MangoPermission[] assigned = {vo.getReadPermission(), vo.getEditPermission(), vo.getSetPermission()};
+                for (int j = 0; j < assigned.length; j++) {
+                    if (permissions[i][j].getId() == null && assigned[j].getId() != null) {
+                        created.add(assigned[j].getId());
+                    }
+                }
+                vo.setId(Common.NEW_ID);
+                vo.setSeriesId(seriesIds[i]);
+                vo.setReadPermission(permissions[i][0]);
+                vo.setEditPermission(permissions[i][1]);
+                vo.setSetPermission(permissions[i][2]);
+            }
+            permissionService.invalidatePermissions(created);
+            throw e;
+        }
+
+        for (DataPointVO vo : vos) {
+            this.publishEvent(createDaoEvent(DaoEventType.CREATE, vo, null));
+        }
+        this.countMonitor.addValue(vos.size());
+    }
+
     /**
      * Update the enabled column
      *
@@ -467,7 +566,7 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
 
         record.set(table.xid, vo.getXid());
         record.set(table.name, vo.getName());
-        record.set(table.data, SerializationHelper.writeObjectToArray(vo));
+        record.set(table.data, DataPointVOCodec.encode(vo));
         record.set(table.dataSourceId, vo.getDataSourceId());
         record.set(table.deviceName, vo.getDeviceName());
         record.set(table.enabled, boolToChar(vo.isEnabled()));
@@ -500,7 +599,7 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
         String xid = record.get(table.xid);
         String name = record.get(table.name);
 
-        DataPointVO dp = (DataPointVO) SerializationHelper.readObjectInContextFromArray(record.get(table.data));
+        DataPointVO dp = DataPointVOCodec.decode(record.get(table.data));
 
         dp.setId(id);
         dp.setXid(xid);
@@ -560,6 +659,83 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
                 .value1();
     }
 
+    /**
+     * Inserts a number of new time series. H2 and Postgres insert them using multi-row inserts, other databases
+     * insert them one at a time.
+     *
+     * @param count number of time series to insert
+     * @return series ids for the new time series
+     */
+    public int[] insertNewTimeSeries(int count) {
+        int[] seriesIds = new int[count];
+        if (!multiRowReturning()) {
+            for (int i = 0; i < count; i++) {
+                seriesIds[i] = insertNewTimeSeries();
+            }
+            return seriesIds;
+        }
+
+        TimeSeries timeSeries = TimeSeries.TIME_SERIES;
+        int i = 0;
+        while (i < count) {
+            int chunk = Math.min(MULTI_ROW_INSERT_SIZE, count - i);
+            var insert = create.insertInto(timeSeries, timeSeries.id).values(DSL.defaultValue(timeSeries.id));
+            for (int j = 1; j < chunk; j++) {
+                insert = insert.values(DSL.defaultValue(timeSeries.id));
+            }
+            for (Record1<Integer> r : insert.returningResult(timeSeries.id).fetch()) {
+                seriesIds[i++] = r.value1();
+            }
+        }
+        return seriesIds;
+    }
+
+    /**
+     * Inserts the data point rows and sets the generated ids on the VOs. H2 and Postgres insert them using multi-row
+     * inserts (ids are matched to points by XID), other databases insert them one at a time.
+     */
+    private void insertRecords(List<DataPointVO> vos) {
+        if (!multiRowReturning()) {
+            for (DataPointVO vo : vos) {
+                int id = create.insertInto(table)
+                        .set(toRecord(vo))
+                        .returningResult(getIdField())
+                        .fetchOptional()
+                        .orElseThrow(NoDataFoundException::new)
+                        .value1();
+                vo.setId(id);
+            }
+            return;
+        }
+
+        for (int from = 0; from < vos.size(); from += MULTI_ROW_INSERT_SIZE) {
+            List<DataPointVO> chunk = vos.subList(from, Math.min(from + MULTI_ROW_INSERT_SIZE, vos.size()));
+            var insert = create.insertInto(table).set(toRecord(chunk.get(0)));
+            for (int i = 1; i < chunk.size(); i++) {
+                insert = insert.newRecord().set(toRecord(chunk.get(i)));
+            }
+
+            Map<String, Integer> ids = new HashMap<>();
+            for (Record2<Integer, String> r : insert.returningResult(getIdField(), table.xid).fetch()) {
+                ids.put(r.value2(), r.value1());
+            }
+            for (DataPointVO vo : chunk) {
+                Integer id = ids.get(vo.getXid());
+                if (id == null) {
+                    throw new NoDataFoundException("No id returned for data point " + vo.getXid());
+                }
+                vo.setId(id);
+            }
+        }
+    }
+
+    /**
+     * @return true if the database returns generated ids for every row of a multi-row insert
+     */
+    private boolean multiRowReturning() {
+        return databaseType == DatabaseType.H2 || databaseType == DatabaseType.POSTGRES;
+    }
+
     /**
      * Does this series id exist in the database
      */
@@ -652,6 +828,61 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
         }
     }
 
+    /**
+     * Loads the tags and permissions for a batch of points using a few queries, instead of installing
+     * suppliers which query for each point
+     */
+    @Override
+    public void loadRelationalData(List<DataPointVO> vos) {
+        if (vos.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        Set<Integer> permissionIds = new HashSet<>();
+        for (DataPointVO vo : vos) {
+            ids.add(vo.getId());
+            permissionIds.add(vo.getReadPermission().getId());
+            permissionIds.add(vo.getEditPermission().getId());
+            permissionIds.add(vo.getSetPermission().getId());
+        }
+        Map<Integer, Map<String, String>> tags = dataPointTagsDao.getTagsForDataPointIds(ids);
+        Map<Integer, MangoPermission> permissions = permissionService.get(permissionIds);
+
+        Map<String, List<DataPointVO>> byDataSourceType = new HashMap<>();
+        for (DataPointVO vo : vos) {
+            Map<String, String> pointTags = tags.getOrDefault(vo.getId(), new HashMap<>());
+            vo.supplyTags(() -> pointTags);
+
+            // not found permissions are left to throw when accessed, as for a single point
+            vo.supplyReadPermission(permissionSupplier(vo.getReadPermission(), permissions));
+            vo.supplyEditPermission(permissionSupplier(vo.getEditPermission(), permissions));
+            vo.supplySetPermission(permissionSupplier(vo.getSetPermission(), permissions));
+
+            byDataSourceType.computeIfAbsent(vo.getPointLocator().getDataSourceType(), k -> new ArrayList<>()).add(vo);
+        }
+
+        byDataSourceType.forEach((type, points) -> {
+            DataSourceDefinition<? extends DataSourceVO> def = ModuleRegistry.getDataSourceDefinition(type);
+            if (def != null) {
+                def.loadRelationalData(points);
+            }
+        });
+    }
+
+    private Supplier<MangoPermission> permissionSupplier(MangoPermission unloaded, Map<Integer, MangoPermission> loaded) {
+        MangoPermission permission = loaded.get(unloaded.getId());
+        if (permission != null) {
+            return () -> permission;
+        }
+        return () -> permissionService.get(unloaded.getId());
+    }
+
+    @Override
+    protected int relationalDataBatchSize() {
+        return relationalDataBatchSize;
+    }
+
     @Override
     public void deleteRelationalData(DataPointVO vo) {
         //delete event handler mappings
@@ -795,6 +1026,48 @@ public class DataPointDao extends AbstractVoDao<DataPointVO, DataPointsRecord, D
         return this.create.select(table.readPermissionId).from(table).where(table.id.eq(dataPointId)).fetchOneInto(Integer.class);
     }
 
+    /**
+     * Get a number of data points by ID, the relational data for the points is loaded in batches
+     * @return map of data point ID to data point, points which do not exist are omitted
+     */
+    public Map<Integer, DataPointVO> getByIds(Collection<Integer> dataPointIds) {
+        List<DataPointVO> vos = new ArrayList<>(dataPointIds.size());
+        for (List<Integer> batch : partitionInParameters(dataPointIds.stream())) {
+            getJoinedSelectQuery()
+                    .where(table.id.in(batch))
+                    .fetch()
+                    .forEach(r -> {
+                        DataPointVO vo = mapRecordSafe(r);
+                        if (vo != null) {
+                            vos.add(vo);
+                        }
+                    });
+        }
+        loadRelationalData(vos);
+
+        Map<Integer, DataPointVO> result = new HashMap<>(vos.size());
+        for (DataPointVO vo : vos) {
+            result.put(vo.getId(), vo);
+        }
+        return result;
+    }
+
+    /**
+     * Get the read, edit and set permission IDs for in memory checks
+     * @return map of data point ID to permission IDs, points which do not exist are omitted
+     */
+    public Map<Integer, PermissionIds> getPermissionIds(Collection<Integer> dataPointIds) {
+        Map<Integer, PermissionIds> result = new HashMap<>(dataPointIds.size());
+        for (List<Integer> batch : partitionInParameters(dataPointIds.stream())) {
+            this.create.select(table.id, table.readPermissionId, table.editPermissionId, table.setPermissionId)
+                    .from(table)
+                    .where(table.id.in(batch))
+                    .fetch()
+                    .forEach(r -> result.put(r.value1(), new PermissionIds(r.value2(), r.value3(), r.value4())));
+        }
+        return result;
+    }
+
     private static class DataPointQueryBuilder extends QueryBuilder<DataPointVO> {
 
         int tagIndex = 0;
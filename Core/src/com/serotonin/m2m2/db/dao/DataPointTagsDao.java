@@ -5,6 +5,8 @@
 package com.serotonin.m2m2.db.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -21,6 +23,7 @@ import org.jooq.Query;
 import org.jooq.Record;
 import org.jooq.Record1;
 import org.jooq.Record2;
+import org.jooq.Record3;
 import org.jooq.Select;
 import org.jooq.SelectConditionStep;
 import org.jooq.SelectJoinStep;
@@ -86,6 +89,26 @@ public class DataPointTagsDao extends BaseDao {
         }
     }
 
+    /**
+     * Retrieves all tag keys and values for a batch of data points using as few queries as possible.
+     * Contains a "name" and "device" key as opposed to the tags retrieved via DataPointVO.getTags().
+     *
+     * @return map of data point id to tags, points without tags are omitted
+     */
+    public Map<Integer, Map<String, String>> getTagsForDataPointIds(Collection<Integer> dataPointIds) {
+        Map<Integer, Map<String, String>> tags = new HashMap<>();
+        for (List<Integer> ids : partitionInParameters(dataPointIds.stream())) {
+            Select<Record3<Integer, String, String>> query = this.create.select(table.dataPointId, table.tagKey, table.tagValue)
+                    .from(table)
+                    .where(table.dataPointId.in(ids));
+
+            try (Stream<Record3<Integer, String, String>> stream = query.stream()) {
+                stream.forEach(r -> tags.computeIfAbsent(r.value1(), k -> new HashMap<>()).put(r.value2(), r.value3()));
+            }
+        }
+        return tags;
+    }
+
     public int deleteTagsForDataPointId(int dataPointId) {
         return this.create.deleteFrom(table)
                 .where(table.dataPointId.eq(dataPointId))
@@ -97,29 +120,41 @@ public class DataPointTagsDao extends BaseDao {
      *
      */
     public void insertTagsForDataPoint(DataPointVO dataPoint) {
-        Map<String, String> tags = dataPoint.getTags();
-        if (tags == null) throw new IllegalArgumentException("Tags cannot be null");
-        if (tags.containsKey(NAME_TAG_KEY)) throw new IllegalArgumentException("Tags cannot contain 'name'");
-        if (tags.containsKey(DEVICE_TAG_KEY)) throw new IllegalArgumentException("Tags cannot contain 'deviceName'");
-
-        int dataPointId = dataPoint.getId();
-        String name = dataPoint.getName();
-        String deviceName = dataPoint.getDeviceName();
+        insertTagsForDataPoints(Collections.singletonList(dataPoint));
+    }
 
+    /**
+     * Insert the tags for a number of new data points using a single batch
+     */
+    public void insertTagsForDataPoints(Collection<DataPointVO> dataPoints) {
         BatchBindStep b = create.batch(
                 DSL.insertInto(table)
                 .columns(table.dataPointId, table.tagKey, table.tagValue)
                 .values((Integer) null, null, null));
-        tags.forEach((key, value) -> b.bind(dataPointId, key, value));
 
-        if (name != null && !name.isEmpty()) {
-            b.bind(dataPointId, NAME_TAG_KEY, name);
-        }
-        if (deviceName != null && !deviceName.isEmpty()) {
-            b.bind(dataPointId, DEVICE_TAG_KEY, deviceName);
+        for (DataPointVO dataPoint : dataPoints) {
+            Map<String, String> tags = dataPoint.getTags();
+            if (tags == null) throw new IllegalArgumentException("Tags cannot be null");
+            if (tags.containsKey(NAME_TAG_KEY)) throw new IllegalArgumentException("Tags cannot contain 'name'");
+            if (tags.containsKey(DEVICE_TAG_KEY)) throw new IllegalArgumentException("Tags cannot contain 'deviceName'");
+
+            int dataPointId = dataPoint.getId();
+            String name = dataPoint.getName();
+            String deviceName = dataPoint.getDeviceName();
+
+            tags.forEach((key, value) -> b.bind(dataPointId, key, value));
+
+            if (name != null && !name.isEmpty()) {
+                b.bind(dataPointId, NAME_TAG_KEY, name);
+            }
+            if (deviceName != null && !deviceName.isEmpty()) {
+                b.bind(dataPointId, DEVICE_TAG_KEY, deviceName);
+            }
         }
 
-        b.execute();
+        if (b.size() > 0) {
+            b.execute();
+        }
     }
 
     public void updateTags(DataPointVO dataPoint) {
@@ -4,7 +4,10 @@
 package com.serotonin.m2m2.db.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jooq.Record;
 import org.jooq.impl.DSL;
@@ -18,6 +21,7 @@ import com.infiniteautomation.mango.db.tables.DataSources;
 import com.infiniteautomation.mango.db.tables.EventHandlersMapping;
 import com.infiniteautomation.mango.db.tables.records.DataSourcesRecord;
 import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.permission.PermissionIds;
 import com.infiniteautomation.mango.spring.DaoDependencies;
 import com.infiniteautomation.mango.spring.events.DaoEventType;
 import com.infiniteautomation.mango.spring.events.StateChangeEvent;
@@ -265,6 +269,22 @@ public class DataSourceDao extends AbstractVoDao<DataSourceVO, DataSourcesRecord
                 .fetchOneInto(Integer.class);
     }
 
+    /**
+     * Get the read and edit permission IDs for in memory checks
+     * @return map of data source ID to permission IDs, data sources which do not exist are omitted
+     */
+    public Map<Integer, PermissionIds> getPermissionIds(Collection<Integer> dataSourceIds) {
+        Map<Integer, PermissionIds> result = new HashMap<>(dataSourceIds.size());
+        for (List<Integer> batch : partitionInParameters(dataSourceIds.stream())) {
+            this.create.select(table.id, table.readPermissionId, table.editPermissionId)
+                    .from(table)
+                    .where(table.id.in(batch))
+                    .fetch()
+                    .forEach(r -> result.put(r.value1(), new PermissionIds(r.value2(), r.value3(), null)));
+        }
+        return result;
+    }
+
     public void notifyStateChanged(DataSourceVO vo, ILifecycleState state) {
         eventPublisher.publishEvent(new StateChangeEvent<>(this, state, vo));
     }
@@ -6,10 +6,15 @@ package com.serotonin.m2m2.db.dao;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+
 import org.jooq.Condition;
 import org.jooq.Field;
+import org.jooq.InsertValuesStepN;
 import org.jooq.Record;
 import org.jooq.SelectJoinStep;
 import org.jooq.Table;
@@ -17,6 +22,7 @@ import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
@@ -35,6 +41,7 @@ import com.serotonin.ShouldNeverHappenException;
 import com.serotonin.json.JsonException;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.DatabaseType;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
 import com.serotonin.m2m2.module.EventTypeDefinition;
 import com.serotonin.m2m2.module.ModuleRegistry;
@@ -74,11 +81,13 @@ public class EventDao extends BaseDao {
     private final Users userTable;
     private final UserComments userCommentTable;
     private final PermissionService permissionService;
+    private final BatchEventWriter writer;
 
     @Autowired
     private EventDao(AuditEventDao auditEventDao,
             UserCommentDao userCommentDao,
-            PermissionService permissionService, DatabaseProxy databaseProxy) {
+            PermissionService permissionService, DatabaseProxy databaseProxy,
+            Environment env) {
         super(databaseProxy);
         this.auditEventDao = auditEventDao;
         this.userCommentDao = userCommentDao;
@@ -86,14 +95,83 @@ public class EventDao extends BaseDao {
         this.userTable = Users.USERS;
         this.userCommentTable = UserComments.USER_COMMENTS;
         this.permissionService = permissionService;
+
+        if (env.getProperty("events.writer.enabled", Boolean.class, false)) {
+            if (databaseType == DatabaseType.MSSQL) {
+                LOG.warn("Batched event writer is not supported on MSSQL, events will be written synchronously");
+                this.writer = null;
+            } else {
+                int batchSize = env.getProperty("events.writer.batchSize", Integer.class, 1000);
+                int queueSize = env.getProperty("events.writer.queueSize", Integer.class, 10000);
+                this.writer = new BatchEventWriter(this, getMaxId() + 1, batchSize, queueSize);
+            }
+        } else {
+            this.writer = null;
+        }
+
+        // IDs may have been allocated by the batched event writer in a previous run which was not shut down cleanly
+        try {
+            resyncIdentity();
+        } catch (Exception e) {
+            LOG.warn("Failed to resynchronize identity of events table", e);
+        }
+    }
+
+    @PreDestroy
+    private void terminate() throws InterruptedException {
+        if (writer != null) {
+            writer.terminate();
+            // IDs were allocated by the writer, resynchronize the identity in case the writer is disabled on restart
+            try {
+                resyncIdentity();
+            } catch (Exception e) {
+                LOG.warn("Failed to resynchronize identity of events table", e);
+            }
+        }
     }
 
     public static EventDao getInstance() {
         return instance.get();
     }
 
+    /**
+     * Save an event, if the batched event writer is enabled this waits for the event to be written.
+     */
     public void saveEvent(EventInstance event) {
-        if (event.getEventType().getEventType().equals(EventTypeNames.AUDIT)) {
+        if (writer != null && !isAuditEvent(event)) {
+            join(saveEventAsync(event));
+        } else {
+            saveEventNow(event);
+        }
+    }
+
+    /**
+     * Save an event, if the batched event writer is enabled the event is queued for writing and will have its ID
+     * assigned before this method returns. Audit events are always written synchronously.
+     *
+     * @return future which completes when the event has been written to the database
+     */
+    public CompletableFuture<Void> saveEventAsync(EventInstance event) {
+        if (writer == null || isAuditEvent(event)) {
+            saveEventNow(event);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (event.getId() == Common.NEW_ID) {
+            savePreRelationalData(event);
+            return writer.insert(event);
+        } else if (event.isRtnApplicable() && !event.isActive()) {
+            return writer.returnToNormal(List.of(event.getId()), event.getRtnTimestamp(), event.getRtnCause());
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private boolean isAuditEvent(EventInstance event) {
+        return event.getEventType().getEventType().equals(EventTypeNames.AUDIT);
+    }
+
+    private void saveEventNow(EventInstance event) {
+        if (isAuditEvent(event)) {
             AuditEventInstanceVO vo = new AuditEventInstanceVO();
             AuditEventType type = (AuditEventType) event.getEventType();
             vo.setTypeName(type.getEventSubtype());
@@ -133,6 +211,55 @@ public class EventDao extends BaseDao {
         event.setId(id);
     }
 
+    /**
+     * Insert events which already have an ID assigned using multi-row inserts
+     */
+    void insertEvents(List<EventInstance> events) {
+        Field<?>[] fields = table.fields();
+        int rowsPerStatement = Math.max(1, databaseProxy.maxInParameters() / fields.length);
+        for (int i = 0; i < events.size(); i += rowsPerStatement) {
+            InsertValuesStepN<EventsRecord> insert = create.insertInto(table, fields);
+            for (EventInstance event : events.subList(i, Math.min(i + rowsPerStatement, events.size()))) {
+                Record record = voToObjectArray(event);
+                record.set(table.id, event.getId());
+                insert = insert.values(record.intoArray());
+            }
+            insert.execute();
+        }
+    }
+
+    private int getMaxId() {
+        Integer max = create.select(DSL.max(table.id)).from(table).fetchSingle().value1();
+        return max == null ? 0 : max;
+    }
+
+    /**
+     * Advance the identity of the id column past the maximum id, the identity is never moved backwards.
+     */
+    private void resyncIdentity() {
+        int next = getMaxId() + 1;
+        switch (databaseType) {
+            case H2:
+                Long base = create.select(DSL.field("IDENTITY_BASE", Long.class))
+                        .from("INFORMATION_SCHEMA.COLUMNS")
+                        .where(DSL.field("TABLE_SCHEMA").eq("PUBLIC"))
+                        .and(DSL.field("TABLE_NAME").eq("EVENTS"))
+                        .and(DSL.field("COLUMN_NAME").eq("ID"))
+                        .fetchOne(0, Long.class);
+                if (base == null || base < next) {
+                    create.execute("ALTER TABLE events ALTER COLUMN id RESTART WITH " + next);
+                }
+                break;
+            case POSTGRES:
+                create.execute("SELECT setval(pg_get_serial_sequence('events', 'id'), GREATEST(" + next +
+                        ", nextval(pg_get_serial_sequence('events', 'id'))), false)");
+                break;
+            default:
+                // MySQL advances the auto increment value when inserting explicit IDs
+                break;
+        }
+    }
+
     private Record voToObjectArray(EventInstance event) {
         EventType type = event.getEventType();
         Record record = table.newRecord();
@@ -255,6 +382,30 @@ public class EventDao extends BaseDao {
             throw new ShouldNeverHappenException("Not enough Ids!");
         }
 
+        if (writer != null) {
+            join(writer.returnToNormal(eventIds, timestamp, cause));
+        } else {
+            updateReturnToNormal(eventIds, timestamp, cause);
+        }
+    }
+
+    /**
+     * Bulk return events to normal, if the batched event writer is enabled the update is queued.
+     *
+     * @return future which completes when the events have been updated in the database
+     */
+    public CompletableFuture<Void> returnEventsToNormalAsync(List<Integer> eventIds, long timestamp, ReturnCause cause) {
+        if (writer != null) {
+            if(eventIds.size() == 0) {
+                throw new ShouldNeverHappenException("Not enough Ids!");
+            }
+            return writer.returnToNormal(eventIds, timestamp, cause);
+        }
+        returnEventsToNormal(eventIds, timestamp, cause);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    void updateReturnToNormal(List<Integer> eventIds, long timestamp, ReturnCause cause) {
         for(List<Integer> batch : partitionInParameters(eventIds.stream())) {
             create.update(table)
                     .set(table.rtnTs, timestamp)
@@ -270,6 +421,8 @@ public class EventDao extends BaseDao {
      * @param userId the ID of the user that acknowledged the event, or null if acknowledged by system (e.g. EventManagerListenerDefinition)
      */
     public boolean ackEvent(int eventId, long time, Integer userId, TranslatableMessage alternateAckSource) {
+        // the result depends on the state of the event in the database, make sure pending writes are complete
+        awaitPendingWrites();
         return create.update(table)
                 .set(table.ackTs, time)
                 .set(table.ackUserId, userId)
@@ -283,6 +436,7 @@ public class EventDao extends BaseDao {
      * Get all active events
      */
     public List<EventInstance> getActiveEvents() {
+        awaitPendingWrites();
         List<EventInstance> events = new ArrayList<>();
         getJoinedSelectQuery()
                 .where(table.rtnApplicable.eq(boolToChar(true)))
@@ -300,6 +454,7 @@ public class EventDao extends BaseDao {
      * Get a specfic event instance
      */
     public EventInstance get(int id) {
+        awaitPendingWrites();
         EventInstance item = getJoinedSelectQuery()
                 .where(table.id.eq(id))
                 .limit(1)
@@ -485,6 +640,26 @@ public class EventDao extends BaseDao {
                 )).execute();
     }
 
+    /**
+     * Wait for all events queued by the batched event writer to be written
+     */
+    public void awaitPendingWrites() {
+        if (writer != null) {
+            join(writer.sync());
+        }
+    }
+
+    private void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     public int getEventCount() {
         return create.select(DSL.count(table.id))
                 .from(table)
@@ -4,8 +4,12 @@
 
 package com.serotonin.m2m2.db.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
+import org.jooq.Query;
 import org.jooq.Record;
 import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -93,6 +97,28 @@ public class MangoSessionDataDao extends BaseDao {
                 .execute();
     }
 
+    /**
+     * Insert and update session data in a single batch, within a transaction
+     */
+    public void saveBatch(Collection<MangoSessionDataVO> inserts, Collection<MangoSessionDataVO> updates) {
+        List<Query> queries = new ArrayList<>(inserts.size() + updates.size());
+        for (MangoSessionDataVO vo : inserts) {
+            queries.add(DSL.insertInto(table).set(voToObjectArray(vo)));
+        }
+        for (MangoSessionDataVO vo : updates) {
+            queries.add(DSL.update(table)
+                    .set(voToObjectArray(vo))
+                    .where(table.sessionId.eq(vo.getSessionId()),
+                            table.contextPath.eq(vo.getContextPath()),
+                            table.virtualHost.eq(vo.getVirtualHost())));
+        }
+        if (!queries.isEmpty()) {
+            doInTransaction(txStatus -> {
+                create.batch(queries).execute();
+            });
+        }
+    }
+
     /**
      * Is there a session with this primary key
      */
@@ -5,8 +5,10 @@ package com.serotonin.m2m2.db.dao;
 
 import static org.jooq.impl.DSL.*;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -79,6 +81,45 @@ public class PermissionDao extends BaseDao {
         return new MangoPermission(id);
     }
 
+    /**
+     * Get a batch of MangoPermissions by id
+     * @return map of id to permission, ids which are not found are omitted
+     */
+    public Map<Integer, MangoPermission> get(Collection<Integer> ids) {
+        Map<Integer, MangoPermission> result = new HashMap<>();
+        for (List<Integer> partition : partitionInParameters(ids.stream().distinct())) {
+            Set<Integer> foundIds = create.select(permissions.id).from(permissions)
+                    .where(permissions.id.in(partition))
+                    .fetchSet(permissions.id);
+
+            Map<Integer, Map<Integer, Set<Role>>> mintermMaps = new HashMap<>();
+            create.select(roleTable.id, roleTable.xid, permissionsMinterms.permissionId, permissionsMinterms.mintermId)
+                    .from(permissionsMinterms)
+                    .join(mintermsRoles).on(permissionsMinterms.mintermId.eq(mintermsRoles.mintermId))
+                    .join(roleTable).on(roleTable.id.eq(mintermsRoles.roleId))
+                    .where(permissionsMinterms.permissionId.in(partition))
+                    .orderBy(permissionsMinterms.permissionId.asc(), permissionsMinterms.mintermId.asc())
+                    .fetch()
+                    .forEach(record -> {
+                        Role role = new Role(record.get(roleTable.id), record.get(roleTable.xid));
+                        Integer permissionId = record.get(permissionsMinterms.permissionId);
+                        Integer mintermId = record.get(permissionsMinterms.mintermId);
+                        mintermMaps.computeIfAbsent(permissionId, p -> new HashMap<>())
+                                .computeIfAbsent(mintermId, m -> new HashSet<>()).add(role);
+                    });
+
+            for (Integer id : foundIds) {
+                Map<Integer, Set<Role>> mintermMap = mintermMaps.get(id);
+                if (mintermMap != null) {
+                    result.put(id, new MangoPermission(new HashSet<>(mintermMap.values())).withId(id));
+                } else {
+                    result.put(id, new MangoPermission(id));
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Find the Permission id of the combination of these minterms or create one that matches
      *
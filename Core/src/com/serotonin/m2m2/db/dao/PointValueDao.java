@@ -22,7 +22,7 @@ import java.time.Period;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,19 +31,22 @@ import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.codahale.metrics.Meter;
-import com.infiniteautomation.mango.db.iterators.MergingIterator;
 import com.infiniteautomation.mango.db.iterators.PointValueIterator;
+import com.infiniteautomation.mango.db.iterators.TournamentMergingIterator;
 import com.infiniteautomation.mango.db.query.CountingConsumer;
 import com.infiniteautomation.mango.db.query.LastValueConsumer;
 import com.infiniteautomation.mango.db.query.SingleValueConsumer;
 import com.infiniteautomation.mango.db.query.WideCallback;
+import com.serotonin.m2m2.DataType;
 import com.serotonin.m2m2.db.dao.pointvalue.AggregateDao;
 import com.serotonin.m2m2.db.dao.pointvalue.DefaultAggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.PointValueBatch;
 import com.serotonin.m2m2.db.dao.pointvalue.StartAndEndTime;
 import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
 import com.serotonin.m2m2.rt.dataImage.IdPointValueTime;
@@ -80,6 +83,15 @@ public interface PointValueDao {
         }
     }
 
+    static void validateBatchable(Collection<? extends DataPointVO> vos) {
+        validateNotNull(vos);
+        for (DataPointVO vo : vos) {
+            if (vo.getPointLocator().getDataType() == DataType.ALPHANUMERIC) {
+                throw new IllegalArgumentException("Alphanumeric points can't be read in batches: " + vo.getXid());
+            }
+        }
+    }
+
     /**
      * Save a stream of point values synchronously i.e. immediately.
      * This method blocks until all elements in the stream are consumed.
@@ -105,6 +117,34 @@ public interface PointValueDao {
         pointValues.forEachOrdered(v -> savePointValueSync(v.getPoint(), v.getValue()));
     }
 
+    /**
+     * Save a columnar batch of point values synchronously i.e. immediately. Implementations should override this
+     * to insert the values without creating a point value object per value.
+     *
+     * <p>The default implementation loads the data point for each series ID once, creates a {@link PointValueTime}
+     * for each value and saves them via {@link #savePointValues(Stream)}.</p>
+     *
+     * @param batch values to save, the batch is not modified and may be reused once this method returns
+     * @throws IllegalArgumentException if batch is null, or if there is no data point for a series ID in the batch
+     */
+    default void savePointValues(PointValueBatch batch) {
+        PointValueDao.validateNotNull(batch);
+        // resolve the points before saving any values
+        DataPointDao dataPointDao = DataPointDao.getInstance();
+        Map<Integer, DataPointVO> points = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            points.computeIfAbsent(batch.getSeriesId(i), seriesId -> {
+                DataPointVO point = dataPointDao.getBySeriesId(seriesId);
+                if (point == null) {
+                    throw new IllegalArgumentException("No data point for series ID " + seriesId);
+                }
+                return point;
+            });
+        }
+        savePointValues(IntStream.range(0, batch.size()).mapToObj(i ->
+                new BatchPointValueImpl<>(points.get(batch.getSeriesId(i)), batch.toPointValueTime(i))));
+    }
+
     /**
      * Typically returns a {@link DefaultAggregateDao}, should be a thread safe singleton instance.
      *
@@ -342,8 +382,7 @@ public interface PointValueDao {
         List<PointValueIterator> iterators = vos.stream()
                 .map(p -> new PointValueIterator(this, p, from, to, null, sortOrder, chunkSize))
                 .collect(Collectors.toList());
-        Comparator<IdPointValueTime> comparator = sortOrder.getComparator().thenComparingInt(IdPointValueTime::getSeriesId);
-        MergingIterator<IdPointValueTime> mergingIterator = new MergingIterator<>(iterators, comparator);
+        var mergingIterator = new TournamentMergingIterator<IdPointValueTime>(iterators, sortOrder);
 
         for (int i = 0; (limit == null || i < limit) && mergingIterator.hasNext(); i++) {
             callback.accept(mergingIterator.next());
@@ -461,16 +500,56 @@ public interface PointValueDao {
         if (vos.isEmpty()) return Stream.empty();
         if (vos.size() == 1) return streamPointValues(vos.iterator().next(), from, to, limit, sortOrder);
 
-        Comparator<IdPointValueTime> comparator = sortOrder.getComparator().thenComparingInt(IdPointValueTime::getSeriesId);
         var streams = vos.stream()
                 // limit is a total limit, but may as well limit per point
                 // e.g. if user supplies a limit of 1, we may as well only retrieve a max of 1 per point
                 .map(vo -> streamPointValues(vo, from, to, limit, sortOrder))
                 .collect(Collectors.toList());
-        var result = MergingIterator.mergeStreams(streams, comparator);
+        var result = TournamentMergingIterator.mergeStreams(streams, sortOrder);
         return limit != null ? result.limit(limit) : result;
     }
 
+    /**
+     * Stream the point values for a collection of points in columnar batches, for the time range {@code [from,to)}.
+     * Values are combined and streamed in either ascending or descending time order, as per
+     * {@link #streamPointValuesCombined(Collection, Long, Long, Integer, TimeOrder)}. Annotations are not included.
+     *
+     * <p>The same batch instance is passed to the callback repeatedly, the callback must copy any values it needs to
+     * keep before returning. Implementations should override this to read values without creating a point value
+     * object per value.</p>
+     *
+     * @param vos data points, must not contain alphanumeric points
+     * @param from from time (epoch ms), inclusive
+     * @param to to time (epoch ms), exclusive
+     * @param sortOrder time order in which to return point values
+     * @param chunkSize maximum number of values in each batch
+     * @param callback receives each batch
+     * @throws IllegalArgumentException if vos is null or contains alphanumeric points, if to is less than from
+     */
+    default void streamPointValueBatches(Collection<? extends DataPointVO> vos, @Nullable Long from, @Nullable Long to,
+                                         TimeOrder sortOrder, int chunkSize, Consumer<? super PointValueBatch> callback) {
+        PointValueDao.validateBatchable(vos);
+        PointValueDao.validateTimePeriod(from, to);
+        PointValueDao.validateNotNull(sortOrder);
+        PointValueDao.validateChunkSize(chunkSize);
+        PointValueDao.validateNotNull(callback);
+        if (vos.isEmpty()) return;
+
+        PointValueBatch batch = new PointValueBatch(chunkSize);
+        try (var stream = streamPointValuesCombined(vos, from, to, null, sortOrder)) {
+            stream.forEachOrdered(value -> {
+                batch.add(value.getSeriesId(), value);
+                if (batch.isFull()) {
+                    callback.accept(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            callback.accept(batch);
+        }
+    }
+
     /**
      * Stream the point values for a single point, for the time range {@code [from,to)} with a limit.
      * The stream includes the point's value at the start and end of the time range ("bookend" values), for ease of charting.
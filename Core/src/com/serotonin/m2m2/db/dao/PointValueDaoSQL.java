@@ -3,15 +3,26 @@
  */
 package com.serotonin.m2m2.db.dao;
 
-import java.util.Arrays;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Stream;
 
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.jooq.Field;
 import org.jooq.impl.DSL;
@@ -20,7 +31,10 @@ import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.dao.TransientDataAccessException;
 import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.infiniteautomation.mango.db.iterators.ChunkingSpliterator;
 import com.infiniteautomation.mango.db.tables.DataPoints;
@@ -28,9 +42,13 @@ import com.infiniteautomation.mango.db.tables.DataSources;
 import com.infiniteautomation.mango.db.tables.PointValues;
 import com.infiniteautomation.mango.monitor.MonitoredValues;
 import com.infiniteautomation.mango.monitor.ValueMonitor;
+import com.infiniteautomation.mango.util.MpscRingBuffer;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.DataType;
 import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.dao.pointvalue.AggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.DefaultAggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.PointValueBatch;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
 import com.serotonin.m2m2.rt.dataImage.IAnnotated;
 import com.serotonin.m2m2.rt.dataImage.PointValueTime;
@@ -40,7 +58,6 @@ import com.serotonin.m2m2.vo.DataPointVO;
 import com.serotonin.m2m2.vo.bean.PointHistoryCount;
 import com.serotonin.metrics.EventHistogram;
 import com.serotonin.timer.RejectedTaskReason;
-import com.serotonin.util.queue.ObjectQueue;
 
 public class PointValueDaoSQL extends BasicSQLPointValueDao {
 
@@ -49,8 +66,14 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
     public static final String SYNC_INSERTS_SPEED_COUNTER_ID = "com.serotonin.m2m2.db.dao.PointValueDaoSQL.SYNC_INSERTS_SPEED_COUNTER";
     public static final String ASYNC_INSERTS_SPEED_COUNTER_ID = "com.serotonin.m2m2.db.dao.PointValueDaoSQL.ASYNC_INSERTS_SPEED_COUNTER";
 
-    private static final int SPAWN_THRESHOLD = 10000;
-    private static final int MAX_INSTANCES = 5;
+    public static final String BATCH_WRITE_QUEUE_TIME_MONITOR_ID = "com.serotonin.m2m2.db.dao.PointValueDaoSQL.BATCH_WRITE_QUEUE_TIME";
+    public static final String SPOOL_SIZE_MONITOR_ID = "com.serotonin.m2m2.db.dao.PointValueDaoSQL.SPOOL_SIZE";
+    public static final String SPOOL_REPLAY_SPEED_MONITOR_ID = "com.serotonin.m2m2.db.dao.PointValueDaoSQL.SPOOL_REPLAY_SPEED";
+
+    public static final int DEFAULT_SPAWN_THRESHOLD = 10000;
+    public static final int DEFAULT_MAX_WRITERS = 5;
+    public static final int DEFAULT_SHARD_CAPACITY = 8192;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
 
     private static final List<Class<? extends RuntimeException>> RETRIED_EXCEPTIONS = List.of(
             RecoverableDataAccessException.class,
@@ -63,24 +86,61 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
     private final EventHistogram asyncCallsCounter = new EventHistogram(5000, 2);
     private final Meter writeMeter = new Meter();
 
-    private final ObjectQueue<BatchWriteEntry> entries = new ObjectQueue<>();
-    private final CopyOnWriteArrayList<BatchWriteTask> instances = new CopyOnWriteArrayList<>();
+    private final Histogram timeInQueue = new Histogram(new ExponentiallyDecayingReservoir());
+
+    private final BatchWriteShard[] shards;
+    private final LongAdder queued = new LongAdder();
+    private final AtomicInteger writerCount = new AtomicInteger();
+    private final int maxWriters;
+    private final int spawnThreshold;
+    private final @Nullable PointValueSpool spool;
+    private final AtomicBoolean replayScheduled = new AtomicBoolean();
+    private volatile boolean shutdown;
 
     private final ValueMonitor<Integer> syncInsertsSpeedCounter;
     private final ValueMonitor<Integer> asyncInsertsSpeedCounter;
-    private volatile long queueSize = 0;
-    private volatile int threadCount = 0;
     private final int batchInsertSize;
     private final int chunkSize;
+    private final String insertSql;
 
     private final SystemSettingsDao systemSettingsDao;
     private final DataPointDao dataPointDao;
 
     public PointValueDaoSQL(DatabaseProxy databaseProxy, MonitoredValues monitoredValues,
                             int chunkSize, SystemSettingsDao systemSettingsDao, DataPointDao dataPointDao) {
-        super(databaseProxy);
+        this(databaseProxy, monitoredValues, chunkSize, systemSettingsDao, dataPointDao,
+                Runtime.getRuntime().availableProcessors(), DEFAULT_SHARD_CAPACITY, DEFAULT_MAX_WRITERS, DEFAULT_SPAWN_THRESHOLD, null,
+                DefaultAggregateDao::new, null);
+    }
+
+    /**
+     * @param shardCount number of shards the async write queue is split into, series are mapped to a shard by ID
+     * @param shardCapacity capacity of each shard's ring buffer, values overflow to an unbounded queue when full
+     * @param maxWriters maximum number of concurrent batch writer tasks
+     * @param spawnThreshold number of queued values per writer before another writer is started
+     * @param spool spool for values which fail to insert, null to disable
+     * @param aggregateDaoFactory creates the {@link AggregateDao}, e.g. {@link AggregateDaoSQL} to enable pre-aggregation
+     * @param partitioning partitioning of the point values table, null if the table is not partitioned
+     */
+    public PointValueDaoSQL(DatabaseProxy databaseProxy, MonitoredValues monitoredValues,
+                            int chunkSize, SystemSettingsDao systemSettingsDao, DataPointDao dataPointDao,
+                            int shardCount, int shardCapacity, int maxWriters, int spawnThreshold,
+                            @Nullable PointValueSpool spool,
+                            Function<? super PointValueDao, ? extends AggregateDao> aggregateDaoFactory,
+                            @Nullable PointValuePartitioning partitioning) {
+        super(databaseProxy, aggregateDaoFactory, partitioning);
+        if (shardCount <= 0 || maxWriters <= 0 || spawnThreshold <= 0) {
+            throw new IllegalArgumentException("Shard count, max writers and spawn threshold must be greater than zero");
+        }
         this.chunkSize = chunkSize;
         this.systemSettingsDao = systemSettingsDao;
+        this.maxWriters = maxWriters;
+        this.spawnThreshold = spawnThreshold;
+        this.shards = new BatchWriteShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new BatchWriteShard(shardCapacity);
+        }
+        this.spool = spool;
 
         this.syncInsertsSpeedCounter = monitoredValues.<Integer>create(SYNC_INSERTS_SPEED_COUNTER_ID)
                 .name(new TranslatableMessage("internal.monitor.SYNC_INSERTS_SPEED_COUNTER_ID"))
@@ -90,8 +150,26 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
                 .name(new TranslatableMessage("internal.monitor.ASYNC_INSERTS_SPEED_COUNTER_ID"))
                 .value(0)
                 .build();
+        monitoredValues.<Double>create(BATCH_WRITE_QUEUE_TIME_MONITOR_ID)
+                .name(new TranslatableMessage("internal.monitor.BATCH_WRITE_QUEUE_TIME"))
+                .supplier(() -> timeInQueue.getSnapshot().getMean())
+                .buildReadThrough();
+        if (spool != null) {
+            monitoredValues.<Long>create(SPOOL_SIZE_MONITOR_ID)
+                    .name(new TranslatableMessage("internal.monitor.POINT_VALUE_SPOOL_SIZE"))
+                    .supplier(spool::pendingEntries)
+                    .buildReadThrough();
+            monitoredValues.<Double>create(SPOOL_REPLAY_SPEED_MONITOR_ID)
+                    .name(new TranslatableMessage("internal.monitor.POINT_VALUE_SPOOL_REPLAY_SPEED"))
+                    .supplier(spool::replaySpeed)
+                    .buildReadThrough();
+        }
 
         this.batchInsertSize = databaseProxy.batchSize();
+        this.insertSql = create.insertInto(pv)
+                .columns(pv.dataPointId, pv.dataType, pv.pointValue, pv.ts)
+                .values(DSL.val(null, pv.dataPointId), DSL.val(null, pv.dataType), DSL.val(null, pv.pointValue), DSL.val(null, pv.ts))
+                .getSQL();
         this.dataPointDao = dataPointDao;
     }
 
@@ -121,12 +199,35 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
         });
 
         ChunkingSpliterator.chunkStream(stream, chunkSize()).forEach(chunk -> {
-            int count = writeMultiple(chunk.stream());
+            int count = writeMultiple(chunk);
             syncCallsCounter.hitMultiple(count);
             syncInsertsSpeedCounter.setValue(syncCallsCounter.getEventCounts()[0] / 5);
         });
     }
 
+    @Override
+    public void savePointValues(PointValueBatch batch) {
+        PointValueDao.validateNotNull(batch);
+        for (int start = 0; start < batch.size(); start += batchInsertSize) {
+            int end = Math.min(batch.size(), start + batchInsertSize);
+            int count;
+            try {
+                count = insertBatch(batch, start, end);
+                writeSucceeded();
+            } catch (RuntimeException e) {
+                List<BatchWriteEntry> entries = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    entries.add(new BatchWriteEntry(batch.getSeriesId(i), batch.getDataType(i),
+                            databaseProxy.applyBounds(batch.getValue(i)), batch.getTime(i)));
+                }
+                writeFailed(entries, e);
+                count = 0;
+            }
+            syncCallsCounter.hitMultiple(count);
+            syncInsertsSpeedCounter.setValue(syncCallsCounter.getEventCounts()[0] / 5);
+        }
+    }
+
     @Override
     public PointValueTime savePointValueSync(DataPointVO vo, PointValueTime pointValue) {
         syncCallsCounter.hit();
@@ -162,12 +263,12 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
 
     @Override
     public long queueSize() {
-        return queueSize;
+        return Math.max(0, queued.sum());
     }
 
     @Override
     public int threadCount() {
-        return threadCount;
+        return writerCount.get();
     }
 
     @Override
@@ -272,6 +373,7 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
                 .fetchOptional()
                 .orElseThrow()
                 .value1();
+        valuesInserted(1, i -> vo.getSeriesId(), i -> time);
 
         if (svalue != null || sourceMessage != null) {
             String shortString = null;
@@ -309,40 +411,103 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
         }
     }
 
-    private static class BatchWriteEntry {
-        private final int seriesId;
-        private final DataType dataType;
-        private final double dvalue;
-        private final long time;
+    static class BatchWriteEntry {
+        final int seriesId;
+        final DataType dataType;
+        final double dvalue;
+        final long time;
+        final long queuedAt;
 
-        public BatchWriteEntry(int seriesId, DataType dataType, double dvalue, long time) {
+        BatchWriteEntry(int seriesId, DataType dataType, double dvalue, long time) {
             this.seriesId = seriesId;
             this.dataType = dataType;
             this.dvalue = dvalue;
             this.time = time;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * A shard of the batch write queue, series are always mapped to the same shard and a shard is only ever
+     * drained by one writer at a time so values for a series are inserted in the order they were queued. The writer
+     * keeps its claim until the values it drained have been written.
+     * Values are added to a lock-free ring buffer, if the ring buffer is full they overflow to an unbounded
+     * lock-free linked queue so that producers never block.
+     */
+    static class BatchWriteShard {
+        private final MpscRingBuffer<BatchWriteEntry> ring;
+        private final ConcurrentLinkedQueue<BatchWriteEntry> overflow = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        BatchWriteShard(int capacity) {
+            this.ring = new MpscRingBuffer<>(capacity);
+        }
+
+        void offer(BatchWriteEntry e) {
+            // once values have overflowed, newer values must queue behind them so that each series stays in order
+            if (!overflow.isEmpty() || !ring.offer(e)) {
+                overflow.add(e);
+            }
+        }
+
+        private boolean tryClaim() {
+            return !claimed.get() && claimed.compareAndSet(false, true);
+        }
+
+        private void release() {
+            claimed.set(false);
+        }
+
+        /**
+         * Must only be called by the writer which has claimed this shard. The ring is drained first, it only holds
+         * values which were queued before those in the overflow queue.
+         */
+        int drainTo(List<BatchWriteEntry> batch, int limit) {
+            int count = ring.drain(batch::add, limit);
+            BatchWriteEntry e;
+            while (count < limit && (e = overflow.poll()) != null) {
+                batch.add(e);
+                count++;
+            }
+            return count;
         }
     }
 
     private void addBatchWriteEntry(BatchWriteEntry e) {
-        synchronized (entries) {
-            entries.push(e);
-            queueSize = entries.size();
+        shards[Math.floorMod(e.seriesId, shards.length)].offer(e);
+        queued.increment();
 
+        int writers = writerCount.get();
+        if (writers == 0 || (writers < maxWriters && queued.sum() > (long) writers * spawnThreshold)) {
+            spawnWriter(writers);
+        }
+    }
+
+    private void spawnWriter(int expectedWriters) {
+        if (shutdown) {
+            // values are drained by shutdown()
+            return;
+        }
+        if (!writerCount.compareAndSet(expectedWriters, expectedWriters + 1)) {
+            // another thread spawned or a writer exited, writers re-check the queue before they exit
+            return;
+        }
+        try {
+            Common.backgroundProcessing.addWorkItem(new BatchWriteTask());
+        } catch (RejectedExecutionException ree) {
+            writerCount.decrementAndGet();
+            throw ree;
+        }
+    }
+
+    private void writerExited() {
+        // re-check the queue in case a producer added an entry while it saw this writer as still running
+        int writers = writerCount.decrementAndGet();
+        if (writers == 0 && queued.sum() > 0) {
             try {
-                if (entries.size() > instances.size() * SPAWN_THRESHOLD) {
-                    if (instances.size() < MAX_INSTANCES) {
-                        BatchWriteTask bwb = new BatchWriteTask();
-                        instances.add(bwb);
-                        try {
-                            Common.backgroundProcessing.addWorkItem(bwb);
-                        } catch (RejectedExecutionException ree) {
-                            instances.remove(bwb);
-                            throw ree;
-                        }
-                    }
-                }
-            } finally {
-                threadCount = instances.size();
+                spawnWriter(0);
+            } catch (RejectedExecutionException e) {
+                log.warn("Unable to restart batch writer, {} point values remain queued", queued.sum());
             }
         }
     }
@@ -351,27 +516,73 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
 
         @Override
         public void execute() {
+            // shards which contributed to the batch stay claimed until it is written, otherwise another writer could
+            // insert later values for the same series first
+            List<BatchWriteShard> claimed = new ArrayList<>(shards.length);
             try {
-                BatchWriteEntry[] inserts;
+                List<BatchWriteEntry> batch = new ArrayList<>(batchInsertSize);
+                int start = ThreadLocalRandom.current().nextInt(shards.length);
                 while (true) {
-                    synchronized (entries) {
-                        if (entries.size() == 0)
-                            break;
-
-                        inserts = new BatchWriteEntry[Math.min(entries.size(), batchInsertSize)];
-                        entries.pop(inserts);
-                        queueSize = entries.size();
+                    int drained = 0;
+                    for (int i = 0; i < shards.length; i++) {
+                        BatchWriteShard shard = shards[(start + i) % shards.length];
+                        if (!shard.tryClaim()) {
+                            continue;
+                        }
+                        claimed.add(shard);
+                        int count = shard.drainTo(batch, batchInsertSize - batch.size());
+                        if (count == 0) {
+                            claimed.remove(claimed.size() - 1);
+                            shard.release();
+                        }
+                        drained += count;
+                        if (batch.size() >= batchInsertSize) {
+                            write(batch, claimed);
+                        }
+                    }
+                    write(batch, claimed);
+                    if (drained == 0 || shutdown) {
+                        break;
                     }
-                    // Create the sql and parameters
-                    int count = writeMultiple(Arrays.stream(inserts));
-                    writeMeter.mark(count);
                 }
             } finally {
-                instances.remove(this);
-                threadCount = instances.size();
+                release(claimed);
+                writerExited();
             }
         }
 
+        private void write(List<BatchWriteEntry> batch, List<BatchWriteShard> claimed) {
+            try {
+                write(batch);
+            } finally {
+                release(claimed);
+            }
+        }
+
+        private void release(List<BatchWriteShard> claimed) {
+            for (BatchWriteShard shard : claimed) {
+                shard.release();
+            }
+            claimed.clear();
+        }
+
+        private void write(List<BatchWriteEntry> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            queued.add(-batch.size());
+            long now = System.nanoTime();
+            long oldest = now;
+            for (BatchWriteEntry e : batch) {
+                oldest = Math.min(oldest, e.queuedAt);
+            }
+            timeInQueue.update(TimeUnit.NANOSECONDS.toMillis(now - oldest));
+
+            int count = writeMultiple(batch);
+            writeMeter.mark(count);
+            batch.clear();
+        }
+
         @Override
         public int getPriority() {
             return WorkItem.PRIORITY_HIGH;
@@ -379,7 +590,7 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
 
         @Override
         public String getDescription() {
-            return "Batch Writing from batch of size: " + entries.size();
+            return "Batch Writing from queue of size: " + queued.sum();
         }
 
         @Override
@@ -394,55 +605,279 @@ public class PointValueDaoSQL extends BasicSQLPointValueDao {
 
         @Override
         public void rejected(RejectedTaskReason reason) {
-            instances.remove(this);
-            threadCount = instances.size();
+            writerExited();
+        }
+    }
+
+    /**
+     * Insert values, if the insert fails due to a transient error the values are written to the spool (if enabled)
+     * for later replay.
+     *
+     * @return number of values inserted
+     */
+    private int writeMultiple(List<BatchWriteEntry> entries) {
+        int written;
+        try {
+            written = insertMultiple(entries);
+        } catch (RuntimeException e) {
+            writeFailed(entries, e);
+            return 0;
+        }
+        writeSucceeded();
+        return written;
+    }
+
+    /**
+     * Spools the values if the failure was due to a transient error (and the spool is enabled)
+     */
+    private void writeFailed(List<BatchWriteEntry> entries, RuntimeException e) {
+        if (spool != null && isRetried(e) && spool.append(entries)) {
+            log.warn("Failed to save {} point values, spooled to disk for replay", entries.size());
+        } else if (isRetried(e)) {
+            log.error("Concurrency failure saving {} point values after 10 tries. Data lost.", entries.size());
+        } else {
+            log.error("Error saving {} point values. Data lost.", entries.size(), e);
         }
     }
 
-    private int writeMultiple(Stream<BatchWriteEntry> entryStream) {
+    private void writeSucceeded() {
+        if (spool != null && spool.pendingEntries() > 0) {
+            scheduleSpoolReplay();
+        }
+    }
+
+    /**
+     * @return number of values inserted
+     * @throws RuntimeException if the values could not be inserted, transient errors are retried up to 10 times
+     */
+    private int insertMultiple(List<BatchWriteEntry> entries) {
         PointValues pv = PointValues.POINT_VALUES;
         var insert = create.insertInto(pv)
                 .columns(pv.dataPointId, pv.dataType, pv.pointValue, pv.ts);
-
-        MutableInt count = new MutableInt();
-        entryStream.forEach(entry -> {
+        for (BatchWriteEntry entry : entries) {
             insert.values(entry.seriesId, entry.dataType.getId(), entry.dvalue, entry.time);
-            count.incrementAndGet();
+        }
+
+        int inserted = executeWithRetries(() -> {
+            insert.execute();
+            return entries.size();
+        });
+        valuesInserted(entries.size(), i -> entries.get(i).seriesId, i -> entries.get(i).time);
+        return inserted;
+    }
+
+    /**
+     * Inserts a range of a columnar batch using a JDBC batch, binding the primitive values directly.
+     *
+     * @return number of values inserted
+     * @throws RuntimeException if the values could not be inserted, transient errors are retried up to 10 times
+     */
+    private int insertBatch(PointValueBatch batch, int start, int end) {
+        int inserted = executeWithRetries(() -> {
+            ejt.batchUpdate(insertSql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int index = start + i;
+                    ps.setInt(1, batch.getSeriesId(index));
+                    ps.setInt(2, batch.getDataTypeId(index));
+                    ps.setDouble(3, databaseProxy.applyBounds(batch.getValue(index)));
+                    ps.setLong(4, batch.getTime(index));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return end - start;
+                }
+            });
+            return end - start;
+        });
+        valuesInserted(end - start, i -> batch.getSeriesId(start + i), i -> batch.getTime(start + i));
+        return inserted;
+    }
+
+    /**
+     * Stored aggregates which overlap inserted values (i.e. values older than the pre-aggregation boundary which were
+     * back-filled, imported or replayed from the spool) are deleted so that they are aggregated again.
+     *
+     * @param count number of inserted values
+     * @param seriesIds series id of each inserted value
+     * @param times time of each inserted value
+     */
+    private void valuesInserted(int count, IntUnaryOperator seriesIds, IntToLongFunction times) {
+        if (!(aggregateDao instanceof AggregateDaoSQL)) {
+            return;
+        }
+        AggregateDaoSQL aggregateDaoSQL = (AggregateDaoSQL) aggregateDao;
+        long aggregatedUntil = aggregateDaoSQL.aggregatedUntil();
+        Map<Integer, Long> earliest = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            long time = times.applyAsLong(i);
+            if (time < aggregatedUntil) {
+                earliest.merge(seriesIds.applyAsInt(i), time, Math::min);
+            }
+        }
+        earliest.forEach((seriesId, time) -> {
+            try {
+                aggregateDaoSQL.valuesInserted(seriesId, time);
+            } catch (RuntimeException e) {
+                // the values were inserted, don't fail the insert
+                log.error("Failed to invalidate aggregates for series {} from {}", seriesId, time, e);
+            }
         });
-        int written = 0;
+    }
 
-        // Insert the data
+    private int executeWithRetries(IntSupplier insert) {
         int retries = 10;
         while (true) {
             try {
-                insert.execute();
-                written = count.intValue();
-                break;
+                return insert.getAsInt();
             } catch (RuntimeException e) {
-                if (RETRIED_EXCEPTIONS.contains(e.getClass())) {
-                    if (retries <= 0) {
-                        log.error("Concurrency failure saving {} point values after 10 tries. Data lost.", count.intValue());
-                        break;
+                if (!isRetried(e) || retries <= 0) {
+                    throw e;
+                }
+
+                int wait = (10 - retries) * 100;
+                try {
+                    if (wait > 0) {
+                        synchronized (this) {
+                            wait(wait);
+                        }
                     }
+                } catch (InterruptedException ie) {
+                    // no op
+                }
+
+                retries--;
+            }
+        }
+    }
+
+    private boolean isRetried(RuntimeException e) {
+        return RETRIED_EXCEPTIONS.contains(e.getClass());
+    }
 
-                    int wait = (10 - retries) * 100;
+    /**
+     * Replay values from the spool if there are any. Replay is also started after each successful insert, this
+     * method should be called periodically so that values are replayed even if no new values are being written.
+     */
+    public void replaySpool() {
+        if (spool != null && !shutdown && spool.pendingEntries() > 0) {
+            scheduleSpoolReplay();
+        }
+    }
+
+    private void scheduleSpoolReplay() {
+        if (replayScheduled.compareAndSet(false, true)) {
+            try {
+                Common.backgroundProcessing.addWorkItem(new SpoolReplayTask());
+            } catch (RejectedExecutionException e) {
+                replayScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Replays values from the spool, stops when the database fails again. Values which fail to insert due to
+     * a non-transient error are discarded so that a bad batch cannot block the spool.
+     */
+    private class SpoolReplayTask implements WorkItem {
+
+        @Override
+        public void execute() {
+            try {
+                int replayed = spool.replay(batch -> {
                     try {
-                        if (wait > 0) {
-                            synchronized (this) {
-                                wait(wait);
-                            }
+                        writeMeter.mark(insertMultiple(batch));
+                        return true;
+                    } catch (RuntimeException e) {
+                        if (isRetried(e)) {
+                            return false;
                         }
-                    } catch (InterruptedException ie) {
-                        // no op
+                        log.error("Error replaying {} spooled point values. Data lost.", batch.size(), e);
+                        return true;
                     }
-
-                    retries--;
-                } else {
-                    log.error("Error saving {} point values. Data lost.", count.intValue(), e);
-                    break;
+                });
+                if (replayed > 0) {
+                    log.info("Replayed {} point values from spool, {} remaining", replayed, spool.pendingEntries());
                 }
+            } finally {
+                replayScheduled.set(false);
             }
         }
-        return written;
+
+        @Override
+        public int getPriority() {
+            return WorkItem.PRIORITY_MEDIUM;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Replaying spooled point values: " + spool.pendingEntries();
+        }
+
+        @Override
+        public String getTaskId() {
+            return "PVSR";
+        }
+
+        @Override
+        public int getQueueSize() {
+            return 0;
+        }
+
+        @Override
+        public void rejected(RejectedTaskReason reason) {
+            replayScheduled.set(false);
+        }
+    }
+
+    /**
+     * Moves values which are still queued for asynchronous insert to the spool so they are inserted after restart.
+     * If the spool is disabled the values are written to the database before returning. Waits for active writers to
+     * finish their current batch first so that no writer uses the spool after it is closed.
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        while (writerCount.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (writerCount.get() > 0) {
+            log.warn("Timed out waiting for {} batch writers to finish", writerCount.get());
+        }
+
+        List<BatchWriteEntry> remaining = new ArrayList<>();
+        for (BatchWriteShard shard : shards) {
+            // wait for active writers to release the shard
+            while (!shard.tryClaim()) {
+                Thread.onSpinWait();
+            }
+            try {
+                shard.drainTo(remaining, Integer.MAX_VALUE);
+            } finally {
+                shard.release();
+            }
+        }
+        queued.add(-remaining.size());
+
+        if (remaining.isEmpty()) {
+            // nothing to do
+        } else if (spool != null && spool.append(remaining)) {
+            log.info("Spooled {} queued point values to disk on shutdown", remaining.size());
+        } else {
+            for (int from = 0; from < remaining.size(); from += batchInsertSize) {
+                List<BatchWriteEntry> chunk = remaining.subList(from, Math.min(remaining.size(), from + batchInsertSize));
+                writeMeter.mark(writeMultiple(chunk));
+            }
+        }
+
+        if (spool != null) {
+            spool.close();
+        }
     }
 }
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.db.dao;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.DatabaseType;
+
+/**
+ * Maintains time based range partitions of the pointValues table, partitioned on the ts column. Partitions are created
+ * ahead of time and old data is purged by dropping entire partitions rather than deleting rows. Queries do not need to
+ * change as the database prunes partitions using the existing time range conditions.
+ *
+ * <p>Only MySQL and PostgreSQL are supported. When the table is first partitioned all existing values are placed in a
+ * single legacy partition which is dropped once all of its values are older than the purge time.</p>
+ */
+public class PointValuePartitioning extends BaseDao {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PointValuePartitioning.class);
+
+    static final String TABLE = "pointValues";
+    static final String LEGACY_PARTITION = TABLE + "_legacy";
+    static final String MAX_PARTITION = TABLE + "_pmax";
+    static final String DEFAULT_PARTITION = TABLE + "_pdefault";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern POSTGRES_UPPER_BOUND = Pattern.compile("TO \\('?(-?\\d+)'?\\)");
+
+    private final Clock clock;
+    private final ChronoUnit period;
+    private final int ahead;
+
+    /**
+     * @param clock clock used to determine the current period, its zone is used to align the partition boundaries
+     * @param period length of each partition, {@link ChronoUnit#WEEKS} or {@link ChronoUnit#MONTHS}
+     * @param ahead number of partitions to create in advance of the current period
+     */
+    public PointValuePartitioning(DatabaseProxy databaseProxy, Clock clock, ChronoUnit period, int ahead) {
+        super(databaseProxy);
+        if (!isSupported(databaseProxy.getType())) {
+            throw new UnsupportedOperationException("Point value partitioning is not supported for " + databaseProxy.getType());
+        }
+        if (period != ChronoUnit.WEEKS && period != ChronoUnit.MONTHS) {
+            throw new IllegalArgumentException("Partition period must be WEEKS or MONTHS");
+        }
+        if (ahead < 1) {
+            throw new IllegalArgumentException("Must create at least one partition ahead");
+        }
+        this.clock = clock;
+        this.period = period;
+        this.ahead = ahead;
+    }
+
+    public static boolean isSupported(DatabaseType type) {
+        return type == DatabaseType.MYSQL || type == DatabaseType.POSTGRES;
+    }
+
+    /**
+     * Partitions the table if it is not already partitioned, then creates the partitions for the upcoming periods.
+     */
+    public synchronized void initialize() {
+        if (!isPartitioned()) {
+            LOG.warn("Partitioning table {}, this may take some time for large tables", TABLE);
+            long legacyEnd = legacyUpperBound(currentPeriodStart().toInstant().toEpochMilli(), maxTimestamp());
+            if (databaseType == DatabaseType.MYSQL) {
+                ejt.execute("ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, ts)");
+                ejt.execute("ALTER TABLE " + TABLE + " PARTITION BY RANGE (ts) (" +
+                        "PARTITION " + LEGACY_PARTITION + " VALUES LESS THAN (" + legacyEnd + "), " +
+                        "PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)");
+            } else {
+                // a table can't be altered to be partitioned, attach the existing table as a partition instead
+                doInTransaction(status -> {
+                    ejt.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+                    ejt.execute("ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT pointValues_pkey");
+                    ejt.execute("ALTER INDEX pointValuesIdx1 RENAME TO " + LEGACY_PARTITION + "_idx1");
+                    ejt.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS) PARTITION BY RANGE (ts)");
+                    ejt.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, ts)");
+                    ejt.execute("CREATE INDEX pointValuesIdx1 ON " + TABLE + " (dataPointId, ts)");
+                    // the sequence would otherwise be dropped along with the legacy partition
+                    ejt.execute("ALTER SEQUENCE pointValues_id_seq OWNED BY " + TABLE + ".id");
+                    ejt.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION +
+                            " FOR VALUES FROM (MINVALUE) TO (" + legacyEnd + ")");
+                    ejt.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+                });
+            }
+            LOG.info("Partitioned table {}", TABLE);
+        }
+        createPartitions();
+    }
+
+    /**
+     * Creates the partitions for the current period and the configured number of periods ahead of it, if they do not
+     * already exist.
+     */
+    public synchronized void createPartitions() {
+        List<Partition> partitions = getPartitions();
+        long lastBound = partitions.stream()
+                .mapToLong(Partition::getUpperBound)
+                .filter(bound -> bound != Long.MAX_VALUE)
+                .max()
+                .orElseThrow(() -> new IllegalStateException("Table " + TABLE + " is not partitioned"));
+
+        ZonedDateTime target = currentPeriodStart();
+        for (int i = 0; i <= ahead; i++) {
+            target = nextPeriodStart(target);
+        }
+
+        List<String> definitions = new ArrayList<>();
+        long from = lastBound;
+        ZonedDateTime start = periodStart(lastBound);
+        if (start.toInstant().toEpochMilli() < lastBound) {
+            // last bound is not aligned with the configured period, i.e. the legacy partition
+            start = nextPeriodStart(start);
+            definitions.add(partitionDefinition(partitionName(Instant.ofEpochMilli(lastBound).atZone(clock.getZone())),
+                    lastBound, start.toInstant().toEpochMilli()));
+        }
+        while (start.isBefore(target)) {
+            ZonedDateTime end = nextPeriodStart(start);
+            definitions.add(partitionDefinition(partitionName(start), start.toInstant().toEpochMilli(), end.toInstant().toEpochMilli()));
+            start = end;
+        }
+        if (definitions.isEmpty()) {
+            return;
+        }
+        long to = start.toInstant().toEpochMilli();
+
+        if (databaseType == DatabaseType.MYSQL) {
+            ejt.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" +
+                    String.join(", ", definitions) + ", PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)");
+        } else {
+            boolean hasDefault = partitions.stream().anyMatch(Partition::isDefault);
+            doInTransaction(status -> {
+                // a partition can't be created while the default partition holds values in its range, detach the
+                // default partition and move those values into the new partitions
+                if (hasDefault) {
+                    ejt.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + DEFAULT_PARTITION);
+                }
+                for (String definition : definitions) {
+                    ejt.execute(definition);
+                }
+                if (hasDefault) {
+                    int moved = ejt.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + " WHERE ts >= ? AND ts < ? RETURNING *) " +
+                            "INSERT INTO " + TABLE + " SELECT * FROM moved", from, to);
+                    ejt.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+                    if (moved > 0) {
+                        LOG.info("Moved {} values from partition {} into the new partitions", moved, DEFAULT_PARTITION);
+                    }
+                }
+            });
+        }
+        LOG.info("Created {} partitions for table {}", definitions.size(), TABLE);
+    }
+
+    /**
+     * Drops all partitions which only contain values older than the end time. Values which are older than the end time
+     * but are in a partition which also contains newer values are not deleted. The catch-all partition is never
+     * dropped, for PostgreSQL the values in the default partition that are older than the end time are deleted.
+     *
+     * @param endTime epoch ms, exclusive
+     * @return the time before which all values were dropped, empty if no partitions were dropped
+     */
+    public synchronized OptionalLong dropPartitionsBefore(long endTime) {
+        List<Partition> all = getPartitions();
+        if (databaseType == DatabaseType.POSTGRES && all.stream().anyMatch(Partition::isDefault)) {
+            // values older than all bounded partitions, i.e. inserted after their partition was dropped
+            int deleted = ejt.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE ts < ?", endTime);
+            if (deleted > 0) {
+                LOG.info("Deleted {} values from partition {}", deleted, DEFAULT_PARTITION);
+            }
+        }
+
+        List<Partition> partitions = all.stream()
+                .filter(p -> p.getUpperBound() != Long.MAX_VALUE && p.getUpperBound() <= endTime)
+                .collect(Collectors.toList());
+        if (partitions.isEmpty()) {
+            return OptionalLong.empty();
+        }
+
+        if (databaseType == DatabaseType.MYSQL) {
+            ejt.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + partitions.stream()
+                    .map(Partition::getName)
+                    .collect(Collectors.joining(", ")));
+        } else {
+            for (Partition partition : partitions) {
+                ejt.execute("DROP TABLE " + partition.getName());
+            }
+        }
+        LOG.info("Dropped {} partitions from table {}", partitions.size(), TABLE);
+        return OptionalLong.of(partitions.get(partitions.size() - 1).getUpperBound());
+    }
+
+    /**
+     * @return partitions ordered by upper bound, the catch-all partition has an upper bound of {@link Long#MAX_VALUE}
+     */
+    public List<Partition> getPartitions() {
+        List<Partition> partitions;
+        if (databaseType == DatabaseType.MYSQL) {
+            partitions = ejt.query("SELECT partition_name, partition_description FROM information_schema.partitions " +
+                    "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL", (rs, rowNum) -> {
+                String description = rs.getString(2);
+                return new Partition(rs.getString(1), "MAXVALUE".equals(description) ? Long.MAX_VALUE : Long.parseLong(description));
+            }, TABLE);
+        } else {
+            partitions = ejt.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                    "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)", (rs, rowNum) ->
+                    new Partition(rs.getString(1), postgresUpperBound(rs.getString(2))), TABLE);
+        }
+        partitions.sort(Comparator.comparingLong(Partition::getUpperBound));
+        return partitions;
+    }
+
+    private boolean isPartitioned() {
+        if (databaseType == DatabaseType.MYSQL) {
+            return !getPartitions().isEmpty();
+        }
+        Integer count = ejt.queryForObject("SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass(?)",
+                Integer.class, TABLE);
+        return count != null && count > 0;
+    }
+
+    private Long maxTimestamp() {
+        return ejt.queryForObject("SELECT MAX(ts) FROM " + TABLE, Long.class);
+    }
+
+    private String partitionDefinition(String name, long from, long to) {
+        if (databaseType == DatabaseType.MYSQL) {
+            return "PARTITION " + name + " VALUES LESS THAN (" + to + ")";
+        }
+        return "CREATE TABLE " + name + " PARTITION OF " + TABLE + " FOR VALUES FROM (" + from + ") TO (" + to + ")";
+    }
+
+    /**
+     * The legacy partition holds all existing values, it ends at the start of the current period unless there are
+     * values after that in which case it ends at the end of the period containing the latest value.
+     */
+    long legacyUpperBound(long currentPeriodStart, Long maxTimestamp) {
+        if (maxTimestamp == null || maxTimestamp < currentPeriodStart) {
+            return currentPeriodStart;
+        }
+        return nextPeriodStart(periodStart(maxTimestamp)).toInstant().toEpochMilli();
+    }
+
+    ZonedDateTime currentPeriodStart() {
+        return periodStart(clock.millis());
+    }
+
+    /**
+     * @return start of the period containing the time, in the clock's zone
+     */
+    ZonedDateTime periodStart(long time) {
+        ZonedDateTime dateTime = Instant.ofEpochMilli(time).atZone(clock.getZone());
+        if (period == ChronoUnit.WEEKS) {
+            dateTime = dateTime.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        } else {
+            dateTime = dateTime.with(TemporalAdjusters.firstDayOfMonth());
+        }
+        return dateTime.truncatedTo(ChronoUnit.DAYS);
+    }
+
+    ZonedDateTime nextPeriodStart(ZonedDateTime periodStart) {
+        return periodStart.plus(1, period).truncatedTo(ChronoUnit.DAYS);
+    }
+
+    static String partitionName(ZonedDateTime start) {
+        return TABLE + "_p" + NAME_FORMAT.format(start);
+    }
+
+    static long postgresUpperBound(String bound) {
+        Matcher matcher = POSTGRES_UPPER_BOUND.matcher(bound);
+        if (matcher.find()) {
+            return Long.parseLong(matcher.group(1));
+        }
+        // default partition, or bounded by MAXVALUE
+        return Long.MAX_VALUE;
+    }
+
+    public static final class Partition {
+        private final String name;
+        private final long upperBound;
+
+        Partition(String name, long upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * PostgreSQL folds unquoted identifiers to lower case, so the name is compared ignoring case
+         */
+        boolean isDefault() {
+            return DEFAULT_PARTITION.equalsIgnoreCase(name);
+        }
+
+        /**
+         * @return epoch ms, exclusive
+         */
+        public long getUpperBound() {
+            return upperBound;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.infiniteautomation.mango.util.MappedBuffers;
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.db.dao.PointValueDaoSQL.BatchWriteEntry;
+
+/**
+ * Durable, append-only spool for point values which could not be inserted into the database.
+ *
+ * <p>The spool is made up of fixed size, memory-mapped segment files. Each segment starts with a header containing
+ * the offset of the next record to replay, followed by records of the form
+ * {@code [int count][int crc32][count * (int seriesId, byte dataType, double value, long time)]}. The count is written
+ * last so a record which was torn by a crash is never replayed. Segments are deleted once fully replayed.</p>
+ *
+ * <p>Appends are bounded by a maximum number of segments, once full {@link #append(List)} returns false and the caller
+ * is responsible for dealing with the values. Appends are also rejected once the spool is closed.</p>
+ *
+ * <p>The segment buffers are only accessed while holding the spool's lock, they are unmapped when the segment is
+ * deleted or the spool is closed.</p>
+ *
+ * <p>The spool is not a write-ahead log. Values are only appended once an insert fails or on a clean shutdown, values
+ * which are waiting in the {@link PointValueDaoSQL} shard queues or which belong to a batch being inserted are held in
+ * memory only. If the process is killed or crashes those values are lost, at most the values queued since the last
+ * successful batch.</p>
+ */
+public class PointValueSpool implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PointValueSpool.class);
+
+    static final String SEGMENT_PREFIX = "spool-";
+    static final String SEGMENT_SUFFIX = ".dat";
+    static final int HEADER_SIZE = Long.BYTES;
+    static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+    static final int ENTRY_SIZE = Integer.BYTES + Byte.BYTES + Double.BYTES + Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int maxEntriesPerRecord;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private final Meter replayMeter = new Meter();
+    private long nextSegmentId;
+    private volatile long pendingEntries;
+    private boolean closed;
+
+    /**
+     * @param directory directory to store segment files in, existing segments are loaded for replay
+     * @param segmentSize size of each segment file in bytes
+     * @param maxSize maximum disk space used by the spool in bytes
+     */
+    public PointValueSpool(Path directory, int segmentSize, long maxSize) {
+        if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + ENTRY_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / segmentSize));
+        this.maxEntriesPerRecord = (segmentSize - HEADER_SIZE - RECORD_HEADER_SIZE) / ENTRY_SIZE;
+
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing;
+            try (Stream<Path> files = Files.list(directory)) {
+                existing = files.filter(p -> {
+                    String name = p.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                }).sorted().collect(Collectors.toList());
+            }
+            for (Path path : existing) {
+                String name = path.getFileName().toString();
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = openSegment(id);
+                segments.addLast(segment);
+                nextSegmentId = Math.max(nextSegmentId, id + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open point value spool in " + directory, e);
+        }
+
+        if (pendingEntries > 0) {
+            log.warn("Point value spool contains {} point values which will be replayed once the database is available", pendingEntries);
+        }
+    }
+
+    /**
+     * Append point values to the spool, the values are flushed to disk before returning.
+     *
+     * @param entries values to append
+     * @return false if the spool is full or could not be written to, in which case none of the values were appended
+     */
+    public synchronized boolean append(List<BatchWriteEntry> entries) {
+        if (closed) {
+            return false;
+        }
+        int records = (entries.size() + maxEntriesPerRecord - 1) / maxEntriesPerRecord;
+        if (!hasSpaceFor(entries.size(), records)) {
+            return false;
+        }
+
+        try {
+            for (int from = 0; from < entries.size(); from += maxEntriesPerRecord) {
+                List<BatchWriteEntry> record = entries.subList(from, Math.min(entries.size(), from + maxEntriesPerRecord));
+                writeRecord(record);
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Unable to write {} point values to spool", entries.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Replay spooled values in the order they were appended. Only one thread replays at a time, if another thread is
+     * already replaying this method returns immediately.
+     *
+     * @param writer writes a batch of values, returns false if they could not be written, stopping the replay
+     * @return number of values replayed
+     */
+    public int replay(Predicate<List<BatchWriteEntry>> writer) {
+        if (!replaying.compareAndSet(false, true)) {
+            return 0;
+        }
+
+        int replayed = 0;
+        try {
+            while (true) {
+                Segment segment;
+                List<BatchWriteEntry> batch;
+                int next;
+                synchronized (this) {
+                    segment = segments.peekFirst();
+                    if (closed || segment == null) {
+                        break;
+                    }
+                    if (segment.readPosition >= segment.writePosition) {
+                        segments.removeFirst();
+                        deleteSegment(segment);
+                        continue;
+                    }
+                    batch = new ArrayList<>();
+                    next = readRecord(segment.buffer, segment.readPosition, batch);
+                }
+
+                if (!writer.test(batch)) {
+                    break;
+                }
+
+                synchronized (this) {
+                    if (closed) {
+                        // the values were written but the segment has been unmapped, they will be replayed again
+                        break;
+                    }
+                    segment.readPosition = next;
+                    segment.buffer.putLong(0, next);
+                    pendingEntries -= batch.size();
+                }
+                replayMeter.mark(batch.size());
+                replayed += batch.size();
+            }
+        } finally {
+            replaying.set(false);
+        }
+        return replayed;
+    }
+
+    /**
+     * @return number of point values waiting to be replayed
+     */
+    public long pendingEntries() {
+        return pendingEntries;
+    }
+
+    /**
+     * @return disk space used by the spool in bytes
+     */
+    public synchronized long size() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * @return number of point values replayed per second
+     */
+    public double replaySpeed() {
+        return replayMeter.getOneMinuteRate();
+    }
+
+    /**
+     * Flush and unmap the segments, values which have not been replayed remain on disk. Once closed no values can be
+     * appended or replayed.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            MappedBuffers.unmap(segment.buffer);
+        }
+        segments.clear();
+        pendingEntries = 0;
+    }
+
+    private boolean hasSpaceFor(int entries, int records) {
+        Segment tail = segments.peekLast();
+        int available = tail == null ? 0 : segmentSize - tail.writePosition;
+        long required = (long) entries * ENTRY_SIZE + (long) records * RECORD_HEADER_SIZE;
+        if (required <= available) {
+            return true;
+        }
+        int perSegment = maxEntriesPerRecord * ENTRY_SIZE + RECORD_HEADER_SIZE;
+        long newSegments = (required - available + perSegment - 1) / perSegment;
+        return segments.size() + newSegments <= maxSegments;
+    }
+
+    private void writeRecord(List<BatchWriteEntry> entries) throws IOException {
+        int length = RECORD_HEADER_SIZE + entries.size() * ENTRY_SIZE;
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePosition + length > segmentSize) {
+            tail = openSegment(nextSegmentId++);
+            segments.addLast(tail);
+        }
+
+        MappedByteBuffer buffer = tail.buffer;
+        int start = tail.writePosition;
+        int position = start + RECORD_HEADER_SIZE;
+        for (BatchWriteEntry entry : entries) {
+            buffer.putInt(position, entry.seriesId);
+            buffer.put(position + Integer.BYTES, (byte) entry.dataType.getId());
+            buffer.putDouble(position + Integer.BYTES + Byte.BYTES, entry.dvalue);
+            buffer.putLong(position + Integer.BYTES + Byte.BYTES + Double.BYTES, entry.time);
+            position += ENTRY_SIZE;
+        }
+        buffer.putInt(start + Integer.BYTES, checksum(buffer, start + RECORD_HEADER_SIZE, position));
+        // count is written last, marks the record as complete
+        buffer.putInt(start, entries.size());
+        buffer.force();
+
+        tail.writePosition = position;
+        pendingEntries += entries.size();
+    }
+
+    /**
+     * @return position of the next record
+     */
+    private int readRecord(ByteBuffer buffer, int start, List<BatchWriteEntry> into) {
+        int count = buffer.getInt(start);
+        int position = start + RECORD_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            int seriesId = buffer.getInt(position);
+            DataType dataType = DataType.fromId(buffer.get(position + Integer.BYTES));
+            double value = buffer.getDouble(position + Integer.BYTES + Byte.BYTES);
+            long time = buffer.getLong(position + Integer.BYTES + Byte.BYTES + Double.BYTES);
+            into.add(new BatchWriteEntry(seriesId, dataType, value, time));
+            position += ENTRY_SIZE;
+        }
+        return position;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        Segment segment = new Segment(path, buffer);
+        int readPosition = (int) buffer.getLong(0);
+        if (readPosition < HEADER_SIZE || readPosition > segmentSize) {
+            readPosition = HEADER_SIZE;
+            buffer.putLong(0, readPosition);
+        }
+
+        // find the end of the last complete record
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= segmentSize) {
+            int count = buffer.getInt(position);
+            int end = position + RECORD_HEADER_SIZE + count * ENTRY_SIZE;
+            if (count <= 0 || count > maxEntriesPerRecord || end > segmentSize) {
+                break;
+            }
+            if (buffer.getInt(position + Integer.BYTES) != checksum(buffer, position + RECORD_HEADER_SIZE, end)) {
+                log.warn("Corrupt record in point value spool segment {} at offset {}, discarding remainder of segment", path, position);
+                break;
+            }
+            if (position >= readPosition) {
+                pendingEntries += count;
+            }
+            position = end;
+        }
+        segment.writePosition = position;
+        segment.readPosition = Math.min(readPosition, position);
+        return segment;
+    }
+
+    private void deleteSegment(Segment segment) {
+        MappedBuffers.unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Unable to delete replayed point value spool segment {}", segment.path, e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(end));
+        return (int) crc.getValue();
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -10,8 +10,10 @@ import static java.time.temporal.ChronoField.MONTH_OF_YEAR;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAmount;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import org.apache.commons.collections4.iterators.PeekingIterator;
@@ -57,6 +59,31 @@ public interface AggregateDao {
                 .limit(1)
                 .flatMap(Optional::stream);
 
+        return aggregateRawValues(point, from, to, limit, aggregationPeriod, previousValue);
+    }
+
+    /**
+     * Query for aggregates in a time range using real time aggregation from the raw values, when the value of the point
+     * prior to the from time is already known.
+     *
+     * @param point data point
+     * @param from from time (inclusive)
+     * @param to to time (exclusive)
+     * @param limit limit the number of returned aggregates (may be null)
+     * @param aggregationPeriod aggregation period (bucket/window size)
+     * @param previousValue value of the point prior to the from time, null if the point has no value prior to the from time
+     * @return stream of aggregate values
+     */
+    default Stream<SeriesValueTime<AggregateValue>> queryRealtime(DataPointVO point, ZonedDateTime from, ZonedDateTime to, @Nullable Integer limit,
+                                                                  TemporalAmount aggregationPeriod, @Nullable PointValueTime previousValue) {
+        if (from.isEqual(to)) {
+            return Stream.empty();
+        }
+        return aggregateRawValues(point, from, to, limit, aggregationPeriod, Stream.ofNullable(previousValue));
+    }
+
+    private Stream<SeriesValueTime<AggregateValue>> aggregateRawValues(DataPointVO point, ZonedDateTime from, ZonedDateTime to, @Nullable Integer limit,
+                                                                       TemporalAmount aggregationPeriod, Stream<PointValueTime> previousValue) {
         var rawValues = getPointValueDao().streamPointValues(point,
                 from.toInstant().toEpochMilli(),
                 to.toInstant().toEpochMilli(),
@@ -81,6 +108,54 @@ public interface AggregateDao {
         return queryRealtime(point, from, to, limit, aggregationPeriod);
     }
 
+    /**
+     * Query for aggregates in a time range, when the value of the point prior to the from time is already known (e.g.
+     * when querying consecutive time ranges). Implementations which aggregate in realtime may use the previous value
+     * instead of querying for it. By default, this method ignores the previous value and calls
+     * {@link #query(DataPointVO, ZonedDateTime, ZonedDateTime, Integer, TemporalAmount)}.
+     *
+     * @param point data point
+     * @param from from time (inclusive)
+     * @param to to time (exclusive)
+     * @param limit limit the number of returned aggregates (may be null)
+     * @param aggregationPeriod aggregation period (bucket/window size)
+     * @param previousValue value of the point prior to the from time, null if the point has no value prior to the from time
+     * @return stream of aggregate values
+     */
+    default Stream<SeriesValueTime<AggregateValue>> query(DataPointVO point, ZonedDateTime from, ZonedDateTime to, @Nullable Integer limit,
+                                                          TemporalAmount aggregationPeriod, @Nullable PointValueTime previousValue) {
+        return query(point, from, to, limit, aggregationPeriod);
+    }
+
+    /**
+     * Query for aggregates for multiple points in a time range. Each point is aggregated using
+     * {@link #query(DataPointVO, ZonedDateTime, ZonedDateTime, Integer, TemporalAmount)}, the points are split across
+     * the pool and aggregated in parallel. The stream is computed in windows of whole aggregation periods, approximately
+     * {@link PointValueDao#chunkSize()} aggregates are computed ahead of the consumer. Closing the stream cancels any
+     * outstanding work.
+     *
+     * <p>The aggregation blocks on database queries, the pool should be dedicated to this purpose and sized for the
+     * number of concurrent database connections it may use (do not use the common pool).</p>
+     *
+     * @param points data points
+     * @param from from time (inclusive)
+     * @param to to time (exclusive)
+     * @param limit limit the total number of returned aggregates (may be null)
+     * @param aggregationPeriod aggregation period (bucket/window size)
+     * @param pool pool to aggregate the points in
+     * @return stream of aggregate values, ordered by time then series ID
+     * @throws com.infiniteautomation.mango.db.query.QueryCancelledException if the consuming thread is interrupted
+     */
+    default Stream<SeriesValueTime<AggregateValue>> query(Collection<? extends DataPointVO> points, ZonedDateTime from, ZonedDateTime to, @Nullable Integer limit,
+                                                          TemporalAmount aggregationPeriod, ForkJoinPool pool) {
+        if (points.isEmpty() || !from.isBefore(to)) {
+            return Stream.empty();
+        }
+
+        var aggregates = ParallelAggregator.aggregate(this, points, from, to, aggregationPeriod, pool, getPointValueDao().chunkSize());
+        return limit == null ? aggregates : aggregates.limit(limit);
+    }
+
     /**
      * Aggregate a stream of raw point values into aggregate statistics. Mango statistics rely on knowing the initial
      * value of the point before the "from" time, you must include an initial start value in the stream (if one exists).
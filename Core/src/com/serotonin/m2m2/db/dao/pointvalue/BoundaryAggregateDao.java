@@ -11,6 +11,7 @@ import java.util.stream.Stream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
 import com.serotonin.m2m2.view.stats.SeriesValueTime;
 import com.serotonin.m2m2.vo.DataPointVO;
 
@@ -96,6 +97,19 @@ public interface BoundaryAggregateDao extends AggregateDao {
         return limit == null ? resampled : resampled.limit(limit);
     }
 
+    /**
+     * The previous value is used if the query is entirely after the boundary (or pre-aggregation is not supported
+     * for the point), i.e. the aggregates are computed in realtime.
+     */
+    @Override
+    default Stream<SeriesValueTime<AggregateValue>> query(DataPointVO point, ZonedDateTime from, ZonedDateTime to, @Nullable Integer limit,
+                                                          TemporalAmount aggregationPeriod, @Nullable PointValueTime previousValue) {
+        if (!preAggregationSupported(point) || !from.isBefore(boundary())) {
+            return queryRealtime(point, from, to, limit, aggregationPeriod, previousValue);
+        }
+        return query(point, from, to, limit, aggregationPeriod);
+    }
+
     default ZonedDateTime min(ZonedDateTime a, ZonedDateTime b) {
         return a.isBefore(b) ? a : b;
     }
@@ -4,7 +4,16 @@
 
 package com.serotonin.m2m2.db.dao.pointvalue;
 
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAmount;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.view.stats.SeriesValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
 
 /**
  * @author Jared Wiltshire
@@ -22,4 +31,10 @@ public class DefaultAggregateDao implements AggregateDao {
         return pointValueDao;
     }
 
+    @Override
+    public Stream<SeriesValueTime<AggregateValue>> query(DataPointVO point, ZonedDateTime from, ZonedDateTime to, @Nullable Integer limit,
+                                                         TemporalAmount aggregationPeriod, @Nullable PointValueTime previousValue) {
+        return queryRealtime(point, from, to, limit, aggregationPeriod, previousValue);
+    }
+
 }
@@ -18,7 +18,8 @@ public class NumericMultiAggregate implements MultiAggregate, NumericAggregate {
     private final long periodEndTime;
 
     private NumericAggregate firstChild;
-    private NumericAggregate lastChild;
+    private NumericAggregate firstValueChild;
+    private NumericAggregate lastValueChild;
 
     private final DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
     private Double minimumValue = Double.NaN;
@@ -51,12 +52,18 @@ public class NumericMultiAggregate implements MultiAggregate, NumericAggregate {
         if (firstChild == null) {
             this.firstChild = numericValue;
         }
-        this.lastChild = numericValue;
+        // children may be empty periods, take the first and last values from children which contain values
+        if (firstValueChild == null && numericValue.getFirstValue() != null) {
+            this.firstValueChild = numericValue;
+        }
+        if (numericValue.getLastValue() != null) {
+            this.lastValueChild = numericValue;
+        }
         if (Double.isNaN(minimumValue) || numericValue.getMinimumValue() < minimumValue) {
             this.minimumValue = numericValue.getMinimumValue();
             this.minimumTime = numericValue.getMinimumTime();
         }
-        if (Double.isNaN(maximumValue) || numericValue.getMaximumValue() < maximumValue) {
+        if (Double.isNaN(maximumValue) || numericValue.getMaximumValue() > maximumValue) {
             this.maximumValue = numericValue.getMaximumValue();
             this.maximumTime = numericValue.getMaximumTime();
         }
@@ -91,22 +98,22 @@ public class NumericMultiAggregate implements MultiAggregate, NumericAggregate {
 
     @Override
     public DataValue getFirstValue() {
-        return firstChild == null ? null : firstChild.getFirstValue();
+        return firstValueChild == null ? null : firstValueChild.getFirstValue();
     }
 
     @Override
     public Long getFirstTime() {
-        return firstChild == null ? null : firstChild.getFirstTime();
+        return firstValueChild == null ? null : firstValueChild.getFirstTime();
     }
 
     @Override
     public DataValue getLastValue() {
-        return lastChild == null ? null : firstChild.getLastValue();
+        return lastValueChild == null ? null : lastValueChild.getLastValue();
     }
 
     @Override
     public Long getLastTime() {
-        return lastChild == null ? null : firstChild.getLastTime();
+        return lastValueChild == null ? null : lastValueChild.getLastTime();
     }
 
     @Override
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao.pointvalue;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.infiniteautomation.mango.db.iterators.MergingIterator;
+import com.infiniteautomation.mango.db.query.QueryCancelledException;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.view.stats.SeriesValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Aggregates multiple data points in parallel using a {@link ForkJoinPool}, returning a single stream of aggregates
+ * ordered by time (then series ID).
+ *
+ * <p>The time range is split into windows of whole aggregation periods. The points are split across the pool and each
+ * worker runs {@link AggregateDao#query(DataPointVO, ZonedDateTime, ZonedDateTime, Integer, TemporalAmount)} for its
+ * points over the window, the per-point results are then merged. Only the window being consumed and the next window
+ * are held in memory, the next window is not computed until the consumer starts reading the current one. The value
+ * of each point prior to a window is taken from the aggregates of the previous window, so it is only queried for the
+ * first window.</p>
+ *
+ * <p>Closing the stream cancels any outstanding work, if the consuming thread is interrupted a
+ * {@link QueryCancelledException} is thrown.</p>
+ */
+public class ParallelAggregator implements Spliterator<SeriesValueTime<AggregateValue>> {
+
+    private static final Comparator<SeriesValueTime<AggregateValue>> COMPARATOR = Comparator
+            .<SeriesValueTime<AggregateValue>>comparingLong(SeriesValueTime::getTime)
+            .thenComparingInt(SeriesValueTime::getSeriesId);
+
+    private final AggregateDao aggregateDao;
+    private final List<DataPointVO> points;
+    private final ZonedDateTime to;
+    private final TemporalAmount aggregationPeriod;
+    private final ForkJoinPool pool;
+    private final int windowPeriods;
+    private final int leafSize;
+    private final PointValueTime[] previousValues;
+    private final boolean[] previousKnown;
+
+    private volatile boolean cancelled;
+    private @Nullable Window pending;
+    private Iterator<SeriesValueTime<AggregateValue>> current;
+
+    /**
+     * @param aggregateDao used to aggregate each point
+     * @param points points to aggregate
+     * @param from from time (inclusive)
+     * @param to to time (exclusive)
+     * @param aggregationPeriod aggregation period (bucket/window size)
+     * @param pool pool to aggregate the points in
+     * @param maxBuffered approximate maximum number of aggregates to compute ahead of the consumer, determines the
+     *                    window size
+     */
+    public ParallelAggregator(AggregateDao aggregateDao, Collection<? extends DataPointVO> points,
+                              ZonedDateTime from, ZonedDateTime to, TemporalAmount aggregationPeriod,
+                              ForkJoinPool pool, int maxBuffered) {
+        this.aggregateDao = aggregateDao;
+        this.points = new ArrayList<>(points);
+        this.to = to;
+        this.aggregationPeriod = aggregationPeriod;
+        this.pool = pool;
+        this.windowPeriods = Math.max(1, maxBuffered / Math.max(1, points.size()));
+        this.leafSize = Math.max(1, points.size() / (pool.getParallelism() * 4));
+        this.previousValues = new PointValueTime[this.points.size()];
+        this.previousKnown = new boolean[this.points.size()];
+        this.current = Collections.emptyIterator();
+        this.pending = submit(from);
+    }
+
+    /**
+     * Submits the window starting at the given time to the pool
+     *
+     * @return the window, or null if the start time is not before the end of the time range
+     */
+    private @Nullable Window submit(ZonedDateTime start) {
+        if (!start.isBefore(to) || points.isEmpty()) {
+            return null;
+        }
+
+        ZonedDateTime end = start;
+        for (int i = 0; i < windowPeriods && end.isBefore(to); i++) {
+            end = end.plus(aggregationPeriod);
+        }
+        if (end.isAfter(to)) {
+            end = to;
+        }
+
+        Window window = new Window(start, end);
+        pool.execute(window.task);
+        return window;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super SeriesValueTime<AggregateValue>> action) {
+        while (!current.hasNext()) {
+            Window window = this.pending;
+            if (window == null) {
+                return false;
+            }
+            this.current = window.await();
+            updatePreviousValues(window);
+            this.pending = submit(window.end);
+        }
+        action.accept(current.next());
+        return true;
+    }
+
+    /**
+     * Records the value of each point at the end of the window, used as the previous value for the next window.
+     */
+    private void updatePreviousValues(Window window) {
+        for (int i = 0; i < points.size(); i++) {
+            List<SeriesValueTime<AggregateValue>> result = window.results.get(i);
+            if (result.isEmpty()) {
+                previousKnown[i] = false;
+                continue;
+            }
+
+            AggregateValue last = result.get(result.size() - 1).getValue();
+            if (last.getLastValue() != null && last.getLastTime() != null) {
+                previousValues[i] = new PointValueTime(last.getLastValue(), last.getLastTime());
+            } else if (last.getStartValue() == null) {
+                previousValues[i] = null;
+            } else if (!previousKnown[i] || previousValues[i] == null) {
+                // no values in the last period, the start value was current at the start of the period
+                previousValues[i] = new PointValueTime(last.getStartValue(), last.getPeriodStartTime() - 1);
+            }
+            previousKnown[i] = true;
+        }
+    }
+
+    /**
+     * Cancel any outstanding work, workers which are running will stop after aggregating their current point.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        Window window = this.pending;
+        if (window != null) {
+            window.task.cancel(false);
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new QueryCancelledException(new CancellationException("Aggregate query cancelled"));
+        }
+    }
+
+    @Override
+    public Spliterator<SeriesValueTime<AggregateValue>> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Aggregate multiple points in parallel.
+     *
+     * @see #ParallelAggregator(AggregateDao, Collection, ZonedDateTime, ZonedDateTime, TemporalAmount, ForkJoinPool, int)
+     * @return stream of aggregates ordered by time then series ID, the stream must be closed
+     */
+    public static Stream<SeriesValueTime<AggregateValue>> aggregate(AggregateDao aggregateDao, Collection<? extends DataPointVO> points,
+                                                                    ZonedDateTime from, ZonedDateTime to, TemporalAmount aggregationPeriod,
+                                                                    ForkJoinPool pool, int maxBuffered) {
+        ParallelAggregator spliterator = new ParallelAggregator(aggregateDao, points, from, to, aggregationPeriod, pool, maxBuffered);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
+    }
+
+    private class Window {
+        private final ZonedDateTime start;
+        private final ZonedDateTime end;
+        private final List<List<SeriesValueTime<AggregateValue>>> results;
+        private final AggregateTask task;
+
+        private Window(ZonedDateTime start, ZonedDateTime end) {
+            this.start = start;
+            this.end = end;
+            this.results = new ArrayList<>(points.size());
+            for (int i = 0; i < points.size(); i++) {
+                results.add(null);
+            }
+            this.task = new AggregateTask(this, 0, points.size());
+        }
+
+        /**
+         * Waits for all points in the window to be aggregated
+         *
+         * @return iterator over the merged results
+         */
+        private Iterator<SeriesValueTime<AggregateValue>> await() {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new QueryCancelledException(e);
+            } catch (CancellationException e) {
+                throw new QueryCancelledException(e);
+            } catch (ExecutionException e) {
+                cancel();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+
+            List<Iterator<SeriesValueTime<AggregateValue>>> iterators = new ArrayList<>(results.size());
+            for (List<SeriesValueTime<AggregateValue>> result : results) {
+                iterators.add(result.iterator());
+            }
+            return new MergingIterator<>(iterators, COMPARATOR);
+        }
+    }
+
+    private class AggregateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Window window;
+        private final int from;
+        private final int to;
+
+        private AggregateTask(Window window, int from, int to) {
+            this.window = window;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                for (int i = from; i < to; i++) {
+                    checkCancelled();
+                    window.results.set(i, aggregate(i));
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new AggregateTask(window, from, mid), new AggregateTask(window, mid, to));
+            }
+        }
+
+        private List<SeriesValueTime<AggregateValue>> aggregate(int index) {
+            DataPointVO point = points.get(index);
+            List<SeriesValueTime<AggregateValue>> result = new ArrayList<>();
+            try (var stream = previousKnown[index] ?
+                    aggregateDao.query(point, window.start, window.end, null, aggregationPeriod, previousValues[index]) :
+                    aggregateDao.query(point, window.start, window.end, null, aggregationPeriod)) {
+                stream.forEach(value -> {
+                    checkCancelled();
+                    result.add(value);
+                });
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.dao.pointvalue;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.serotonin.m2m2.DataType;
+import com.serotonin.m2m2.rt.dataImage.IdPointValueTime;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.BinaryValue;
+import com.serotonin.m2m2.rt.dataImage.types.DataValue;
+import com.serotonin.m2m2.rt.dataImage.types.MultistateValue;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+
+/**
+ * Columnar batch of point values, stored as parallel primitive arrays so that no objects are allocated per value.
+ * Only data types with a double representation (numeric, binary and multistate) can be stored, annotations are
+ * not supported. A batch is not thread safe and is intended to be reused, call {@link #clear()} to reuse it.
+ */
+public class PointValueBatch {
+
+    private final int[] seriesId;
+    private final byte[] dataType;
+    private final double[] value;
+    private final long[] ts;
+    private int size;
+
+    public PointValueBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.seriesId = new int[capacity];
+        this.dataType = new byte[capacity];
+        this.value = new double[capacity];
+        this.ts = new long[capacity];
+    }
+
+    /**
+     * Add a value to the batch
+     *
+     * @return false if the batch is full
+     * @throws IllegalArgumentException if the data type does not have a double representation
+     */
+    public boolean add(int seriesId, DataType dataType, double value, long ts) {
+        if (size == this.ts.length) {
+            return false;
+        }
+        if (dataType == DataType.ALPHANUMERIC) {
+            throw new IllegalArgumentException("Data type not supported: " + dataType);
+        }
+        this.seriesId[size] = seriesId;
+        this.dataType[size] = (byte) dataType.getId();
+        this.value[size] = value;
+        this.ts[size] = ts;
+        size++;
+        return true;
+    }
+
+    /**
+     * Add a value to the batch, any annotation on the value is ignored.
+     *
+     * @return false if the batch is full
+     * @throws IllegalArgumentException if the value does not have a double representation
+     */
+    public boolean add(int seriesId, PointValueTime pointValue) {
+        DataValue dataValue = pointValue.getValue();
+        if (!dataValue.hasDoubleRepresentation()) {
+            throw new IllegalArgumentException("Data type not supported: " + dataValue.getDataType());
+        }
+        return add(seriesId, dataValue.getDataType(), dataValue.getDoubleValue(), pointValue.getTime());
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ts.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == ts.length;
+    }
+
+    public int getSeriesId(int index) {
+        checkIndex(index);
+        return seriesId[index];
+    }
+
+    public DataType getDataType(int index) {
+        checkIndex(index);
+        return DataType.fromId(dataType[index]);
+    }
+
+    public int getDataTypeId(int index) {
+        checkIndex(index);
+        return dataType[index];
+    }
+
+    public double getValue(int index) {
+        checkIndex(index);
+        return value[index];
+    }
+
+    public long getTime(int index) {
+        checkIndex(index);
+        return ts[index];
+    }
+
+    /**
+     * Creates a point value object for the value at the index, for use by code which is not batch aware.
+     */
+    public IdPointValueTime toPointValueTime(int index) {
+        checkIndex(index);
+        DataValue dataValue;
+        switch (getDataType(index)) {
+            case BINARY:
+                dataValue = new BinaryValue(value[index] == 1);
+                break;
+            case MULTISTATE:
+                dataValue = new MultistateValue((int) Math.round(value[index]));
+                break;
+            default:
+                dataValue = new NumericValue(value[index]);
+                break;
+        }
+        return new IdPointValueTime(seriesId[index], dataValue, ts[index]);
+    }
+
+    /**
+     * Creates point value objects for every value in the batch, for use by code which is not batch aware.
+     */
+    public void forEachPointValue(Consumer<? super IdPointValueTime> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(toPointValueTime(i));
+        }
+    }
+
+    /**
+     * @return copy of this batch, sized to fit
+     */
+    public PointValueBatch copy() {
+        PointValueBatch copy = new PointValueBatch(Math.max(1, size));
+        System.arraycopy(seriesId, 0, copy.seriesId, 0, size);
+        System.arraycopy(dataType, 0, copy.dataType, 0, size);
+        System.arraycopy(value, 0, copy.value, 0, size);
+        System.arraycopy(ts, 0, copy.ts, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PointValueBatch{" +
+                "size=" + size +
+                ", seriesId=" + Arrays.toString(Arrays.copyOf(seriesId, Math.min(size, 10))) +
+                ", ts=" + Arrays.toString(Arrays.copyOf(ts, Math.min(size, 10))) +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.upgrade;
+
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+/**
+ * Add the pointValueAggregates table, used to store pre-aggregated point values
+ */
+public class Upgrade47 extends DBUpgrade {
+
+    @Override
+    protected void upgrade() throws Exception {
+        create.createTable("pointValueAggregates")
+                .column("seriesId", SQLDataType.INTEGER.nullable(false))
+                .column("ts", SQLDataType.BIGINT.nullable(false))
+                .column("startValue", SQLDataType.DOUBLE.nullable(true))
+                .column("firstValue", SQLDataType.DOUBLE.nullable(true))
+                .column("firstTs", SQLDataType.BIGINT.nullable(true))
+                .column("lastValue", SQLDataType.DOUBLE.nullable(true))
+                .column("lastTs", SQLDataType.BIGINT.nullable(true))
+                .column("minimumValue", SQLDataType.DOUBLE.nullable(true))
+                .column("minimumTs", SQLDataType.BIGINT.nullable(true))
+                .column("maximumValue", SQLDataType.DOUBLE.nullable(true))
+                .column("maximumTs", SQLDataType.BIGINT.nullable(true))
+                .column("average", SQLDataType.DOUBLE.nullable(true))
+                .column("integral", SQLDataType.DOUBLE.nullable(true))
+                .column("sumValue", SQLDataType.DOUBLE.nullable(false))
+                .column("countValue", SQLDataType.BIGINT.nullable(false))
+                .column("minimumInPeriod", SQLDataType.DOUBLE.nullable(true))
+                .column("maximumInPeriod", SQLDataType.DOUBLE.nullable(true))
+                .constraints(
+                        DSL.constraint("pointValueAggregatesPk").primaryKey("seriesId", "ts")
+                ).execute();
+    }
+
+    @Override
+    protected String getNewSchemaVersion() {
+        return "48";
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.db.upgrade;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jooq.Field;
+import org.jooq.Query;
+import org.jooq.Record;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.DataPointVOCodec;
+
+/**
+ * Convert the Java serialized data column of the dataPoints table to the format written by {@link DataPointVOCodec}.
+ * Points which can't be read (e.g. their module is not installed) are left as is, they can still be read.
+ */
+public class Upgrade48 extends DBUpgrade {
+
+    private final Logger LOG = LoggerFactory.getLogger(Upgrade48.class);
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    protected void upgrade() throws Exception {
+        Table<Record> dataPoints = DSL.table(DSL.name("dataPoints"));
+        Field<Integer> idField = DSL.field(DSL.name("id"), Integer.class);
+        Field<byte[]> dataField = DSL.field(DSL.name("data"), byte[].class);
+
+        int lastId = Integer.MIN_VALUE;
+        int converted = 0;
+        Result<Record2<Integer, byte[]>> batch;
+        do {
+            batch = create.select(idField, dataField)
+                    .from(dataPoints)
+                    .where(idField.greaterThan(lastId))
+                    .orderBy(idField)
+                    .limit(BATCH_SIZE)
+                    .fetch();
+
+            List<Query> updates = new ArrayList<>(batch.size());
+            for (Record2<Integer, byte[]> row : batch) {
+                int id = row.value1();
+                byte[] data = row.value2();
+                lastId = id;
+                if (!DataPointVOCodec.isJavaSerialized(data)) {
+                    continue;
+                }
+
+                DataPointVO vo;
+                try {
+                    vo = DataPointVOCodec.decode(data);
+                } catch (Exception e) {
+                    LOG.warn("Unable to read data point with id {}, it will not be converted", id, e);
+                    continue;
+                }
+                updates.add(create.update(dataPoints)
+                        .set(dataField, DataPointVOCodec.encode(vo))
+                        .where(idField.eq(id)));
+            }
+            if (!updates.isEmpty()) {
+                create.batch(updates).execute();
+                converted += updates.size();
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        LOG.info("Converted {} data points to the binary data format", converted);
+    }
+
+    @Override
+    protected String getNewSchemaVersion() {
+        return "49";
+    }
+}
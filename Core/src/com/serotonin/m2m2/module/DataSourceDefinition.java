@@ -3,6 +3,11 @@
  */
 package com.serotonin.m2m2.module;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
 import com.serotonin.m2m2.db.dao.DataSourceDao;
 import com.serotonin.m2m2.i18n.ProcessResult;
 import com.serotonin.m2m2.rt.dataSource.DataSourceRT;
@@ -212,4 +217,31 @@ abstract public class DataSourceDefinition<T extends DataSourceVO> extends Modul
 
     }
 
+    /**
+     * Load in relational data for a batch of points with this type of point locator, override to load it
+     * using fewer queries
+     */
+    public void loadRelationalData(List<DataPointVO> points) {
+        for (DataPointVO vo : points) {
+            loadRelationalData(vo);
+        }
+    }
+
+    /**
+     * Write a point locator to the data point's blob in a binary format, which is much faster to read than Java
+     * serialization. The format should start with a version so that it can be changed later.
+     *
+     * @return false to Java serialize the locator instead
+     */
+    public boolean writePointLocator(PointLocatorVO<?> locator, DataOutput out) throws IOException {
+        return false;
+    }
+
+    /**
+     * Read a point locator written by {@link #writePointLocator(PointLocatorVO, DataOutput)}
+     */
+    public PointLocatorVO<?> readPointLocator(DataInput in) throws IOException {
+        throw new UnsupportedOperationException("Data source type " + getDataSourceTypeName() + " does not write binary point locators");
+    }
+
 }
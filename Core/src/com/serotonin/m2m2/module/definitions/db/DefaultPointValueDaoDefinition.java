@@ -4,19 +4,41 @@
 
 package com.serotonin.m2m2.module.definitions.db;
 
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAmount;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.infiniteautomation.mango.monitor.MonitoredValues;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.DatabaseProxy;
 import com.serotonin.m2m2.db.PointValueDaoDefinition;
+import com.serotonin.m2m2.db.dao.AggregateDaoSQL;
 import com.serotonin.m2m2.db.dao.DataPointDao;
 import com.serotonin.m2m2.db.dao.PointValueDao;
 import com.serotonin.m2m2.db.dao.PointValueDaoSQL;
+import com.serotonin.m2m2.db.dao.PointValuePartitioning;
+import com.serotonin.m2m2.db.dao.PointValueSpool;
 import com.serotonin.m2m2.db.dao.SystemSettingsDao;
+import com.serotonin.m2m2.db.dao.pointvalue.AggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.DefaultAggregateDao;
 
 public class DefaultPointValueDaoDefinition extends PointValueDaoDefinition {
 
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     @Autowired
     DatabaseProxy databaseProxy;
     @Autowired
@@ -25,18 +47,108 @@ public class DefaultPointValueDaoDefinition extends PointValueDaoDefinition {
     SystemSettingsDao systemSettingsDao;
     @Autowired
     DataPointDao dataPointDao;
+    @Autowired
+    Clock clock;
+    @Autowired
+    ExecutorService executorService;
+    @Autowired
+    ScheduledExecutorService scheduledExecutorService;
 
-    PointValueDao pointValueDao;
+    PointValueDaoSQL pointValueDao;
+    ScheduledFuture<?> updateAggregatesTask;
+    ScheduledFuture<?> createPartitionsTask;
+    ScheduledFuture<?> replaySpoolTask;
 
     @Override
     public void initialize() {
         int chunkSize = env.getProperty("db.default.chunkSize", int.class, 16_384);
-        this.pointValueDao = new PointValueDaoSQL(databaseProxy, monitoredValues, chunkSize, systemSettingsDao, dataPointDao);
+        int shardCount = env.getProperty("db.default.batchWrite.shards", int.class, Runtime.getRuntime().availableProcessors());
+        int shardCapacity = env.getProperty("db.default.batchWrite.shardCapacity", int.class, PointValueDaoSQL.DEFAULT_SHARD_CAPACITY);
+        int maxWriters = env.getProperty("db.default.batchWrite.maxWriters", int.class, PointValueDaoSQL.DEFAULT_MAX_WRITERS);
+        int spawnThreshold = env.getProperty("db.default.batchWrite.spawnThreshold", int.class, PointValueDaoSQL.DEFAULT_SPAWN_THRESHOLD);
+
+        PointValueSpool spool = null;
+        if (env.getProperty("db.default.spool.enabled", boolean.class, true)) {
+            Path directory = Common.MA_DATA_PATH.resolve(env.getProperty("db.default.spool.location", "databases/pointValueSpool")).normalize();
+            int segmentSize = env.getProperty("db.default.spool.segmentSize", int.class, 16 * 1024 * 1024);
+            long maxSize = env.getProperty("db.default.spool.maxSize", long.class, 1024L * 1024 * 1024);
+            spool = new PointValueSpool(directory, segmentSize, maxSize);
+        }
+
+        boolean preAggregation = env.getProperty("db.default.preAggregation.enabled", boolean.class, false);
+        Function<PointValueDao, AggregateDao> aggregateDaoFactory = DefaultAggregateDao::new;
+        if (preAggregation) {
+            TemporalAmount period = env.getProperty("db.default.preAggregation.period", TemporalAmount.class, Duration.ofMinutes(15L));
+            TemporalAmount boundary = env.getProperty("db.default.preAggregation.boundary", TemporalAmount.class, Duration.ofDays(1L));
+            ZoneId zone = env.getProperty("db.default.preAggregation.zone", ZoneId.class, ZoneId.systemDefault());
+            aggregateDaoFactory = dao -> new AggregateDaoSQL(databaseProxy, dao, dataPointDao, clock.withZone(zone),
+                    period, boundary, chunkSize);
+        }
+
+        PointValuePartitioning partitioning = null;
+        if (env.getProperty("db.default.partitioning.enabled", boolean.class, false)) {
+            if (PointValuePartitioning.isSupported(databaseProxy.getType())) {
+                ChronoUnit period = env.getProperty("db.default.partitioning.period", ChronoUnit.class, ChronoUnit.MONTHS);
+                int ahead = env.getProperty("db.default.partitioning.ahead", int.class, 2);
+                ZoneId zone = env.getProperty("db.default.partitioning.zone", ZoneId.class, ZoneOffset.UTC);
+                partitioning = new PointValuePartitioning(databaseProxy, clock.withZone(zone), period, ahead);
+                partitioning.initialize();
+            } else {
+                log.warn("Point value partitioning is not supported for database type {}", databaseProxy.getType());
+            }
+        }
+
+        this.pointValueDao = new PointValueDaoSQL(databaseProxy, monitoredValues, chunkSize, systemSettingsDao, dataPointDao,
+                shardCount, shardCapacity, maxWriters, spawnThreshold, spool, aggregateDaoFactory, partitioning);
+
+        if (spool != null) {
+            Duration replayPeriod = env.getProperty("db.default.spool.replayPeriod", Duration.class, Duration.ofSeconds(30L));
+            PointValueDaoSQL dao = this.pointValueDao;
+            this.replaySpoolTask = scheduledExecutorService.scheduleWithFixedDelay(dao::replaySpool,
+                    replayPeriod.toMillis(), replayPeriod.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        if (preAggregation) {
+            Duration updatePeriod = env.getProperty("db.default.preAggregation.updatePeriod", Duration.class, Duration.ofMinutes(15L));
+            AggregateDao aggregateDao = pointValueDao.getAggregateDao();
+            this.updateAggregatesTask = scheduledExecutorService.scheduleWithFixedDelay(() -> {
+                executorService.execute(aggregateDao::updateAggregates);
+            }, updatePeriod.toMillis(), updatePeriod.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        if (partitioning != null) {
+            Duration updatePeriod = env.getProperty("db.default.partitioning.updatePeriod", Duration.class, Duration.ofHours(12L));
+            PointValuePartitioning pointValuePartitioning = partitioning;
+            this.createPartitionsTask = scheduledExecutorService.scheduleWithFixedDelay(() -> {
+                executorService.execute(() -> {
+                    try {
+                        pointValuePartitioning.createPartitions();
+                    } catch (Exception e) {
+                        log.error("Failed to create point value partitions", e);
+                    }
+                });
+            }, updatePeriod.toMillis(), updatePeriod.toMillis(), TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void shutdown() {
-        // no-op
+        ScheduledFuture<?> updateAggregatesTask = this.updateAggregatesTask;
+        if (updateAggregatesTask != null) {
+            updateAggregatesTask.cancel(false);
+        }
+        ScheduledFuture<?> createPartitionsTask = this.createPartitionsTask;
+        if (createPartitionsTask != null) {
+            createPartitionsTask.cancel(false);
+        }
+        ScheduledFuture<?> replaySpoolTask = this.replaySpoolTask;
+        if (replaySpoolTask != null) {
+            replaySpoolTask.cancel(false);
+        }
+        PointValueDaoSQL pointValueDao = this.pointValueDao;
+        if (pointValueDao != null) {
+            pointValueDao.shutdown();
+        }
     }
 
     @Override
@@ -53,6 +53,14 @@ public class DataPointEventNotifyWorkItem implements WorkItem {
 
     @Override
     public void execute() {
+        notify(listener, oldValue);
+    }
+
+    /**
+     * Deliver this notification to a listener
+     * @param oldValue value prior to this update, may differ from this notification's old value when updates are coalesced
+     */
+    void notify(DataPointListener listener, PointValueTime oldValue) {
         try {
             if (attributesChanged) {
                 listener.attributeChanged(attributes);
@@ -84,6 +92,21 @@ public class DataPointEventNotifyWorkItem implements WorkItem {
         }
     }
 
+    DataPointListener getListener() {
+        return listener;
+    }
+
+    PointValueTime getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return true if this notification is for an update to the current value of the point
+     */
+    boolean isCurrentValueUpdate() {
+        return updated && !backdate && !attributesChanged;
+    }
+
     @Override
     public int getPriority() {
         return WorkItem.PRIORITY_MEDIUM;
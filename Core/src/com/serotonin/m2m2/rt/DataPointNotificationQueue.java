@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+
+package com.serotonin.m2m2.rt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.rt.dataImage.DataPointEventMulticaster;
+import com.serotonin.m2m2.rt.dataImage.DataPointListener;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.maint.work.WorkItem;
+import com.serotonin.timer.RejectedTaskReason;
+import com.serotonin.timer.Task;
+
+/**
+ * Queue of listener notifications for a single data point. Notifications are accumulated and a single work item
+ * delivers all queued notifications in order, so a busy point does not submit a work item for every value.
+ * Notifications for a single listener (e.g. an event detector initializing its state) are added to the same queue
+ * via {@link com.serotonin.m2m2.rt.dataImage.DataPointRT#queueNotification(DataPointEventNotifyWorkItem)}.
+ */
+public class DataPointNotificationQueue implements WorkItem {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointNotificationQueue.class);
+
+    /**
+     * Maximum number of notifications delivered by a single execution, the work item is resubmitted if more are queued
+     */
+    static final int MAX_DRAIN = 1000;
+
+    private static final String descriptionPrefix = "Point events for: ";
+    private static final String prefix = "EN-";
+
+    private static final Histogram timeInQueue = new Histogram(new ExponentiallyDecayingReservoir());
+
+    private final String sourceXid;
+    private final String taskId;
+    private final Queue<QueuedNotification> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public DataPointNotificationQueue(String xid) {
+        this.sourceXid = xid;
+        this.taskId = prefix + xid;
+    }
+
+    /**
+     * Queue a notification, the work item is submitted if it is not already scheduled
+     */
+    public void add(DataPointEventNotifyWorkItem notification) {
+        queue.offer(new QueuedNotification(notification, System.nanoTime()));
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Common.backgroundProcessing.addWorkItem(this);
+        }
+    }
+
+    /**
+     * @return mean time in milliseconds that notifications wait in the queue before they are delivered
+     */
+    public static double meanTimeInQueue() {
+        return timeInQueue.getSnapshot().getMean();
+    }
+
+    @Override
+    public void execute() {
+        drain();
+
+        // notifications queued after the last poll may not have been scheduled as we were still running
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Deliver up to {@link #MAX_DRAIN} queued notifications
+     *
+     * @return false if the queue was empty
+     */
+    private boolean drain() {
+        List<DataPointEventNotifyWorkItem> batch = new ArrayList<>();
+        QueuedNotification oldest = null;
+        QueuedNotification next;
+        while (batch.size() < MAX_DRAIN && (next = queue.poll()) != null) {
+            if (oldest == null) {
+                oldest = next;
+            }
+            batch.add(next.notification);
+        }
+
+        if (oldest == null) {
+            return false;
+        }
+        timeInQueue.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queued));
+        deliver(batch);
+        return true;
+    }
+
+    private void deliver(List<DataPointEventNotifyWorkItem> batch) {
+        int lastUpdate = -1;
+        PointValueTime coalescedOldValue = null;
+        for (int i = 0; i < batch.size(); i++) {
+            // only notifications which reach latest value only listeners are coalesced
+            if (batch.get(i).isCurrentValueUpdate() && batch.get(i).getListener().isLatestValueOnly()) {
+                if (lastUpdate < 0) {
+                    coalescedOldValue = batch.get(i).getOldValue();
+                }
+                lastUpdate = i;
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            DataPointEventNotifyWorkItem notification = batch.get(i);
+            boolean superseded = notification.isCurrentValueUpdate() && i != lastUpdate;
+            try {
+                DataPointListener listener = notification.getListener();
+                if (!listener.isLatestValueOnly() || !notification.isCurrentValueUpdate()) {
+                    notification.notify(listener, notification.getOldValue());
+                } else {
+                    for (DataPointListener l : DataPointEventMulticaster.getListeners(listener)) {
+                        // a failing listener must not prevent delivery to the others
+                        try {
+                            if (!l.isLatestValueOnly()) {
+                                notification.notify(l, notification.getOldValue());
+                            } else if (!superseded) {
+                                notification.notify(l, coalescedOldValue);
+                            }
+                        } catch (Exception e) {
+                            LOG.warn("Listener {} exception for point {}", l.getListenerName(), sourceXid, e);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                LOG.warn("Listener exception for point {}", sourceXid, e);
+            }
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return WorkItem.PRIORITY_MEDIUM;
+    }
+
+    @Override
+    public String getDescription() {
+        return descriptionPrefix + sourceXid;
+    }
+
+    @Override
+    public String getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public int getQueueSize() {
+        return Task.UNLIMITED_QUEUE_SIZE;
+    }
+
+    @Override
+    public void rejected(RejectedTaskReason reason) {
+        // deliver on the rejecting thread, otherwise the queued notifications would be stranded until the next one is
+        // added. The queue is still marked as scheduled so they can't be delivered concurrently.
+        LOG.warn("Notification work item for point {} rejected ({}), delivering {} notifications inline",
+                sourceXid, reason.getDescription(), queue.size());
+        while (drain()) {
+            // until empty
+        }
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private static final class QueuedNotification {
+        private final DataPointEventNotifyWorkItem notification;
+        private final long queued;
+
+        private QueuedNotification(DataPointEventNotifyWorkItem notification, long queued) {
+            this.notification = notification;
+            this.queued = queued;
+        }
+    }
+}
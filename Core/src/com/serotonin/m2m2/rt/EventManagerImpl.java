@@ -8,7 +8,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -23,16 +22,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.event.EventListener;
 
+import com.infiniteautomation.mango.spring.components.EventRecipientIndex;
 import com.infiniteautomation.mango.spring.events.DaoEvent;
 import com.infiniteautomation.mango.spring.service.EventHandlerService;
 import com.infiniteautomation.mango.spring.service.MailingListService;
 import com.infiniteautomation.mango.spring.service.PermissionService;
-import com.infiniteautomation.mango.spring.service.UsersService;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.dao.AuditEventDao;
 import com.serotonin.m2m2.db.dao.EventDao;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
 import com.serotonin.m2m2.module.EventManagerListenerDefinition;
+import com.serotonin.m2m2.rt.event.ActiveEventRegistry;
 import com.serotonin.m2m2.rt.event.AlarmLevels;
 import com.serotonin.m2m2.rt.event.EventInstance;
 import com.serotonin.m2m2.rt.event.ReturnCause;
@@ -63,13 +63,12 @@ public class EventManagerImpl implements EventManager {
     // minutes.
 
     private final List<EventManagerListenerDefinition> listeners = new CopyOnWriteArrayList<>();
-    private final ReadWriteLock activeEventsLock = new ReentrantReadWriteLock();
-    private final List<EventInstance> activeEvents = new ArrayList<>();
+    private final ActiveEventRegistry activeEvents = new ActiveEventRegistry();
     private final ReadWriteLock recentEventsLock = new ReentrantReadWriteLock();
     private final List<EventInstance> recentEvents = new ArrayList<>();
 
     private EventDao eventDao;
-    private UsersService usersService;
+    private EventRecipientIndex eventRecipientIndex;
     private int highestActiveAlarmLevel = 0;
     private UserEventListener userEventMulticaster = null;
     private MailingListService mailingListService;
@@ -131,7 +130,7 @@ public class EventManagerImpl implements EventManager {
             return;
 
         // Check if there is an event for this type already active.
-        EventInstance dup = get(type);
+        EventInstance dup = activeEvents.get(type);
         if (dup != null) {
             // Check the duplicate handling.
             boolean discard = canDiscard(type, message);
@@ -175,10 +174,14 @@ public class EventManagerImpl implements EventManager {
 
         initHandlers(evt);
 
-        // Get id from database by inserting event immediately.
+        // Assign an id to the event, it is inserted immediately or queued if the batched event writer is enabled
         //Check to see if we are Not Logging these
         if (alarmLevel != AlarmLevels.DO_NOT_LOG) {
-            eventDao.saveEvent(evt);
+            eventDao.saveEventAsync(evt).whenComplete((r, e) -> {
+                if (e != null) {
+                    log.error("Failed to save raised event, id={}, type={}", evt.getId(), evt.getEventType(), e);
+                }
+            });
         }
 
         // set of email addresses which have been configured to receive events over a certain level
@@ -187,21 +190,14 @@ public class EventManagerImpl implements EventManager {
         List<Integer> userIdsToNotify = new ArrayList<>();
         UserEventListener multicaster = userEventMulticaster;
 
-        for (User user : usersService.getEnabledUsers()) {
-            // Do not create an event for this user if the event type says the
-            // user should be skipped.
-            if (type.excludeUser(user))
-                continue;
-
-            if (type.hasPermission(user, permissionService)) {
-                // add email addresses for users which have been configured to receive events over a certain level
-                if (user.getReceiveAlarmEmails().value() > AlarmLevels.IGNORE.value() && alarmLevel.value() >= user.getReceiveAlarmEmails().value() && !StringUtils.isEmpty(user.getEmail()))
-                    emailUsers.add(user.getEmail());
+        for (User user : eventRecipientIndex.getRecipients(evt)) {
+            // add email addresses for users which have been configured to receive events over a certain level
+            if (user.getReceiveAlarmEmails().value() > AlarmLevels.IGNORE.value() && alarmLevel.value() >= user.getReceiveAlarmEmails().value() && !StringUtils.isEmpty(user.getEmail()))
+                emailUsers.add(user.getEmail());
 
-                //Notify All User Event Listeners of the new event
-                if ((alarmLevel != AlarmLevels.DO_NOT_LOG) && (!evt.getEventType().getEventType().equals(EventTypeNames.AUDIT))) {
-                    userIdsToNotify.add(user.getId());
-                }
+            //Notify All User Event Listeners of the new event
+            if ((alarmLevel != AlarmLevels.DO_NOT_LOG) && (!evt.getEventType().getEventType().equals(EventTypeNames.AUDIT))) {
+                userIdsToNotify.add(user.getId());
             }
         }
 
@@ -215,12 +211,7 @@ public class EventManagerImpl implements EventManager {
                 RecipientListEntryType.USER));
 
         if (evt.isRtnApplicable()) {
-            activeEventsLock.writeLock().lock();
-            try {
-                activeEvents.add(evt);
-            } finally {
-                activeEventsLock.writeLock().unlock();
-            }
+            activeEvents.add(evt);
         } else if (evt.getEventType().isRateLimited()) {
             recentEventsLock.writeLock().lock();
             try {
@@ -276,7 +267,7 @@ public class EventManagerImpl implements EventManager {
             // Ignore only if the message is the same. There may be events of
             // this type with different messages,
             // so look through them all for a match.
-            for (EventInstance e : getAll(type)) {
+            for (EventInstance e : activeEvents.getAll(type)) {
                 if (e.getMessage().equals(message))
                     return true;
             }
@@ -314,7 +305,7 @@ public class EventManagerImpl implements EventManager {
 
     @Override
     public void returnToNormal(EventType type, long time, ReturnCause cause) {
-        EventInstance evt = remove(type);
+        EventInstance evt = activeEvents.remove(type);
         if(evt == null) {
             if(log.isDebugEnabled()) {
                 log.debug("Attempted to return non-existent event to normal! type={}, now={}, eventTime={}, typeRef1={}, typeRef2={}",
@@ -337,7 +328,6 @@ public class EventManagerImpl implements EventManager {
                     );
         }
 
-        List<User> activeUsers = usersService.getEnabledUsers();
         UserEventListener multicaster = userEventMulticaster;
 
         // Loop in case of multiples
@@ -346,16 +336,9 @@ public class EventManagerImpl implements EventManager {
             evt.returnToNormal(time, cause);
 
             List<Integer> userIdsToNotify = new ArrayList<>();
-            for (User user : activeUsers) {
-                // Do not create an event for this user if the event type says the
-                // user should be skipped.
-                if (type.excludeUser(user))
-                    continue;
-
-                if(evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG){
-                    if (type.hasPermission(user, permissionService)) {
-                        userIdsToNotify.add(user.getId());
-                    }
+            if(evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG){
+                for (User user : eventRecipientIndex.getRecipients(evt)) {
+                    userIdsToNotify.add(user.getId());
                 }
             }
 
@@ -363,8 +346,13 @@ public class EventManagerImpl implements EventManager {
                 Common.backgroundProcessing.addWorkItem(new EventNotifyWorkItem(userIdsToNotify, multicaster, evt, false, true, false, false));
 
             resetHighestAlarmLevel(time);
-            if(evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG)
-                eventDao.saveEvent(evt);
+            if(evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG) {
+                eventDao.saveEventAsync(evt).whenComplete((r, e) -> {
+                    if (e != null) {
+                        log.error("Failed to save return to normal of event, id={}, type={}", evt.getId(), evt.getEventType(), e);
+                    }
+                });
+            }
 
             reLoadHandlers(evt);
 
@@ -372,7 +360,7 @@ public class EventManagerImpl implements EventManager {
             handleInactiveEvent(evt);
 
             // Check for another
-            evt = remove(type);
+            evt = activeEvents.remove(type);
         }
 
         if (log.isTraceEnabled()) {
@@ -385,8 +373,6 @@ public class EventManagerImpl implements EventManager {
      *
      */
     protected void deactivateEvents(List<EventInstance> evts, long time, ReturnCause inactiveCause) {
-        List<User> activeUsers = usersService.getEnabledUsers();
-
         List<Integer> eventIds = new ArrayList<>();
         UserEventListener multicaster = userEventMulticaster;
 
@@ -397,15 +383,8 @@ public class EventManagerImpl implements EventManager {
             evt.returnToNormal(time, inactiveCause);
 
             List<Integer> userIdsToNotify = new ArrayList<>();
-            for (User user : activeUsers) {
-                // Do not create an event for this user if the event type says the
-                // user should be skipped.
-                if (evt.getEventType().excludeUser(user))
-                    continue;
-
-                if (evt.getEventType().hasPermission(user, permissionService)) {
-                    userIdsToNotify.add(user.getId());
-                }
+            for (User user : eventRecipientIndex.getRecipients(evt)) {
+                userIdsToNotify.add(user.getId());
             }
 
             if(multicaster != null)
@@ -418,7 +397,11 @@ public class EventManagerImpl implements EventManager {
         }
         if(eventIds.size() > 0){
             resetHighestAlarmLevel(time);
-            eventDao.returnEventsToNormal(eventIds, time, inactiveCause);
+            eventDao.returnEventsToNormalAsync(eventIds, time, inactiveCause).whenComplete((r, e) -> {
+                if (e != null) {
+                    log.error("Failed to return {} events to normal", eventIds.size(), e);
+                }
+            });
         }
     }
 
@@ -456,16 +439,9 @@ public class EventManagerImpl implements EventManager {
         List<Integer> userIdsToNotify = new ArrayList<>();
         UserEventListener multicaster = userEventMulticaster;
 
-        for (User user : usersService.getEnabledUsers()) {
-            // Do not create an event for this user if the event type says the
-            // user should be skipped.
-            if (evt.getEventType().excludeUser(user))
-                continue;
-
-            if (evt.getEventType().hasPermission(user, permissionService)) {
-                //Notify All User Event Listeners of the new event
-                userIdsToNotify.add(user.getId());
-            }
+        for (User user : eventRecipientIndex.getRecipients(evt)) {
+            //Notify All User Event Listeners of the new event
+            userIdsToNotify.add(user.getId());
         }
 
         if(multicaster != null)
@@ -484,7 +460,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public EventInstance acknowledgeEventById(int eventId, long time, User user, TranslatableMessage alternateAckSource) {
         EventInstance dbEvent;
-        EventInstance cachedEvent = getById(eventId);
+        EventInstance cachedEvent = activeEvents.getById(eventId);
 
         if (cachedEvent != null) {
             acknowledgeEvent(cachedEvent, time, user, alternateAckSource);
@@ -518,12 +494,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public int purgeAllEvents(){
 
-        activeEventsLock.writeLock().lock();
-        try{
-            activeEvents.clear();
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        activeEvents.removeIf(e -> true);
 
         recentEventsLock.writeLock().lock();
         try{
@@ -542,12 +513,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public int purgeEventsBefore(final long time){
 
-        activeEventsLock.writeLock().lock();
-        try{
-            activeEvents.removeIf(e -> e.getActiveTimestamp() < time);
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        activeEvents.removeIf(e -> e.getActiveTimestamp() < time);
 
         recentEventsLock.writeLock().lock();
         try{
@@ -566,12 +532,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public int purgeEventsBefore(final long time, final String typeName){
 
-        activeEventsLock.writeLock().lock();
-        try{
-            activeEvents.removeIf(e -> (e.getActiveTimestamp() < time) && (e.getEventType().getEventType().equals(typeName)));
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        activeEvents.removeIf(e -> (e.getActiveTimestamp() < time) && (e.getEventType().getEventType().equals(typeName)));
 
         recentEventsLock.writeLock().lock();
         try{
@@ -593,12 +554,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public int purgeEventsBefore(final long time, final AlarmLevels alarmLevel){
 
-        activeEventsLock.writeLock().lock();
-        try{
-            activeEvents.removeIf(e -> (e.getActiveTimestamp() < time) && (e.getAlarmLevel() == alarmLevel));
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        activeEvents.removeIf(e -> (e.getActiveTimestamp() < time) && (e.getAlarmLevel() == alarmLevel));
 
         recentEventsLock.writeLock().lock();
         try{
@@ -618,20 +574,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public void cancelEventsForDataPoint(int dataPointId) {
 
-        List<EventInstance> dataPointEvents = new ArrayList<>();
-        activeEventsLock.writeLock().lock();
-        try{
-            ListIterator<EventInstance> it = activeEvents.listIterator();
-            while(it.hasNext()){
-                EventInstance e = it.next();
-                if (e.getEventType().getDataPointId() == dataPointId){
-                    it.remove();
-                    dataPointEvents.add(e);
-                }
-            }
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        List<EventInstance> dataPointEvents = activeEvents.removeForDataPoint(dataPointId);
 
         deactivateEvents(dataPointEvents, Common.timer.currentTimeMillis(), ReturnCause.SOURCE_DISABLED);
 
@@ -646,18 +589,8 @@ public class EventManagerImpl implements EventManager {
     @Override
     public void cancelEventsForDataPoints(Set<Integer> pointIds) {
         List<EventInstance> dataPointEvents = new ArrayList<>();
-        activeEventsLock.writeLock().lock();
-        try{
-            ListIterator<EventInstance> it = activeEvents.listIterator();
-            while(it.hasNext()){
-                EventInstance e = it.next();
-                if(pointIds.contains(e.getEventType().getDataPointId())) {
-                    it.remove();
-                    dataPointEvents.add(e);
-                }
-            }
-        }finally{
-            activeEventsLock.writeLock().unlock();
+        for (Integer pointId : pointIds) {
+            dataPointEvents.addAll(activeEvents.removeForDataPoint(pointId));
         }
 
         deactivateEvents(dataPointEvents, Common.timer.currentTimeMillis(), ReturnCause.SOURCE_DISABLED);
@@ -676,20 +609,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public void cancelEventsForDataSource(int dataSourceId) {
 
-        List<EventInstance> dataSourceEvents = new ArrayList<>();
-        activeEventsLock.writeLock().lock();
-        try{
-            ListIterator<EventInstance> it = activeEvents.listIterator();
-            while(it.hasNext()){
-                EventInstance e = it.next();
-                if(e.getEventType().getDataSourceId() == dataSourceId){
-                    it.remove();
-                    dataSourceEvents.add(e);
-                }
-            }
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        List<EventInstance> dataSourceEvents = activeEvents.removeForDataSource(dataSourceId);
 
         deactivateEvents(dataSourceEvents, Common.timer.currentTimeMillis(), ReturnCause.SOURCE_DISABLED);
 
@@ -707,20 +627,7 @@ public class EventManagerImpl implements EventManager {
     @Override
     public void cancelEventsForPublisher(int publisherId) {
 
-        List<EventInstance> publisherEvents = new ArrayList<>();
-        activeEventsLock.writeLock().lock();
-        try{
-            ListIterator<EventInstance> it = activeEvents.listIterator();
-            while(it.hasNext()){
-                EventInstance e = it.next();
-                if(e.getEventType().getPublisherId() == publisherId){
-                    it.remove();
-                    publisherEvents.add(e);
-                }
-            }
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
+        List<EventInstance> publisherEvents = activeEvents.removeForPublisher(publisherId);
 
         deactivateEvents(publisherEvents, Common.timer.currentTimeMillis(), ReturnCause.SOURCE_DISABLED);
 
@@ -734,18 +641,7 @@ public class EventManagerImpl implements EventManager {
 
     private void resetHighestAlarmLevel(long time) {
 
-        int max = 0;
-        activeEventsLock.readLock().lock();
-        try{
-            for (EventInstance e : activeEvents) {
-                if (e.getAlarmLevel().value() > max)
-                    max = e.getAlarmLevel().value();
-            }
-        }finally{
-            activeEventsLock.readLock().unlock();
-        }
-
-
+        int max = activeEvents.getHighestAlarmLevel();
 
         if (max > highestActiveAlarmLevel) {
             int oldValue = highestActiveAlarmLevel;
@@ -789,17 +685,14 @@ public class EventManagerImpl implements EventManager {
 
         permissionService = Common.getBean(PermissionService.class);
         eventDao = Common.getBean(EventDao.class);
-        usersService = Common.getBean(UsersService.class);
+        eventRecipientIndex = Common.getBean(EventRecipientIndex.class);
         mailingListService = Common.getBean(MailingListService.class);
         auditEventDao = Common.getBean(AuditEventDao.class);
         eventHandlerService = Common.getBean(EventHandlerService.class);
 
         // Get all active events from the database.
-        activeEventsLock.writeLock().lock();
-        try{
-            activeEvents.addAll(eventDao.getActiveEvents());
-        }finally{
-            activeEventsLock.writeLock().unlock();
+        for (EventInstance evt : eventDao.getActiveEvents()) {
+            activeEvents.add(evt);
         }
 
         resetHighestAlarmLevel(Common.timer.currentTimeMillis());
@@ -847,13 +740,7 @@ public class EventManagerImpl implements EventManager {
     //
     @Override
     public List<EventInstance> getAllActiveUserEvents(PermissionHolder user) {
-        List<EventInstance> userEvents;
-        activeEventsLock.readLock().lock();
-        try{
-            userEvents = new ArrayList<>(activeEvents);
-        }finally{
-            activeEventsLock.readLock().unlock();
-        }
+        List<EventInstance> userEvents = activeEvents.getAll();
 
         //Prune for user
         userEvents.removeIf(eventInstance -> !eventInstance.getEventType().hasPermission(user, permissionService));
@@ -866,90 +753,12 @@ public class EventManagerImpl implements EventManager {
     // Convenience
     //
 
-    /**
-     * Gets an event from the activeEvents list/cache by its id
-     */
-    private EventInstance getById(int id) {
-        EventInstance e;
-
-        activeEventsLock.readLock().lock();
-        try{
-            for (EventInstance activeEvent : activeEvents) {
-                e = activeEvent;
-                if (e.getId() == id)
-                    return e;
-            }
-        }finally{
-            activeEventsLock.readLock().unlock();
-        }
-
-        return null;
-    }
-
-    /**
-     * Returns the first event instance with the given type, or null is there is
-     * none.
-     */
-    private EventInstance get(EventType type) {
-        activeEventsLock.readLock().lock();
-        try{
-            for (EventInstance e : activeEvents) {
-                if (e.getEventType().equals(type))
-                    return e;
-            }
-        }finally{
-            activeEventsLock.readLock().unlock();
-        }
-        return null;
-    }
-
-    private List<EventInstance> getAll(EventType type) {
-        activeEventsLock.readLock().lock();
-        try{
-            return activeEvents.stream()
-                    .filter(e -> e.getEventType().equals(type))
-                    .collect(Collectors.toList());
-        }finally{
-            activeEventsLock.readLock().unlock();
-        }
-    }
-
     /**
      * To access all active events quickly
      */
     @Override
     public List<EventInstance> getAllActive() {
-        List<EventInstance> result = new ArrayList<>();
-        activeEventsLock.readLock().lock();
-        try{
-            result.addAll(activeEvents);
-        }finally{
-            activeEventsLock.readLock().unlock();
-        }
-        return result;
-    }
-
-    /**
-     * Finds and removes the first event instance with the given type. Returns
-     * null if there is none.
-     *
-     */
-    private EventInstance remove(EventType type) {
-        activeEventsLock.writeLock().lock();
-        try{
-            ListIterator<EventInstance> it = activeEvents.listIterator();
-            while(it.hasNext()){
-                EventInstance e = it.next();
-                if (e.getEventType().equals(type)) {
-                    it.remove();
-                    return e;
-                }
-            }
-        }finally{
-            activeEventsLock.writeLock().unlock();
-        }
-
-        return null;
+        return activeEvents.getAll();
     }
 
     private void initHandlers(EventInstance event) {
@@ -1042,10 +851,9 @@ public class EventManagerImpl implements EventManager {
         UserCommentVO vo = event.getVo();
         if (vo.getCommentType() != UserCommentVO.TYPE_EVENT) return;
 
-        activeEventsLock.writeLock().lock();
-        try {
-            EventInstance evt = this.getById(vo.getReferenceId());
-            if (evt != null) {
+        EventInstance evt = activeEvents.getById(vo.getReferenceId());
+        if (evt != null) {
+            synchronized (evt) {
                 List<UserCommentVO> comments = new ArrayList<>(evt.getEventComments());
                 switch(event.getType()) {
                     case CREATE:
@@ -1061,8 +869,6 @@ public class EventManagerImpl implements EventManager {
                 }
                 evt.setEventComments(comments);
             }
-        } finally {
-            activeEventsLock.writeLock().unlock();
         }
     }
 
@@ -297,6 +297,14 @@ public class DataPointEventMulticaster implements DataPointListener {
             throw exceptionWrapper;
 	}
 
+    /**
+     * @return true if any listener in the chain only needs the latest value
+     */
+    @Override
+    public boolean isLatestValueOnly() {
+        return a.isLatestValueOnly() || b.isLatestValueOnly();
+    }
+
 	/* (non-Javadoc)
 	 * @see com.serotonin.m2m2.rt.dataImage.DataPointListener#getListenerName()
 	 */
@@ -61,4 +61,13 @@ public interface DataPointListener {
      * Called when any attribute on a data source has changed, all attributes after the change are supplied to this callback
      */
     default void attributeChanged(Map<String, Object> attributes) { }
+
+    /**
+     * Listeners which only need the current value of the point may return true. When several updates are queued
+     * for the point only the latest update is delivered to the listener, its old value is the value prior to the
+     * first of the queued updates. Backdates and attribute changes are always delivered.
+     */
+    default boolean isLatestValueOnly() {
+        return false;
+    }
 }
@@ -27,6 +27,7 @@ import com.serotonin.m2m2.db.dao.DataPointDao;
 import com.serotonin.m2m2.db.dao.PointValueDao;
 import com.serotonin.m2m2.db.dao.SystemSettingsDao;
 import com.serotonin.m2m2.rt.DataPointEventNotifyWorkItem;
+import com.serotonin.m2m2.rt.DataPointNotificationQueue;
 import com.serotonin.m2m2.rt.dataImage.types.BinaryValue;
 import com.serotonin.m2m2.rt.dataImage.types.DataValue;
 import com.serotonin.m2m2.rt.dataImage.types.MultistateValue;
@@ -87,6 +88,7 @@ public class DataPointRT implements IDataPointValueSource, ILifecycle {
     private double toleranceOrigin;
 
     private final DataPointDao dataPointDao;
+    private final DataPointNotificationQueue notificationQueue;
 
     public DataPointRT(DataPointWithEventDetectors dp, PointLocatorRT<?> pointLocator, DataSourceRT<? extends DataSourceVO> dataSource, List<PointValueTime> initialCache, PointValueDao dao, PointValueCache pointValueCache) {
         if (dataSource.getId() != dp.getDataPoint().getDataSourceId()) {
@@ -115,6 +117,7 @@ public class DataPointRT implements IDataPointValueSource, ILifecycle {
         });
 
         this.dataPointDao = Common.getBean(DataPointDao.class);
+        this.notificationQueue = new DataPointNotificationQueue(vo.getXid());
     }
 
     /**
@@ -792,10 +795,17 @@ public class DataPointRT implements IDataPointValueSource, ILifecycle {
             boolean backdate, boolean logged, boolean updated, boolean attributesChanged) {
         DataPointListener l = Common.runtimeManager.getDataPointListeners(vo.getId());
         if (l != null)
-            Common.backgroundProcessing.addWorkItem(new DataPointEventNotifyWorkItem(vo.getXid(), l, oldValue, newValue,
+            notificationQueue.add(new DataPointEventNotifyWorkItem(vo.getXid(), l, oldValue, newValue,
                     attributes, set, backdate, logged, updated, attributesChanged));
     }
 
+    /**
+     * Queue a notification, it is delivered in order with the notifications for all of this point's listeners.
+     */
+    public void queueNotification(DataPointEventNotifyWorkItem notification) {
+        notificationQueue.add(notification);
+    }
+
     @Override
     public ILifecycleState getLifecycleState() {
         return state;
@@ -3,7 +3,6 @@
  */
 package com.serotonin.m2m2.rt.dataImage;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -11,7 +10,6 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.infiniteautomation.mango.pointvaluecache.PointValueCache;
 import com.serotonin.m2m2.db.dao.PointValueDao;
-import com.serotonin.m2m2.view.stats.ITime;
 import com.serotonin.m2m2.vo.DataPointVO;
 
 /**
@@ -31,6 +29,11 @@ public class DataPointRTPointValueCache {
     private final PointValueCache pointValueCache;
 
     private volatile List<PointValueTime> cache;
+    /**
+     * Used to insert values when the cache size is greater than 1, lazily created from the cache contents.
+     * Guarded by this.
+     */
+    private PointValueRingBuffer buffer;
 
     public DataPointRTPointValueCache(DataPointVO vo, int defaultSize, @Nullable List<PointValueTime> initialCache, PointValueDao dao, PointValueCache pointValueCache) {
         this.vo = vo;
@@ -67,21 +70,29 @@ public class DataPointRTPointValueCache {
         synchronized (this) {
             if (defaultSize == 0) {
                 this.cache = Collections.emptyList();
-            } else if (defaultSize == 1) {
-                var existing = cache;
-                if (existing == null || existing.isEmpty() || existing.get(0).getTime() <= pvt.getTime()) {
-                    this.cache = Collections.singletonList(pvt);
-                }
             } else {
                 var existing = cache;
-                this.cache = new ArrayList<>(existing.size() + 1);
-                cache.add(pvt);
-                cache.addAll(existing);
-                cache.sort(ITime.COMPARATOR.reversed());
-
-                // remove items from end of list until list is under the size limit
-                while (cache.size() > defaultSize) {
-                    cache.remove(cache.size() - 1);
+                boolean insert = true;
+                if (existing == null) {
+                    // load the persisted values first, otherwise updateCache() would replace them with this value
+                    this.cache = existing = pointValueCache.loadCache(vo, defaultSize);
+                    // the value may have already been saved to the database and hence loaded
+                    insert = !existing.contains(pvt);
+                }
+
+                if (insert && defaultSize == 1) {
+                    if (existing.isEmpty() || existing.get(0).getTime() <= pvt.getTime()) {
+                        this.cache = Collections.singletonList(pvt);
+                    }
+                } else if (insert) {
+                    var buffer = this.buffer;
+                    if (buffer == null) {
+                        this.buffer = buffer = new PointValueRingBuffer(defaultSize, existing);
+                    }
+                    // publish a new snapshot, unless the value was older than all values in a full cache
+                    if (buffer.insert(pvt)) {
+                        this.cache = buffer.toList();
+                    }
                 }
             }
 
@@ -132,6 +143,7 @@ public class DataPointRTPointValueCache {
     public void invalidate(boolean invalidatePersisted) {
         synchronized (this) {
             this.cache = null;
+            this.buffer = null;
             if (invalidatePersisted) {
                 pointValueCache.deleteCache(vo);
             }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.rt.dataImage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed capacity ring buffer of point values, kept in time descending order (i.e. latest value first). New values are
+ * inserted in place, when the buffer is full the oldest value is dropped. Values with the same time as an existing
+ * value are inserted before it.
+ *
+ * <p>Not thread safe, access must be externally synchronized.</p>
+ */
+final class PointValueRingBuffer {
+
+    private final PointValueTime[] values;
+    /**
+     * Physical index of the latest value
+     */
+    private int head;
+    private int size;
+
+    /**
+     * @param capacity maximum number of values
+     * @param initial initial values in time descending order, values in excess of the capacity are ignored
+     */
+    PointValueRingBuffer(int capacity, List<PointValueTime> initial) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.values = new PointValueTime[capacity];
+        for (PointValueTime pvt : initial) {
+            if (size == capacity) {
+                break;
+            }
+            values[size++] = pvt;
+        }
+    }
+
+    /**
+     * Insert a value into the buffer at its time ordered position.
+     *
+     * @param pvt value to insert
+     * @return false if the buffer is full and the value is older than all values in the buffer
+     */
+    boolean insert(PointValueTime pvt) {
+        int capacity = values.length;
+        int index = insertionIndex(pvt.getTime());
+        if (index == capacity) {
+            return false;
+        }
+
+        if (size == capacity) {
+            // drop the oldest value, it is overwritten below
+            size--;
+        }
+
+        if (index == 0) {
+            // common case, value is the latest, the slot before the head is either empty or holds the dropped value
+            head = physicalIndex(capacity - 1);
+        } else {
+            for (int i = size; i > index; i--) {
+                values[physicalIndex(i)] = values[physicalIndex(i - 1)];
+            }
+        }
+        values[physicalIndex(index)] = pvt;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return logical index of the first value with a time less than or equal to the given time
+     */
+    private int insertionIndex(long time) {
+        if (size == 0 || values[head].getTime() <= time) {
+            return 0;
+        }
+
+        int low = 1;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[physicalIndex(mid)].getTime() <= time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private int physicalIndex(int index) {
+        int physical = head + index;
+        return physical >= values.length ? physical - values.length : physical;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return unmodifiable snapshot of the buffer contents in time descending order
+     */
+    List<PointValueTime> toList() {
+        PointValueTime[] snapshot = new PointValueTime[size];
+        int firstLength = Math.min(size, values.length - head);
+        System.arraycopy(values, head, snapshot, 0, firstLength);
+        System.arraycopy(values, 0, snapshot, firstLength, size - firstLength);
+        return Collections.unmodifiableList(Arrays.asList(snapshot));
+    }
+}
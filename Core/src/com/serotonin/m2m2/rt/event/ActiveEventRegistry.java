@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.rt.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Predicate;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.rt.event.type.EventType;
+
+/**
+ * Concurrent registry of active events, indexed by event type, event ID, data point, data source and publisher.
+ * Also keeps a count of active events per alarm level so the highest active alarm level can be found without scanning.
+ *
+ * <p>Events are indexed by event type using {@link EventType#hashCode()} if the event type class overrides it, otherwise
+ * using the type name and sub-type. Events with the same index are then matched using {@link EventType#equals(Object)},
+ * consistent with a linear scan of the active events.</p>
+ *
+ * <p>Removing an event from the type index claims it, only one caller will successfully remove a given event
+ * regardless of which index it was found in.</p>
+ */
+public class ActiveEventRegistry {
+
+    private static final ClassValue<Boolean> OVERRIDES_HASH_CODE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("hashCode").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Lists are never modified, they are replaced. Events in each list are in the order they were added.
+     */
+    private final Map<Integer, List<EventInstance>> byType = new ConcurrentHashMap<>();
+    private final Map<Integer, EventInstance> byId = new ConcurrentHashMap<>();
+    /**
+     * Sets are only modified inside of compute functions of the map
+     */
+    private final Map<Integer, Set<EventInstance>> byDataPoint = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<EventInstance>> byDataSource = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<EventInstance>> byPublisher = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray alarmLevelCounts = new AtomicIntegerArray(AlarmLevels.LIFE_SAFETY.value() + 1);
+
+    public void add(EventInstance evt) {
+        // synchronized so the event can't be removed from the indexes before it has been added to all of them
+        synchronized (evt) {
+            addToIndexes(evt);
+        }
+    }
+
+    private void addToIndexes(EventInstance evt) {
+        byType.compute(typeKey(evt.getEventType()), (k, list) -> {
+            if (list == null) {
+                return Collections.singletonList(evt);
+            }
+            List<EventInstance> newList = new ArrayList<>(list.size() + 1);
+            newList.addAll(list);
+            newList.add(evt);
+            return newList;
+        });
+
+        if (evt.getId() != Common.NEW_ID) {
+            byId.put(evt.getId(), evt);
+        }
+        EventType type = evt.getEventType();
+        addToIndex(byDataPoint, type.getDataPointId(), evt);
+        addToIndex(byDataSource, type.getDataSourceId(), evt);
+        addToIndex(byPublisher, type.getPublisherId(), evt);
+
+        int level = evt.getAlarmLevel().value();
+        if (level >= 0 && level < alarmLevelCounts.length()) {
+            alarmLevelCounts.incrementAndGet(level);
+        }
+    }
+
+    /**
+     * @return the first active event with the given type, or null if there is none
+     */
+    public @Nullable EventInstance get(EventType type) {
+        List<EventInstance> list = byType.get(typeKey(type));
+        if (list != null) {
+            for (EventInstance e : list) {
+                if (e.getEventType().equals(type)) {
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all active events with the given type
+     */
+    public List<EventInstance> getAll(EventType type) {
+        List<EventInstance> list = byType.get(typeKey(type));
+        List<EventInstance> result = new ArrayList<>();
+        if (list != null) {
+            for (EventInstance e : list) {
+                if (e.getEventType().equals(type)) {
+                    result.add(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    public @Nullable EventInstance getById(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @return copy of all active events
+     */
+    public List<EventInstance> getAll() {
+        List<EventInstance> result = new ArrayList<>();
+        for (List<EventInstance> list : byType.values()) {
+            result.addAll(list);
+        }
+        return result;
+    }
+
+    /**
+     * Finds and removes the first event with the given type.
+     *
+     * @return the removed event, or null if there is none
+     */
+    public @Nullable EventInstance remove(EventType type) {
+        EventInstance[] removed = new EventInstance[1];
+        byType.computeIfPresent(typeKey(type), (k, list) -> {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).getEventType().equals(type)) {
+                    removed[0] = list.get(i);
+                    return without(list, i);
+                }
+            }
+            return list;
+        });
+
+        if (removed[0] != null) {
+            removeFromIndexes(removed[0]);
+        }
+        return removed[0];
+    }
+
+    /**
+     * Remove all active events for a data point
+     * @return the removed events
+     */
+    public List<EventInstance> removeForDataPoint(int dataPointId) {
+        return removeAll(byDataPoint.remove(dataPointId));
+    }
+
+    /**
+     * Remove all active events for a data source
+     * @return the removed events
+     */
+    public List<EventInstance> removeForDataSource(int dataSourceId) {
+        return removeAll(byDataSource.remove(dataSourceId));
+    }
+
+    /**
+     * Remove all active events for a publisher
+     * @return the removed events
+     */
+    public List<EventInstance> removeForPublisher(int publisherId) {
+        return removeAll(byPublisher.remove(publisherId));
+    }
+
+    /**
+     * Remove all active events which match the filter
+     * @return the removed events
+     */
+    public List<EventInstance> removeIf(Predicate<EventInstance> filter) {
+        List<EventInstance> candidates = getAll();
+        candidates.removeIf(filter.negate());
+        return removeAll(candidates);
+    }
+
+    /**
+     * @return the highest alarm level of all active events, or {@link AlarmLevels#NONE} if there are none
+     */
+    public int getHighestAlarmLevel() {
+        for (int level = alarmLevelCounts.length() - 1; level > 0; level--) {
+            if (alarmLevelCounts.get(level) > 0) {
+                return level;
+            }
+        }
+        return AlarmLevels.NONE.value();
+    }
+
+    /**
+     * @return the number of active events with the given alarm level
+     */
+    public int getCount(AlarmLevels alarmLevel) {
+        int level = alarmLevel.value();
+        return level >= 0 && level < alarmLevelCounts.length() ? alarmLevelCounts.get(level) : 0;
+    }
+
+    private List<EventInstance> removeAll(@Nullable Collection<EventInstance> candidates) {
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        List<EventInstance> removed = new ArrayList<>(candidates.size());
+        for (EventInstance evt : candidates) {
+            if (removeEvent(evt)) {
+                removed.add(evt);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes this event instance (by identity) from the type index, claiming it, then removes it from the other
+     * indexes.
+     *
+     * @return true if the event was removed, false if it was already removed
+     */
+    private boolean removeEvent(EventInstance evt) {
+        boolean[] removed = new boolean[1];
+        byType.computeIfPresent(typeKey(evt.getEventType()), (k, list) -> {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == evt) {
+                    removed[0] = true;
+                    return without(list, i);
+                }
+            }
+            return list;
+        });
+
+        if (removed[0]) {
+            removeFromIndexes(evt);
+        }
+        return removed[0];
+    }
+
+    private void removeFromIndexes(EventInstance evt) {
+        synchronized (evt) {
+            removeFromSecondaryIndexes(evt);
+        }
+    }
+
+    private void removeFromSecondaryIndexes(EventInstance evt) {
+        if (evt.getId() != Common.NEW_ID) {
+            byId.remove(evt.getId(), evt);
+        }
+        EventType type = evt.getEventType();
+        removeFromIndex(byDataPoint, type.getDataPointId(), evt);
+        removeFromIndex(byDataSource, type.getDataSourceId(), evt);
+        removeFromIndex(byPublisher, type.getPublisherId(), evt);
+
+        int level = evt.getAlarmLevel().value();
+        if (level >= 0 && level < alarmLevelCounts.length()) {
+            alarmLevelCounts.decrementAndGet(level);
+        }
+    }
+
+    private static @Nullable List<EventInstance> without(List<EventInstance> list, int index) {
+        if (list.size() == 1) {
+            return null;
+        }
+        List<EventInstance> newList = new ArrayList<>(list);
+        newList.remove(index);
+        return newList;
+    }
+
+    private static void addToIndex(Map<Integer, Set<EventInstance>> index, int key, EventInstance evt) {
+        // event types return -1 if they don't reference a data point, data source or publisher
+        if (key < 0) {
+            return;
+        }
+        index.compute(key, (k, set) -> {
+            if (set == null) {
+                set = Collections.newSetFromMap(new IdentityHashMap<>());
+            }
+            set.add(evt);
+            return set;
+        });
+    }
+
+    private static void removeFromIndex(Map<Integer, Set<EventInstance>> index, int key, EventInstance evt) {
+        // event types return -1 if they don't reference a data point, data source or publisher
+        if (key < 0) {
+            return;
+        }
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(evt);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static int typeKey(EventType type) {
+        if (OVERRIDES_HASH_CODE.get(type.getClass())) {
+            return type.hashCode();
+        }
+        return Objects.hash(type.getEventType(), type.getEventSubtype());
+    }
+}
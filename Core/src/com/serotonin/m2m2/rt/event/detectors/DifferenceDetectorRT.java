@@ -5,6 +5,7 @@ package com.serotonin.m2m2.rt.event.detectors;
 
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.rt.DataPointEventNotifyWorkItem;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
 import com.serotonin.m2m2.rt.dataImage.PointValueTime;
 import com.serotonin.m2m2.vo.event.detector.TimeoutDetectorVO;
 
@@ -55,7 +56,8 @@ abstract public class DifferenceDetectorRT<T extends TimeoutDetectorVO<T>> exten
         long nextJobOffset = now;
         // Get historical data for the point out of the database.
         int pointId = vo.getDataPoint().getId();
-        PointValueTime latest = Common.runtimeManager.getDataPoint(pointId).getPointValue();
+        DataPointRT rt = Common.runtimeManager.getDataPoint(pointId);
+        PointValueTime latest = rt.getPointValue();
         if (latest != null) {
             lastChange = latest.getTime();
             nextJobOffset = latest.getTime();
@@ -67,7 +69,7 @@ abstract public class DifferenceDetectorRT<T extends TimeoutDetectorVO<T>> exten
         //Submit task to fire event, this will call our pointChanged(null, latest) and pointUpdated(newValue) methods in a separate thread
         //  so the raise and handle event logic is not done on the thread starting Mango.
         if (latest != null) {
-            Common.backgroundProcessing.addWorkItem(new DataPointEventNotifyWorkItem(vo.getDataPoint().getXid(), this, null, latest,
+            rt.queueNotification(new DataPointEventNotifyWorkItem(vo.getDataPoint().getXid(), this, null, latest,
                     null, false, false, false, true, false));
         }else {
             scheduleJob(nextJobOffset);
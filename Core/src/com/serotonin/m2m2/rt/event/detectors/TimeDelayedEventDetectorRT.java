@@ -7,6 +7,7 @@ import java.util.Date;
 
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.rt.DataPointEventNotifyWorkItem;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
 import com.serotonin.m2m2.rt.dataImage.PointValueTime;
 import com.serotonin.m2m2.vo.event.detector.TimeoutDetectorVO;
 
@@ -96,12 +97,13 @@ abstract public class TimeDelayedEventDetectorRT<T extends TimeoutDetectorVO<T>>
      */
     protected void initializeState() {
         int pointId = vo.getDataPoint().getId();
-        PointValueTime latest = Common.runtimeManager.getDataPoint(pointId).getPointValue();
+        DataPointRT rt = Common.runtimeManager.getDataPoint(pointId);
+        PointValueTime latest = rt.getPointValue();
 
         //Submit task to fire event, this will call our pointChanged(null, latest) and pointUpdated(newValue) methods in a separate thread
         //  so the raise and handle event logic is not done on the thread starting Mango.
         if (latest != null) {
-            Common.backgroundProcessing.addWorkItem(new DataPointEventNotifyWorkItem(vo.getDataPoint().getXid(), this, null, latest,
+            rt.queueNotification(new DataPointEventNotifyWorkItem(vo.getDataPoint().getXid(), this, null, latest,
                     null, false, false, false, true, false));
         }
     }
@@ -4,11 +4,15 @@
 package com.serotonin.m2m2.rt.publish;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,12 +23,18 @@ import com.serotonin.m2m2.vo.publish.PublishedPointVO;
 import com.serotonin.m2m2.vo.publish.PublisherVO;
 
 /**
- * 
+ * Bounded queue of values to be published. Entries are held in a ring buffer which holds at most the discard size
+ * number of entries, once it is full the oldest entry is discarded to make room. If an overflow is provided entries
+ * which do not fit in the ring buffer are written to the overflow instead and are moved back into the ring buffer as
+ * it is drained. Once the overflow is also full the oldest entries are discarded, the same as the ring buffer, until
+ * the overflow has released its oldest segment.
+ *
  * @author Matthew Lohbihler
  */
 public class PublishQueue<PUB extends PublisherVO, T extends PublishedPointVO, V> {
     private static final Logger LOG = LoggerFactory.getLogger(PublishQueue.class);
     private static final long SIZE_CHECK_DELAY = 5000;
+    private static final int INITIAL_CAPACITY = 1024;
 
     //Metrics
     public static final String QUEUE_SIZE_MONITOR_ID = "com.serotonin.m2m2.rt.publish.QUEUE_SIZE_MONITOR_";
@@ -32,85 +42,325 @@ public class PublishQueue<PUB extends PublisherVO, T extends PublishedPointVO, V
     //Monitors
     final ValueMonitor<Integer> queueSizeMonitor;
 
-    protected final ConcurrentLinkedQueue<PublishQueueEntry<T, V>> queue = new ConcurrentLinkedQueue<PublishQueueEntry<T, V>>();
+    protected final ReentrantLock lock = new ReentrantLock();
     private final PublisherRT<PUB, T, ? extends SendThread> owner;
     private final int warningSize;
     private final int dewarningSize;
     private final int discardSize;
+    private final @Nullable PublishQueueOverflow<PublishQueueEntry<T, V>> overflow;
+    private final AtomicLong discarded = new AtomicLong();
     private boolean warningActive = false;
     private long lastSizeCheck;
 
+    /**
+     * Protected by {@link #lock}
+     */
+    private PublishQueueEntry<T, V>[] ring;
+    private int head;
+    private int count;
+    /**
+     * Total number of entries in the ring buffer and overflow, written while holding {@link #lock}
+     */
+    private volatile int size;
+
     public PublishQueue(PublisherRT<PUB, T, ? extends SendThread> owner, int warningSize, int discardSize) {
+        this(owner, warningSize, discardSize, null);
+    }
+
+    /**
+     * @param overflow holds entries which do not fit in memory, null to discard them
+     */
+    @SuppressWarnings("unchecked")
+    public PublishQueue(PublisherRT<PUB, T, ? extends SendThread> owner, int warningSize, int discardSize,
+                        @Nullable PublishQueueOverflow<PublishQueueEntry<T, V>> overflow) {
         this.owner = owner;
         this.warningSize = warningSize;
         this.dewarningSize = (int) (warningSize * 0.9); // Deactivate the size warning at 90% of the warning size.
-        this.discardSize = discardSize;
+        this.discardSize = Math.max(1, discardSize);
+        this.overflow = overflow;
+        this.ring = new PublishQueueEntry[Math.min(INITIAL_CAPACITY, this.discardSize)];
         this.queueSizeMonitor = Common.MONITORED_VALUES.<Integer>create(QUEUE_SIZE_MONITOR_ID + this.owner.getVo().getXid())
                 .name(new TranslatableMessage("publisher.monitor.QUEUE_SIZE_MONITOR_ID", this.owner.getVo().getName())).build();
 
     }
 
     public void add(T vo, V pvt) {
-        queue.add(new PublishQueueEntry<T, V>(vo, pvt));
+        lock.lock();
+        try {
+            offer(new PublishQueueEntry<>(vo, pvt));
+            updateSize();
+        } finally {
+            lock.unlock();
+        }
         sizeCheck();
     }
 
     public void add(T vo, List<V> pvts) {
-        for (V pvt : pvts)
-            queue.add(new PublishQueueEntry<T, V>(vo, pvt));
+        lock.lock();
+        try {
+            for (V pvt : pvts)
+                offer(new PublishQueueEntry<>(vo, pvt));
+            updateSize();
+        } finally {
+            lock.unlock();
+        }
         sizeCheck();
     }
 
     public PublishQueueEntry<T,V> next() {
-        return queue.peek();
+        lock.lock();
+        try {
+            return count == 0 ? null : ring[head];
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Get entries from the head of the queue without removing them, once they are published remove them using
+     * {@link #removeFirst(int)} or {@link #removeAll(List)}.
+     *
+     * @return up to max entries, or null if the queue is empty
+     */
     public List<PublishQueueEntry<T,V>> get(int max) {
-        if (queue.isEmpty())
-            return null;
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
 
-        Iterator<PublishQueueEntry<T,V>> iter = queue.iterator();
-        List<PublishQueueEntry<T,V>> result = new ArrayList<PublishQueueEntry<T,V>>(max);
-        while (iter.hasNext() && result.size() < max)
-            result.add(iter.next());
+            int n = Math.min(max, count);
+            List<PublishQueueEntry<T,V>> result = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                result.add(ring[index(i)]);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        return result;
+    /**
+     * Remove entries from the head of the queue and add them to a collection
+     *
+     * @return number of entries drained
+     */
+    public int drainTo(Collection<? super PublishQueueEntry<T,V>> collection, int max) {
+        int drained = 0;
+        lock.lock();
+        try {
+            while (drained < max && count > 0) {
+                collection.add(poll());
+                drained++;
+                if (count == 0)
+                    refill();
+            }
+            refill();
+            updateSize();
+        } finally {
+            lock.unlock();
+        }
+        sizeCheck();
+        return drained;
     }
 
-    public void remove(PublishQueueEntry<T,V> e) {
-        queue.remove(e);
+    /**
+     * Remove entries from the head of the queue, i.e. entries previously returned by {@link #get(int)}
+     *
+     * @return number of entries removed
+     */
+    public int removeFirst(int n) {
+        int removed = 0;
+        lock.lock();
+        try {
+            while (removed < n && count > 0) {
+                poll();
+                removed++;
+                if (count == 0)
+                    refill();
+            }
+            refill();
+            updateSize();
+        } finally {
+            lock.unlock();
+        }
         sizeCheck();
+        return removed;
+    }
+
+    public void remove(PublishQueueEntry<T,V> e) {
+        removeAll(Collections.singletonList(e));
     }
 
     public void removeAll(List<PublishQueueEntry<T,V>> list) {
-        queue.removeAll(list);
+        lock.lock();
+        try {
+            // entries are usually removed from the head in order
+            int i = 0;
+            while (i < list.size() && count > 0 && ring[head] == list.get(i)) {
+                poll();
+                i++;
+            }
+            if (i < list.size() && count > 0) {
+                Set<PublishQueueEntry<T,V>> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+                remaining.addAll(list.subList(i, list.size()));
+                compact(remaining);
+            }
+            refill();
+            updateSize();
+        } finally {
+            lock.unlock();
+        }
         sizeCheck();
     }
-    
+
     public void removeAll() {
-    	queue.clear();
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++)
+                ring[index(i)] = null;
+            head = 0;
+            count = 0;
+            if (overflow != null)
+                overflow.clear();
+            updateSize();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public int getSize() {
-        return queue.size();
+        return size;
+    }
+
+    /**
+     * The queue is no longer held in a {@link java.util.Queue}, use {@link #get(int)} and {@link #removeFirst(int)}
+     * or {@link #drainTo(Collection, int)} instead.
+     *
+     * @return a copy of the entries held in memory, changes to it do not modify the queue
+     * @deprecated replaces the protected queue field, entries in the overflow are not included
+     */
+    @Deprecated
+    protected List<PublishQueueEntry<T,V>> getQueue() {
+        lock.lock();
+        try {
+            List<PublishQueueEntry<T,V>> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                result.add(ring[index(i)]);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must hold the lock
+     */
+    private void offer(PublishQueueEntry<T,V> entry) {
+        if (overflow != null && (overflow.size() > 0 || count == discardSize)) {
+            // entries must go to the overflow until it is drained, otherwise they would be published out of order
+            if (!overflow.offer(entry) && !(overflow.isFull() && makeRoom() && overflow.offer(entry)))
+                discarded.incrementAndGet();
+            return;
+        }
+
+        if (count == discardSize) {
+            poll();
+            discarded.incrementAndGet();
+        } else if (count == ring.length) {
+            grow();
+        }
+        ring[index(count)] = entry;
+        count++;
+    }
+
+    /**
+     * Must hold the lock
+     */
+    private PublishQueueEntry<T,V> poll() {
+        PublishQueueEntry<T,V> entry = ring[head];
+        ring[head] = null;
+        head = index(1);
+        count--;
+        return entry;
+    }
+
+    /**
+     * Discards the oldest entries until the overflow releases a segment. Entries move from the overflow into the ring
+     * buffer as it is drained so the entries are discarded in order. Must hold the lock.
+     *
+     * @return true if the overflow has space
+     */
+    private boolean makeRoom() {
+        int segments = overflow.segmentCount();
+        while (count > 0) {
+            poll();
+            discarded.incrementAndGet();
+            refill();
+            if (overflow.size() == 0 || overflow.segmentCount() < segments)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the entries contained in the set, retaining the order of the remaining entries. Must hold the lock.
+     */
+    private void compact(Set<PublishQueueEntry<T,V>> remove) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            PublishQueueEntry<T,V> entry = ring[index(i)];
+            if (!remove.contains(entry))
+                ring[index(kept++)] = entry;
+        }
+        for (int i = kept; i < count; i++)
+            ring[index(i)] = null;
+        count = kept;
+    }
+
+    /**
+     * Move entries from the overflow into the ring buffer. Must hold the lock.
+     */
+    private void refill() {
+        if (overflow == null)
+            return;
+        while (count < discardSize && overflow.size() > 0) {
+            PublishQueueEntry<T,V> entry = overflow.poll();
+            if (entry == null)
+                break;
+            if (count == ring.length)
+                grow();
+            ring[index(count)] = entry;
+            count++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        PublishQueueEntry<T,V>[] grown = new PublishQueueEntry[(int) Math.min(discardSize, ring.length * 2L)];
+        for (int i = 0; i < count; i++)
+            grown[i] = ring[index(i)];
+        ring = grown;
+        head = 0;
+    }
+
+    private int index(int offset) {
+        int i = head + offset;
+        return i < ring.length ? i : i - ring.length;
+    }
+
+    private void updateSize() {
+        size = overflow == null ? count : count + overflow.size();
     }
 
     private void sizeCheck() {
         long now = Common.timer.currentTimeMillis();
         if (lastSizeCheck + SIZE_CHECK_DELAY < now) {
             lastSizeCheck = now;
-            int size = queue.size();
+            int size = this.size;
             queueSizeMonitor.setValue(size);
             synchronized (owner) {
-                if (size > discardSize) {
-                	try {
-                		for (int i = discardSize; i < size; i++)
-                			queue.remove();
-                	} catch(NoSuchElementException e) {
-                		//Queue is emptied, nothing to do
-                	}
-                	
-                    LOG.warn("Publisher queue " + owner.getVo().getName() + " discarded " + (size - discardSize)
+                long discarded = this.discarded.getAndSet(0);
+                if (discarded > 0) {
+                    LOG.warn("Publisher queue " + owner.getVo().getName() + " discarded " + discarded
                             + " entries");
                 }
 
@@ -132,8 +382,11 @@ public class PublishQueue<PUB extends PublisherVO, T extends PublishedPointVO, V
 
     public void terminate() {
         Common.MONITORED_VALUES.remove(this.queueSizeMonitor.getId());
-        if(!queue.isEmpty()){
+        if(size > 0){
             LOG.debug("Publisher " + owner.readableIdentifier() + " terminated with a non-empty queue.");
         }
+        if (overflow != null) {
+            overflow.close();
+        }
     }
 }
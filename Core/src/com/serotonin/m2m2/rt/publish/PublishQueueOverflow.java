@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.rt.publish;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.infiniteautomation.mango.util.MappedBuffers;
+
+/**
+ * Overflow for a {@link PublishQueue}, entries which do not fit in the queue's memory are appended to fixed size,
+ * memory-mapped segment files and read back in order once the queue has space. Segments are unmapped and deleted once
+ * they have been fully read, so space is released a segment at a time.
+ *
+ * <p>Each record is of the form {@code [int length][length bytes]}, the bytes are written by a {@link Codec}. The
+ * overflow does not survive a restart, the same as the in-memory queue, any existing segments are deleted when it is
+ * opened.</p>
+ *
+ * @param <E> entry type
+ */
+public class PublishQueueOverflow<E> implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PublishQueueOverflow.class);
+
+    static final String SEGMENT_PREFIX = "overflow-";
+    static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Codec<E> codec;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final DataOutputStream encoder = new DataOutputStream(encoded);
+    private long nextSegmentId;
+    private int size;
+
+    /**
+     * @param directory directory to store segment files in
+     * @param segmentSize size of each segment file in bytes
+     * @param maxSize maximum disk space used by the overflow in bytes
+     * @param codec encodes and decodes entries
+     */
+    public PublishQueueOverflow(Path directory, int segmentSize, long maxSize, Codec<E> codec) {
+        if (segmentSize <= Integer.BYTES) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / segmentSize));
+        this.codec = codec;
+
+        try {
+            Files.createDirectories(directory);
+            deleteSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open publish queue overflow in " + directory, e);
+        }
+    }
+
+    /**
+     * @return false if the overflow is full or the entry could not be written
+     */
+    public synchronized boolean offer(E entry) {
+        try {
+            encoded.reset();
+            codec.encode(entry, encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            LOG.error("Unable to encode publish queue entry", e);
+            return false;
+        }
+
+        int length = Integer.BYTES + encoded.size();
+        if (length > segmentSize) {
+            LOG.error("Publish queue entry of {} bytes is larger than the overflow segment size", encoded.size());
+            return false;
+        }
+
+        Segment tail = segments.peekLast();
+        if (tail != null && tail.readPosition >= tail.writePosition) {
+            // all entries have been read, reuse the segment from the start
+            tail.readPosition = 0;
+            tail.writePosition = 0;
+        }
+        if (tail == null || tail.writePosition + length > segmentSize) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            try {
+                tail = openSegment(nextSegmentId++);
+            } catch (IOException e) {
+                LOG.error("Unable to create publish queue overflow segment in {}", directory, e);
+                return false;
+            }
+            segments.addLast(tail);
+        }
+
+        MappedByteBuffer buffer = tail.buffer;
+        buffer.putInt(tail.writePosition, encoded.size());
+        buffer.duplicate().position(tail.writePosition + Integer.BYTES).put(encoded.toByteArray());
+        tail.writePosition += length;
+        size++;
+        return true;
+    }
+
+    /**
+     * Entries which the codec can no longer decode are skipped.
+     *
+     * @return the oldest entry, or null if the overflow is empty
+     */
+    public synchronized @Nullable E poll() {
+        while (size > 0) {
+            Segment segment = segments.peekFirst();
+            if (segment.readPosition >= segment.writePosition) {
+                segments.removeFirst();
+                deleteSegment(segment);
+                continue;
+            }
+
+            int length = segment.buffer.getInt(segment.readPosition);
+            byte[] data = new byte[length];
+            segment.buffer.duplicate().position(segment.readPosition + Integer.BYTES).get(data);
+            segment.readPosition += Integer.BYTES + length;
+            size--;
+            if (segment.readPosition >= segment.writePosition && segment != segments.peekLast()) {
+                segments.removeFirst();
+                deleteSegment(segment);
+            }
+
+            try {
+                E entry = codec.decode(new DataInputStream(new ByteArrayInputStream(data)));
+                if (entry != null) {
+                    return entry;
+                }
+            } catch (IOException e) {
+                LOG.error("Unable to decode publish queue entry, discarding", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of entries in the overflow
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return true if all segments have been created, entries can only be added to the space remaining in the last
+     * segment until the oldest segment has been read
+     */
+    public synchronized boolean isFull() {
+        return segments.size() >= maxSegments;
+    }
+
+    /**
+     * @return number of segment files
+     */
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return disk space used by the overflow in bytes
+     */
+    public synchronized long diskSize() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Removes all entries
+     */
+    public synchronized void clear() {
+        for (Segment segment : segments) {
+            deleteSegment(segment);
+        }
+        segments.clear();
+        size = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        clear();
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            LOG.debug("Unable to delete publish queue overflow directory {}", directory, e);
+        }
+    }
+
+    private void deleteSegments() throws IOException {
+        List<Path> existing;
+        try (Stream<Path> files = Files.list(directory)) {
+            existing = files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).collect(Collectors.toList());
+        }
+        for (Path path : existing) {
+            Files.delete(path);
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+        }
+        return new Segment(path, buffer);
+    }
+
+    private void deleteSegment(Segment segment) {
+        // the file can't be deleted on Windows while it is mapped
+        MappedBuffers.unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOG.warn("Unable to delete publish queue overflow segment {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Encodes and decodes the entries of an overflow
+     */
+    public interface Codec<E> {
+        void encode(E entry, DataOutput out) throws IOException;
+
+        /**
+         * @return the entry, or null if it should be skipped e.g. its published point no longer exists
+         */
+        @Nullable E decode(DataInput in) throws IOException;
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -3,6 +3,11 @@
  */
 package com.serotonin.m2m2.rt.publish;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,14 +27,22 @@ import org.slf4j.LoggerFactory;
 import com.infiniteautomation.mango.spring.events.DaoEvent;
 import com.serotonin.ShouldNeverHappenException;
 import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.DataType;
 import com.serotonin.m2m2.db.dao.DataPointDao;
 import com.serotonin.m2m2.db.dao.PublishedPointDao;
 import com.serotonin.m2m2.db.dao.PublisherDao;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.i18n.TranslatableMessageParseException;
 import com.serotonin.m2m2.rt.PublishedPointGroupInitializer;
 import com.serotonin.m2m2.rt.RuntimeManager;
+import com.serotonin.m2m2.rt.dataImage.AnnotatedPointValueTime;
 import com.serotonin.m2m2.rt.dataImage.DataPointRT;
 import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.AlphanumericValue;
+import com.serotonin.m2m2.rt.dataImage.types.BinaryValue;
+import com.serotonin.m2m2.rt.dataImage.types.DataValue;
+import com.serotonin.m2m2.rt.dataImage.types.MultistateValue;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
 import com.serotonin.m2m2.rt.event.AlarmLevels;
 import com.serotonin.m2m2.rt.event.type.EventType;
 import com.serotonin.m2m2.rt.event.type.PublisherEventType;
@@ -109,7 +122,23 @@ abstract public class PublisherRT<T extends PublisherVO, POINT extends Published
     }
 
     protected PublishQueue<T, POINT, PointValueTime> createPublishQueue(PublisherVO vo) {
-        return new PublishQueue<>(this, vo.getCacheWarningSize(), vo.getCacheDiscardSize());
+        return new PublishQueue<>(this, vo.getCacheWarningSize(), vo.getCacheDiscardSize(), createPublishQueueOverflow(vo));
+    }
+
+    /**
+     * @return overflow for values which do not fit in the publish queue's memory, null if disabled
+     */
+    protected PublishQueueOverflow<PublishQueueEntry<POINT, PointValueTime>> createPublishQueueOverflow(PublisherVO vo) {
+        if (!Common.envProps.getBoolean("runtime.publisher.queue.overflow.enabled", false)) {
+            return null;
+        }
+        Path directory = Common.MA_DATA_PATH
+                .resolve(Common.envProps.getString("runtime.publisher.queue.overflow.location", "publisherQueues"))
+                .resolve(vo.getXid())
+                .normalize();
+        int segmentSize = Common.envProps.getInt("runtime.publisher.queue.overflow.segmentSize", 16 * 1024 * 1024);
+        long maxSize = Common.envProps.getLong("runtime.publisher.queue.overflow.maxSize", 1024L * 1024 * 1024);
+        return new PublishQueueOverflow<>(directory, segmentSize, maxSize, new PointValueCodec());
     }
 
     protected AttributePublishQueue<POINT> createAttirbutesChangedQueue() {
@@ -600,4 +629,99 @@ abstract public class PublisherRT<T extends PublisherVO, POINT extends Published
             return stream.filter(p -> p.getVo().getDataPointId() == dataPointId).collect(Collectors.toList());
         }
     }
+
+    /**
+     * Encodes queued point values for the publish queue overflow, entries for points which have since been removed
+     * from the publisher are skipped when decoded.
+     */
+    private class PointValueCodec implements PublishQueueOverflow.Codec<PublishQueueEntry<POINT, PointValueTime>> {
+
+        @Override
+        public void encode(PublishQueueEntry<POINT, PointValueTime> entry, DataOutput out) throws IOException {
+            PointValueTime pvt = entry.getValue();
+            DataValue value = pvt.getValue();
+            out.writeInt(entry.getVo().getId());
+            out.writeLong(pvt.getTime());
+            out.writeByte(value.getDataType().getId());
+            switch (value.getDataType()) {
+                case BINARY:
+                    out.writeBoolean(value.getBooleanValue());
+                    break;
+                case MULTISTATE:
+                    out.writeInt(value.getIntegerValue());
+                    break;
+                case NUMERIC:
+                    out.writeDouble(value.getDoubleValue());
+                    break;
+                case ALPHANUMERIC:
+                    writeString(value.getStringValue(), out);
+                    break;
+            }
+            TranslatableMessage sourceMessage = pvt instanceof AnnotatedPointValueTime ?
+                    ((AnnotatedPointValueTime) pvt).getSourceMessage() : null;
+            out.writeBoolean(sourceMessage != null);
+            if (sourceMessage != null) {
+                writeString(sourceMessage.serialize(), out);
+            }
+        }
+
+        @Override
+        public PublishQueueEntry<POINT, PointValueTime> decode(DataInput in) throws IOException {
+            int id = in.readInt();
+            long time = in.readLong();
+            int dataTypeId = in.readByte();
+            DataType dataType = DataType.fromId(dataTypeId);
+            if (dataType == null) {
+                throw new IOException("Unknown data type " + dataTypeId);
+            }
+            DataValue value;
+            switch (dataType) {
+                case BINARY:
+                    value = new BinaryValue(in.readBoolean());
+                    break;
+                case MULTISTATE:
+                    value = new MultistateValue(in.readInt());
+                    break;
+                case NUMERIC:
+                    value = new NumericValue(in.readDouble());
+                    break;
+                case ALPHANUMERIC:
+                    value = new AlphanumericValue(readString(in));
+                    break;
+                default:
+                    throw new IOException("Unsupported data type " + dataType);
+            }
+            PointValueTime pvt = new PointValueTime(value, time);
+            if (in.readBoolean()) {
+                try {
+                    pvt = new AnnotatedPointValueTime(pvt, TranslatableMessage.deserialize(readString(in)));
+                } catch (TranslatableMessageParseException e) {
+                    log.warn("Unable to deserialize annotation of queued value for published point {}", id, e);
+                }
+            }
+
+            PublishedPointRT<POINT> point = getPointById(id);
+            return point == null ? null : new PublishQueueEntry<>(point.getVo(), pvt);
+        }
+
+        private void writeString(String value, DataOutput out) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private String readString(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
 }
@@ -12,19 +12,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 
 import javax.script.Invocable;
 import javax.script.ScriptException;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.StringEntity;
 import org.eclipse.jetty.http.HttpMethod;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +37,7 @@ import org.springframework.http.HttpStatus;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.infiniteautomation.mango.spring.MangoRuntimeContextConfiguration;
+import com.infiniteautomation.mango.spring.components.HttpClientService;
 import com.infiniteautomation.mango.spring.service.MangoJavaScriptService;
 import com.infiniteautomation.mango.spring.service.PermissionService;
 import com.infiniteautomation.mango.util.script.ScriptUtility;
@@ -51,10 +56,13 @@ public class HttpBuilderScriptUtility extends ScriptUtility {
     private ScriptExceptionCallback exceptionCallback;
     private Exception thrown;
     private final List<Integer> okayStatus = new ArrayList<>(1);
+    private final HttpClientService httpClientService;
 
     @Autowired
-    public HttpBuilderScriptUtility(MangoJavaScriptService service, PermissionService permissionService) {
+    public HttpBuilderScriptUtility(MangoJavaScriptService service, PermissionService permissionService,
+                                    HttpClientService httpClientService) {
         super(service, permissionService);
+        this.httpClientService = httpClientService;
         okayStatus.add(HttpStatus.OK.value());
     }
 
@@ -318,9 +326,14 @@ public class HttpBuilderScriptUtility extends ScriptUtility {
         }
 
         try {
-            if(request.getHeaders("Content-Type").length == 0 && (request instanceof HttpPost || request instanceof HttpPut))
-                request.setHeader("Content-Type", "application/json");
-            response = Common.getHttpClient().execute(request);
+            setDefaultContentType(request);
+            CloseableHttpResponse response = httpClientService.getHttpClient().execute(request);
+            try {
+                bufferEntity(response);
+            } finally {
+                response.close();
+            }
+            this.response = response;
         } catch(IOException e) {
             if(exceptionCallback != null)
                 return exceptionCallback.exception(e);
@@ -347,6 +360,72 @@ public class HttpBuilderScriptUtility extends ScriptUtility {
         return null;
     }
 
+    /**
+     * Execute the staged request in the background, the calling script is not blocked while waiting for the response.
+     * The callbacks are not invoked, the returned future is completed with an object containing the status, headers
+     * and content of the response.
+     */
+    public CompletableFuture<Map<String, Object>> executeAsync() {
+        if(thrown != null)
+            return CompletableFuture.failedFuture(thrown);
+        if(request == null)
+            return CompletableFuture.failedFuture(new Exception("No request staged."));
+
+        setDefaultContentType(request);
+        return httpClientService.executeAsync(request, r -> {
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", r.getStatusLine().getStatusCode());
+            result.put("headers", extractHeaders(r));
+            result.put("content", r.getEntity() == null ? null : HttpUtils4.readFullResponseBody(r));
+            return result;
+        });
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public CompletableFuture<Map<String, Object>> requestAsync(Map<String, Object> request) {
+        reset();
+        try {
+            String path = (String)request.get("path");
+            String method = (String)request.get("method");
+            if(path == null)
+                return CompletableFuture.failedFuture(new Exception("Must have 'path' attribute to make request."));
+            if(method == null)
+                return CompletableFuture.failedFuture(new Exception("Must have 'method' attribute to make request."));
+
+            Map<String, Object> headers = (Map<String, Object>)request.get("headers");
+            Map<String, Object> parameters = (Map<String, Object>)request.get("parameters");
+            Object content = request.containsKey("content") ? request.get("content") : "";
+
+            if(HttpMethod.POST.name().equals(method))
+                post(path, headers, content, false);
+            else if(HttpMethod.GET.name().equals(method))
+                get(path, headers, parameters, false);
+            else if(HttpMethod.PUT.name().equals(method))
+                put(path, headers, content, false);
+            else if(HttpMethod.DELETE.name().equals(method))
+                delete(path, headers, false);
+
+            return executeAsync();
+        } catch(ClassCastException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void setDefaultContentType(HttpUriRequest request) {
+        if(request.getHeaders("Content-Type").length == 0 && (request instanceof HttpPost || request instanceof HttpPut))
+            request.setHeader("Content-Type", "application/json");
+    }
+
+    /**
+     * Read the response body into memory so that the connection is returned to the pool straight away, the response
+     * may still be read by the script via {@link #getResponse()}.
+     */
+    private void bufferEntity(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if(entity != null)
+            response.setEntity(new BufferedHttpEntity(entity));
+    }
+
     private URI buildUri(String loc) {
         return buildUri(loc, null);
     }
@@ -406,6 +485,8 @@ public class HttpBuilderScriptUtility extends ScriptUtility {
         builder.append("err( function( status, headers, content ){} ): set the error callback, returns HttpBuilder\n");
         builder.append("excp( function( exception ){} ): set the error callback, returns HttpBuilder\n");
         builder.append("execute(): execute the staged request and receive callbacks\n");
+        builder.append("executeAsync(): CompletableFuture, execute the staged request in the background, completed with { status, headers, content }\n");
+        builder.append("requestAsync( requestObject ): CompletableFuture, make a whole request in the background, callbacks are not used\n");
         builder.append("retry(): retry the staged request and receive callbacks\n");
         builder.append("getRetried(): int, the number of times the request was attempted to be sent\n");
         builder.append("setOkayStatusArray( int[] ): void, set the status codes to call the resp function on, default [200]\n");
@@ -9,8 +9,11 @@ import java.time.ZonedDateTime;
 import java.time.temporal.TemporalAmount;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
@@ -36,6 +39,7 @@ import com.infiniteautomation.mango.util.script.ScriptUtility;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.Common.Rollups;
 import com.serotonin.m2m2.Common.TimePeriods;
+import com.serotonin.m2m2.db.dao.DataPointDao;
 import com.serotonin.m2m2.db.dao.PointValueDao;
 import com.serotonin.m2m2.db.dao.pointvalue.TimeOrder;
 import com.serotonin.m2m2.rt.dataImage.IdPointValueTime;
@@ -53,11 +57,14 @@ public class PointValueTimeStreamScriptUtility extends ScriptUtility {
     public static final String CONTEXT_KEY = "PointValueQuery";
 
     private final DataPointService dataPointService;
+    private final DataPointDao dataPointDao;
 
     @Autowired
-    public PointValueTimeStreamScriptUtility(MangoJavaScriptService service, PermissionService permissionService, DataPointService dataPointService) {
+    public PointValueTimeStreamScriptUtility(MangoJavaScriptService service, PermissionService permissionService,
+                                             DataPointService dataPointService, DataPointDao dataPointDao) {
         super(service, permissionService);
         this.dataPointService = dataPointService;
+        this.dataPointDao = dataPointDao;
     }
 
     @Override
@@ -69,17 +76,33 @@ public class PointValueTimeStreamScriptUtility extends ScriptUtility {
      * Query and lookup points by id
      */
     public void query(List<Integer> ids, long from, long to, boolean bookend, ScriptPointValueTimeCallback callback) {
-        List<DataPointVO> vos = new ArrayList<>(ids.size());
-        for(Integer id : ids) {
-            if(id == null) {
-                continue;
-            }else {
-                vos.add(dataPointService.get(id));
-            }
-        }
+        List<DataPointVO> vos = getPoints(ids);
         queryUsingPoints(vos, from, to, bookend, callback);
     }
 
+    /**
+     * Lookup the points, read permission is checked for all of them at once and they are loaded in batches. A point
+     * which does not exist or cannot be read fails the query as it would using {@link DataPointService#get(int)}.
+     */
+    private List<DataPointVO> getPoints(List<Integer> ids) {
+        int[] requested = ids.stream().filter(Objects::nonNull).mapToInt(Integer::intValue).toArray();
+        int[] readable = permissionService.filterReadable(Common.getUser(), requested);
+
+        Set<Integer> readableIds = new HashSet<>(readable.length);
+        for (int id : readable) {
+            readableIds.add(id);
+        }
+        Map<Integer, DataPointVO> points = dataPointDao.getByIds(readableIds);
+
+        List<DataPointVO> vos = new ArrayList<>(requested.length);
+        for (int id : requested) {
+            DataPointVO vo = points.get(id);
+            // throws the NotFoundException or PermissionException
+            vos.add(vo != null ? vo : dataPointService.get(id));
+        }
+        return vos;
+    }
+
     /**
      * Query using points directly
      */
@@ -92,14 +115,7 @@ public class PointValueTimeStreamScriptUtility extends ScriptUtility {
      * Rollup query using point ids to lookup data points
      */
     public void rollupQuery(List<Integer> ids, long from, long to, ScriptPointValueRollupCallback callback, int rollupType, int rollupPeriods, int rollupPeriodType) throws QueryCancelledException, ScriptPermissionsException {
-        List<DataPointVO> vos = new ArrayList<>(ids.size());
-        for(Integer id : ids) {
-            if(id == null) {
-                continue;
-            }else {
-                vos.add(dataPointService.get(id));
-            }
-        }
+        List<DataPointVO> vos = getPoints(ids);
         rollupQueryUsingPoints(vos, from, to, callback, rollupType, rollupPeriods, rollupPeriodType);
     }
 
@@ -51,20 +51,34 @@ abstract public class ProgressiveTask extends HighPriorityTask {
 
     @Override
     public final void run(long runtime) {
-        while (true) {
-            if (isCancelled()) {
-                declareFinished(true);
-                break;
-            }
+        boolean wasCancelled;
+        try {
+            while (true) {
+                if (isCancelled()) {
+                    wasCancelled = true;
+                    break;
+                }
 
-            runImpl();
+                runImpl();
 
-            if (isCompleted()) {
-                declareFinished(false);
-                break;
+                if (isCompleted()) {
+                    wasCancelled = false;
+                    break;
+                }
             }
+        } finally {
+            completed = true;
+            finished();
         }
-        completed = true;
+        declareFinished(wasCancelled);
+    }
+
+    /**
+     * Called from the task's thread once it stops running, whether it completed, was cancelled or failed. Override to
+     * release any state held between calls to {@link #runImpl()}. The listener is notified after this returns, so any
+     * results recorded here are visible to it.
+     */
+    protected void finished() {
     }
 
     protected void declareProgress(float progress) {
@@ -3,6 +3,10 @@
  */
 package com.serotonin.m2m2.vo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -31,6 +35,8 @@ import com.serotonin.m2m2.db.dao.DataPointTagsDao;
 import com.serotonin.m2m2.db.dao.EventDetectorDao;
 import com.serotonin.m2m2.i18n.TranslatableJsonException;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.module.DataSourceDefinition;
+import com.serotonin.m2m2.module.ModuleRegistry;
 import com.serotonin.m2m2.util.ExportCodes;
 import com.serotonin.m2m2.util.JUnitUtil;
 import com.serotonin.m2m2.view.text.AnalogRenderer;
@@ -1252,6 +1258,130 @@ public class DataPointVO extends AbstractActionVO implements IDataPoint {
 
     }
 
+    //
+    //
+    // Binary format, see DataPointVOCodec
+    //
+    private static final int binaryVersion = 3;
+
+    void writeBinary(DataOutputStream out) throws IOException {
+        ensureUnitsCorrect();
+        out.writeInt(binaryVersion);
+        out.writeDouble(discardLowLimit);
+        out.writeDouble(discardHighLimit);
+        SerializationHelper.writeSafeUTF(out, chartColour);
+        out.writeInt(plotType);
+        SerializationHelper.writeSafeUTF(out, JUnitUtil.formatDefault(unit));
+        SerializationHelper.writeSafeUTF(out, JUnitUtil.formatDefault(integralUnit));
+        SerializationHelper.writeSafeUTF(out, JUnitUtil.formatDefault(renderedUnit));
+        out.writeBoolean(useIntegralUnit);
+        out.writeBoolean(useRenderedUnit);
+        out.writeBoolean(overrideIntervalLoggingSamples);
+        out.writeInt(intervalLoggingSampleWindowSize);
+        out.writeBoolean(preventSetExtremeValues);
+        out.writeDouble(setExtremeLowLimit);
+        out.writeDouble(setExtremeHighLimit);
+        out.writeInt(simplifyType);
+        out.writeDouble(simplifyTolerance);
+        out.writeInt(simplifyTarget);
+
+        byte[] locator = writeBinaryPointLocator();
+        out.writeBoolean(locator != null);
+        if (locator != null) {
+            SerializationHelper.writeSafeUTF(out, pointLocator.getDataSourceType());
+            out.writeInt(locator.length);
+            out.write(locator);
+        }
+
+        // Renderers defined by modules, and locators which their data source definition doesn't write, are Java
+        // serialized and must come last
+        boolean binaryRenderer = DataPointVOCodec.writeTextRenderer(out, textRenderer);
+        if (!binaryRenderer || locator == null) {
+            ObjectOutputStream objects = new ObjectOutputStream(out);
+            if (!binaryRenderer) {
+                objects.writeObject(textRenderer);
+            }
+            if (locator == null) {
+                objects.writeObject(pointLocator);
+            }
+            objects.flush();
+        }
+    }
+
+    /**
+     * @return the point locator written by its data source definition, or null if it must be Java serialized
+     */
+    private byte[] writeBinaryPointLocator() throws IOException {
+        if (pointLocator == null)
+            return null;
+        DataSourceDefinition<?> definition = ModuleRegistry.getDataSourceDefinition(pointLocator.getDataSourceType());
+        if (definition == null)
+            return null;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+        DataOutputStream locatorOut = new DataOutputStream(baos);
+        if (!definition.writePointLocator(pointLocator, locatorOut))
+            return null;
+        locatorOut.flush();
+        return baos.toByteArray();
+    }
+
+    void readBinary(DataInputStream in) throws IOException, ClassNotFoundException {
+        int ver = in.readInt();
+
+        if (ver >= 1 && ver <= 3) {
+            discardLowLimit = in.readDouble();
+            discardHighLimit = in.readDouble();
+            chartColour = SerializationHelper.readSafeUTF(in);
+            plotType = in.readInt();
+            unit = DataPointVOCodec.parseUnit(SerializationHelper.readSafeUTF(in), defaultUnit());
+            integralUnit = DataPointVOCodec.parseUnit(SerializationHelper.readSafeUTF(in), defaultUnit());
+            renderedUnit = DataPointVOCodec.parseUnit(SerializationHelper.readSafeUTF(in), defaultUnit());
+            useIntegralUnit = in.readBoolean();
+            useRenderedUnit = in.readBoolean();
+            overrideIntervalLoggingSamples = in.readBoolean();
+            intervalLoggingSampleWindowSize = in.readInt();
+            preventSetExtremeValues = in.readBoolean();
+            setExtremeLowLimit = in.readDouble();
+            setExtremeHighLimit = in.readDouble();
+            simplifyType = in.readInt();
+            simplifyTolerance = in.readDouble();
+            simplifyTarget = in.readInt();
+
+            PointLocatorVO<?> locator = null;
+            boolean binaryLocator = ver >= 2 && in.readBoolean();
+            if (binaryLocator) {
+                String type = SerializationHelper.readSafeUTF(in);
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                DataSourceDefinition<?> definition = ModuleRegistry.getDataSourceDefinition(type);
+                if (definition == null)
+                    throw new ShouldNeverHappenException("Data source type " + type + " is not installed");
+                locator = definition.readPointLocator(new DataInputStream(new ByteArrayInputStream(data)));
+            }
+
+            int rendererType = ver >= 3 ? in.readUnsignedByte() : DataPointVOCodec.RENDERER_SERIALIZED;
+            boolean binaryRenderer = rendererType != DataPointVOCodec.RENDERER_SERIALIZED;
+            if (binaryRenderer) {
+                textRenderer = DataPointVOCodec.readTextRenderer(rendererType, in);
+            }
+            if (!binaryRenderer || !binaryLocator) {
+                ObjectInputStream objects = SerializationHelper.createObjectInputStreamInContext(in);
+                if (!binaryRenderer) {
+                    textRenderer = (TextRenderer) objects.readObject();
+                }
+                pointLocator = binaryLocator ? locator : (PointLocatorVO<?>) objects.readObject();
+            } else {
+                pointLocator = locator;
+            }
+        }
+        else {
+            throw new ShouldNeverHappenException("Unknown binary format version " + ver);
+        }
+
+        setUnitsOnTextRenderer();
+    }
+
     private void setUnitsOnTextRenderer() {
         if (textRenderer instanceof ConvertingRenderer) {
             ConvertingRenderer cr = (ConvertingRenderer) textRenderer;
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.m2m2.vo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.measure.unit.Unit;
+
+import com.serotonin.ShouldNeverHappenException;
+import com.serotonin.m2m2.util.JUnitUtil;
+import com.serotonin.m2m2.view.text.AnalogRenderer;
+import com.serotonin.m2m2.view.text.BinaryTextRenderer;
+import com.serotonin.m2m2.view.text.MultistateRenderer;
+import com.serotonin.m2m2.view.text.MultistateValue;
+import com.serotonin.m2m2.view.text.NoneRenderer;
+import com.serotonin.m2m2.view.text.PlainRenderer;
+import com.serotonin.m2m2.view.text.RangeRenderer;
+import com.serotonin.m2m2.view.text.RangeValue;
+import com.serotonin.m2m2.view.text.TextRenderer;
+import com.serotonin.m2m2.view.text.TimeRenderer;
+import com.serotonin.util.SerializationHelper;
+
+/**
+ * Encodes the data column of the dataPoints table. The fields of the data point are written directly, the point
+ * locator is written by its data source definition if it supports it (see
+ * {@link com.serotonin.m2m2.module.DataSourceDefinition#writePointLocator}). The core text renderers are written as a
+ * type tag followed by their fields, only text renderers defined by modules and locators that are not written by their
+ * definition are still Java serialized. This avoids writing and parsing class descriptors for every point.
+ *
+ * <p>Blobs written by Java serialization are still read, they can be converted using {@link #isJavaSerialized(byte[])}
+ * and {@link #encode(DataPointVO)}.</p>
+ */
+public final class DataPointVOCodec {
+
+    private static final byte MAGIC_0 = 'M';
+    private static final byte MAGIC_1 = 'P';
+
+    private static final int UNIT_CACHE_SIZE = 1024;
+    private static final ConcurrentMap<String, Unit<?>> UNIT_CACHE = new ConcurrentHashMap<>();
+
+    private DataPointVOCodec() {
+    }
+
+    public static byte[] encode(DataPointVO vo) throws ShouldNeverHappenException {
+        if (vo == null)
+            return null;
+
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
+            DataOutputStream out = new DataOutputStream(baos);
+            out.writeByte(MAGIC_0);
+            out.writeByte(MAGIC_1);
+            vo.writeBinary(out);
+            out.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new ShouldNeverHappenException(e);
+        }
+    }
+
+    /**
+     * Decode a blob written by {@link #encode(DataPointVO)} or by Java serialization
+     */
+    public static DataPointVO decode(byte[] data) throws ShouldNeverHappenException {
+        if (data == null)
+            return null;
+        if (!isBinary(data))
+            return (DataPointVO) SerializationHelper.readObjectInContextFromArray(data);
+
+        DataPointVO vo = new DataPointVO();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 2, data.length - 2));
+            vo.readBinary(in);
+        } catch (Exception e) {
+            throw new ShouldNeverHappenException(e);
+        }
+        return vo;
+    }
+
+    /**
+     * @return true if the blob was written using Java serialization
+     */
+    public static boolean isJavaSerialized(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == (byte) 0xAC && data[1] == (byte) 0xED;
+    }
+
+    private static boolean isBinary(byte[] data) {
+        return data.length >= 2 && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+
+    static final int RENDERER_SERIALIZED = 0;
+    static final int RENDERER_NULL = 1;
+    private static final int RENDERER_ANALOG = 2;
+    private static final int RENDERER_BINARY = 3;
+    private static final int RENDERER_MULTISTATE = 4;
+    private static final int RENDERER_NONE = 5;
+    private static final int RENDERER_PLAIN = 6;
+    private static final int RENDERER_RANGE = 7;
+    private static final int RENDERER_TIME = 8;
+
+    /**
+     * Write the type tag and fields of a core text renderer. The units of converting renderers are not written, they
+     * are set from the data point.
+     *
+     * @return false if the renderer is not a core type (only the {@link #RENDERER_SERIALIZED} tag is written), it must
+     * be Java serialized
+     */
+    static boolean writeTextRenderer(DataOutputStream out, TextRenderer renderer) throws IOException {
+        if (renderer == null) {
+            out.writeByte(RENDERER_NULL);
+            return true;
+        }
+
+        // exact class match, module sub-classes may have additional fields
+        Class<?> type = renderer.getClass();
+        if (type == AnalogRenderer.class) {
+            AnalogRenderer r = (AnalogRenderer) renderer;
+            out.writeByte(RENDERER_ANALOG);
+            SerializationHelper.writeSafeUTF(out, r.getFormat());
+            SerializationHelper.writeSafeUTF(out, r.getSuffix());
+            out.writeBoolean(r.isUseUnitAsSuffix());
+        } else if (type == BinaryTextRenderer.class) {
+            BinaryTextRenderer r = (BinaryTextRenderer) renderer;
+            out.writeByte(RENDERER_BINARY);
+            SerializationHelper.writeSafeUTF(out, r.getZeroLabel());
+            SerializationHelper.writeSafeUTF(out, r.getZeroColour());
+            SerializationHelper.writeSafeUTF(out, r.getOneLabel());
+            SerializationHelper.writeSafeUTF(out, r.getOneColour());
+        } else if (type == MultistateRenderer.class) {
+            List<MultistateValue> values = ((MultistateRenderer) renderer).getMultistateValues();
+            out.writeByte(RENDERER_MULTISTATE);
+            out.writeInt(values == null ? -1 : values.size());
+            if (values != null) {
+                for (MultistateValue value : values) {
+                    out.writeInt(value.getKey());
+                    SerializationHelper.writeSafeUTF(out, value.getText());
+                    SerializationHelper.writeSafeUTF(out, value.getColour());
+                }
+            }
+        } else if (type == NoneRenderer.class) {
+            out.writeByte(RENDERER_NONE);
+        } else if (type == PlainRenderer.class) {
+            PlainRenderer r = (PlainRenderer) renderer;
+            out.writeByte(RENDERER_PLAIN);
+            SerializationHelper.writeSafeUTF(out, r.getSuffix());
+            out.writeBoolean(r.isUseUnitAsSuffix());
+        } else if (type == RangeRenderer.class) {
+            RangeRenderer r = (RangeRenderer) renderer;
+            List<RangeValue> values = r.getRangeValues();
+            out.writeByte(RENDERER_RANGE);
+            SerializationHelper.writeSafeUTF(out, r.getFormat());
+            out.writeBoolean(r.isUseUnitAsSuffix());
+            out.writeInt(values == null ? -1 : values.size());
+            if (values != null) {
+                for (RangeValue value : values) {
+                    out.writeDouble(value.getFrom());
+                    out.writeDouble(value.getTo());
+                    SerializationHelper.writeSafeUTF(out, value.getText());
+                    SerializationHelper.writeSafeUTF(out, value.getColour());
+                }
+            }
+        } else if (type == TimeRenderer.class) {
+            TimeRenderer r = (TimeRenderer) renderer;
+            out.writeByte(RENDERER_TIME);
+            SerializationHelper.writeSafeUTF(out, r.getFormat());
+            out.writeInt(r.getConversionExponent());
+        } else {
+            out.writeByte(RENDERER_SERIALIZED);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read a text renderer written by {@link #writeTextRenderer(DataOutputStream, TextRenderer)}, must not be called
+     * for the {@link #RENDERER_SERIALIZED} tag
+     */
+    static TextRenderer readTextRenderer(int tag, DataInputStream in) throws IOException {
+        switch (tag) {
+            case RENDERER_NULL:
+                return null;
+            case RENDERER_ANALOG:
+                return new AnalogRenderer(SerializationHelper.readSafeUTF(in), SerializationHelper.readSafeUTF(in),
+                        in.readBoolean());
+            case RENDERER_BINARY:
+                return new BinaryTextRenderer(SerializationHelper.readSafeUTF(in), SerializationHelper.readSafeUTF(in),
+                        SerializationHelper.readSafeUTF(in), SerializationHelper.readSafeUTF(in));
+            case RENDERER_MULTISTATE: {
+                MultistateRenderer r = new MultistateRenderer();
+                int count = in.readInt();
+                List<MultistateValue> values = null;
+                if (count >= 0) {
+                    values = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        values.add(new MultistateValue(in.readInt(), SerializationHelper.readSafeUTF(in),
+                                SerializationHelper.readSafeUTF(in)));
+                    }
+                }
+                r.setMultistateValues(values);
+                return r;
+            }
+            case RENDERER_NONE:
+                return new NoneRenderer();
+            case RENDERER_PLAIN:
+                return new PlainRenderer(SerializationHelper.readSafeUTF(in), in.readBoolean());
+            case RENDERER_RANGE: {
+                RangeRenderer r = new RangeRenderer(SerializationHelper.readSafeUTF(in));
+                r.setUseUnitAsSuffix(in.readBoolean());
+                int count = in.readInt();
+                if (count >= 0) {
+                    List<RangeValue> values = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        values.add(new RangeValue(in.readDouble(), in.readDouble(), SerializationHelper.readSafeUTF(in),
+                                SerializationHelper.readSafeUTF(in)));
+                    }
+                    r.setRangeValues(values);
+                }
+                return r;
+            }
+            case RENDERER_TIME:
+                return new TimeRenderer(SerializationHelper.readSafeUTF(in), in.readInt());
+            default:
+                throw new ShouldNeverHappenException("Unknown text renderer type " + tag);
+        }
+    }
+
+    /**
+     * Parsing units is expensive and there are usually only a handful of distinct units in use
+     */
+    static Unit<?> parseUnit(String unit, Unit<?> defaultUnit) {
+        if (unit == null)
+            return defaultUnit;
+
+        Unit<?> parsed = UNIT_CACHE.get(unit);
+        if (parsed == null) {
+            try {
+                parsed = JUnitUtil.parseDefault(unit);
+            } catch (Exception e) {
+                return defaultUnit;
+            }
+            if (parsed == null)
+                return defaultUnit;
+            if (UNIT_CACHE.size() < UNIT_CACHE_SIZE)
+                UNIT_CACHE.putIfAbsent(unit, parsed);
+        }
+        return parsed;
+    }
+}
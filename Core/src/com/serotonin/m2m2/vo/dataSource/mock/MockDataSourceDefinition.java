@@ -3,11 +3,18 @@
  */
 package com.serotonin.m2m2.vo.dataSource.mock;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.serotonin.m2m2.DataType;
 import com.serotonin.m2m2.i18n.ProcessResult;
 import com.serotonin.m2m2.module.ConditionalDefinition;
 import com.serotonin.m2m2.module.DataSourceDefinition;
 import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataPoint.MockPointLocatorVO;
 import com.serotonin.m2m2.vo.dataSource.DataSourceVO;
+import com.serotonin.m2m2.vo.dataSource.PointLocatorVO;
 
 /**
  * @author Terry Packer
@@ -44,4 +51,24 @@ public class MockDataSourceDefinition extends DataSourceDefinition<MockDataSourc
             response.addContextualMessage("dataSourceId", "dpEdit.validate.invalidDataSourceType");
     }
 
+    private static final int POINT_LOCATOR_VERSION = 1;
+
+    @Override
+    public boolean writePointLocator(PointLocatorVO<?> locator, DataOutput out) throws IOException {
+        MockPointLocatorVO vo = (MockPointLocatorVO) locator;
+        out.writeInt(POINT_LOCATOR_VERSION);
+        out.writeInt(vo.getDataType().getId());
+        out.writeBoolean(vo.isSettable());
+        return true;
+    }
+
+    @Override
+    public PointLocatorVO<?> readPointLocator(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != POINT_LOCATOR_VERSION)
+            throw new IOException("Unknown point locator version " + version);
+        DataType dataType = DataType.fromId(in.readInt());
+        return new MockPointLocatorVO(dataType, in.readBoolean());
+    }
+
 }
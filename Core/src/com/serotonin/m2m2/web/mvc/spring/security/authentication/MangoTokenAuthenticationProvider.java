@@ -58,7 +58,7 @@ public class MangoTokenAuthenticationProvider implements AuthenticationProvider
         Jws<Claims> jws;
 
         try {
-            jws = tokenAuthenticationService.parse(bearerToken.getToken());
+            jws = tokenAuthenticationService.parseCached(bearerToken.getToken());
             user = tokenAuthenticationService.verify(jws);
         } catch (ExpiredJwtException e) {
             throw new CredentialsExpiredException("JWT token expired", e);
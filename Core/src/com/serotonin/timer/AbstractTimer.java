@@ -47,6 +47,12 @@ abstract public class AbstractTimer extends Clock {
 
     abstract protected void scheduleImpl(TimerTask task);
 
+    /**
+     * Called after a scheduled task is cancelled, timers may remove the task from their queue
+     */
+    void cancelled(TimerTask task) {
+    }
+
     abstract public List<TimerTask> cancel();
 
     abstract public int purge();
@@ -65,6 +71,13 @@ abstract public class AbstractTimer extends Clock {
     
     abstract public TimeSource getTimeSource();
 
+    /**
+     * @return how late (ms) the timer was when it most recently fired a task
+     */
+    public long getLag() {
+        return 0;
+    }
+
     @Override
     public ZoneId getZone() {
         return zone;
@@ -26,6 +26,13 @@ public class OrderedRealTimeTimer extends RealTimeTimer {
         super(zone);
     }
 
+    /**
+     * @see RealTimeTimer#RealTimeTimer(ZoneId, long)
+     */
+    public OrderedRealTimeTimer(ZoneId zone, long tickDuration) {
+        super(zone, tickDuration);
+    }
+
     public void init(OrderedThreadPoolExecutor executorService, int threadPriority){
         OrderedTimerThread timer = new OrderedTimerThread(queue, executorService, timeSource);
         timer.setName("Ordered RealTime Timer");
@@ -54,6 +61,6 @@ public class OrderedRealTimeTimer extends RealTimeTimer {
 
     @Override
     public OrderedRealTimeTimer withZone(ZoneId zone) {
-        return new OrderedRealTimeTimer(zone);
+        return new OrderedRealTimeTimer(zone, getTickDuration());
     }
 }
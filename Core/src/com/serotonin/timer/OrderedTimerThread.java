@@ -15,7 +15,7 @@ class OrderedTimerThread extends TimerThread{
  
 	private final OrderedThreadPoolExecutor executorService;
 
-    OrderedTimerThread(TaskQueue queue, OrderedThreadPoolExecutor executorService, TimeSource timeSource) {
+    OrderedTimerThread(TimerQueue queue, OrderedThreadPoolExecutor executorService, TimeSource timeSource) {
         super(queue, executorService, timeSource);
         this.executorService = executorService;
     }
@@ -1,7 +1,6 @@
 package com.serotonin.timer;
 
 import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
@@ -19,7 +18,12 @@ public class RealTimeTimer extends AbstractTimer {
      * various schedule calls, and the timer thread consumes, executing timer tasks as appropriate, and removing them
      * from the queue when they're obsolete.
      */
-    protected final TaskQueue queue = new TaskQueue();
+    protected final TimerQueue queue;
+
+    /**
+     * Duration of a tick of the timing wheel (ms), 0 if tasks are scheduled using a heap
+     */
+    private final long tickDuration;
 
     /**
      * The timer thread.
@@ -33,11 +37,26 @@ public class RealTimeTimer extends AbstractTimer {
     protected TimeSource timeSource = new SystemTimeSource();
 
     public RealTimeTimer() {
-        super();
+        this(ZoneId.systemDefault());
     }
 
     public RealTimeTimer(ZoneId zone) {
+        this(zone, 0);
+    }
+
+    /**
+     * @param tickDuration if greater than zero tasks are scheduled using a hierarchical timing wheel with ticks of this
+     *                     duration (ms) rather than a heap. Scheduling and cancelling a task using a timing wheel is
+     *                     O(1) rather than O(log n), at the cost of tasks running up to one tick late.
+     */
+    public RealTimeTimer(ZoneId zone, long tickDuration) {
         super(zone);
+        this.tickDuration = tickDuration;
+        this.queue = tickDuration > 0 ? new TimingWheel(tickDuration, this::currentTimeMillis) : new TaskQueue();
+    }
+
+    public long getTickDuration() {
+        return tickDuration;
     }
 
     public void setTimeSource(TimeSource timeSource) {
@@ -134,12 +153,18 @@ public class RealTimeTimer extends AbstractTimer {
                 }
             }
 
-            queue.add(task);
-            if (queue.getMin() == task)
+            if (queue.add(task))
                 queue.notify();
         }
     }
 
+    @Override
+    void cancelled(TimerTask task) {
+        synchronized (queue) {
+            queue.remove(task);
+        }
+    }
+
     /**
      * Terminates this timer, discarding any currently scheduled tasks. Does not interfere with a currently executing
      * task (if it exists). Once a timer has been terminated, its execution thread terminates gracefully, and no more
@@ -183,7 +208,8 @@ public class RealTimeTimer extends AbstractTimer {
      * <p>
      * Most programs will have no need to call this method. It is designed for use by the rare application that cancels
      * a large number of tasks. Calling this method trades time for space: the runtime of the method may be proportional
-     * to n + c log n, where n is the number of tasks in the queue and c is the number of canceled tasks.
+     * to n + c log n, where n is the number of tasks in the queue and c is the number of canceled tasks. The timing
+     * wheel removes tasks when they are cancelled.
      * 
      * <p>
      * Note that it is permissible to call this method from within a a task scheduled on this timer.
@@ -193,21 +219,9 @@ public class RealTimeTimer extends AbstractTimer {
      */
     @Override
     public int purge() {
-        int result = 0;
-
         synchronized (queue) {
-            for (int i = queue.size(); i > 0; i--) {
-                if (queue.get(i).state == TimerTask.CANCELLED) {
-                    queue.quickRemove(i);
-                    result++;
-                }
-            }
-
-            if (result != 0)
-                queue.heapify();
+            return queue.purge();
         }
-
-        return result;
     }
 
     @Override
@@ -217,12 +231,9 @@ public class RealTimeTimer extends AbstractTimer {
 
     @Override
     public List<TimerTask> getTasks() {
-        List<TimerTask> result = new ArrayList<TimerTask>();
         synchronized (queue) {
-            for (int i = 0; i < queue.size(); i++)
-                result.add(queue.get(i + 1));
+            return queue.getTasks();
         }
-        return result;
     }
 
     @Override
@@ -235,8 +246,13 @@ public class RealTimeTimer extends AbstractTimer {
         return timeSource;
     }
 
+    @Override
+    public long getLag() {
+        return queue.getLag();
+    }
+
     @Override
     public RealTimeTimer withZone(ZoneId zone) {
-        return new RealTimeTimer(zone);
+        return new RealTimeTimer(zone, tickDuration);
     }
 }
@@ -1,8 +1,10 @@
 package com.serotonin.timer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
-class TaskQueue {
+class TaskQueue implements TimerQueue {
     /**
      * Priority queue represented as a balanced binary heap: the two children of queue[n] are queue[2*n] and
      * queue[2*n+1]. The priority queue is ordered on the nextExecutionTime field: The TimerTask with the lowest
@@ -16,23 +18,98 @@ class TaskQueue {
      */
     private int size = 0;
 
+    private volatile long lag;
+
     /**
      * Returns the number of tasks currently on the queue.
      */
-    int size() {
+    @Override
+    public int size() {
         return size;
     }
 
     /**
      * Adds a new task to the priority queue.
      */
-    void add(TimerTask task) {
+    @Override
+    public boolean add(TimerTask task) {
         // Grow backing store if necessary
         if (size + 1 == queue.length)
             queue = Arrays.copyOf(queue, 2 * queue.length);
 
         queue[++size] = task;
         fixUp(size);
+        return getMin() == task;
+    }
+
+    /**
+     * Cancelled tasks are removed when they reach the head of the queue, or by {@link #purge()}.
+     */
+    @Override
+    public void remove(TimerTask task) {
+        // no op
+    }
+
+    @Override
+    public long poll(long now, List<TaskWrapper> fired) {
+        while (size > 0) {
+            TimerTask task = getMin();
+            synchronized (task.lock) {
+                if (task.state == TimerTask.CANCELLED) {
+                    removeMin();
+                    continue;
+                }
+                long executionTime = task.trigger.nextExecutionTime;
+                if (executionTime > now) {
+                    // Task hasn't yet fired; wait
+                    return executionTime - now;
+                }
+                long next = task.trigger.calculateNextExecutionTime();
+                if (next <= 0) { // Non-repeating, remove
+                    removeMin();
+                    task.state = TimerTask.EXECUTED;
+                }
+                else
+                    // Repeating task, reschedule
+                    rescheduleMin(next);
+                lag = now - executionTime;
+                fired.add(new TaskWrapper(task, task.trigger.mostRecentExecutionTime()));
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public List<TimerTask> getTasks() {
+        List<TimerTask> result = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++)
+            result.add(queue[i]);
+        return result;
+    }
+
+    /**
+     * Calling this method trades time for space: the runtime of the method may be proportional to n + c log n, where n
+     * is the number of tasks in the queue and c is the number of canceled tasks.
+     */
+    @Override
+    public int purge() {
+        int result = 0;
+        for (int i = size; i > 0; i--) {
+            if (queue[i].state == TimerTask.CANCELLED) {
+                quickRemove(i);
+                result++;
+            }
+        }
+
+        if (result != 0)
+            heapify();
+        return result;
+    }
+
+    @Override
+    public long getLag() {
+        return lag;
     }
 
     /**
@@ -82,14 +159,16 @@ class TaskQueue {
     /**
      * Returns true if the priority queue contains no elements.
      */
-    boolean isEmpty() {
+    @Override
+    public boolean isEmpty() {
         return size == 0;
     }
 
     /**
      * Removes all elements from the priority queue.
      */
-    void clear() {
+    @Override
+    public void clear() {
         // Null out task references to prevent memory leak
         for (int i = 1; i <= size; i++)
             queue[i] = null;
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.timer;
+
+import java.util.List;
+
+/**
+ * Queue of scheduled tasks which is shared between a {@link RealTimeTimer} and its {@link TimerThread}. All methods
+ * must be called while holding the queue's monitor, the timer thread waits on the monitor for tasks to become due.
+ *
+ * @see TaskQueue
+ * @see TimingWheel
+ */
+interface TimerQueue {
+
+    /**
+     * Add a task, the task's next execution time must be set.
+     *
+     * @return true if the timer thread must be notified so that it can recalculate how long to wait
+     */
+    boolean add(TimerTask task);
+
+    /**
+     * Remove a task which was cancelled, implementations may instead discard cancelled tasks when they become due.
+     */
+    void remove(TimerTask task);
+
+    /**
+     * Remove the tasks which are due for execution. Repeating tasks are rescheduled, non-repeating tasks are marked as
+     * executed.
+     *
+     * @param now current time (epoch ms)
+     * @param fired a wrapper for each task that is due is added to this list
+     * @return time in ms to wait before polling again, only applicable if no tasks were fired
+     */
+    long poll(long now, List<TaskWrapper> fired);
+
+    boolean isEmpty();
+
+    /**
+     * @return number of tasks in the queue
+     */
+    int size();
+
+    /**
+     * Removes all tasks from the queue
+     */
+    void clear();
+
+    /**
+     * @return all tasks in the queue
+     */
+    List<TimerTask> getTasks();
+
+    /**
+     * Removes all cancelled tasks from the queue
+     *
+     * @return the number of tasks removed from the queue
+     */
+    int purge();
+
+    /**
+     * @return how late (ms) the most recent execution was, relative to its scheduled time
+     */
+    long getLag();
+}
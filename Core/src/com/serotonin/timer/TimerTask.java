@@ -5,6 +5,13 @@ import com.serotonin.m2m2.Common;
 public abstract class TimerTask extends Task {
     
 	TimerTrigger trigger;
+
+    /**
+     * Links used by {@link TimingWheel}, guarded by the timer's queue
+     */
+    TimingWheel.Slot slot;
+    TimerTask slotPrev;
+    TimerTask slotNext;
 	
 	public TimerTask(TimerTrigger trigger, String name){
 		super(name);
@@ -28,6 +35,18 @@ public abstract class TimerTask extends Task {
         return trigger.nextExecutionTime;
     }
 
+    /**
+     * Cancels the task and notifies the timer so that it can remove the task from its queue
+     */
+    @Override
+    public boolean cancel() {
+        boolean result = super.cancel();
+        AbstractTimer timer = getTimer();
+        if (timer != null)
+            timer.cancelled(this);
+        return result;
+    }
+
     void setTimer(AbstractTimer timer) {
         trigger.setTimer(timer);
     }
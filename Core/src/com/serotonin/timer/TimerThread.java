@@ -1,5 +1,7 @@
 package com.serotonin.timer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 
@@ -20,12 +22,12 @@ class TimerThread extends Thread {
      * Our Timer's queue. We store this reference in preference to a reference to the Timer so the reference graph
      * remains acyclic. Otherwise, the Timer would never be garbage-collected and this thread would never go away.
      */
-    private final TaskQueue queue;
+    private final TimerQueue queue;
 
     private final ExecutorService executorService;
     private final TimeSource timeSource;
 
-    TimerThread(TaskQueue queue, ExecutorService executorService, TimeSource timeSource) {
+    TimerThread(TimerQueue queue, ExecutorService executorService, TimeSource timeSource) {
         this.queue = queue;
         this.executorService = executorService;
         this.timeSource = timeSource;
@@ -85,11 +87,9 @@ class TimerThread extends Thread {
      * The main timer loop. (See class comment.)
      */
     private void mainLoop() {
+        List<TaskWrapper> fired = new ArrayList<>();
         while (true) {
             try {
-                TimerTask task;
-                boolean taskFired;
-                long executionTime;
                 synchronized (queue) {
                     // Wait for queue to become non-empty
                     while (queue.isEmpty() && newTasksMayBeScheduled)
@@ -97,47 +97,27 @@ class TimerThread extends Thread {
                     if (queue.isEmpty())
                         break; // Queue is empty and will forever remain; die
 
-                    // Queue nonempty; look at first evt and do the right thing
-                    task = queue.getMin();
-                    synchronized (task.lock) {
-                        if (task.state == TimerTask.CANCELLED) {
-                            queue.removeMin();
-                            continue; // No action required, poll queue again
-                        }
-                        executionTime = task.trigger.nextExecutionTime;
-                        if (taskFired = (executionTime <= timeSource.currentTimeMillis())) {
-                            long next = task.trigger.calculateNextExecutionTime();
-                            if (next <= 0) { // Non-repeating, remove
-                                queue.removeMin();
-                                task.state = TimerTask.EXECUTED;
-                            }
-                            else
-                                // Repeating task, reschedule
-                                queue.rescheduleMin(next);
-                        }
-                    }
-                    if (!taskFired) {// Task hasn't yet fired; wait
-                        long wait = executionTime - timeSource.currentTimeMillis();
-                        if (wait > 0)
-                            queue.wait(wait);
-                    }
+                    // Queue nonempty; remove the tasks which are due
+                    long wait = queue.poll(timeSource.currentTimeMillis(), fired);
+                    if (fired.isEmpty() && wait > 0) // No task has fired yet; wait
+                        queue.wait(wait);
                 }
-                if (taskFired) {
-                    // Task fired; run it, holding no locks
+                // Tasks fired; run them, holding no locks
+                for (TaskWrapper wrapper : fired) {
                     try {
-                    	//System.out.println("Scheduled: " + executionTime + " time: " + System.currentTimeMillis() + " task: " + task.getName());
-                        TaskWrapper wrapper = new TaskWrapper(task, task.trigger.mostRecentExecutionTime());
-                    	//task.executionTime = executionTime;
-                    	this.executeTask(wrapper);
+                        this.executeTask(wrapper);
                     }
                     catch (RejectedExecutionException e) {
-                        this.taskRejected(executionTime, task, e);
+                        this.taskRejected(wrapper.getExecutionTime(), (TimerTask) wrapper.getTask(), e);
                     }
                 }
             }
             catch (InterruptedException e) {
                 // no op
             }
+            finally {
+                fired.clear();
+            }
         }
     }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2024 Radix IoT LLC. All rights reserved.
+ */
+package com.serotonin.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel, scheduling and cancelling a task are O(1) operations regardless of the number of
+ * scheduled tasks. Time is divided into ticks of a fixed duration, a task fires on the first tick which is at or after
+ * its execution time so tasks may run up to one tick late.
+ *
+ * <p>There are {@value #LEVELS} wheels of {@value #WHEEL_SIZE} slots, each slot of a wheel spans an entire rotation of
+ * the wheel below it. Tasks are placed in the lowest wheel which can hold them and are cascaded down to the lower wheels
+ * as their execution time approaches. Tasks which are further in the future than the top wheel can hold are placed in
+ * its last slot and re-placed when that slot is cascaded.</p>
+ *
+ * <p>Each slot is a doubly linked list of tasks, the links are stored in the tasks so that a cancelled task can be
+ * unlinked without searching for it.</p>
+ */
+class TimingWheel implements TimerQueue {
+
+    private static final int WHEEL_BITS = 8;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickDuration;
+    private final LongSupplier clock;
+    private final Slot[][] wheels = new Slot[LEVELS][WHEEL_SIZE];
+
+    /**
+     * The next tick to be processed
+     */
+    private long currentTick;
+    private int size;
+    private volatile long lag;
+
+    /**
+     * @param tickDuration duration of a tick in ms
+     * @param clock supplies the current time (epoch ms)
+     */
+    TimingWheel(long tickDuration, LongSupplier clock) {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("Tick duration must be greater than zero");
+        this.tickDuration = tickDuration;
+        this.clock = clock;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheels[level][i] = new Slot();
+            }
+        }
+        this.currentTick = Math.floorDiv(clock.getAsLong(), tickDuration);
+    }
+
+    /**
+     * @return true if the wheel was empty, the timer thread does not poll an empty wheel
+     */
+    @Override
+    public boolean add(TimerTask task) {
+        boolean wasEmpty = size == 0;
+        if (wasEmpty) {
+            // nothing to cascade, start at the current time rather than catching up on idle ticks
+            currentTick = Math.floorDiv(clock.getAsLong(), tickDuration);
+        }
+        place(task);
+        size++;
+        return wasEmpty;
+    }
+
+    @Override
+    public void remove(TimerTask task) {
+        if (task.slot != null) {
+            task.slot.unlink(task);
+            size--;
+        }
+    }
+
+    @Override
+    public long poll(long now, List<TaskWrapper> fired) {
+        long nowTick = Math.floorDiv(now, tickDuration);
+        if (nowTick < currentTick - 1) {
+            rebase(nowTick);
+        }
+        while (currentTick <= nowTick && size > 0) {
+            long tick = currentTick;
+            if ((tick & WHEEL_MASK) == 0) {
+                cascade(tick, 1);
+            }
+
+            Slot slot = wheels[0][(int) (tick & WHEEL_MASK)];
+            TimerTask task = slot.detach();
+            // tasks rescheduled for this tick are placed in the next tick's slot
+            currentTick = tick + 1;
+            if (task != null) {
+                lag = now - tick * tickDuration;
+            }
+            while (task != null) {
+                TimerTask next = task.slotNext;
+                task.slotNext = null;
+                task.slotPrev = null;
+                size--;
+                fire(task, tick, fired);
+                task = next;
+            }
+        }
+
+        if (size == 0) {
+            return 0;
+        }
+        return Math.max(currentTick * tickDuration - now, 1);
+    }
+
+    /**
+     * The clock has moved backwards, place all tasks again relative to the current tick. Otherwise tasks would not
+     * fire until the clock caught up with the wheel.
+     */
+    private void rebase(long nowTick) {
+        List<TimerTask> tasks = getTasks();
+        clear();
+        currentTick = nowTick;
+        for (TimerTask task : tasks) {
+            place(task);
+        }
+        size = tasks.size();
+    }
+
+    private void fire(TimerTask task, long tick, List<TaskWrapper> fired) {
+        synchronized (task.lock) {
+            if (task.state == TimerTask.CANCELLED) {
+                return;
+            }
+            if (expiryTick(task) > tick) {
+                // should not happen, but never run a task early
+                place(task);
+                size++;
+                return;
+            }
+            long next = task.trigger.calculateNextExecutionTime();
+            if (next <= 0) {
+                task.state = TimerTask.EXECUTED;
+            } else {
+                task.trigger.nextExecutionTime = next;
+                place(task);
+                size++;
+            }
+            fired.add(new TaskWrapper(task, task.trigger.mostRecentExecutionTime()));
+        }
+    }
+
+    /**
+     * Move the tasks from the slot of the given level which covers tick to the lower levels, if that slot is the
+     * first of its wheel then the level above is cascaded first.
+     */
+    private void cascade(long tick, int level) {
+        if (level >= LEVELS) {
+            return;
+        }
+        int index = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        if (index == 0) {
+            cascade(tick, level + 1);
+        }
+        TimerTask task = wheels[level][index].detach();
+        while (task != null) {
+            TimerTask next = task.slotNext;
+            task.slotNext = null;
+            task.slotPrev = null;
+            place(task);
+            task = next;
+        }
+    }
+
+    private void place(TimerTask task) {
+        long expiry = expiryTick(task);
+        long delta = expiry - currentTick;
+        if (delta < 0) {
+            // overdue, fire on the next tick
+            delta = 0;
+            expiry = currentTick;
+        } else if (delta > MAX_DELTA) {
+            // beyond the top wheel, the task is placed again when its slot is cascaded
+            delta = MAX_DELTA;
+            expiry = currentTick + MAX_DELTA;
+        }
+
+        int level = 0;
+        while (delta >= WHEEL_SIZE) {
+            delta >>>= WHEEL_BITS;
+            level++;
+        }
+        int index = (int) ((expiry >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        wheels[level][index].link(task);
+    }
+
+    /**
+     * @return first tick at or after the task's next execution time
+     */
+    private long expiryTick(TimerTask task) {
+        return -Math.floorDiv(-task.trigger.nextExecutionTime, tickDuration);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Slot[] wheel : wheels) {
+            for (Slot slot : wheel) {
+                TimerTask task = slot.detach();
+                while (task != null) {
+                    TimerTask next = task.slotNext;
+                    task.slotNext = null;
+                    task.slotPrev = null;
+                    task = next;
+                }
+            }
+        }
+        size = 0;
+    }
+
+    @Override
+    public List<TimerTask> getTasks() {
+        List<TimerTask> result = new ArrayList<>(size);
+        for (Slot[] wheel : wheels) {
+            for (Slot slot : wheel) {
+                for (TimerTask task = slot.head; task != null; task = task.slotNext) {
+                    result.add(task);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancelled tasks are normally removed when they are cancelled, this removes tasks which were cancelled without
+     * notifying the timer.
+     */
+    @Override
+    public int purge() {
+        int result = 0;
+        for (Slot[] wheel : wheels) {
+            for (Slot slot : wheel) {
+                TimerTask task = slot.head;
+                while (task != null) {
+                    TimerTask next = task.slotNext;
+                    if (task.state == TimerTask.CANCELLED) {
+                        slot.unlink(task);
+                        size--;
+                        result++;
+                    }
+                    task = next;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * Doubly linked list of tasks
+     */
+    static final class Slot {
+        private TimerTask head;
+
+        void link(TimerTask task) {
+            task.slot = this;
+            task.slotPrev = null;
+            task.slotNext = head;
+            if (head != null) {
+                head.slotPrev = task;
+            }
+            head = task;
+        }
+
+        void unlink(TimerTask task) {
+            if (task.slotPrev == null) {
+                head = task.slotNext;
+            } else {
+                task.slotPrev.slotNext = task.slotNext;
+            }
+            if (task.slotNext != null) {
+                task.slotNext.slotPrev = task.slotPrev;
+            }
+            task.slot = null;
+            task.slotPrev = null;
+            task.slotNext = null;
+        }
+
+        /**
+         * Remove all tasks from the slot
+         *
+         * @return the first task of the list, the tasks are still linked to each other
+         */
+        TimerTask detach() {
+            TimerTask first = head;
+            head = null;
+            for (TimerTask task = first; task != null; task = task.slotNext) {
+                task.slot = null;
+            }
+            return first;
+        }
+    }
+}
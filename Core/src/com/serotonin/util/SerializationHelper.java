@@ -6,6 +6,8 @@ package com.serotonin.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -35,6 +37,22 @@ public class SerializationHelper {
         return null;
     }
 
+    public static void writeSafeUTF(DataOutput out, String utf) throws IOException {
+        if (utf == null)
+            out.writeBoolean(false);
+        else {
+            out.writeBoolean(true);
+            out.writeUTF(utf);
+        }
+    }
+
+    public static String readSafeUTF(DataInput in) throws IOException {
+        boolean exists = in.readBoolean();
+        if (exists)
+            return in.readUTF();
+        return null;
+    }
+
     public static void writeSafeObject(ObjectOutputStream out, Object o) throws IOException {
         if (o == null)
             out.writeBoolean(false);
@@ -94,6 +112,13 @@ public class SerializationHelper {
         }
     }
 
+    /**
+     * Create a stream which resolves classes using the context class loader, i.e. can read module classes
+     */
+    public static ObjectInputStream createObjectInputStreamInContext(InputStream is) throws IOException {
+        return new ClassLoaderObjectInputStream(is, Thread.currentThread().getContextClassLoader());
+    }
+
     public static Object readObject(InputStream is, ClassLoader classLoader) throws ShouldNeverHappenException {
         if (is == null)
             return null;